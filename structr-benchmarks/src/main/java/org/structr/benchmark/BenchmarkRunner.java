@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON to a file named
+ * after the structr version and the time of the run, so results can be
+ * compared across releases. The results are written to the directory
+ * given by the system property {@value #RESULT_PATH}, which defaults to
+ * target/benchmarks.
+ *
+ * Accepts the command line options of JMH, e.g. a regular expression for
+ * the benchmarks to run, or -p nodeCount=1000000 for a fixture size.
+ *
+ * @author Axel Morgner
+ */
+public class BenchmarkRunner {
+
+	private static final Logger logger     = Logger.getLogger(BenchmarkRunner.class.getName());
+
+	public static final String RESULT_PATH = "benchmark.result.path";
+
+	public static void main(final String[] args) throws Exception {
+
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		ChainedOptionsBuilder options         = new OptionsBuilder().parent(commandLineOptions);
+		String fixturePath                    = System.getProperty(Fixture.FIXTURE_PATH);
+
+		if (!commandLineOptions.getResult().hasValue()) {
+
+			File resultPath = new File(System.getProperty(RESULT_PATH, "target/benchmarks"));
+			File result     = new File(resultPath, "structr-" + getVersion() + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json");
+
+			resultPath.mkdirs();
+
+			options.resultFormat(ResultFormatType.JSON);
+			options.result(result.getAbsolutePath());
+
+			logger.log(Level.INFO, "Writing benchmark results to {0}", result.getAbsolutePath());
+		}
+
+		// the forked benchmark VMs need to use the same fixtures
+		if (fixturePath != null) {
+
+			options.jvmArgsAppend("-D" + Fixture.FIXTURE_PATH + "=" + fixturePath);
+		}
+
+		new Runner(options.build()).run();
+	}
+
+	private static String getVersion() {
+
+		String version = System.getProperty("structr.version");
+
+		if (version == null) {
+
+			version = BenchmarkRunner.class.getPackage().getImplementationVersion();
+		}
+
+		return version != null ? version : "unknown";
+	}
+}
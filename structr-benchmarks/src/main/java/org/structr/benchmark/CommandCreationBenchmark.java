@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.structr.common.SecurityContext;
+import org.structr.core.Services;
+import org.structr.core.graph.FindNodeCommand;
+import org.structr.core.graph.NodeService;
+
+/**
+ * Benchmark of the creation of commands with {@link Services#command},
+ * compared to the reflective creation and argument injection that was
+ * used before the command factories.
+ *
+ * @author Christian Morgner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CommandCreationBenchmark {
+
+	private SecurityContext securityContext = null;
+	private NodeService nodeService         = null;
+
+	@Setup
+	public void setup() {
+
+		securityContext = Fixture.startEmpty("command-creation");
+		nodeService     = Services.getService(NodeService.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		Fixture.stop();
+	}
+
+	@Benchmark
+	public FindNodeCommand factory() {
+		return Services.command(securityContext, FindNodeCommand.class);
+	}
+
+	@Benchmark
+	public FindNodeCommand reflective() throws Exception {
+
+		FindNodeCommand command = FindNodeCommand.class.newInstance();
+
+		command.setSecurityContext(securityContext);
+		nodeService.injectArguments(command);
+
+		return command;
+	}
+}
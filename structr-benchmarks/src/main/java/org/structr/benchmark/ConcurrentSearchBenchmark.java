@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.structr.benchmark.entity.BenchmarkNode;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Result;
+import org.structr.core.Services;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.search.Search;
+import org.structr.core.graph.search.SearchAttribute;
+import org.structr.core.graph.search.SearchNodeCommand;
+
+/**
+ * Benchmark of concurrent sorted and paged searches with one thread per
+ * available processor. Index queries are not serialized, so the result
+ * should scale with the number of cores; run it with -t 1 to get the
+ * single thread result for comparison.
+ *
+ * @author Axel Morgner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(Threads.MAX)
+@Fork(1)
+public class ConcurrentSearchBenchmark {
+
+	@Param({ "10000" })
+	public int nodeCount;
+
+	@Setup
+	public void setup() throws FrameworkException {
+		Fixture.start(nodeCount);
+	}
+
+	@TearDown
+	public void tearDown() {
+		Fixture.stop();
+	}
+
+	@Benchmark
+	public Result search(final Commands commands) throws FrameworkException {
+
+		List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+
+		searchAttributes.add(Search.andExactType(BenchmarkNode.class));
+
+		return commands.searchCommand.execute(false, false, searchAttributes, AbstractNode.name, false, 10, 1);
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The search command of a benchmark thread.
+	 */
+	@State(Scope.Thread)
+	public static class Commands {
+
+		private SearchNodeCommand searchCommand = null;
+
+		@Setup
+		public void setup() {
+			searchCommand = Services.command(SecurityContext.getSuperUserInstance(), SearchNodeCommand.class);
+		}
+	}
+}
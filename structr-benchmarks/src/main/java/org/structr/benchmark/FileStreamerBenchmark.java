@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.structr.web.servlet.FileStreamer;
+
+/**
+ * Benchmark of {@link FileStreamer#transfer}, compared with the stream
+ * copy loop, writing a file of the given size to a discarding stream.
+ * The target is not a Jetty connection, so this measures the fallback
+ * path of the streamer (FileChannel.transferTo into a channel wrapping
+ * the output stream), not the memory mapped path used on Jetty.
+ *
+ * @author Axel Morgner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FileStreamerBenchmark {
+
+	@Param({ "1", "64" })
+	public int megabytes;
+
+	private File file = null;
+
+	@Setup
+	public void setup() throws IOException {
+
+		file = File.createTempFile("structr-stream", ".bin");
+		file.deleteOnExit();
+
+		FileOutputStream out = new FileOutputStream(file);
+		byte[] buffer        = new byte[65536];
+		long size            = megabytes * 1024L * 1024L;
+
+		for (int i=0; i<buffer.length; i++) {
+			buffer[i] = (byte)i;
+		}
+
+		for (long written=0; written<size; written+=buffer.length) {
+			out.write(buffer);
+		}
+
+		out.close();
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Benchmark
+	public long copyLoop() throws IOException {
+
+		CountingOutputStream out = new CountingOutputStream();
+		FileInputStream in       = new FileInputStream(file);
+
+		try {
+
+			IOUtils.copy(in, out);
+
+		} finally {
+
+			in.close();
+		}
+
+		return out.count;
+	}
+
+	@Benchmark
+	public long channelTransfer() throws IOException {
+
+		CountingOutputStream out = new CountingOutputStream();
+		FileInputStream in       = new FileInputStream(file);
+		FileChannel channel      = in.getChannel();
+
+		try {
+
+			FileStreamer.transfer(channel, 0, channel.size(), out, true);
+
+		} finally {
+
+			in.close();
+		}
+
+		return out.count;
+	}
+
+	// ----- nested classes -----
+	private static class CountingOutputStream extends OutputStream {
+
+		private long count = 0;
+
+		@Override
+		public void write(int b) throws IOException {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			count += len;
+		}
+	}
+}
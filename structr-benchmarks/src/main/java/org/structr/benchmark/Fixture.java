@@ -0,0 +1,265 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.structr.benchmark.entity.BenchmarkNode;
+import org.structr.common.RelType;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Services;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.CreateNodeCommand;
+import org.structr.core.graph.CreateRelationshipCommand;
+import org.structr.core.graph.GraphDatabaseCommand;
+import org.structr.core.graph.StructrTransaction;
+import org.structr.core.graph.TransactionCommand;
+import org.structr.core.property.PropertyMap;
+
+/**
+ * Starts the service layer on a benchmark database. The database of each
+ * graph size is generated once in the fixture directory and reused by
+ * later runs, as generating the larger graphs takes several minutes.
+ * The fixture directory can be set with the system property
+ * {@value #FIXTURE_PATH}, it defaults to /tmp/structr-benchmarks.
+ *
+ * A fixture of n nodes consists of n {@link BenchmarkNode}s named
+ * "node0" to "node(n-1)", connected to a chain by IS_AT relationships.
+ * Every node has a description of three words from {@link #WORDS} and
+ * every second node is visible to public users. The content of the
+ * fixture only depends on its size, so results of different runs can be
+ * compared.
+ *
+ * @author Axel Morgner
+ */
+public class Fixture {
+
+	private static final Logger logger      = Logger.getLogger(Fixture.class.getName());
+
+	public static final String FIXTURE_PATH = "benchmark.fixture.path";
+	public static final String[] WORDS      = new String[] {
+		"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet",
+		"kilo", "lima", "mike", "november", "oscar", "papa", "quebec", "romeo", "sierra", "tango"
+	};
+
+	private static final String COMPLETE    = "fixture.complete";
+	private static final int BATCH_SIZE     = 1000;
+
+	/**
+	 * Starts the service layer on the fixture of the given size, and
+	 * generates the fixture if it does not exist yet.
+	 *
+	 * @param nodeCount the number of nodes of the fixture
+	 * @return a superuser security context
+	 * @throws FrameworkException
+	 */
+	public static SecurityContext start(final int nodeCount) throws FrameworkException {
+
+		File basePath = new File(getFixturePath(), "nodes-" + nodeCount);
+		File complete = new File(basePath, COMPLETE);
+
+		if (!complete.exists()) {
+
+			delete(basePath);
+			start(basePath);
+
+			logger.log(Level.INFO, "Generating fixture with {0} nodes in {1}", new Object[] { nodeCount, basePath.getAbsolutePath() });
+
+			long t0 = System.currentTimeMillis();
+
+			generate(nodeCount);
+
+			logger.log(Level.INFO, "Generated fixture with {0} nodes in {1} s", new Object[] { nodeCount, (System.currentTimeMillis() - t0) / 1000 });
+
+			try {
+				complete.createNewFile();
+
+			} catch (IOException ioex) {
+
+				logger.log(Level.WARNING, "Unable to mark fixture {0} as complete", basePath.getAbsolutePath());
+			}
+
+			return SecurityContext.getSuperUserInstance();
+		}
+
+		return start(basePath);
+	}
+
+	/**
+	 * Starts the service layer on a new, empty database with the given name.
+	 * The database is deleted before it is started.
+	 *
+	 * @param name
+	 * @return a superuser security context
+	 */
+	public static SecurityContext startEmpty(final String name) {
+
+		File basePath = new File(getFixturePath(), name);
+
+		delete(basePath);
+
+		return start(basePath);
+	}
+
+	public static void stop() {
+		Services.shutdown();
+	}
+
+	/**
+	 * Returns the given number of randomly chosen nodes of the fixture.
+	 *
+	 * @param nodeCount the number of nodes of the fixture
+	 * @param count the number of nodes to return
+	 * @param seed
+	 * @return the nodes
+	 */
+	public static List<Node> sampleNodes(final int nodeCount, final int count, final long seed) {
+
+		SecurityContext securityContext = SecurityContext.getSuperUserInstance();
+		GraphDatabaseService graphDb    = Services.command(securityContext, GraphDatabaseCommand.class).execute();
+		String type                     = BenchmarkNode.class.getSimpleName();
+		List<Node> nodes                = new ArrayList<Node>(count);
+		Random random                   = new Random(seed);
+
+		for (int i=0; nodes.size() < count && i < count * 10; i++) {
+
+			try {
+
+				Node node = graphDb.getNodeById(1 + random.nextInt(nodeCount));
+
+				if (type.equals(node.getProperty(AbstractNode.type.dbName(), null))) {
+
+					nodes.add(node);
+				}
+
+			} catch (NotFoundException nfex) {}
+		}
+
+		return nodes;
+	}
+
+	public static String getName(final int index) {
+		return "node" + index;
+	}
+
+	public static String getDescription(final int index) {
+		return WORDS[index % WORDS.length] + " " + WORDS[(index / WORDS.length) % WORDS.length] + " " + WORDS[(index * 7) % WORDS.length];
+	}
+
+	public static File getFixturePath() {
+		return new File(System.getProperty(FIXTURE_PATH, "/tmp/structr-benchmarks"));
+	}
+
+	// ----- private methods -----
+	private static SecurityContext start(final File basePath) {
+
+		Map<String, String> context = new HashMap<String, String>();
+		String path                 = basePath.getAbsolutePath();
+
+		context.put(Services.CONFIGURED_SERVICES, "ModuleService NodeService");
+		context.put(Services.APPLICATION_TITLE, "structr benchmarks");
+		context.put(Services.TMP_PATH, getFixturePath().getAbsolutePath());
+		context.put(Services.BASE_PATH, path);
+		context.put(Services.DATABASE_PATH, path + "/db");
+		context.put(Services.FILES_PATH, path + "/files");
+		context.put(Services.LOG_DATABASE_PATH, path + "/logDb.dat");
+		context.put(Services.TCP_PORT, "13465");
+		context.put(Services.SERVER_IP, "127.0.0.1");
+		context.put(Services.UDP_PORT, "13466");
+		context.put(Services.SUPERUSER_USERNAME, "superadmin");
+		context.put(Services.SUPERUSER_PASSWORD, "sehrgeheim");
+
+		Services.initialize(context);
+
+		// wait for service layer to be initialized
+		while (!Services.isInitialized()) {
+
+			try { Thread.sleep(100); } catch (Throwable t) {}
+		}
+
+		return SecurityContext.getSuperUserInstance();
+	}
+
+	private static void generate(final int nodeCount) throws FrameworkException {
+
+		SecurityContext securityContext                    = SecurityContext.getSuperUserInstance();
+		TransactionCommand transactionCommand              = Services.command(securityContext, TransactionCommand.class);
+		final CreateNodeCommand createNode                 = Services.command(securityContext, CreateNodeCommand.class);
+		final CreateRelationshipCommand createRelationship = Services.command(securityContext, CreateRelationshipCommand.class);
+		final AbstractNode[] previous                      = new AbstractNode[1];
+
+		for (int batch=0; batch < nodeCount; batch += BATCH_SIZE) {
+
+			final int start = batch;
+			final int end   = Math.min(nodeCount, batch + BATCH_SIZE);
+
+			transactionCommand.execute(new StructrTransaction() {
+
+				@Override
+				public Object execute() throws FrameworkException {
+
+					for (int i=start; i<end; i++) {
+
+						PropertyMap properties = new PropertyMap();
+
+						properties.put(AbstractNode.type, BenchmarkNode.class.getSimpleName());
+						properties.put(AbstractNode.name, getName(i));
+						properties.put(AbstractNode.visibleToPublicUsers, i % 2 == 0);
+						properties.put(BenchmarkNode.position, i);
+						properties.put(BenchmarkNode.description, getDescription(i));
+
+						AbstractNode node = createNode.execute(properties);
+
+						if (previous[0] != null) {
+
+							createRelationship.execute(previous[0], node, RelType.IS_AT);
+						}
+
+						previous[0] = node;
+					}
+
+					return null;
+				}
+			});
+		}
+	}
+
+	private static void delete(final File dir) {
+
+		try {
+			FileUtils.deleteDirectory(dir);
+
+		} catch (IOException ioex) {
+
+			logger.log(Level.WARNING, "Unable to delete {0}", dir.getAbsolutePath());
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.structr.benchmark.entity.BenchmarkNode;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Services;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.CreateNodeCommand;
+import org.structr.core.graph.GroupCommitter;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.StructrTransaction;
+import org.structr.core.graph.TransactionCommand;
+
+/**
+ * Benchmark of {@link GroupCommitter}: concurrent small transactions that
+ * create a single node each, with and without group commit. The
+ * transactions allow group commit, so they are batched if it is enabled.
+ *
+ * @author Christian Morgner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(8)
+@Fork(1)
+public class GroupCommitBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean groupCommit;
+
+	@Setup
+	public void setup() {
+
+		Fixture.startEmpty("group-commit-" + groupCommit);
+
+		Services.getContext().put(Services.GROUP_COMMIT_ENABLED, Boolean.toString(groupCommit));
+	}
+
+	@TearDown
+	public void tearDown() {
+
+		GroupCommitter.shutdown();
+		Fixture.stop();
+	}
+
+	@Benchmark
+	public Object create(final Commands commands) throws FrameworkException {
+
+		final CreateNodeCommand createNodeCommand = commands.createNodeCommand;
+
+		return commands.transactionCommand.execute(new StructrTransaction(true, true) {
+
+			@Override
+			public Object execute() throws FrameworkException {
+				return createNodeCommand.execute(new NodeAttribute(AbstractNode.type, BenchmarkNode.class.getSimpleName()));
+			}
+		});
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The commands of a benchmark thread, transaction commands must not
+	 * be shared between threads.
+	 */
+	@State(Scope.Thread)
+	public static class Commands {
+
+		private TransactionCommand transactionCommand = null;
+		private CreateNodeCommand createNodeCommand   = null;
+
+		@Setup
+		public void setup() {
+
+			SecurityContext securityContext = SecurityContext.getSuperUserInstance();
+
+			transactionCommand = Services.command(securityContext, TransactionCommand.class);
+			createNodeCommand  = Services.command(securityContext, CreateNodeCommand.class);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.io.output.NullWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.structr.benchmark.entity.BenchmarkNode;
+import org.structr.common.PropertyView;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Result;
+import org.structr.core.Services;
+import org.structr.core.StaticValue;
+import org.structr.core.graph.search.Search;
+import org.structr.core.graph.search.SearchAttribute;
+import org.structr.core.graph.search.SearchNodeCommand;
+import org.structr.rest.StreamingJsonWriter;
+
+/**
+ * Benchmark of {@link StreamingJsonWriter#stream}: serialization of a
+ * search result with the given number of nodes in the public view, to a
+ * character writer and to a UTF-8 output stream. Run with the GC profiler
+ * (-prof gc) to compare the allocation rate per operation.
+ *
+ * @author Axel Morgner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JsonWriterBenchmark {
+
+	@Param({ "10000" })
+	public int nodeCount;
+
+	@Param({ "10", "100", "1000" })
+	public int pageSize;
+
+	@Param({ "false", "true" })
+	public boolean indent;
+
+	private StreamingJsonWriter jsonWriter = null;
+	private Result result                  = null;
+
+	@Setup
+	public void setup() throws FrameworkException {
+
+		SecurityContext securityContext        = Fixture.start(nodeCount);
+		List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+
+		searchAttributes.add(Search.andExactType(BenchmarkNode.class));
+
+		result     = Services.command(securityContext, SearchNodeCommand.class).execute(false, false, searchAttributes, BenchmarkNode.position, false, pageSize, 1);
+		jsonWriter = new StreamingJsonWriter(new StaticValue<String>(PropertyView.Public), indent);
+	}
+
+	@TearDown
+	public void tearDown() {
+		Fixture.stop();
+	}
+
+	@Benchmark
+	public void stream() throws IOException {
+		jsonWriter.stream(new NullWriter(), result);
+	}
+
+	@Benchmark
+	public void streamUtf8() throws IOException {
+		jsonWriter.stream(new NullOutputStream(), result);
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.web.common.RenderContext;
+import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.entity.dom.DOMElement;
+import org.structr.web.entity.dom.Page;
+import org.w3c.dom.Node;
+
+/**
+ * Benchmark of {@link DOMElement#render}: rendering of a page with a
+ * head, a navigation, the given number of content sections and a footer.
+ * The page is created in an empty database.
+ *
+ * @author Axel Morgner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RenderBenchmark {
+
+	@Param({ "10", "100" })
+	public int sections;
+
+	private SecurityContext securityContext = null;
+	private Page page                       = null;
+	private DOMElement html                 = null;
+
+	@Setup
+	public void setup() throws FrameworkException {
+
+		securityContext = Fixture.startEmpty("render-" + sections);
+		page            = Page.createNewPage(securityContext, "benchmark");
+		html            = createPage();
+	}
+
+	@TearDown
+	public void tearDown() {
+		Fixture.stop();
+	}
+
+	@Benchmark
+	public int render() throws FrameworkException {
+
+		RenderContext renderContext = new RenderContext(null, null, EditMode.NONE, Locale.ENGLISH);
+
+		renderContext.setPage(page);
+		html.render(securityContext, renderContext, 0);
+
+		return renderContext.getBuffer().length();
+	}
+
+	// ----- private methods -----
+	private DOMElement createPage() {
+
+		DOMElement root = (DOMElement)page.createElement("html");
+
+		page.appendChild(root);
+
+		DOMElement head = append(root, "head");
+		DOMElement body = append(root, "body");
+
+		text(append(head, "title"), "Benchmark Page");
+		append(head, "meta").setAttribute("charset", "utf-8");
+		append(head, "meta").setAttribute("name", "viewport");
+		append(head, "link").setAttribute("href", "/css/main.css");
+		append(head, "link").setAttribute("href", "/css/print.css");
+		append(head, "script").setAttribute("src", "/js/main.js");
+
+		DOMElement header = append(body, "header");
+
+		text(append(header, "h1"), "Benchmark Page");
+
+		DOMElement nav = append(append(header, "nav"), "ul");
+
+		for (int i=0; i<10; i++) {
+
+			DOMElement link = append(append(nav, "li"), "a");
+
+			link.setAttribute("href", "/page" + i);
+			text(link, "Page " + i);
+		}
+
+		DOMElement content = append(body, "div");
+
+		content.setAttribute("class", "content");
+
+		for (int i=0; i<sections; i++) {
+
+			DOMElement section = append(content, "section");
+			DOMElement list    = append(section, "ul");
+
+			section.setAttribute("class", "section");
+			text(append(section, "h2"), "Section " + i);
+			text(append(section, "p"), StringUtils.repeat(Fixture.getDescription(i) + " ", 20));
+
+			for (int j=0; j<5; j++) {
+
+				text(append(list, "li"), "Item " + j + " of section " + i);
+			}
+		}
+
+		text(append(append(body, "footer"), "p"), "Footer");
+
+		return root;
+	}
+
+	private DOMElement append(final DOMElement parent, final String tag) {
+
+		DOMElement element = (DOMElement)page.createElement(tag);
+
+		parent.appendChild(element);
+
+		return element;
+	}
+
+	private void text(final DOMElement parent, final String text) {
+
+		Node textNode = page.createTextNode(text);
+
+		parent.appendChild(textNode);
+	}
+}
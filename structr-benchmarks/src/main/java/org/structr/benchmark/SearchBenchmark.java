@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.structr.benchmark.entity.BenchmarkNode;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Result;
+import org.structr.core.Services;
+import org.structr.core.graph.search.Search;
+import org.structr.core.graph.search.SearchAttribute;
+import org.structr.core.graph.search.SearchNodeCommand;
+
+/**
+ * Benchmarks of {@link SearchNodeCommand}: exact, fulltext, sorted and
+ * paged searches on fixtures of different sizes.
+ *
+ * @author Axel Morgner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SearchBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	public int nodeCount;
+
+	private SecurityContext securityContext = null;
+	private SearchNodeCommand searchCommand = null;
+	private Random random                   = null;
+
+	@Setup
+	public void setup() throws FrameworkException {
+
+		securityContext = Fixture.start(nodeCount);
+		searchCommand   = Services.command(securityContext, SearchNodeCommand.class);
+		random          = new Random(42);
+	}
+
+	@TearDown
+	public void tearDown() {
+		Fixture.stop();
+	}
+
+	@Benchmark
+	public Result exact() throws FrameworkException {
+
+		List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+
+		searchAttributes.add(Search.andExactType(BenchmarkNode.class));
+		searchAttributes.add(Search.andExactName(Fixture.getName(random.nextInt(nodeCount))));
+
+		return searchCommand.execute(false, false, searchAttributes);
+	}
+
+	@Benchmark
+	public Result fulltext() throws FrameworkException {
+
+		List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+
+		searchAttributes.add(Search.andExactType(BenchmarkNode.class));
+		searchAttributes.add(Search.andProperty(securityContext, BenchmarkNode.description, Fixture.WORDS[random.nextInt(Fixture.WORDS.length)]));
+
+		return searchCommand.execute(false, false, searchAttributes, null, false, 20, 1);
+	}
+
+	@Benchmark
+	public Result sorted() throws FrameworkException {
+
+		List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+
+		searchAttributes.add(Search.andExactType(BenchmarkNode.class));
+
+		return searchCommand.execute(false, false, searchAttributes, BenchmarkNode.position, true, 20, 1);
+	}
+
+	@Benchmark
+	public Result paged() throws FrameworkException {
+
+		List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+
+		searchAttributes.add(Search.andExactType(BenchmarkNode.class));
+
+		// a random page of the first 100
+		return searchCommand.execute(false, false, searchAttributes, null, false, 50, 1 + random.nextInt(100));
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Services;
+import org.structr.core.graph.GraphDatabaseCommand;
+import org.structr.core.graph.SyncCommand;
+
+/**
+ * Benchmark of the export of {@link SyncCommand}: export of a whole
+ * fixture to a file, in the text and in the binary format.
+ *
+ * @author Axel Morgner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SyncExportBenchmark {
+
+	@Param({ "10000", "100000" })
+	public int nodeCount;
+
+	@Param({ "text", "binary" })
+	public String format;
+
+	private GraphDatabaseService graphDb = null;
+	private File file                    = null;
+
+	@Setup
+	public void setup() throws FrameworkException {
+
+		SecurityContext securityContext = Fixture.start(nodeCount);
+
+		graphDb = Services.command(securityContext, GraphDatabaseCommand.class).execute();
+		file    = new File(Fixture.getFixturePath(), "export-benchmark-" + System.nanoTime() + ".zip");
+	}
+
+	@TearDown
+	public void tearDown() {
+
+		Fixture.stop();
+		file.delete();
+	}
+
+	@Benchmark
+	public void export() throws FrameworkException {
+		SyncCommand.exportToFile(graphDb, file.getAbsolutePath(), getFormat(format), 0, 0);
+	}
+
+	/**
+	 * @param format
+	 * @return the format argument of {@link SyncCommand}, null for the text format
+	 */
+	public static String getFormat(final String format) {
+		return "text".equals(format) ? null : format;
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Services;
+import org.structr.core.graph.GraphDatabaseCommand;
+import org.structr.core.graph.SyncCommand;
+
+/**
+ * Benchmark of the import of {@link SyncCommand}: import of an export of
+ * a whole fixture into an empty database. The export file is created once
+ * and reused by later runs, every iteration imports into a new database.
+ *
+ * @author Axel Morgner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SyncImportBenchmark {
+
+	@Param({ "10000", "100000" })
+	public int nodeCount;
+
+	@Param({ "text", "binary" })
+	public String format;
+
+	private SecurityContext securityContext = null;
+	private GraphDatabaseService graphDb    = null;
+	private File file                       = null;
+
+	@Setup(Level.Trial)
+	public void createExport() throws FrameworkException {
+
+		file = new File(Fixture.getFixturePath(), "export-" + nodeCount + "-" + format + ".zip");
+
+		if (!file.exists()) {
+
+			SecurityContext fixtureContext = Fixture.start(nodeCount);
+			File tmpFile                   = new File(file.getAbsolutePath() + ".tmp");
+
+			SyncCommand.exportToFile(Services.command(fixtureContext, GraphDatabaseCommand.class).execute(), tmpFile.getAbsolutePath(), SyncExportBenchmark.getFormat(format), 0, 0);
+			Fixture.stop();
+
+			tmpFile.renameTo(file);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void setup() {
+
+		securityContext = Fixture.startEmpty("import");
+		graphDb         = Services.command(securityContext, GraphDatabaseCommand.class).execute();
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		Fixture.stop();
+	}
+
+	@Benchmark
+	public void importFile() throws FrameworkException {
+		SyncCommand.importFromFile(graphDb, securityContext, file.getAbsolutePath(), true, 1000, 0, 0);
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.web.common.RenderContext;
+import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.entity.dom.DOMElement;
+import org.structr.web.entity.dom.Page;
+
+/**
+ * Benchmark of the evaluation of <code>${...}</code> templates: rendering
+ * of a list whose items contain templates with function calls, nested
+ * expressions and literals.
+ *
+ * @author Christian Morgner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TemplateBenchmark {
+
+	private static final String[] templates = new String[] {
+		"Plain text without expressions",
+		"${upper('hello')}",
+		"Hello ${capitalize('world')}, ${if(empty(\"\"), \"a\", \"b\")}!",
+		"${add(1, mult(2, 3))} items, ${lower(\"ITEMS\")}",
+		"${if(equal(1, 1), upper('yes'), 'no')} ${abbr('abcdefghijklmnopqrstuvwxyz', 10)}",
+		"Unterminated ${expression"
+	};
+
+	private SecurityContext securityContext = null;
+	private Page page                       = null;
+	private DOMElement list                 = null;
+
+	@Setup
+	public void setup() throws FrameworkException {
+
+		securityContext = Fixture.startEmpty("template");
+		page            = Page.createNewPage(securityContext, "benchmark");
+		list            = (DOMElement)page.createElement("ul");
+
+		page.appendChild(list);
+
+		for (int i=0; i<10; i++) {
+
+			for (String template : templates) {
+
+				DOMElement item = (DOMElement)page.createElement("li");
+
+				list.appendChild(item);
+				item.appendChild(page.createTextNode(template));
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		Fixture.stop();
+	}
+
+	@Benchmark
+	public int render() throws FrameworkException {
+
+		RenderContext renderContext = new RenderContext(null, null, EditMode.NONE, Locale.ENGLISH);
+
+		renderContext.setPage(page);
+		list.render(securityContext, renderContext, 0);
+
+		return renderContext.getBuffer().length();
+	}
+}
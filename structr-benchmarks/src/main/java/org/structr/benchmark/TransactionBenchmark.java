@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.structr.benchmark.entity.BenchmarkNode;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Services;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.StructrTransaction;
+import org.structr.core.graph.TransactionCommand;
+
+/**
+ * Benchmark of {@link TransactionCommand}: transactions that modify the
+ * given number of nodes, including the modification callbacks, the
+ * validation and the index updates of the commit.
+ *
+ * @author Axel Morgner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TransactionBenchmark {
+
+	@Param({ "10000" })
+	public int nodeCount;
+
+	@Param({ "1", "100" })
+	public int batchSize;
+
+	private TransactionCommand transactionCommand = null;
+	private List<AbstractNode> nodes              = null;
+	private int index                             = 0;
+
+	@Setup
+	public void setup() throws FrameworkException {
+
+		SecurityContext securityContext = Fixture.start(nodeCount);
+
+		transactionCommand = Services.command(securityContext, TransactionCommand.class);
+		nodes              = new NodeFactory<AbstractNode>(securityContext).bulkInstantiate(Fixture.sampleNodes(nodeCount, 1000, 42));
+	}
+
+	@TearDown
+	public void tearDown() {
+		Fixture.stop();
+	}
+
+	@Benchmark
+	public Object commit() throws FrameworkException {
+
+		return transactionCommand.execute(new StructrTransaction() {
+
+			@Override
+			public Object execute() throws FrameworkException {
+
+				for (int i=0; i<batchSize; i++) {
+
+					int value = index++;
+
+					nodes.get(value % nodes.size()).setProperty(BenchmarkNode.counter, value);
+				}
+
+				return null;
+			}
+		});
+	}
+}
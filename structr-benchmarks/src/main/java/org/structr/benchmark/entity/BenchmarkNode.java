@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.benchmark.entity;
+
+import org.structr.common.PropertyView;
+import org.structr.common.ValidationHelper;
+import org.structr.common.View;
+import org.structr.common.error.ErrorBuffer;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.property.IntProperty;
+import org.structr.core.property.Property;
+import org.structr.core.property.StringProperty;
+
+/**
+ * The entity of the benchmark fixtures, with an exact and fulltext indexed
+ * text property and a sortable number. The counter is modified by the
+ * transaction benchmark, so the other properties stay the same across
+ * benchmark runs.
+ *
+ * @author Axel Morgner
+ */
+public class BenchmarkNode extends AbstractNode {
+
+	public static final Property<Integer> position   = new IntProperty("position").indexed();
+	public static final Property<String> description = new StringProperty("description").indexed();
+	public static final Property<Integer> counter     = new IntProperty("counter").indexed();
+
+	public static final View publicView = new View(BenchmarkNode.class, PropertyView.Public,
+		name, position, description, createdDate
+	);
+
+	@Override
+	public boolean isValid(ErrorBuffer errorBuffer) {
+
+		boolean valid = true;
+
+		valid &= ValidationHelper.checkPropertyNotNull(this, position, errorBuffer);
+
+		return valid;
+	}
+}
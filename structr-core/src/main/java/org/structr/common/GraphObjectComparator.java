@@ -19,10 +19,12 @@
 package org.structr.common;
 
 import org.structr.core.property.PropertyKey;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Date;
 import org.structr.core.GraphObject;
 import java.util.Comparator;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.structr.common.error.FrameworkException;
@@ -38,6 +40,9 @@ import org.structr.core.entity.AbstractNode;
  * Properties with null values (not existing properties) are always handled
  * as "lower than", so that any not-null value ranks higher.
  * 
+ * Lists should be sorted with {@link #sort} or {@link #top}, which read the
+ * sort key of each object only once instead of twice per comparison.
+ * 
  * @author Axel Morgner
  */
 public class GraphObjectComparator extends ViewTransformation<GraphObject> implements Comparator<GraphObject> {
@@ -50,6 +55,7 @@ public class GraphObjectComparator extends ViewTransformation<GraphObject> imple
 
 	private PropertyKey sortKey;
 	private String sortOrder;
+	private boolean desc;
 
 	//~--- constructors ---------------------------------------------------
 
@@ -66,6 +72,7 @@ public class GraphObjectComparator extends ViewTransformation<GraphObject> imple
 
 		this.sortKey   = sortKey;
 		this.sortOrder = sortOrder;
+		this.desc      = DESCENDING.equalsIgnoreCase(sortOrder);
 	}
 
 	//~--- methods --------------------------------------------------------
@@ -80,8 +87,6 @@ public class GraphObjectComparator extends ViewTransformation<GraphObject> imple
 		}
 	
 		try {
-			boolean desc = DESCENDING.equalsIgnoreCase(sortOrder);
-			
 			Comparable c1 = n1.getComparableProperty(sortKey);
 			Comparable c2 = n2.getComparableProperty(sortKey);
 
@@ -130,9 +135,55 @@ public class GraphObjectComparator extends ViewTransformation<GraphObject> imple
 		return 0;
 	}
 
+	/**
+	 * Sorts the given list in place. The result is the same as the result
+	 * of Collections.sort with this comparator, but the sort key of each
+	 * object is read only once.
+	 * 
+	 * @param list 
+	 */
+	public <T extends GraphObject> void sort(final List<T> list) {
+
+		int size = list.size();
+		if (size < 2) {
+			return;
+		}
+
+		Object[] objects = list.toArray();
+		int[] order      = getSortKeys(objects).sort();
+
+		ListIterator<T> it = list.listIterator();
+		for (int i=0; i<size; i++) {
+
+			it.next();
+			it.set((T)objects[order[i]]);
+		}
+	}
+
+	/**
+	 * Returns the first objects of the given list in sort order, without
+	 * sorting the whole list. The list is not modified.
+	 * 
+	 * @param list
+	 * @param limit the number of objects to return
+	 * @return a new list with at most limit objects
+	 */
+	public <T extends GraphObject> List<T> top(final List<T> list, final int limit) {
+
+		Object[] objects = list.toArray();
+		int[] order      = getSortKeys(objects).top(limit);
+		List<T> result   = new ArrayList<T>(order.length);
+
+		for (int index : order) {
+			result.add((T)objects[index]);
+		}
+
+		return result;
+	}
+
 	@Override
 	public void apply(SecurityContext securityContext, List<GraphObject> obj) throws FrameworkException {
-		Collections.sort(obj, this);
+		sort(obj);
 	}
 
 	@Override
@@ -144,4 +195,315 @@ public class GraphObjectComparator extends ViewTransformation<GraphObject> imple
 	public boolean evaluateWrappedResource() {
 		return true;
 	}
+
+	// ----- private methods -----
+	/**
+	 * Reads the sort key of all objects. Numbers and dates are stored in
+	 * primitive arrays if all values have a compatible type.
+	 */
+	private SortKeys getSortKeys(final Object[] objects) {
+
+		int size              = objects.length;
+		Comparable[] values   = new Comparable[size];
+		boolean integral      = true;
+		boolean floatingPoint = true;
+
+		for (int i=0; i<size; i++) {
+
+			if (objects[i] == null) {
+				throw new NullPointerException();
+			}
+
+			Comparable value = ((GraphObject)objects[i]).getComparableProperty(sortKey);
+			values[i]        = value;
+
+			if (value != null) {
+
+				integral      &= value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte || value instanceof Date;
+				floatingPoint &= value instanceof Double || value instanceof Float;
+			}
+		}
+
+		if (integral) {
+
+			long[] keys = new long[size];
+
+			for (int i=0; i<size; i++) {
+
+				Comparable value = values[i];
+				if (value != null) {
+
+					keys[i] = value instanceof Date ? ((Date)value).getTime() : ((Number)value).longValue();
+				}
+			}
+
+			return new LongSortKeys(values, keys);
+		}
+
+		if (floatingPoint) {
+
+			double[] keys = new double[size];
+
+			for (int i=0; i<size; i++) {
+
+				Comparable value = values[i];
+				if (value != null) {
+
+					keys[i] = ((Number)value).doubleValue();
+				}
+			}
+
+			return new DoubleSortKeys(values, keys);
+		}
+
+		return new SortKeys(values);
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The sort keys of a list of objects. Positions in the list are
+	 * compared by their sort key and then by their position, so sorting
+	 * is stable and top-k selection returns the same objects as a full
+	 * sort.
+	 */
+	private class SortKeys {
+
+		protected Comparable[] values = null;
+		private boolean logged        = false;
+
+		public SortKeys(final Comparable[] values) {
+			this.values = values;
+		}
+
+		public int[] sort() {
+
+			int size    = values.length;
+			int[] order = new int[size];
+
+			for (int i=0; i<size; i++) {
+				order[i] = i;
+			}
+
+			mergeSort(order, new int[size], 0, size);
+
+			return order;
+		}
+
+		public int[] top(final int limit) {
+
+			int size = values.length;
+			int k    = Math.max(0, Math.min(limit, size));
+
+			// selection only pays off if the limit is small compared to the list
+			if (k > size / 4) {
+
+				int[] order = sort();
+				int[] top   = new int[k];
+
+				System.arraycopy(order, 0, top, 0, k);
+
+				return top;
+			}
+
+			// max-heap of the k smallest positions seen so far
+			int[] heap = new int[k];
+			int count  = 0;
+
+			for (int i=0; i<size && k > 0; i++) {
+
+				if (count < k) {
+
+					heap[count] = i;
+					siftUp(heap, count++);
+
+				} else if (compareAt(i, heap[0]) < 0) {
+
+					heap[0] = i;
+					siftDown(heap, 0, k);
+				}
+			}
+
+			mergeSort(heap, new int[count], 0, count);
+
+			return heap;
+		}
+
+		protected int compareValues(final int a, final int b) {
+
+			Comparable c1 = values[a];
+			Comparable c2 = values[b];
+
+			try {
+
+				return c1.compareTo(c2);
+
+			} catch (Throwable t) {
+
+				if (!logged) {
+
+					logger.log(Level.WARNING, "Cannot compare values {0} and {1} of property {2}", new Object[] { c1, c2, sortKey });
+					logged = true;
+				}
+			}
+
+			return 0;
+		}
+
+		private int compareAt(final int a, final int b) {
+
+			boolean null1 = values[a] == null;
+			boolean null2 = values[b] == null;
+			int result    = 0;
+
+			if (null1 || null2) {
+
+				if (null1 != null2) {
+
+					// same order as compare()
+					result = null1 ? (desc ? -1 : 1) : (desc ? 1 : -1);
+				}
+
+			} else {
+
+				result = desc ? compareValues(b, a) : compareValues(a, b);
+			}
+
+			return result != 0 ? result : (a < b ? -1 : (a > b ? 1 : 0));
+		}
+
+		private void mergeSort(final int[] order, final int[] buffer, final int from, final int to) {
+
+			int length = to - from;
+
+			if (length < 8) {
+
+				// insertion sort for small ranges
+				for (int i=from+1; i<to; i++) {
+
+					int current = order[i];
+					int j       = i - 1;
+
+					while (j >= from && compareAt(order[j], current) > 0) {
+
+						order[j + 1] = order[j];
+						j--;
+					}
+
+					order[j + 1] = current;
+				}
+
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+
+			mergeSort(order, buffer, from, middle);
+			mergeSort(order, buffer, middle, to);
+
+			// already in order
+			if (compareAt(order[middle - 1], order[middle]) <= 0) {
+				return;
+			}
+
+			System.arraycopy(order, from, buffer, from, length);
+
+			int left  = from;
+			int right = middle;
+
+			for (int i=from; i<to; i++) {
+
+				if (right >= to || (left < middle && compareAt(buffer[left], buffer[right]) <= 0)) {
+
+					order[i] = buffer[left++];
+
+				} else {
+
+					order[i] = buffer[right++];
+				}
+			}
+		}
+
+		private void siftUp(final int[] heap, int pos) {
+
+			int value = heap[pos];
+
+			while (pos > 0) {
+
+				int parent = (pos - 1) >>> 1;
+
+				if (compareAt(heap[parent], value) >= 0) {
+					break;
+				}
+
+				heap[pos] = heap[parent];
+				pos       = parent;
+			}
+
+			heap[pos] = value;
+		}
+
+		private void siftDown(final int[] heap, int pos, final int size) {
+
+			int value = heap[pos];
+
+			while (true) {
+
+				int child = 2 * pos + 1;
+				if (child >= size) {
+					break;
+				}
+
+				if (child + 1 < size && compareAt(heap[child + 1], heap[child]) > 0) {
+					child++;
+				}
+
+				if (compareAt(value, heap[child]) >= 0) {
+					break;
+				}
+
+				heap[pos] = heap[child];
+				pos       = child;
+			}
+
+			heap[pos] = value;
+		}
+	}
+
+	private class LongSortKeys extends SortKeys {
+
+		private long[] keys = null;
+
+		public LongSortKeys(final Comparable[] values, final long[] keys) {
+
+			super(values);
+
+			this.keys = keys;
+		}
+
+		@Override
+		protected int compareValues(final int a, final int b) {
+
+			long k1 = keys[a];
+			long k2 = keys[b];
+
+			return k1 < k2 ? -1 : (k1 > k2 ? 1 : 0);
+		}
+	}
+
+	private class DoubleSortKeys extends SortKeys {
+
+		private double[] keys = null;
+
+		public DoubleSortKeys(final Comparable[] values, final double[] keys) {
+
+			super(values);
+
+			this.keys = keys;
+		}
+
+		@Override
+		protected int compareValues(final int a, final int b) {
+			return Double.compare(keys[a], keys[b]);
+		}
+	}
 }
@@ -0,0 +1,345 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Relationship;
+import org.structr.core.Services;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Principal;
+import org.structr.core.entity.SecurityRelationship;
+import org.structr.core.graph.TransactionCommand;
+import org.structr.util.LongHashSet;
+
+/**
+ * Global cache for the effective permissions of principals. This cache
+ * holds the flattened set of groups for each principal, and the
+ * permissions granted on a node for each principal that has a SECURITY
+ * relationship to it, so permission checks don't have to instantiate
+ * the security relationships and walk the group hierarchy again.
+ *
+ * Entries are invalidated by the {@link org.structr.core.graph.ModificationQueue}
+ * when the security settings or the owner of a node change, and new
+ * entries are never stored from inside a transaction.
+ *
+ * @author Christian Morgner
+ */
+public class PermissionCache {
+
+	private static final Logger logger            = Logger.getLogger(PermissionCache.class.getName());
+	private static final int DEFAULT_SIZE         = 10000;
+
+	private static final AtomicLong invalidations = new AtomicLong();
+
+	private static volatile LruMap<LongHashSet> principals = null;
+	private static volatile LruMap<NodePermissions> nodes  = null;
+
+	/**
+	 * Indicates whether the given principal, or one of the groups it
+	 * belongs to, has been granted the given permission on the given
+	 * node.
+	 *
+	 * @param node
+	 * @param principal
+	 * @param permission
+	 * @return whether the permission is granted
+	 */
+	public static boolean isGranted(final AbstractNode node, final Principal principal, final Permission permission) {
+		return isGranted(node, getPrincipalIds(principal), permission);
+	}
+
+	/**
+	 * Indicates whether one of the given principals has been granted the
+	 * given permission on the given node. Use this method with a set that
+	 * was obtained from {@link #getPrincipalIds(org.structr.core.entity.Principal)}
+	 * to check many nodes for the same principal.
+	 *
+	 * @param node
+	 * @param principalIds
+	 * @param permission
+	 * @return whether the permission is granted
+	 */
+	public static boolean isGranted(final AbstractNode node, final LongHashSet principalIds, final Permission permission) {
+
+		// principals have full control over their own node
+		if (principalIds.contains(node.getId())) {
+
+			return true;
+		}
+
+		return (getNodePermissions(node).getMask(principalIds) & maskOf(permission)) != 0;
+	}
+
+	/**
+	 * Returns the ids of the given principal and of all the groups it
+	 * belongs to, directly or indirectly. The returned set must not be
+	 * modified.
+	 *
+	 * @param principal
+	 * @return the ids of the principal and all its parents
+	 */
+	public static LongHashSet getPrincipalIds(final Principal principal) {
+
+		boolean cacheable = !TransactionCommand.inTransaction();
+		long id           = principal.getId();
+
+		if (cacheable) {
+
+			LongHashSet principalIds = getPrincipals().get(id);
+			if (principalIds != null) {
+
+				return principalIds;
+			}
+		}
+
+		long stamp               = invalidations.get();
+		LongHashSet principalIds = new LongHashSet();
+
+		collectPrincipalIds(principal, principalIds);
+
+		if (cacheable) {
+			getPrincipals().put(id, principalIds, stamp);
+		}
+
+		return principalIds;
+	}
+
+	public static void invalidateNode(final long id) {
+
+		invalidations.incrementAndGet();
+		getNodes().remove(id);
+	}
+
+	/**
+	 * Removes all group memberships from this cache. Must be called
+	 * when the group hierarchy has changed.
+	 */
+	public static void invalidatePrincipals() {
+
+		invalidations.incrementAndGet();
+		getPrincipals().clear();
+	}
+
+	public static void clear() {
+
+		invalidations.incrementAndGet();
+		getPrincipals().clear();
+		getNodes().clear();
+	}
+
+	// ----- private methods -----
+	private static void collectPrincipalIds(final Principal principal, final LongHashSet principalIds) {
+
+		// stop at principals that were already visited, in case the group hierarchy has cycles
+		if (principalIds.add(principal.getId())) {
+
+			for (Principal parent : principal.getParents()) {
+
+				collectPrincipalIds(parent, principalIds);
+			}
+		}
+	}
+
+	private static NodePermissions getNodePermissions(final AbstractNode node) {
+
+		boolean cacheable = !TransactionCommand.inTransaction();
+		long id           = node.getId();
+
+		if (cacheable) {
+
+			NodePermissions permissions = getNodes().get(id);
+			if (permissions != null) {
+
+				return permissions;
+			}
+		}
+
+		long stamp                  = invalidations.get();
+		NodePermissions permissions = loadNodePermissions(node);
+
+		if (cacheable) {
+			getNodes().put(id, permissions, stamp);
+		}
+
+		return permissions;
+	}
+
+	private static NodePermissions loadNodePermissions(final AbstractNode node) {
+
+		Map<Long, Integer> masks = new LinkedHashMap<Long, Integer>();
+		String allowedKey        = SecurityRelationship.allowed.dbName();
+
+		// read the security relationships directly from the database, there's no need to instantiate them
+		for (Relationship rel : node.getNode().getRelationships(RelType.SECURITY, Direction.INCOMING)) {
+
+			long principalId = rel.getStartNode().getId();
+			int mask         = 0;
+
+			if (rel.hasProperty(allowedKey)) {
+
+				String[] allowed = (String[]) rel.getProperty(allowedKey);
+				if (allowed != null) {
+
+					for (String name : allowed) {
+
+						try {
+							mask |= maskOf(Permission.valueOf(name));
+
+						} catch (IllegalArgumentException iaex) {
+
+							logger.log(Level.FINE, "Ignoring unknown permission {0}", name);
+						}
+					}
+				}
+			}
+
+			Integer existingMask = masks.get(principalId);
+			if (existingMask != null) {
+
+				mask |= existingMask;
+			}
+
+			masks.put(principalId, mask);
+		}
+
+		return new NodePermissions(masks);
+	}
+
+	private static int maskOf(final Permission permission) {
+		return 1 << permission.ordinal();
+	}
+
+	private static LruMap<LongHashSet> getPrincipals() {
+
+		if (principals == null) {
+			initialize();
+		}
+
+		return principals;
+	}
+
+	private static LruMap<NodePermissions> getNodes() {
+
+		if (nodes == null) {
+			initialize();
+		}
+
+		return nodes;
+	}
+
+	private static synchronized void initialize() {
+
+		if (principals == null || nodes == null) {
+
+			int size = Services.getConfigurationValue(Services.PERMISSION_CACHE_SIZE, DEFAULT_SIZE);
+
+			principals = new LruMap<LongHashSet>(Math.max(1, size));
+			nodes      = new LruMap<NodePermissions>(Math.max(1, size));
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The permissions granted on a single node, as a bitmask per principal.
+	 */
+	private static class NodePermissions {
+
+		private long[] principalIds = null;
+		private int[] masks         = null;
+
+		public NodePermissions(final Map<Long, Integer> permissions) {
+
+			principalIds = new long[permissions.size()];
+			masks        = new int[permissions.size()];
+
+			int i = 0;
+
+			for (Map.Entry<Long, Integer> entry : permissions.entrySet()) {
+
+				principalIds[i] = entry.getKey();
+				masks[i]        = entry.getValue();
+
+				i++;
+			}
+		}
+
+		public int getMask(final LongHashSet principals) {
+
+			int mask = 0;
+
+			for (int i=0; i<principalIds.length; i++) {
+
+				if (principals.contains(principalIds[i])) {
+
+					mask |= masks[i];
+				}
+			}
+
+			return mask;
+		}
+	}
+
+	private static class LruMap<V> extends LinkedHashMap<Long, V> {
+
+		private int maxSize = 0;
+
+		public LruMap(final int maxSize) {
+
+			super(16, 0.75f, true);
+
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		public synchronized V get(final Object key) {
+			return super.get(key);
+		}
+
+		/**
+		 * Stores the given value only if no invalidation happened since
+		 * the given stamp was obtained.
+		 */
+		public synchronized void put(final Long key, final V value, final long stamp) {
+
+			if (stamp == invalidations.get()) {
+				super.put(key, value);
+			}
+		}
+
+		@Override
+		public synchronized V remove(final Object key) {
+			return super.remove(key);
+		}
+
+		@Override
+		public synchronized void clear() {
+			super.clear();
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Long, V> eldest) {
+			return size() > maxSize;
+		}
+	}
+}
@@ -27,6 +27,8 @@ import org.structr.core.auth.Authenticator;
 import org.structr.core.entity.*;
 import org.structr.core.entity.Principal;
 import org.structr.core.entity.SuperUser;
+import org.structr.core.graph.EntityCache.CachedEntity;
+import org.structr.util.LongHashSet;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -86,36 +88,21 @@ public class SecurityContext {
 		this.accessMode = accessMode;
 		this.request    = request;
 
-		initRequestBasedCache(request);
+		// request-based caching, metadata shared across
+		// requests is held in the global EntityCache
+		cache = new ConcurrentHashMap<Long, AbstractNode>();
 	}
 
 	private SecurityContext(HttpServletRequest request) {
 
 		this.request    = request;
 
-		initRequestBasedCache(request);
+		cache = new ConcurrentHashMap<Long, AbstractNode>();
 	}
 
 	//~--- methods --------------------------------------------------------
 
-	private void initRequestBasedCache(HttpServletRequest request) {
-
-		// request-based caching
-		if (request != null && request.getServletContext() != null) {
-			cache = (Map<Long, AbstractNode>)request.getServletContext().getAttribute("NODE_CACHE");
-		}
-		
-		if (cache == null) {
-
-			cache = new ConcurrentHashMap<Long, AbstractNode>();
-			
-			if (request != null && request.getServletContext() != null) {
-				request.getServletContext().setAttribute("NODE_CACHE", cache);
-			}
-		}
 
-	}
-	
 	/**
 	 * Call this method after the request this context was
 	 * created for is finished and the resources can be freed.
@@ -424,6 +411,108 @@ public class SecurityContext {
 		return false;
 	}
 	
+	/**
+	 * Returns the nodes from the given collection that are readable in
+	 * this context, in their original order. The current user and its
+	 * group memberships are resolved only once for the whole batch, so
+	 * this method should be used to filter a page of results instead of
+	 * calling {@link #isReadable(org.structr.core.entity.AbstractNode, boolean, boolean)}
+	 * for each node.
+	 *
+	 * @param nodes
+	 * @return the readable nodes
+	 */
+	public <T extends AbstractNode> List<T> filterReadable(final Iterable<T> nodes) {
+		return filterReadable(nodes, false, false);
+	}
+
+	public <T extends AbstractNode> List<T> filterReadable(final Iterable<T> nodes, final boolean includeDeletedAndHidden, final boolean publicOnly) {
+
+		List<T> readableNodes    = new LinkedList<T>();
+		Principal user           = getUser(false);
+		List<Principal> parents  = null;
+		LongHashSet principalIds = null;
+
+		for (T node : nodes) {
+
+			if (node == null) {
+
+				continue;
+			}
+
+			// same order of checks as in isReadable()
+			if ((node.isDeleted() || node.isHidden()) && !includeDeletedAndHidden) {
+
+				continue;
+			}
+
+			if (node.isVisibleToPublicUsers()) {
+
+				readableNodes.add(node);
+				continue;
+			}
+
+			if (publicOnly || user == null) {
+
+				continue;
+			}
+
+			if (user instanceof SuperUser || node.isVisibleToAuthenticatedUsers()) {
+
+				readableNodes.add(node);
+				continue;
+			}
+
+			if (parents == null) {
+
+				parents      = user.getParents();
+				principalIds = PermissionCache.getPrincipalIds(user);
+			}
+
+			Principal owner = node.getOwnerNode();
+
+			// owner is always allowed to do anything with its nodes
+			if (user.equals(node) || user.equals(owner) || parents.contains(owner) || PermissionCache.isGranted(node, principalIds, Permission.read)) {
+
+				readableNodes.add(node);
+			}
+		}
+
+		return readableNodes;
+	}
+	
+	/**
+	 * Checks the cached metadata of a node that has not been instantiated
+	 * yet. This method returns false only if the node would be rejected
+	 * by {@link #isReadable(org.structr.core.entity.AbstractNode, boolean, boolean)}
+	 * anyway, so the caller can skip the instantiation.
+	 *
+	 * @param entity
+	 * @param includeDeletedAndHidden
+	 * @param publicOnly
+	 * @return false if the node is not readable, true if it may be readable
+	 */
+	public boolean isReadable(final CachedEntity entity, final boolean includeDeletedAndHidden, final boolean publicOnly) {
+
+		if ((entity.isDeleted() || entity.isHidden()) && !includeDeletedAndHidden) {
+
+			return false;
+		}
+
+		if (entity.isVisibleToPublicUsers()) {
+
+			return true;
+		}
+
+		if (publicOnly) {
+
+			return false;
+		}
+
+		// anonymous users can only see public nodes
+		return getUser(false) != null;
+	}
+	
 	// ----- private methods -----
 	private boolean isVisibleInBackend(AccessControllable node) {
 
@@ -626,6 +715,28 @@ public class SecurityContext {
 			return true;
 		}
 		
+		@Override
+		public boolean isReadable(final CachedEntity entity, final boolean includeDeletedAndHidden, final boolean publicOnly) {
+		
+			return true;
+		}
+		
+		@Override
+		public <T extends AbstractNode> List<T> filterReadable(final Iterable<T> nodes, final boolean includeDeletedAndHidden, final boolean publicOnly) {
+
+			List<T> readableNodes = new LinkedList<T>();
+
+			for (T node : nodes) {
+
+				if (node != null) {
+
+					readableNodes.add(node);
+				}
+			}
+
+			return readableNodes;
+		}
+		
 		@Override
 		public boolean isAllowed(AccessControllable node, Permission permission) {
 
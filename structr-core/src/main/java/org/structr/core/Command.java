@@ -18,6 +18,7 @@
  */
 package org.structr.core;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import org.structr.common.SecurityContext;
@@ -45,10 +46,9 @@ public abstract class Command {
 
     protected SecurityContext securityContext = null;
     protected Map<String, Object> arguments = null;
+    private boolean sharedArguments = false;
     protected Command.Status status = null;
     protected Command.ExitCode exitCode = null;
-    private final static String EXIT_CODE = "exitCode";
-    private Map<String, Object> exitStatus;
 
     public enum Status {
 
@@ -61,11 +61,7 @@ public abstract class Command {
     }
 
     public Command() {
-        this.arguments = new HashMap<String, Object>();
-        this.exitStatus = new HashMap<String, Object>();
-
-        // Set default
-        exitStatus.put(EXIT_CODE, exitCode.UNKNOWN);
+        setSharedArguments(Collections.<String, Object>emptyMap());
     }
 
     /**
@@ -88,10 +84,29 @@ public abstract class Command {
     {
 	    if(key !=  null && value != null)
 	    {
+		    if(sharedArguments)
+		    {
+			    // copy on first write, the shared map belongs to all commands of this type
+			    this.arguments = new HashMap<String, Object>(this.arguments);
+			    this.sharedArguments = false;
+		    }
+
 		    this.arguments.put(key, value);
 	    }
     }
 
+    /**
+     * Sets the arguments that were injected by the service once for all
+     * commands of this type. The given map is not modified, it is copied
+     * when an argument is set.
+     *
+     * @param arguments the injected arguments
+     */
+    final void setSharedArguments(Map<String, Object> arguments) {
+        this.arguments = arguments;
+        this.sharedArguments = true;
+    }
+
     /**
      * Returns a previously set argument for this command.
      *
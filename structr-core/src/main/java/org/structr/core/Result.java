@@ -33,13 +33,14 @@ public class Result<T extends GraphObject> {
 	private boolean isCollection = false;
 	private boolean isPrimitiveArray = false;
 	private boolean hasPartialContent = false;
-	private boolean accurateResultCount = false;
+	private boolean approximateResultCount = false;
 	private String propertyView = null;
 
 	private String searchString = null;
 	private String queryTime = null;
 	private String sortOrder = null;
 	private String sortKey = null;
+	private String nextPageCursor = null;
 
 	private Integer resultCount = null;
 	private Integer pageCount = null;
@@ -60,7 +61,7 @@ public class Result<T extends GraphObject> {
 		this.isPrimitiveArray = isPrimitiveArray;
 		this.results = listResult;
 		this.resultCount = (rawResultCount != null ? rawResultCount : (results != null ? results.size() : 0));
-		this.accurateResultCount = accurateResultCount;
+		this.approximateResultCount = !accurateResultCount;
 	}
 
 	public T get(final int i) {
@@ -99,6 +100,28 @@ public class Result<T extends GraphObject> {
 		this.sortKey = sortKey;
 	}
 
+	public String getNextPageCursor() {
+		return nextPageCursor;
+	}
+
+	public void setNextPageCursor(final String nextPageCursor) {
+		this.nextPageCursor = nextPageCursor;
+	}
+
+	/**
+	 * Indicates whether the raw result count is an estimate, which is
+	 * the case for large results that are filtered per object.
+	 *
+	 * @return whether the result count is approximate
+	 */
+	public boolean isApproximateResultCount() {
+		return approximateResultCount;
+	}
+
+	public void setApproximateResultCount(final boolean approximateResultCount) {
+		this.approximateResultCount = approximateResultCount;
+	}
+
 	public Integer getRawResultCount() {
 		
 		if (resultCount != null) {
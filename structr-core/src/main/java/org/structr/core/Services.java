@@ -29,6 +29,9 @@ import org.structr.core.module.ModuleService;
 //~--- JDK imports ------------------------------------------------------------
 
 //import org.structr.common.xpath.NeoNodePointerFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -76,10 +79,27 @@ public class Services {
 	public static final String FILES_PATH        = "files.path";
 	public static final String LOG_DATABASE_PATH = "log.database.path";
 	public static final String FOREIGN_TYPE      = "foreign.type.key";
-	
+	public static final String ENTITY_CACHE_SIZE = "entity.cache.size";
+	public static final String PERMISSION_CACHE_SIZE = "permission.cache.size";
+
+	// session registry constants
+	public static final String SESSION_REGISTRY_SIZE    = "session.registry.size";
+	public static final String SESSION_REGISTRY_TIMEOUT = "session.registry.timeout";
+
+	// group commit-related constants
+	public static final String GROUP_COMMIT_ENABLED        = "transaction.groupcommit.enabled";
+	public static final String GROUP_COMMIT_MAX_BATCH_SIZE = "transaction.groupcommit.maxbatchsize";
+	public static final String GROUP_COMMIT_MAX_LINGER     = "transaction.groupcommit.maxlinger";
+
 	// LogService-related constants
-	public static final String LOG_SERVICE_INTERVAL  = "structr.logging.interval";
-	public static final String LOG_SERVICE_THRESHOLD = "structr.logging.threshold";
+	public static final String LOG_SERVICE_INTERVAL   = "structr.logging.interval";
+	public static final String LOG_SERVICE_THRESHOLD  = "structr.logging.threshold";
+	public static final String LOG_SERVICE_QUEUE_SIZE = "structr.logging.queuesize";
+	public static final String LOG_SERVICE_POLICY     = "structr.logging.policy";
+
+	// module service constants
+	public static final String MODULE_INDEX_ENABLED = "module.index.enabled";
+	public static final String MODULE_INDEX_PATH    = "module.index.path";
 
 	// Network-related constants
 	public static final String SERVER_IP              = "server.ip";
@@ -112,6 +132,7 @@ public class Services {
 
 	private static final Map<String, Object> attributes      = new ConcurrentHashMap<String, Object>(10, 0.9f, 8);
 	private static final Map<Class, Service> serviceCache    = new ConcurrentHashMap<Class, Service>(10, 0.9f, 8);
+	private static final Map<Class, CommandFactory> commandFactories = new ConcurrentHashMap<Class, CommandFactory>(100, 0.9f, 8);
 	private static final Set<Class> registeredServiceClasses = new LinkedHashSet<Class>();
 	private static final Set<Class> configuredServiceClasses = new LinkedHashSet<Class>();
 	private static boolean initializationDone = false;
@@ -159,10 +180,18 @@ public class Services {
 
 		try {
 
-			command = commandType.newInstance();
+			CommandFactory<T> factory = commandFactories.get(commandType);
+			if (factory == null) {
+
+				// created once per command type
+				factory = new CommandFactory<T>(commandType);
+				commandFactories.put(commandType, factory);
+			}
+
+			command = factory.newInstance();
 			command.setSecurityContext(securityContext);
 
-			serviceClass = command.getServiceClass();
+			serviceClass = factory.getServiceClass();
 
 			if ((serviceClass != null) && isConfigured(serviceClass)) {
 
@@ -191,7 +220,7 @@ public class Services {
 				}
 
 				logger.log(Level.FINEST, "Initializing command ", commandType.getName());
-				service.injectArguments(command);
+				command.setSharedArguments(factory.getArguments(service));
 			}
 
 		} catch (Throwable t) {
@@ -324,6 +353,7 @@ public class Services {
 		}
 
 		serviceCache.clear();
+		commandFactories.clear();
 
 //              serviceClassCache.clear();
 		logger.log(Level.INFO, "Finished shutdown of service layer");
@@ -361,6 +391,75 @@ public class Services {
 		return value;
 	}
 	
+	/**
+	 * Returns the integer value of the given configuration key, or the
+	 * default value if the key is not set or its value is not a number.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return the configured value
+	 */
+	public static int getConfigurationValue(final String key, final int defaultValue) {
+		
+		String value = getConfigurationValue(key);
+		if (value != null) {
+			
+			try {
+				return Integer.parseInt(value.trim());
+				
+			} catch (NumberFormatException nfex) {
+				
+				logger.log(Level.WARNING, "Invalid value {0} for {1}, using default value {2}", new Object[] { value, key, defaultValue });
+			}
+		}
+		
+		return defaultValue;
+	}
+	
+	/**
+	 * Returns the long value of the given configuration key, or the
+	 * default value if the key is not set or its value is not a number.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return the configured value
+	 */
+	public static long getConfigurationValue(final String key, final long defaultValue) {
+		
+		String value = getConfigurationValue(key);
+		if (value != null) {
+			
+			try {
+				return Long.parseLong(value.trim());
+				
+			} catch (NumberFormatException nfex) {
+				
+				logger.log(Level.WARNING, "Invalid value {0} for {1}, using default value {2}", new Object[] { value, key, defaultValue });
+			}
+		}
+		
+		return defaultValue;
+	}
+	
+	/**
+	 * Returns the boolean value of the given configuration key, or the
+	 * default value if the key is not set.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return the configured value
+	 */
+	public static boolean getConfigurationValue(final String key, final boolean defaultValue) {
+		
+		String value = getConfigurationValue(key);
+		if (value != null) {
+			
+			return Boolean.parseBoolean(value.trim());
+		}
+		
+		return defaultValue;
+	}
+	
 	/**
 	 * Store an attribute value in the service context
 	 * 
@@ -820,4 +919,62 @@ public class Services {
 	public static void setContext(final Map<String, String> envContext) {
 		context = envContext;
 	}
+
+	// ----- nested classes -----
+	/**
+	 * Creates the commands of one type. The service class of the command
+	 * type is determined once, and the arguments a service injects are
+	 * collected once per service instance and shared by all commands.
+	 */
+	private static class CommandFactory<T extends Command> {
+
+		private Constructor<T> constructor    = null;
+		private Class serviceClass            = null;
+		private volatile Injection injection  = null;
+
+		public CommandFactory(final Class<T> commandType) throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
+
+			this.constructor = commandType.getDeclaredConstructor();
+			this.constructor.setAccessible(true);
+
+			this.serviceClass = constructor.newInstance().getServiceClass();
+		}
+
+		public T newInstance() throws InstantiationException, IllegalAccessException, InvocationTargetException {
+			return constructor.newInstance();
+		}
+
+		public Class getServiceClass() {
+			return serviceClass;
+		}
+
+		public Map<String, Object> getArguments(final Service service) throws InstantiationException, IllegalAccessException, InvocationTargetException {
+
+			Injection current = injection;
+
+			if (current == null || current.service != service) {
+
+				// let the service inject its arguments into a prototype command
+				T prototype = constructor.newInstance();
+				service.injectArguments(prototype);
+
+				current   = new Injection(service, Collections.unmodifiableMap(prototype.arguments));
+				injection = current;
+			}
+
+			return current.arguments;
+		}
+	}
+
+	private static class Injection {
+
+		private Service service                = null;
+		private Map<String, Object> arguments  = null;
+
+		public Injection(final Service service, final Map<String, Object> arguments) {
+
+			this.service   = service;
+			this.arguments = arguments;
+		}
+	}
 }
@@ -28,6 +28,7 @@ import org.structr.core.Services;
 import org.structr.core.auth.exception.AuthenticationException;
 import org.structr.core.entity.Principal;
 import org.structr.core.entity.SuperUser;
+import org.structr.core.graph.FindNodeCommand;
 import org.structr.core.graph.search.Search;
 import org.structr.core.graph.search.SearchAttribute;
 import org.structr.core.graph.search.SearchNodeCommand;
@@ -202,16 +203,45 @@ public class AuthHelper {
 	}
 
 	/**
-	 * Find a {@link Principal} for the given session id
+	 * Find a {@link Principal} for the given session id. The principal is
+	 * resolved with the {@link SessionRegistry} first, the session id index
+	 * is only searched if the session id is not registered.
 	 * 
 	 * @param sessionId
 	 * @return 
 	 */
 	public static Principal getPrincipalForSessionId(final String sessionId) {
 
+		if (sessionId == null) {
+			return null;
+		}
+
+		SecurityContext securityContext = SecurityContext.getSuperUserInstance();
+		Long principalId                = SessionRegistry.get(sessionId);
+
+		if (principalId != null) {
+
+			try {
+
+				AbstractNode node = Services.command(securityContext, FindNodeCommand.class).execute(principalId);
+
+				// the node id might have been reused, or the session id changed in the meantime
+				if (node instanceof Principal && sessionId.equals(node.getProperty(Principal.sessionId))) {
+
+					return (Principal) node;
+				}
+
+			} catch (Throwable t) {
+
+				logger.log(Level.FINE, "Unable to load principal {0} of session {1}: {2}", new Object[] { principalId, sessionId, t.getMessage() });
+			}
+
+			SessionRegistry.invalidate(sessionId);
+		}
+
 		Principal user                  = null;
 		List<SearchAttribute> attrs     = new LinkedList<SearchAttribute>();
-		SecurityContext securityContext = SecurityContext.getSuperUserInstance();
+		long stamp                      = SessionRegistry.getStamp();
 
 		attrs.add(Search.andExactProperty(securityContext, Principal.sessionId, sessionId));
 		attrs.add(Search.andExactTypeAndSubtypes(Principal.class));
@@ -219,7 +249,7 @@ public class AuthHelper {
 		try {
 
 			// we need to search with a super user security context here..
-			Result results = Services.command(SecurityContext.getSuperUserInstance(), SearchNodeCommand.class).execute(attrs);
+			Result results = Services.command(securityContext, SearchNodeCommand.class).execute(attrs);
 
 			if (!results.isEmpty()) {
 
@@ -227,6 +257,8 @@ public class AuthHelper {
 
 				if ((user != null) && sessionId.equals(user.getProperty(Principal.sessionId))) {
 
+					SessionRegistry.put(sessionId, user.getId(), stamp);
+
 					return user;
 				}
 
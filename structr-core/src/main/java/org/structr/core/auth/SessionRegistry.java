@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.auth;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.core.Services;
+import org.structr.core.graph.TransactionCommand;
+
+/**
+ * Global, size-bounded registry of the session ids of logged-in principals,
+ * so the principal of a request can be resolved without a search in the
+ * session id index. The registry maps a session id to the database id of
+ * the principal that stored it.
+ *
+ * The registry is divided into segments with an LRU eviction policy each.
+ * Entries that were not used for the configured idle time are discarded.
+ * Entries are removed by the {@link TransactionCommand} whenever the
+ * session id of a principal changes or a principal is deleted, and new
+ * entries are only accepted if no removal happened while the principal
+ * was looked up. Callers still have to verify that the principal has the
+ * session id, see {@link AuthHelper#getPrincipalForSessionId}.
+ *
+ * @author Axel Morgner
+ */
+public class SessionRegistry {
+
+	private static final Logger logger            = Logger.getLogger(SessionRegistry.class.getName());
+
+	private static final int DEFAULT_SIZE         = 10000;
+	private static final long DEFAULT_TIMEOUT     = TimeUnit.MINUTES.toSeconds(30);
+	private static final int SEGMENT_COUNT        = 16;
+
+	private static final AtomicLong hits          = new AtomicLong();
+	private static final AtomicLong misses        = new AtomicLong();
+	private static final AtomicLong evictions     = new AtomicLong();
+	private static final AtomicLong invalidations = new AtomicLong();
+
+	private static volatile Segment[] segments    = null;
+	private static volatile long timeout          = 0;
+
+	/**
+	 * Returns the current invalidation stamp. Obtain the stamp before
+	 * looking up the principal of a session id in the database and pass it
+	 * to the put method, so that entries loaded concurrently with a login
+	 * or logout are not registered.
+	 *
+	 * @return the current stamp
+	 */
+	public static long getStamp() {
+		return invalidations.get();
+	}
+
+	/**
+	 * Returns the database id of the principal that is registered for the
+	 * given session id.
+	 *
+	 * @param sessionId
+	 * @return the id of the principal, or null if the session id is not registered or has expired
+	 */
+	public static Long get(final String sessionId) {
+
+		// the current transaction might have modified the session id
+		if (sessionId == null || TransactionCommand.inTransaction()) {
+			return null;
+		}
+
+		Long principalId = segmentFor(sessionId).get(sessionId, System.currentTimeMillis());
+		if (principalId != null) {
+
+			hits.incrementAndGet();
+
+		} else {
+
+			misses.incrementAndGet();
+		}
+
+		return principalId;
+	}
+
+	public static void put(final String sessionId, final long principalId, final long stamp) {
+
+		// don't register uncommitted state
+		if (sessionId != null && !TransactionCommand.inTransaction()) {
+
+			segmentFor(sessionId).put(sessionId, principalId, stamp);
+		}
+	}
+
+	public static void invalidate(final String sessionId) {
+
+		invalidations.incrementAndGet();
+
+		if (sessionId != null) {
+			segmentFor(sessionId).remove(sessionId);
+		}
+	}
+
+	/**
+	 * Removes all entries from this registry. Must be called whenever the
+	 * underlying database is replaced, as the ids are reused.
+	 */
+	public static void clear() {
+
+		invalidations.incrementAndGet();
+
+		for (Segment segment : getSegments()) {
+			segment.clear();
+		}
+	}
+
+	public static long getHitCount() {
+		return hits.get();
+	}
+
+	public static long getMissCount() {
+		return misses.get();
+	}
+
+	public static long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public static long getInvalidationCount() {
+		return invalidations.get();
+	}
+
+	public static int size() {
+
+		int size = 0;
+
+		for (Segment segment : getSegments()) {
+			size += segment.size();
+		}
+
+		return size;
+	}
+
+	// ----- private methods -----
+	private static Segment segmentFor(final String sessionId) {
+		return getSegments()[sessionId.hashCode() & (SEGMENT_COUNT - 1)];
+	}
+
+	private static Segment[] getSegments() {
+
+		if (segments == null) {
+			initialize();
+		}
+
+		return segments;
+	}
+
+	private static synchronized void initialize() {
+
+		if (segments == null) {
+
+			int size = Services.getConfigurationValue(Services.SESSION_REGISTRY_SIZE, DEFAULT_SIZE);
+
+			long seconds = Services.getConfigurationValue(Services.SESSION_REGISTRY_TIMEOUT, DEFAULT_TIMEOUT);
+
+			int segmentSize       = Math.max(1, size / SEGMENT_COUNT);
+			Segment[] newSegments = new Segment[SEGMENT_COUNT];
+
+			for (int i=0; i<SEGMENT_COUNT; i++) {
+				newSegments[i] = new Segment(segmentSize);
+			}
+
+			timeout  = TimeUnit.SECONDS.toMillis(seconds);
+			segments = newSegments;
+
+			logger.log(Level.INFO, "Session registry initialized with {0} entries and an idle timeout of {1} s", new Object[] { size, seconds });
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Session {
+
+		private long principalId = -1;
+		private long lastAccess  = 0;
+
+		public Session(final long principalId, final long lastAccess) {
+
+			this.principalId = principalId;
+			this.lastAccess  = lastAccess;
+		}
+	}
+
+	private static class Segment extends LinkedHashMap<String, Session> {
+
+		private int maxSize = 0;
+
+		public Segment(final int maxSize) {
+
+			super(16, 0.75f, true);
+
+			this.maxSize = maxSize;
+		}
+
+		/**
+		 * Returns the principal id of the given session id and updates the
+		 * time of the last access, or removes the entry if it has expired.
+		 */
+		public synchronized Long get(final String sessionId, final long now) {
+
+			Session session = super.get(sessionId);
+			if (session != null) {
+
+				if (now - session.lastAccess > timeout) {
+
+					super.remove(sessionId);
+					evictions.incrementAndGet();
+
+					return null;
+				}
+
+				session.lastAccess = now;
+
+				return session.principalId;
+			}
+
+			return null;
+		}
+
+		/**
+		 * Registers the given session id only if no invalidation happened
+		 * since the given stamp was obtained. The check is done under the
+		 * lock of this segment, so it cannot interleave with a removal.
+		 */
+		public synchronized void put(final String sessionId, final long principalId, final long stamp) {
+
+			if (stamp == invalidations.get()) {
+				super.put(sessionId, new Session(principalId, System.currentTimeMillis()));
+			}
+		}
+
+		@Override
+		public synchronized Session remove(final Object key) {
+			return super.remove(key);
+		}
+
+		@Override
+		public synchronized void clear() {
+			super.clear();
+		}
+
+		@Override
+		public synchronized int size() {
+			return super.size();
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Session> eldest) {
+
+			if (size() > maxSize) {
+
+				evictions.incrementAndGet();
+				return true;
+			}
+
+			return false;
+		}
+	}
+}
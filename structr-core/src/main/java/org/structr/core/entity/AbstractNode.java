@@ -873,24 +873,8 @@ public abstract class AbstractNode implements GraphObject, Comparable<AbstractNo
 			return true;
 		}
 
-		SecurityRelationship r = getSecurityRelationship(principal);
-
-		if ((r != null) && r.isAllowed(permission)) {
-
-			return true;
-		}
-
-		// Now check possible parent principals
-		for (Principal parent : principal.getParents()) {
-
-			if (isGranted(permission, parent)) {
-
-				return true;
-			}
-
-		}
-
-		return false;
+		// check the permissions of the principal and all its parent principals
+		return PermissionCache.isGranted(this, principal, permission);
 
 	}
 
@@ -1321,10 +1305,7 @@ public abstract class AbstractNode implements GraphObject, Comparable<AbstractNo
 		
 		for (Index<Node> index : Services.getService(NodeService.class).getNodeIndices()) {
 			
-			synchronized (index) {
-				
-				index.remove(dbNode);
-			}
+			TransactionCommand.removeFromIndex(index, dbNode);
 		}
 	}
 	
@@ -1332,10 +1313,7 @@ public abstract class AbstractNode implements GraphObject, Comparable<AbstractNo
 		
 		for (Index<Node> index : Services.getService(NodeService.class).getNodeIndices()) {
 			
-			synchronized (index) {
-				
-				index.remove(dbNode, key.dbName());
-			}
+			TransactionCommand.removeFromIndex(index, dbNode, key.dbName());
 		}
 	}
 	
@@ -892,10 +892,7 @@ public abstract class AbstractRelationship implements GraphObject, Comparable<Ab
 		
 		for (Index<Relationship> index : Services.getService(NodeService.class).getRelationshipIndices()) {
 			
-			synchronized (index) {
-				
-				index.remove(dbRelationship);
-			}
+			TransactionCommand.removeFromIndex(index, dbRelationship);
 		}
 	}
 	
@@ -903,10 +900,7 @@ public abstract class AbstractRelationship implements GraphObject, Comparable<Ab
 		
 		for (Index<Relationship> index : Services.getService(NodeService.class).getRelationshipIndices()) {
 			
-			synchronized (index) {
-				
-				index.remove(dbRelationship, key.dbName());
-			}
+			TransactionCommand.removeFromIndex(index, dbRelationship, key.dbName());
 		}
 	}
 	
@@ -18,10 +18,12 @@
  */
 package org.structr.core.entity;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.neo4j.graphdb.Direction;
@@ -34,6 +36,7 @@ import org.structr.common.View;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.property.LongProperty;
+import org.structr.core.GraphObject;
 import org.structr.core.Result;
 import org.structr.core.Services;
 import org.structr.core.graph.StructrTransaction;
@@ -67,8 +70,11 @@ import org.structr.core.validator.TypeUniquenessValidator;
  */
 public class ResourceAccess extends AbstractNode {
 
-	private static final Map<String, ResourceAccess> grantCache = new ConcurrentHashMap<String, ResourceAccess>();
-	private static final Logger logger                          = Logger.getLogger(ResourceAccess.class.getName());
+	private static final Logger logger                 = Logger.getLogger(ResourceAccess.class.getName());
+	private static final int MAX_MISSING_SIGNATURES    = 1000;
+
+	private static final AtomicLong grantInvalidations = new AtomicLong();
+	private static volatile Grants grants              = null;
 
 	public static final Property<String>                    signature       = new StringProperty("signature", new TypeUniquenessValidator(ResourceAccess.class)).indexed();
 	public static final Property<Long>                      flags           = new LongProperty("flags").indexed();
@@ -185,7 +191,9 @@ public class ResourceAccess extends AbstractNode {
 	
 	@Override
 	public boolean onDeletion(SecurityContext securityContext, ErrorBuffer errorBuffer, PropertyMap properties) {
-		grantCache.clear();
+
+		// grants are invalidated again after commit, see ModificationQueue
+		invalidateGrants();
 		return true;
 	}
 	
@@ -203,56 +211,137 @@ public class ResourceAccess extends AbstractNode {
 	
 	@Override
 	public void afterCreation(SecurityContext securityContext) {
-		grantCache.clear();
+		invalidateGrants();
 	}
 	
 	@Override
 	public void afterModification(SecurityContext securityContext) {
-		grantCache.clear();
+		invalidateGrants();
 	}
 	
+	/**
+	 * Returns the grant for the given resource signature. All grants are
+	 * loaded with a single search on first use and kept until a grant is
+	 * created, modified or deleted, so signatures without a grant don't
+	 * cause a search either.
+	 * 
+	 * @param signature
+	 * @return the grant, or null if there is no grant for the signature
+	 * @throws FrameworkException 
+	 */
 	public static ResourceAccess findGrant(String signature) throws FrameworkException {
 
-		ResourceAccess grant = grantCache.get(signature);
+		Grants currentGrants = grants;
+		if (currentGrants == null) {
+
+			currentGrants = loadGrants();
+		}
+
+		ResourceAccess grant = currentGrants.get(signature);
 		if (grant == null) {
 
-			SecurityContext securityContext        = SecurityContext.getSuperUserInstance();
-			SearchNodeCommand search               = Services.command(securityContext, SearchNodeCommand.class);
-			List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+			currentGrants.missing(signature);
+		}
+		
+		return grant;
+	}
 
-			searchAttributes.add(Search.andExactType(ResourceAccess.class));
-			searchAttributes.add(Search.andExactProperty(securityContext, ResourceAccess.signature, signature));
+	/**
+	 * Discards the loaded grants, they are loaded again on the next call
+	 * to {@link #findGrant}.
+	 */
+	public static void invalidateGrants() {
 
-			Result result = search.execute(searchAttributes);
+		grantInvalidations.incrementAndGet();
+		grants = null;
+	}
 
-			if (result.isEmpty()) {
+	// ----- private methods -----
+	private static synchronized Grants loadGrants() throws FrameworkException {
 
-				logger.log(Level.WARNING, "No resource access object found for {0}", signature);
+		// another thread might have loaded the grants while we were waiting
+		Grants currentGrants = grants;
+		if (currentGrants != null) {
 
-			} else {
+			return currentGrants;
+		}
 
-				final AbstractNode node = (AbstractNode) result.get(0);
+		long stamp                             = grantInvalidations.get();
+		SecurityContext securityContext        = SecurityContext.getSuperUserInstance();
+		SearchNodeCommand search               = Services.command(securityContext, SearchNodeCommand.class);
+		List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+		Grants newGrants                       = new Grants();
 
-				if (node instanceof ResourceAccess) {
+		searchAttributes.add(Search.andExactType(ResourceAccess.class));
 
-					grant = (ResourceAccess) node;
-					
-					grantCache.put(signature, grant);
+		Result<GraphObject> result = search.execute(searchAttributes);
 
-				} else {
+		for (GraphObject node : result.getResults()) {
 
-					logger.log(Level.SEVERE, "Grant for URI {0} has wrong type!", new Object[] { signature, node.getClass().getName() });
+			if (node instanceof ResourceAccess) {
 
-				}
+				ResourceAccess grant = (ResourceAccess) node;
+				String signature     = grant.getResourceSignature();
 
-				if (result.size() > 1) {
+				// fill the cached flags
+				grant.getFlags();
 
-					logger.log(Level.SEVERE, "Found {0} grants for URI {1}!", new Object[] { result.size(), signature });
+				if (signature != null && !newGrants.add(signature, grant)) {
 
+					logger.log(Level.SEVERE, "Found more than one grant for URI {0}!", signature);
 				}
+
+			} else {
+
+				logger.log(Level.SEVERE, "Grant {0} has wrong type {1}!", new Object[] { node.getId(), node.getClass().getName() });
+			}
+		}
+
+		// uncommitted grants and grants loaded concurrently with a modification must not be kept
+		if (stamp == grantInvalidations.get() && !TransactionCommand.inTransaction()) {
+
+			grants = newGrants;
+		}
+
+		return newGrants;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The grants of all signatures, and the signatures without a grant
+	 * that were already reported.
+	 */
+	private static class Grants {
+
+		private final Map<String, ResourceAccess> grantMap = new HashMap<String, ResourceAccess>();
+		private final Map<String, Boolean> missingMap      = new ConcurrentHashMap<String, Boolean>();
+
+		public boolean add(final String signature, final ResourceAccess grant) {
+
+			if (grantMap.containsKey(signature)) {
+				return false;
+			}
+
+			grantMap.put(signature, grant);
+
+			return true;
+		}
+
+		public ResourceAccess get(final String signature) {
+			return grantMap.get(signature);
+		}
+
+		/**
+		 * Reports a signature without a grant once. The number of reported
+		 * signatures is limited, as signatures are derived from request
+		 * URIs.
+		 */
+		public void missing(final String signature) {
+
+			if (signature != null && missingMap.size() < MAX_MISSING_SIGNATURES && missingMap.put(signature, Boolean.TRUE) == null) {
+
+				logger.log(Level.WARNING, "No resource access object found for {0}", signature);
 			}
 		}
-		
-		return grant;
 	}
 }
@@ -46,6 +46,7 @@ import org.structr.core.property.StringProperty;
 import org.structr.core.EntityContext;
 import org.structr.core.Services;
 import org.structr.core.graph.DeleteRelationshipCommand;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.property.ArrayProperty;
 
 //~--- classes ----------------------------------------------------------------
@@ -180,6 +181,9 @@ public class SecurityRelationship extends AbstractRelationship {
 	public void setAllowed(final String[] allowed) {
 
 		dbRelationship.setProperty(SecurityRelationship.allowed.dbName(), allowed);
+		
+		// notify transaction so the cached permissions can be invalidated
+		TransactionCommand.relationshipModified(this, SecurityRelationship.allowed, null);
 
 	}
 	
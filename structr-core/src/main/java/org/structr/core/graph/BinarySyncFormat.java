@@ -0,0 +1,786 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.Services;
+import org.structr.core.graph.SyncCommand.ImportRecord;
+import org.structr.util.UuidMap;
+
+/**
+ * Block-structured binary format for the database part of a sync file.
+ * Nodes and relationships are split into blocks of consecutive objects
+ * (i.e. id ranges, in the order of the given iterables), and each block
+ * is serialized and compressed by a pool of worker threads and stored
+ * in its own ZIP entry. Property keys and relationship types are stored
+ * once in a string dictionary in the manifest entry, which also lists
+ * all blocks, so the import can read and commit the blocks in parallel.
+ *
+ * @author Christian Morgner
+ */
+public class BinarySyncFormat {
+
+	private static final Logger logger          = Logger.getLogger(BinarySyncFormat.class.getName());
+
+	public static final String BLOCK_PREFIX     = "db/";
+	public static final String MANIFEST_NAME    = BLOCK_PREFIX + "manifest";
+
+	private static final int MAGIC              = 0x53545243;	// "STRC"
+	private static final int VERSION            = 1;
+
+	private static final byte NODE_BLOCK        = 'N';
+	private static final byte REL_BLOCK         = 'R';
+
+	// value types, arrays are marked with the ARRAY bit
+	private static final byte BOOLEAN           = 0;
+	private static final byte BYTE              = 1;
+	private static final byte SHORT             = 2;
+	private static final byte INT               = 3;
+	private static final byte LONG              = 4;
+	private static final byte FLOAT             = 5;
+	private static final byte DOUBLE            = 6;
+	private static final byte CHAR              = 7;
+	private static final byte STRING            = 8;
+	private static final byte ARRAY             = 16;
+
+	/**
+	 * Writes the given nodes and relationships into block entries of the
+	 * given ZIP stream, followed by the manifest.
+	 *
+	 * @param zos
+	 * @param nodes
+	 * @param relationships
+	 * @param blockSize the number of objects per block
+	 * @param threads the number of worker threads
+	 * @throws IOException
+	 * @throws FrameworkException
+	 */
+	public static void exportDatabase(final ZipOutputStream zos, final Iterable<Node> nodes, final Iterable<Relationship> relationships, final int blockSize, final int threads) throws IOException, FrameworkException {
+
+		ExecutorService workers         = Executors.newFixedThreadPool(threads);
+		LinkedList<Future<Block>> queue = new LinkedList<Future<Block>>();
+		List<Block> blocks              = new ArrayList<Block>();
+		final Dictionary dictionary     = new Dictionary();
+		double t0                       = System.nanoTime();
+		long nodeCount                  = 0;
+		long relCount                   = 0;
+		int blockCount                  = 0;
+
+		try {
+
+			List<Node> nodeBuffer = new ArrayList<Node>(blockSize);
+
+			for (Node node : nodes) {
+
+				nodeBuffer.add(node);
+
+				if (nodeBuffer.size() == blockSize) {
+
+					submit(workers, queue, blocks, zos, new NodeBlockWriter(BLOCK_PREFIX + "nodes/" + blockCount++, nodeBuffer, dictionary), threads);
+					nodeBuffer = new ArrayList<Node>(blockSize);
+				}
+			}
+
+			if (!nodeBuffer.isEmpty()) {
+				submit(workers, queue, blocks, zos, new NodeBlockWriter(BLOCK_PREFIX + "nodes/" + blockCount++, nodeBuffer, dictionary), threads);
+			}
+
+			List<Relationship> relBuffer = new ArrayList<Relationship>(blockSize);
+
+			for (Relationship rel : relationships) {
+
+				relBuffer.add(rel);
+
+				if (relBuffer.size() == blockSize) {
+
+					submit(workers, queue, blocks, zos, new RelationshipBlockWriter(BLOCK_PREFIX + "rels/" + blockCount++, relBuffer, dictionary), threads);
+					relBuffer = new ArrayList<Relationship>(blockSize);
+				}
+			}
+
+			if (!relBuffer.isEmpty()) {
+				submit(workers, queue, blocks, zos, new RelationshipBlockWriter(BLOCK_PREFIX + "rels/" + blockCount++, relBuffer, dictionary), threads);
+			}
+
+			// write remaining blocks
+			while (!queue.isEmpty()) {
+				writeBlock(zos, blocks, queue.removeFirst());
+			}
+
+		} finally {
+
+			workers.shutdownNow();
+		}
+
+		// manifest is written last because it contains the complete dictionary
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream out         = new DataOutputStream(buffer);
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+
+		List<String> strings = dictionary.getStrings();
+		out.writeInt(strings.size());
+
+		for (String string : strings) {
+			out.writeUTF(string);
+		}
+
+		out.writeInt(blocks.size());
+
+		for (Block block : blocks) {
+
+			out.writeByte(block.type);
+			out.writeUTF(block.name);
+			out.writeInt(block.count);
+			out.writeLong(block.firstId);
+			out.writeLong(block.lastId);
+
+			if (block.type == NODE_BLOCK) {
+
+				nodeCount += block.count;
+
+			} else {
+
+				relCount += block.count;
+			}
+		}
+
+		out.flush();
+
+		zos.putNextEntry(new ZipEntry(MANIFEST_NAME));
+		buffer.writeTo(zos);
+		zos.closeEntry();
+
+		DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+		logger.log(Level.INFO, "Exported {0} nodes and {1} rels in {2} blocks in {3} s", new Object[] {
+			nodeCount, relCount, blocks.size(), decimalFormat.format((System.nanoTime() - t0) / 1000000000.0)
+		} );
+	}
+
+	/**
+	 * Imports the blocks listed in the manifest of the given ZIP file.
+	 * All node blocks are imported first, followed by the relationship
+	 * blocks. Every block is imported in its own transaction, and up to
+	 * the given number of blocks are decompressed and committed in
+	 * parallel.
+	 *
+	 * @param graphDb
+	 * @param securityContext
+	 * @param zipFile
+	 * @param doValidation
+	 * @param threads the number of worker threads
+	 * @throws IOException
+	 * @throws FrameworkException
+	 */
+	public static void importDatabase(final GraphDatabaseService graphDb, final SecurityContext securityContext, final ZipFile zipFile, final boolean doValidation, final int threads) throws IOException, FrameworkException {
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(zipFile.getInputStream(zipFile.getEntry(MANIFEST_NAME))));
+		List<Block> nodeBlocks = new LinkedList<Block>();
+		List<Block> relBlocks  = new LinkedList<Block>();
+		List<String> strings   = new ArrayList<String>();
+
+		try {
+
+			if (in.readInt() != MAGIC) {
+				throw new FrameworkException(400, "Invalid sync file manifest.");
+			}
+
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new FrameworkException(400, "Unsupported sync file version " + version);
+			}
+
+			int stringCount = in.readInt();
+			for (int i=0; i<stringCount; i++) {
+				strings.add(in.readUTF());
+			}
+
+			int blockCount = in.readInt();
+			for (int i=0; i<blockCount; i++) {
+
+				Block block   = new Block(in.readByte(), in.readUTF());
+				block.count   = in.readInt();
+				block.firstId = in.readLong();
+				block.lastId  = in.readLong();
+
+				if (block.type == NODE_BLOCK) {
+
+					nodeBlocks.add(block);
+
+				} else {
+
+					relBlocks.add(block);
+				}
+			}
+
+		} finally {
+
+			in.close();
+		}
+
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		ImportProgress progress = new ImportProgress(nodeBlocks.size() + relBlocks.size());
+		UuidMap uuidMap         = new UuidMap();
+
+		try {
+
+			// relationships can only be created when all nodes exist
+			importBlocks(workers, graphDb, securityContext, zipFile, nodeBlocks, strings, uuidMap, doValidation, progress);
+			importBlocks(workers, graphDb, securityContext, zipFile, relBlocks, strings, uuidMap, doValidation, progress);
+
+		} finally {
+
+			workers.shutdownNow();
+		}
+
+		logger.log(Level.INFO, "Import done in {0} s", progress.getElapsedTime());
+	}
+
+	// ----- private methods -----
+	private static void submit(final ExecutorService workers, final LinkedList<Future<Block>> queue, final List<Block> blocks, final ZipOutputStream zos, final Callable<Block> writer, final int threads) throws IOException, FrameworkException {
+
+		queue.add(workers.submit(writer));
+
+		// limit the number of blocks in memory
+		while (queue.size() > threads * 2) {
+			writeBlock(zos, blocks, queue.removeFirst());
+		}
+	}
+
+	private static void writeBlock(final ZipOutputStream zos, final List<Block> blocks, final Future<Block> future) throws IOException, FrameworkException {
+
+		Block block = get(future);
+
+		// block data is already compressed by the worker
+		ZipEntry entry = new ZipEntry(block.name);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(block.data.length);
+		entry.setCompressedSize(block.data.length);
+		entry.setCrc(block.crc);
+
+		zos.putNextEntry(entry);
+		zos.write(block.data);
+		zos.closeEntry();
+
+		// release block data
+		block.data = null;
+
+		blocks.add(block);
+	}
+
+	private static void importBlocks(final ExecutorService workers, final GraphDatabaseService graphDb, final SecurityContext securityContext, final ZipFile zipFile, final List<Block> blocks, final List<String> strings, final UuidMap uuidMap, final boolean doValidation, final ImportProgress progress) throws FrameworkException {
+
+		List<Future<Block>> futures = new LinkedList<Future<Block>>();
+
+		for (final Block block : blocks) {
+
+			futures.add(workers.submit(new Callable<Block>() {
+
+				@Override
+				public Block call() throws Exception {
+
+					final List<ImportRecord> records = readBlock(zipFile, block, strings);
+
+					Services.command(securityContext, TransactionCommand.class).execute(new StructrTransaction(doValidation) {
+
+						@Override
+						public Object execute() throws FrameworkException {
+
+							SyncCommand.importChunk(graphDb, securityContext, records, uuidMap);
+
+							return null;
+						}
+					});
+
+					progress.blockImported(block);
+
+					return block;
+				}
+			}));
+		}
+
+		for (Future<Block> future : futures) {
+			get(future);
+		}
+	}
+
+	private static List<ImportRecord> readBlock(final ZipFile zipFile, final Block block, final List<String> strings) throws IOException {
+
+		ZipEntry entry = zipFile.getEntry(block.name);
+		if (entry == null) {
+			throw new IOException("Missing block " + block.name);
+		}
+
+		DataInputStream in         = new DataInputStream(new BufferedInputStream(new InflaterInputStream(zipFile.getInputStream(entry))));
+		List<ImportRecord> records = new ArrayList<ImportRecord>(block.count);
+
+		try {
+
+			int count = in.readInt();
+
+			for (int i=0; i<count; i++) {
+
+				ImportRecord record = new ImportRecord(block.type == NODE_BLOCK);
+
+				if (!record.isNode()) {
+
+					record.setStartId(in.readUTF());
+					record.setEndId(in.readUTF());
+					record.setRelType(strings.get(in.readInt()));
+				}
+
+				int propertyCount = in.readInt();
+
+				for (int j=0; j<propertyCount; j++) {
+
+					String key   = strings.get(in.readInt());
+					Object value = readValue(in);
+
+					record.getProperties().put(key, value);
+				}
+
+				records.add(record);
+			}
+
+		} finally {
+
+			in.close();
+		}
+
+		return records;
+	}
+
+	private static void writeProperties(final DataOutputStream out, final PropertyContainer propertyContainer, final Dictionary dictionary) throws IOException {
+
+		List<String> keys   = new ArrayList<String>();
+		List<Object> values = new ArrayList<Object>();
+
+		for (String key : propertyContainer.getPropertyKeys()) {
+
+			Object value = propertyContainer.getProperty(key);
+
+			if (getType(value) >= 0) {
+
+				keys.add(key);
+				values.add(value);
+
+			} else {
+
+				logger.log(Level.WARNING, "Unable to serialize object of type {0}, type not supported", value.getClass());
+			}
+		}
+
+		out.writeInt(keys.size());
+
+		for (int i=0; i<keys.size(); i++) {
+
+			out.writeInt(dictionary.getId(keys.get(i)));
+			writeValue(out, values.get(i));
+		}
+	}
+
+	private static byte getType(final Object value) {
+
+		if (value == null) {
+			return -1;
+		}
+
+		Class type   = value.getClass();
+		byte flag    = 0;
+
+		if (type.isArray()) {
+
+			type = type.getComponentType();
+			flag = ARRAY;
+		}
+
+		if (type.equals(Boolean.class)   || type.equals(Boolean.TYPE))   { return (byte)(BOOLEAN | flag); }
+		if (type.equals(Byte.class)      || type.equals(Byte.TYPE))      { return (byte)(BYTE    | flag); }
+		if (type.equals(Short.class)     || type.equals(Short.TYPE))     { return (byte)(SHORT   | flag); }
+		if (type.equals(Integer.class)   || type.equals(Integer.TYPE))   { return (byte)(INT     | flag); }
+		if (type.equals(Long.class)      || type.equals(Long.TYPE))      { return (byte)(LONG    | flag); }
+		if (type.equals(Float.class)     || type.equals(Float.TYPE))     { return (byte)(FLOAT   | flag); }
+		if (type.equals(Double.class)    || type.equals(Double.TYPE))    { return (byte)(DOUBLE  | flag); }
+		if (type.equals(Character.class) || type.equals(Character.TYPE)) { return (byte)(CHAR    | flag); }
+		if (type.equals(String.class))                                    { return (byte)(STRING  | flag); }
+
+		return -1;
+	}
+
+	private static void writeValue(final DataOutputStream out, final Object value) throws IOException {
+
+		byte type = getType(value);
+
+		out.writeByte(type);
+
+		if ((type & ARRAY) != 0) {
+
+			int length = Array.getLength(value);
+			out.writeInt(length);
+
+			for (int i=0; i<length; i++) {
+				writeScalar(out, (byte)(type & ~ARRAY), Array.get(value, i));
+			}
+
+		} else {
+
+			writeScalar(out, type, value);
+		}
+	}
+
+	private static void writeScalar(final DataOutputStream out, final byte type, final Object value) throws IOException {
+
+		switch (type) {
+
+			case BOOLEAN: out.writeBoolean((Boolean)value);       break;
+			case BYTE:    out.writeByte((Byte)value);             break;
+			case SHORT:   out.writeShort((Short)value);           break;
+			case INT:     out.writeInt((Integer)value);           break;
+			case LONG:    out.writeLong((Long)value);             break;
+			case FLOAT:   out.writeFloat((Float)value);           break;
+			case DOUBLE:  out.writeDouble((Double)value);         break;
+			case CHAR:    out.writeChar((Character)value);        break;
+			case STRING:  writeString(out, (String)value);        break;
+		}
+	}
+
+	private static Object readValue(final DataInputStream in) throws IOException {
+
+		byte type = in.readByte();
+
+		if ((type & ARRAY) != 0) {
+
+			byte componentType = (byte)(type & ~ARRAY);
+			int length         = in.readInt();
+			Object array       = null;
+
+			switch (componentType) {
+
+				case BOOLEAN: array = new boolean[length]; break;
+				case BYTE:    array = new byte[length];    break;
+				case SHORT:   array = new short[length];   break;
+				case INT:     array = new int[length];     break;
+				case LONG:    array = new long[length];    break;
+				case FLOAT:   array = new float[length];   break;
+				case DOUBLE:  array = new double[length];  break;
+				case CHAR:    array = new char[length];    break;
+				case STRING:  array = new String[length];  break;
+				default:
+					throw new IOException("Unsupported type " + type + " in input");
+			}
+
+			for (int i=0; i<length; i++) {
+				Array.set(array, i, readScalar(in, componentType));
+			}
+
+			return array;
+		}
+
+		return readScalar(in, type);
+	}
+
+	private static Object readScalar(final DataInputStream in, final byte type) throws IOException {
+
+		switch (type) {
+
+			case BOOLEAN: return in.readBoolean();
+			case BYTE:    return in.readByte();
+			case SHORT:   return in.readShort();
+			case INT:     return in.readInt();
+			case LONG:    return in.readLong();
+			case FLOAT:   return in.readFloat();
+			case DOUBLE:  return in.readDouble();
+			case CHAR:    return in.readChar();
+			case STRING:  return readString(in);
+		}
+
+		throw new IOException("Unsupported type " + type + " in input");
+	}
+
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+
+		// writeUTF is limited to 64k
+		byte[] bytes = value.getBytes("UTF-8");
+
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(final DataInputStream in) throws IOException {
+
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+
+		return new String(bytes, "UTF-8");
+	}
+
+	private static <T> T get(final Future<T> future) throws FrameworkException {
+
+		try {
+			return future.get();
+
+		} catch (InterruptedException iex) {
+
+			throw new FrameworkException(500, "Interrupted while waiting for block");
+
+		} catch (ExecutionException eex) {
+
+			Throwable cause = eex.getCause();
+
+			if (cause instanceof FrameworkException) {
+				throw (FrameworkException)cause;
+			}
+
+			throw new FrameworkException(500, cause.getMessage());
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Block {
+
+		private byte type     = 0;
+		private String name   = null;
+		private byte[] data   = null;
+		private long crc      = 0L;
+		private long firstId  = -1L;
+		private long lastId   = -1L;
+		private int count     = 0;
+
+		public Block(final byte type, final String name) {
+			this.type = type;
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Base class for the export workers, serializes and compresses a
+	 * single block.
+	 */
+	private static abstract class BlockWriter<T extends PropertyContainer> implements Callable<Block> {
+
+		protected Dictionary dictionary = null;
+		private List<T> objects         = null;
+		private Block block             = null;
+
+		public BlockWriter(final byte type, final String name, final List<T> objects, final Dictionary dictionary) {
+
+			this.block      = new Block(type, name);
+			this.objects    = objects;
+			this.dictionary = dictionary;
+		}
+
+		protected abstract boolean accept(final T obj);
+		protected abstract long getId(final T obj);
+		protected abstract void write(final DataOutputStream out, final T obj) throws IOException;
+
+		@Override
+		public Block call() throws Exception {
+
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			DataOutputStream out         = new DataOutputStream(new DeflaterOutputStream(buffer));
+			List<T> accepted             = new ArrayList<T>(objects.size());
+
+			for (T obj : objects) {
+
+				if (accept(obj)) {
+					accepted.add(obj);
+				}
+			}
+
+			out.writeInt(accepted.size());
+
+			for (T obj : accepted) {
+
+				write(out, obj);
+
+				if (block.firstId < 0) {
+					block.firstId = getId(obj);
+				}
+
+				block.lastId = getId(obj);
+			}
+
+			out.close();
+
+			CRC32 crc  = new CRC32();
+			block.data = buffer.toByteArray();
+
+			crc.update(block.data);
+
+			block.crc   = crc.getValue();
+			block.count = accepted.size();
+
+			return block;
+		}
+	}
+
+	private static class NodeBlockWriter extends BlockWriter<Node> {
+
+		public NodeBlockWriter(final String name, final List<Node> nodes, final Dictionary dictionary) {
+			super(NODE_BLOCK, name, nodes, dictionary);
+		}
+
+		@Override
+		protected boolean accept(final Node node) {
+
+			// ignore non-structr nodes
+			return node.hasProperty(GraphObject.uuid.dbName());
+		}
+
+		@Override
+		protected long getId(final Node node) {
+			return node.getId();
+		}
+
+		@Override
+		protected void write(final DataOutputStream out, final Node node) throws IOException {
+			writeProperties(out, node, dictionary);
+		}
+	}
+
+	private static class RelationshipBlockWriter extends BlockWriter<Relationship> {
+
+		public RelationshipBlockWriter(final String name, final List<Relationship> rels, final Dictionary dictionary) {
+			super(REL_BLOCK, name, rels, dictionary);
+		}
+
+		@Override
+		protected boolean accept(final Relationship rel) {
+
+			// ignore non-structr relationships
+			return rel.hasProperty(GraphObject.uuid.dbName()) && rel.getStartNode().hasProperty(GraphObject.uuid.dbName()) && rel.getEndNode().hasProperty(GraphObject.uuid.dbName());
+		}
+
+		@Override
+		protected long getId(final Relationship rel) {
+			return rel.getId();
+		}
+
+		@Override
+		protected void write(final DataOutputStream out, final Relationship rel) throws IOException {
+
+			out.writeUTF((String)rel.getStartNode().getProperty(GraphObject.uuid.dbName()));
+			out.writeUTF((String)rel.getEndNode().getProperty(GraphObject.uuid.dbName()));
+			out.writeInt(dictionary.getId(rel.getType().name()));
+
+			writeProperties(out, rel, dictionary);
+		}
+	}
+
+	/**
+	 * Shared string dictionary for property keys and relationship types.
+	 */
+	private static class Dictionary {
+
+		private ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+		private List<String> strings                   = new ArrayList<String>();
+
+		public int getId(final String string) {
+
+			Integer id = ids.get(string);
+			if (id == null) {
+
+				synchronized (this) {
+
+					id = ids.get(string);
+					if (id == null) {
+
+						id = strings.size();
+						strings.add(string);
+						ids.put(string, id);
+					}
+				}
+			}
+
+			return id;
+		}
+
+		public synchronized List<String> getStrings() {
+			return new ArrayList<String>(strings);
+		}
+	}
+
+	private static class ImportProgress {
+
+		private DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+		private AtomicLong blockCount       = new AtomicLong();
+		private AtomicLong nodeCount        = new AtomicLong();
+		private AtomicLong relCount         = new AtomicLong();
+		private double t0                   = System.nanoTime();
+		private int totalBlocks             = 0;
+
+		public ImportProgress(final int totalBlocks) {
+			this.totalBlocks = totalBlocks;
+		}
+
+		public void blockImported(final Block block) {
+
+			if (block.type == NODE_BLOCK) {
+
+				nodeCount.addAndGet(block.count);
+
+			} else {
+
+				relCount.addAndGet(block.count);
+			}
+
+			logger.log(Level.INFO, "Imported block {0} ({1} of {2}), {3} nodes and {4} rels committed in {5} s", new Object[] {
+				block.name, blockCount.incrementAndGet(), totalBlocks, nodeCount.get(), relCount.get(), getElapsedTime()
+			} );
+		}
+
+		public String getElapsedTime() {
+			return decimalFormat.format((System.nanoTime() - t0) / 1000000000.0);
+		}
+	}
+}
@@ -77,6 +77,9 @@ public class CypherQueryCommand extends NodeServiceCommand {
 		List<GraphObject> resultList = new LinkedList<GraphObject>();
 		ExecutionResult result       = null;
 
+		// queries may use the indices, make index updates of the current transaction visible
+		TransactionCommand.flushIndexUpdates();
+
 		if (parameters != null) {
 
 			result = engine.execute(query, parameters);
@@ -0,0 +1,336 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.core.Services;
+
+/**
+ * Global, size-bounded cache for immutable per-entity metadata, shared
+ * across all requests and security contexts. The cache is keyed by the
+ * database id of a node or relationship and holds the resolved entity
+ * class, the type and the visibility flags of an entity, so the
+ * factories can skip type resolution and reject unreadable nodes
+ * without instantiating them.
+ *
+ * The cache is divided into segments with an LRU eviction policy each.
+ * Entries are removed by the {@link TransactionCommand} for every object
+ * that was touched in a transaction, and new entries are only accepted
+ * if no invalidation happened while they were loaded.
+ *
+ * @author Christian Morgner
+ */
+public class EntityCache {
+
+	private static final Logger logger       = Logger.getLogger(EntityCache.class.getName());
+
+	private static final int DEFAULT_SIZE    = 100000;
+	private static final int SEGMENT_COUNT   = 16;
+
+	private static final AtomicLong hits          = new AtomicLong();
+	private static final AtomicLong misses        = new AtomicLong();
+	private static final AtomicLong evictions     = new AtomicLong();
+	private static final AtomicLong invalidations = new AtomicLong();
+
+	private static volatile Segment[] nodes         = null;
+	private static volatile Segment[] relationships = null;
+
+	/**
+	 * Returns the current invalidation stamp. Obtain the stamp before
+	 * reading the metadata of an entity from the database and pass it
+	 * to the put method, so that entries loaded concurrently with a
+	 * commit are not cached.
+	 *
+	 * @return the current stamp
+	 */
+	public static long getStamp() {
+		return invalidations.get();
+	}
+
+	public static CachedEntity getNode(final long id) {
+		return get(getNodeSegments(), id);
+	}
+
+	public static CachedEntity getRelationship(final long id) {
+		return get(getRelationshipSegments(), id);
+	}
+
+	public static void putNode(final long id, final CachedEntity entity, final long stamp) {
+		put(getNodeSegments(), id, entity, stamp);
+	}
+
+	public static void putRelationship(final long id, final CachedEntity entity, final long stamp) {
+		put(getRelationshipSegments(), id, entity, stamp);
+	}
+
+	public static void invalidateNode(final long id) {
+		invalidate(getNodeSegments(), id);
+	}
+
+	public static void invalidateRelationship(final long id) {
+		invalidate(getRelationshipSegments(), id);
+	}
+
+	/**
+	 * Removes all entries from this cache. Must be called whenever the
+	 * underlying database is replaced, as the ids are reused.
+	 */
+	public static void clear() {
+
+		invalidations.incrementAndGet();
+
+		for (Segment segment : getNodeSegments()) {
+			segment.clear();
+		}
+
+		for (Segment segment : getRelationshipSegments()) {
+			segment.clear();
+		}
+	}
+
+	public static long getHitCount() {
+		return hits.get();
+	}
+
+	public static long getMissCount() {
+		return misses.get();
+	}
+
+	public static long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public static long getInvalidationCount() {
+		return invalidations.get();
+	}
+
+	public static int size() {
+
+		int size = 0;
+
+		for (Segment segment : getNodeSegments()) {
+			size += segment.size();
+		}
+
+		for (Segment segment : getRelationshipSegments()) {
+			size += segment.size();
+		}
+
+		return size;
+	}
+
+	// ----- private methods -----
+	private static CachedEntity get(final Segment[] segments, final long id) {
+
+		// the current transaction might have modified the entity
+		if (TransactionCommand.inTransaction()) {
+			return null;
+		}
+
+		CachedEntity entity = segmentFor(segments, id).get(id);
+		if (entity != null) {
+
+			hits.incrementAndGet();
+
+		} else {
+
+			misses.incrementAndGet();
+		}
+
+		return entity;
+	}
+
+	private static void put(final Segment[] segments, final long id, final CachedEntity entity, final long stamp) {
+
+		// don't cache uncommitted state
+		if (entity != null && !TransactionCommand.inTransaction()) {
+
+			segmentFor(segments, id).put(id, entity, stamp);
+		}
+	}
+
+	private static void invalidate(final Segment[] segments, final long id) {
+
+		invalidations.incrementAndGet();
+		segmentFor(segments, id).remove(id);
+	}
+
+	private static Segment segmentFor(final Segment[] segments, final long id) {
+		return segments[(int)((id ^ (id >>> 32)) & (SEGMENT_COUNT - 1))];
+	}
+
+	private static Segment[] getNodeSegments() {
+
+		if (nodes == null) {
+			initialize();
+		}
+
+		return nodes;
+	}
+
+	private static Segment[] getRelationshipSegments() {
+
+		if (relationships == null) {
+			initialize();
+		}
+
+		return relationships;
+	}
+
+	private static synchronized void initialize() {
+
+		if (nodes == null || relationships == null) {
+
+			int size = Services.getConfigurationValue(Services.ENTITY_CACHE_SIZE, DEFAULT_SIZE);
+
+			int segmentSize = Math.max(1, size / SEGMENT_COUNT);
+
+			Segment[] newRelationships = new Segment[SEGMENT_COUNT];
+			Segment[] newNodes         = new Segment[SEGMENT_COUNT];
+
+			for (int i=0; i<SEGMENT_COUNT; i++) {
+
+				newRelationships[i] = new Segment(segmentSize);
+				newNodes[i]         = new Segment(segmentSize);
+			}
+
+			relationships = newRelationships;
+			nodes         = newNodes;
+
+			logger.log(Level.INFO, "Entity cache initialized with {0} entries per entity kind", size);
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Immutable metadata of a single node or relationship.
+	 */
+	public static class CachedEntity {
+
+		private Class entityClass                   = null;
+		private String type                         = null;
+		private boolean visibleToPublicUsers        = false;
+		private boolean visibleToAuthenticatedUsers = false;
+		private boolean hidden                      = false;
+		private boolean deleted                     = false;
+
+		public CachedEntity(final Class entityClass, final String type) {
+			this(entityClass, type, false, false, false, false);
+		}
+
+		public CachedEntity(final Class entityClass, final String type, final boolean visibleToPublicUsers, final boolean visibleToAuthenticatedUsers, final boolean hidden, final boolean deleted) {
+
+			this.entityClass                 = entityClass;
+			this.type                        = type;
+			this.visibleToPublicUsers        = visibleToPublicUsers;
+			this.visibleToAuthenticatedUsers = visibleToAuthenticatedUsers;
+			this.hidden                      = hidden;
+			this.deleted                     = deleted;
+		}
+
+		public Class getEntityClass() {
+			return entityClass;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public boolean isVisibleToPublicUsers() {
+			return visibleToPublicUsers;
+		}
+
+		public boolean isVisibleToAuthenticatedUsers() {
+			return visibleToAuthenticatedUsers;
+		}
+
+		public boolean isHidden() {
+			return hidden;
+		}
+
+		public boolean isDeleted() {
+			return deleted;
+		}
+	}
+
+	private static class Segment extends LinkedHashMap<Long, CachedEntity> {
+
+		private int maxSize = 0;
+
+		public Segment(final int maxSize) {
+
+			super(16, 0.75f, true);
+
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		public synchronized CachedEntity get(final Object key) {
+			return super.get(key);
+		}
+
+		@Override
+		public synchronized CachedEntity put(final Long key, final CachedEntity value) {
+			return super.put(key, value);
+		}
+
+		/**
+		 * Stores the given entity only if no invalidation happened since
+		 * the given stamp was obtained. The check is done under the lock
+		 * of this segment, so it cannot interleave with a removal.
+		 */
+		public synchronized void put(final Long key, final CachedEntity value, final long stamp) {
+
+			if (stamp == invalidations.get()) {
+				super.put(key, value);
+			}
+		}
+
+		@Override
+		public synchronized CachedEntity remove(final Object key) {
+			return super.remove(key);
+		}
+
+		@Override
+		public synchronized void clear() {
+			super.clear();
+		}
+
+		@Override
+		public synchronized int size() {
+			return super.size();
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Long, CachedEntity> eldest) {
+
+			if (size() > maxSize) {
+
+				evictions.incrementAndGet();
+				return true;
+			}
+
+			return false;
+		}
+	}
+}
@@ -30,6 +30,7 @@ import org.structr.common.error.IdNotFoundToken;
 import org.structr.core.Adapter;
 import org.structr.core.EntityContext;
 import org.structr.core.GraphObject;
+import org.structr.core.Predicate;
 import org.structr.core.Result;
 
 /**
@@ -46,7 +47,9 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 	
 	/**
 	 * This limit is the number of objects up to which the overall count
-	 * will be accurate.
+	 * will be accurate if the objects have to be checked one by one. Above
+	 * this limit, the overall count is estimated from the share of
+	 * readable objects among the index hits read so far.
 	 */
 	public static final int RESULT_COUNT_ACCURATE_LIMIT	= 5000;
 	
@@ -128,6 +131,75 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 	}
 	
+	/**
+	 * Create structr nodes from the underlying database nodes, streaming
+	 * through the index hits and passing each readable node through the
+	 * given filter. Only the nodes inside the requested page window are
+	 * kept, all other matches are counted and released immediately, so
+	 * memory consumption depends on the page size, not on the number of
+	 * hits.
+	 *
+	 * Negative pages and offsetId paging need the complete result and
+	 * are not supported here, use {@link #bulkInstantiate} for those.
+	 *
+	 * @param input
+	 * @param filter
+	 * @return
+	 */
+	public Result instantiate(final IndexHits<S> input, final Predicate<T> filter) throws FrameworkException {
+
+		if (input != null) {
+
+			final int pageSize  = factoryProfile.getPageSize();
+			final int page      = factoryProfile.getPage();
+			final int fromIndex = pageSize == Integer.MAX_VALUE ? 0 : (page - 1) * pageSize;
+
+			// The overall count may be inaccurate
+			return page(input, input.size(), fromIndex, pageSize, filter);
+		}
+
+		return Result.EMPTY_RESULT;
+	}
+	
+	/**
+	 * Create structr nodes from the first readable database nodes of
+	 * the given index hits, until the page size is reached. The remaining
+	 * hits are neither instantiated nor counted, so the effort depends on
+	 * the page size only. This is used for keyset pagination, where the
+	 * index query already starts after the previous page. The result
+	 * count is the number of index hits after the previous page, not the
+	 * total count, so it is flagged as approximate.
+	 *
+	 * @param input
+	 * @return
+	 */
+	public Result instantiateFirstPage(final IndexHits<S> input) throws FrameworkException {
+
+		if (input != null) {
+
+			final int pageSize  = factoryProfile.getPageSize();
+			final List<T> nodes = new LinkedList<T>();
+
+			for (S node : input) {
+
+				T n = instantiate(node);
+				if (n != null) {
+
+					nodes.add(n);
+
+					if (nodes.size() >= pageSize) {
+						break;
+					}
+				}
+			}
+
+			// the hits after the previous page, not the overall count
+			return new Result(nodes, Math.max(input.size(), nodes.size()), true, false, false);
+		}
+
+		return Result.EMPTY_RESULT;
+	}
+
 	/**
 	 * Create structr nodes from all given underlying database nodes
 	 * No paging, but security check
@@ -244,7 +316,7 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 			// Remove last item
 			nodesUpToOffset.remove(nodesUpToOffset.size()-1);
 			
-			return new Result(nodesUpToOffset, size, true, false);
+			return new Result(nodesUpToOffset, size, true, false, isIndexCountExact(null));
 		}
 
 		for (T node : nodesUpToOffset) {
@@ -256,7 +328,7 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 					// stop if we got enough nodes
 					if (++count > pageSize) {
 
-						return new Result(elements, size, true, false);
+						return new Result(elements, size, true, false, isIndexCountExact(null));
 					}
 
 					elements.add(node);
@@ -278,7 +350,7 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 					// stop if we got enough nodes
 					if (++count > pageSize) {
 
-						return new Result(elements, size, true, false);
+						return new Result(elements, size, true, false, isIndexCountExact(null));
 					}
 
 					elements.add(n);
@@ -288,7 +360,7 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 		}
 
-		return new Result(elements, size, true, false);
+		return new Result(elements, size, true, false, isIndexCountExact(null));
 
 	}
 
@@ -313,9 +385,9 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 				nodes.add(instantiate(n));
 			}
 
-			// We've run completely through the iterator,
-			// so the overall count from here is accurate.
-			return new Result(nodes, size, true, false);
+			// The raw count includes objects that are not readable
+			// unless the index count is exact in this context.
+			return new Result(nodes, size, true, false, isIndexCountExact(null));
 
 		} else {
 
@@ -332,23 +404,30 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 	}
 
 	protected Result page(final IndexHits<S> input, final int overallResultCount, final int offset, final int pageSize) throws FrameworkException {
+		return page(input, overallResultCount, offset, pageSize, null);
+	}
+
+	protected Result page(final IndexHits<S> input, final int overallResultCount, final int offset, final int pageSize, final Predicate<T> filter) throws FrameworkException {
 
 		final List<T> nodes = new LinkedList<T>();
 		int position		= 0;
 		int count		= 0;
 		int overallCount	= 0;
+		int scanned		= 0;
 		boolean pageFull	= false;
 		
 		SecurityContext securityContext = factoryProfile.getSecurityContext();
 		
-		// In case of superuser or in public context, don't check the overall result count
-		boolean dontCheckCount  = securityContext.isSuperUser() || securityContext.getUser(false) == null;
+		// In case of superuser or in public context, don't check the overall result count,
+		// unless there is a filter which makes the raw index count meaningless
+		boolean dontCheckCount  = isIndexCountExact(filter);
 		
 		for (S node : input) {
 
 			T n = instantiate(node);
+			scanned++;
 
-			if (n != null) {
+			if (n != null && (filter == null || filter.evaluate(securityContext, n))) {
 
 				overallCount++;
 
@@ -375,8 +454,11 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 					
 					if (pageFull && (overallCount >= RESULT_COUNT_ACCURATE_LIMIT)) {
 						 
-						// The overall count may be inaccurate
-						return new Result(nodes, overallResultCount, true, false);
+						// Estimate the overall count from the share of
+						// readable objects among the hits read so far
+						int estimate = (int)Math.round((double)overallCount * overallResultCount / scanned);
+
+						return new Result(nodes, Math.max(overallCount, estimate), true, false, false);
 						 
 					}
 				}
@@ -391,6 +473,22 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 	}
 
+	/**
+	 * Indicates whether the number of index hits is the exact number of
+	 * readable objects. This is the case for superusers, and for anonymous
+	 * users because the search commands restrict the index query to public
+	 * objects which are neither deleted nor hidden.
+	 *
+	 * @param filter the filter applied to the objects, or null
+	 * @return whether the index count is exact
+	 */
+	protected boolean isIndexCountExact(final Predicate<T> filter) {
+
+		SecurityContext securityContext = factoryProfile.getSecurityContext();
+
+		return filter == null && (securityContext.isSuperUser() || securityContext.getUser(false) == null);
+	}
+
 	//~--- inner classes --------------------------------------------------
 
 	protected class FactoryProfile {
@@ -0,0 +1,388 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.core.Services;
+
+/**
+ * Coalesces concurrent top-level transactions into a single database
+ * transaction, so that many small transactions share one commit. The
+ * transactions are collected by a single committer thread until either
+ * the maximum batch size or the maximum linger time is reached, and are
+ * then executed and validated one after another in the same database
+ * transaction. As database transactions are bound to a thread, the
+ * transactions of a batch are executed on the committer thread, not on
+ * the thread of their caller.
+ *
+ * If any of the transactions in a batch fails, the whole batch is rolled
+ * back and every caller executes its transaction again on its own, so a
+ * failing transaction never affects the result of the others. A batch
+ * that contains only a single transaction is always handed back to the
+ * caller.
+ *
+ * Because of this, only transactions that are idempotent and do not use
+ * thread-local state are submitted, see {@link StructrTransaction}. All
+ * other transactions are executed and committed by their caller.
+ *
+ * Group commit is disabled by default and can be enabled by setting
+ * {@link Services#GROUP_COMMIT_ENABLED} to true.
+ *
+ * @author Christian Morgner
+ */
+public class GroupCommitter {
+
+	private static final Logger logger            = Logger.getLogger(GroupCommitter.class.getName());
+
+	private static final int DEFAULT_MAX_BATCH_SIZE = 32;
+	private static final long DEFAULT_MAX_LINGER    = 2;
+
+	private static GroupCommitter instance = null;
+
+	private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>();
+	private final AtomicLong batches         = new AtomicLong();
+	private final AtomicLong committed       = new AtomicLong();
+	private final AtomicLong retried         = new AtomicLong();
+	private final AtomicLong totalCommitTime = new AtomicLong();
+	private final AtomicLong totalLatency    = new AtomicLong();
+	private final AtomicLong maxLatency      = new AtomicLong();
+	private volatile boolean running         = true;
+	private Thread committerThread           = null;
+	private int maxBatchSize                 = DEFAULT_MAX_BATCH_SIZE;
+	private long maxLinger                   = DEFAULT_MAX_LINGER;
+
+	private GroupCommitter() {
+
+		this.maxBatchSize = Services.getConfigurationValue(Services.GROUP_COMMIT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE);
+		this.maxLinger    = Services.getConfigurationValue(Services.GROUP_COMMIT_MAX_LINGER, DEFAULT_MAX_LINGER);
+
+		committerThread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				commit();
+			}
+
+		}, "GroupCommitter");
+
+		committerThread.setDaemon(true);
+		committerThread.start();
+
+		logger.log(Level.INFO, "Group commit enabled with max. batch size {0} and max. linger time {1} ms", new Object[] { maxBatchSize, maxLinger });
+	}
+
+	public static boolean isEnabled() {
+		return Services.getConfigurationValue(Services.GROUP_COMMIT_ENABLED, false);
+	}
+
+	public static synchronized GroupCommitter getInstance() {
+
+		if (instance == null) {
+			instance = new GroupCommitter();
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Stops the committer thread. Transactions that are still waiting are
+	 * handed back to their callers.
+	 */
+	public static synchronized void shutdown() {
+
+		if (instance != null) {
+
+			instance.running = false;
+			instance.committerThread.interrupt();
+
+			for (Entry entry : instance.queue) {
+				entry.complete(false);
+			}
+
+			instance.queue.clear();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Submits the given transaction to the next batch and waits until the
+	 * batch is finished.
+	 *
+	 * @param command the command of the calling thread
+	 * @param transaction
+	 * @return the entry, which is committed if the transaction was executed successfully
+	 */
+	public Entry submit(final TransactionCommand command, final StructrTransaction transaction) {
+
+		Entry entry = new Entry(command, transaction);
+
+		if (running && queue.offer(entry)) {
+
+			// the committer might have been stopped in the meantime
+			if (!running && queue.remove(entry)) {
+				entry.complete(false);
+			}
+
+			entry.await();
+
+		} else {
+
+			entry.complete(false);
+		}
+
+		return entry;
+	}
+
+	// ----- metrics -----
+	/**
+	 * @return the number of batches that were committed
+	 */
+	public long getBatchCount() {
+		return batches.get();
+	}
+
+	/**
+	 * @return the number of transactions that were committed as part of a batch
+	 */
+	public long getCommittedCount() {
+		return committed.get();
+	}
+
+	/**
+	 * @return the number of transactions that were handed back to their caller after a failed batch
+	 */
+	public long getRetryCount() {
+		return retried.get();
+	}
+
+	public double getAverageBatchSize() {
+
+		long count = batches.get();
+		if (count > 0) {
+
+			return committed.get() / (double)count;
+		}
+
+		return 0.0;
+	}
+
+	/**
+	 * @return the average time in milliseconds needed to execute and commit a batch
+	 */
+	public double getAverageCommitTime() {
+
+		long count = batches.get();
+		if (count > 0) {
+
+			return (totalCommitTime.get() / (double)count) / 1000000.0;
+		}
+
+		return 0.0;
+	}
+
+	/**
+	 * @return the average time in milliseconds between submission and commit of a transaction
+	 */
+	public double getAverageLatency() {
+
+		long count = committed.get();
+		if (count > 0) {
+
+			return (totalLatency.get() / (double)count) / 1000000.0;
+		}
+
+		return 0.0;
+	}
+
+	/**
+	 * @return the maximum time in milliseconds between submission and commit of a transaction
+	 */
+	public double getMaxLatency() {
+		return maxLatency.get() / 1000000.0;
+	}
+
+	// ----- private methods -----
+	private void commit() {
+
+		while (running) {
+
+			List<Entry> batch = new LinkedList<Entry>();
+
+			try {
+				batch.add(queue.take());
+
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLinger);
+
+				while (batch.size() < maxBatchSize) {
+
+					Entry entry = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if (entry == null) {
+
+						break;
+					}
+
+					batch.add(entry);
+				}
+
+			} catch (InterruptedException iex) {
+
+				// shutdown, hand back the collected transactions
+				for (Entry entry : batch) {
+					entry.complete(false);
+				}
+
+				continue;
+			}
+
+			commit(batch);
+		}
+	}
+
+	private void commit(final List<Entry> batch) {
+
+		// nothing to gain from a single transaction
+		if (batch.size() == 1) {
+
+			batch.get(0).complete(false);
+			return;
+		}
+
+		long t0         = System.nanoTime();
+		boolean success = false;
+
+		try {
+
+			success = TransactionCommand.executeGroup(batch);
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "Unable to execute group commit", t);
+		}
+
+		if (success) {
+
+			long t1 = System.nanoTime();
+
+			batches.incrementAndGet();
+			committed.addAndGet(batch.size());
+			totalCommitTime.addAndGet(t1 - t0);
+
+			for (Entry entry : batch) {
+
+				long latency = t1 - entry.submitted;
+				long max     = maxLatency.get();
+
+				while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+					max = maxLatency.get();
+				}
+
+				totalLatency.addAndGet(latency);
+			}
+
+		} else {
+
+			logger.log(Level.FINE, "Group commit of {0} transactions failed, executing them separately", batch.size());
+
+			retried.addAndGet(batch.size());
+		}
+
+		for (Entry entry : batch) {
+			entry.complete(success);
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * A single transaction in a batch.
+	 */
+	public static class Entry {
+
+		private final CountDownLatch done          = new CountDownLatch(1);
+		private final long submitted               = System.nanoTime();
+		private StructrTransaction transaction     = null;
+		private TransactionCommand command         = null;
+		private volatile boolean committed         = false;
+		private Object result                      = null;
+
+		private Entry(final TransactionCommand command, final StructrTransaction transaction) {
+
+			this.command     = command;
+			this.transaction = transaction;
+		}
+
+		/**
+		 * @return true if the transaction was committed, false if the caller needs to execute it again
+		 */
+		public boolean isCommitted() {
+			return committed;
+		}
+
+		public Object getResult() {
+			return result;
+		}
+
+		TransactionCommand getCommand() {
+			return command;
+		}
+
+		StructrTransaction getTransaction() {
+			return transaction;
+		}
+
+		void setResult(final Object result) {
+			this.result = result;
+		}
+
+		private void complete(final boolean committed) {
+
+			this.committed = committed;
+			done.countDown();
+		}
+
+		private void await() {
+
+			boolean interrupted = false;
+
+			// the transaction might already be executed, so we must not
+			// return before the committer thread is finished with it
+			while (done.getCount() > 0) {
+
+				try {
+					done.await();
+
+				} catch (InterruptedException iex) {
+
+					interrupted = true;
+				}
+			}
+
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
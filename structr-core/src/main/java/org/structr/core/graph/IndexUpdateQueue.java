@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.index.Index;
+
+/**
+ * Collects the index updates of a single transaction, so that repeated
+ * updates of the same entity and key are written to the index only
+ * once. The collected updates are applied by the {@link TransactionCommand}
+ * before the transaction is committed, and before any index query that
+ * is executed inside the transaction.
+ *
+ * This class is not thread-safe, it must only be used by the thread that
+ * owns the transaction.
+ *
+ * @author Christian Morgner
+ */
+public class IndexUpdateQueue {
+
+	private static final Object REMOVED = new Object();
+
+	private Map<Index, Map<PropertyContainer, EntityUpdate>> updates = new LinkedHashMap<Index, Map<PropertyContainer, EntityUpdate>>();
+
+	/**
+	 * Replaces the value of the given key for the given entity in the
+	 * given index. A null value removes the key from the index.
+	 *
+	 * @param index
+	 * @param entity
+	 * @param key
+	 * @param value
+	 */
+	public void update(final Index index, final PropertyContainer entity, final String key, final Object value) {
+		getUpdate(index, entity).values.put(key, value != null ? value : REMOVED);
+	}
+
+	public void remove(final Index index, final PropertyContainer entity, final String key) {
+		getUpdate(index, entity).values.put(key, REMOVED);
+	}
+
+	public void remove(final Index index, final PropertyContainer entity) {
+
+		EntityUpdate update = getUpdate(index, entity);
+
+		// pending values are obsolete now
+		update.values.clear();
+		update.removeAll = true;
+	}
+
+	/**
+	 * Writes all collected updates to the indices and empties this queue.
+	 */
+	public void flush() {
+
+		if (updates.isEmpty()) {
+			return;
+		}
+
+		for (Entry<Index, Map<PropertyContainer, EntityUpdate>> indexEntry : updates.entrySet()) {
+
+			Index index = indexEntry.getKey();
+
+			for (Entry<PropertyContainer, EntityUpdate> entityEntry : indexEntry.getValue().entrySet()) {
+
+				PropertyContainer entity = entityEntry.getKey();
+				EntityUpdate update      = entityEntry.getValue();
+
+				if (update.removeAll) {
+
+					index.remove(entity);
+				}
+
+				for (Entry<String, Object> value : update.values.entrySet()) {
+
+					String key = value.getKey();
+
+					if (!update.removeAll) {
+
+						index.remove(entity, key);
+					}
+
+					if (value.getValue() != REMOVED) {
+
+						index.add(entity, key, value.getValue());
+					}
+				}
+			}
+		}
+
+		updates.clear();
+	}
+
+	public void clear() {
+		updates.clear();
+	}
+
+	public boolean isEmpty() {
+		return updates.isEmpty();
+	}
+
+	// ----- private methods -----
+	private EntityUpdate getUpdate(final Index index, final PropertyContainer entity) {
+
+		Map<PropertyContainer, EntityUpdate> indexUpdates = updates.get(index);
+		if (indexUpdates == null) {
+
+			indexUpdates = new LinkedHashMap<PropertyContainer, EntityUpdate>();
+			updates.put(index, indexUpdates);
+		}
+
+		EntityUpdate update = indexUpdates.get(entity);
+		if (update == null) {
+
+			update = new EntityUpdate();
+			indexUpdates.put(entity, update);
+		}
+
+		return update;
+	}
+
+	// ----- nested classes -----
+	private static class EntityUpdate {
+
+		private Map<String, Object> values = new LinkedHashMap<String, Object>();
+		private boolean removeAll          = false;
+	}
+}
@@ -26,12 +26,17 @@ import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.neo4j.graphdb.RelationshipType;
+import org.structr.common.PermissionCache;
 import org.structr.common.RelType;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.auth.SessionRegistry;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
+import org.structr.core.entity.Principal;
+import org.structr.core.entity.ResourceAccess;
 import org.structr.core.property.PropertyKey;
 
 /**
@@ -46,6 +51,10 @@ public class ModificationQueue {
 	private ConcurrentSkipListMap<String, GraphObjectModificationState> modifications = new ConcurrentSkipListMap<String, GraphObjectModificationState>();
 	private Set<String> alreadyPropagated                                             = new LinkedHashSet<String>();
 	private Set<String> synchronizationKeys                                           = new TreeSet<String>();
+	private Set<Long> permissionNodes                                                 = new LinkedHashSet<Long>();
+	private Set<String> sessionIds                                                    = new LinkedHashSet<String>();
+	private boolean principalsModified                                                = false;
+	private boolean grantsDeleted                                                     = false;
 	
 	/**
 	 * Returns a set containing the different entity types of
@@ -126,11 +135,80 @@ public class ModificationQueue {
 		}
 	}
 	
+	/**
+	 * Removes all nodes and relationships touched in this queue from the
+	 * global {@link EntityCache}.
+	 */
+	public void invalidateEntityCache() {
+
+		for (GraphObjectModificationState state : modifications.values()) {
+
+			GraphObject object = state.getObject();
+
+			if (object instanceof AbstractNode) {
+
+				EntityCache.invalidateNode(object.getId());
+
+			} else if (object instanceof AbstractRelationship) {
+
+				EntityCache.invalidateRelationship(object.getId());
+			}
+		}
+	}
+	
+	/**
+	 * Removes the permissions of all nodes whose security settings or
+	 * owner were changed in this queue from the global {@link PermissionCache}.
+	 */
+	public void invalidatePermissionCache() {
+
+		if (principalsModified) {
+
+			PermissionCache.invalidatePrincipals();
+		}
+
+		for (Long id : permissionNodes) {
+
+			PermissionCache.invalidateNode(id);
+		}
+	}
+	
+	/**
+	 * Removes the previous session ids of all principals whose session id
+	 * was changed in this queue from the global {@link SessionRegistry}.
+	 * Entries of deleted principals are removed on the next lookup.
+	 */
+	public void invalidateSessionRegistry() {
+
+		for (String sessionId : sessionIds) {
+
+			SessionRegistry.invalidate(sessionId);
+		}
+	}
+	
+	/**
+	 * Discards the grants loaded by {@link ResourceAccess#findGrant} if a
+	 * grant was deleted in this queue. Created and modified grants are
+	 * handled by the callbacks of {@link ResourceAccess}, but there is no
+	 * callback after the deletion was committed.
+	 */
+	public void invalidateGrants() {
+
+		if (grantsDeleted) {
+
+			ResourceAccess.invalidateGrants();
+		}
+	}
+	
 	public void clear() {
 		
 		// clear collections afterwards
 		alreadyPropagated.clear();
 		modifications.clear();
+		permissionNodes.clear();
+		sessionIds.clear();
+		principalsModified = false;
+		grantsDeleted      = false;
 	}
 
 	public void create(AbstractNode node) {
@@ -153,10 +231,12 @@ public class ModificationQueue {
 
 	public void modifyOwner(AbstractNode node) {
 		getState(node).modifyOwner();
+		permissionNodes.add(node.getId());
 	}
 	
 	public void modifySecurity(AbstractNode node) {
 		getState(node).modifySecurity();
+		permissionNodes.add(node.getId());
 	}
 	
 	public void modifyLocation(AbstractNode node) {
@@ -166,6 +246,10 @@ public class ModificationQueue {
 	public void modify(AbstractNode node, PropertyKey key, Object previousValue) {
 		getState(node).modify(key, previousValue);
 		
+		if (previousValue != null && node instanceof Principal && Principal.sessionId.equals(key)) {
+			sessionIds.add(previousValue.toString());
+		}
+		
 		if (key != null&& key.requiresSynchronization()) {
 			synchronizationKeys.add(node.getClass().getSimpleName().concat(".").concat(key.getSynchronizationKey()));
 		}
@@ -174,6 +258,11 @@ public class ModificationQueue {
 	public void modify(AbstractRelationship relationship, PropertyKey key, Object previousValue) {
 		getState(relationship).modify(key, previousValue);
 		
+		// permissions are stored on the security relationship
+		if (RelType.SECURITY.name().equals(relationship.getRelType().name())) {
+			permissionNodes.add(relationship.getEndNode().getId());
+		}
+		
 		if (key != null && key.requiresSynchronization()) {
 			synchronizationKeys.add(relationship.getClass().getSimpleName().concat(".").concat(key.getSynchronizationKey()));
 		}
@@ -196,6 +285,15 @@ public class ModificationQueue {
 
 	public void delete(AbstractNode node) {
 		getState(node).delete(false);
+		permissionNodes.add(node.getId());
+		
+		if (node instanceof Principal) {
+			principalsModified = true;
+		}
+		
+		if (node instanceof ResourceAccess) {
+			grantsDeleted = true;
+		}
 	}
 
 	public void delete(AbstractRelationship relationship, boolean passive) {
@@ -207,6 +305,20 @@ public class ModificationQueue {
 
 	private void modifyEndNodes(AbstractNode startNode, AbstractNode endNode, RelationshipType relType) {
 		
+		// relationship types read from the database are not
+		// equal to the RelType constants, so compare by name
+		String relTypeName = relType.name();
+
+		if (RelType.SECURITY.name().equals(relTypeName) || RelType.OWNS.name().equals(relTypeName)) {
+
+			permissionNodes.add(endNode.getId());
+		}
+
+		if (RelType.CONTAINS.name().equals(relTypeName) && startNode instanceof Principal && endNode instanceof Principal) {
+
+			principalsModified = true;
+		}
+
 //		synchronizationKeys.add(relType.name());
 
 		if (RelType.OWNS.equals(relType)) {
@@ -40,6 +40,7 @@ import org.neo4j.gis.spatial.indexprovider.SpatialRecordHits;
 import org.neo4j.graphdb.Direction;
 import org.structr.common.RelType;
 import org.structr.core.entity.AbstractRelationship;
+import org.structr.core.graph.EntityCache.CachedEntity;
 
 //~--- classes ----------------------------------------------------------------
 
@@ -80,21 +81,34 @@ public class NodeFactory<T extends AbstractNode> extends Factory<Node, T> {
 	@Override
 	public T instantiate(final Node node) throws FrameworkException {
 
-		String nodeType = factoryDefinition.determineNodeType(node);
+		CachedEntity cachedEntity = EntityCache.getNode(node.getId());
+		String nodeType           = cachedEntity != null ? cachedEntity.getType() : factoryDefinition.determineNodeType(node);
 
-		return instantiateWithType(node, nodeType, false);
+		return instantiateWithType(node, nodeType, false, cachedEntity);
 
 	}
 
 	@Override
 	public T instantiateWithType(final Node node, final String nodeType, boolean isCreation) throws FrameworkException {
 
+		return instantiateWithType(node, nodeType, isCreation, isCreation ? null : EntityCache.getNode(node.getId()));
+	}
+
+	private T instantiateWithType(final Node node, final String nodeType, boolean isCreation, final CachedEntity cachedEntity) throws FrameworkException {
+
 		SecurityContext securityContext = factoryProfile.getSecurityContext();
 		T newNode = (T)securityContext.lookup(node);
 		
 		if (newNode == null) {
 
-			Class<T> nodeClass = Services.getService(ModuleService.class).getNodeEntityClass(nodeType);
+			// use cached metadata to reject unreadable nodes before instantiating them
+			if (cachedEntity != null && !securityContext.isReadable(cachedEntity, factoryProfile.includeDeletedAndHidden(), factoryProfile.publicOnly())) {
+
+				return null;
+			}
+
+			long stamp         = EntityCache.getStamp();
+			Class<T> nodeClass = cachedEntity != null ? cachedEntity.getEntityClass() : Services.getService(ModuleService.class).getNodeEntityClass(nodeType);
 			if (nodeClass != null) {
 
 				try {
@@ -128,17 +142,26 @@ public class NodeFactory<T extends AbstractNode> extends Factory<Node, T> {
 			newNode.init(factoryProfile.getSecurityContext(), node);
 			newNode.onNodeInstantiation();
 
-			String newNodeType = newNode.getProperty(AbstractNode.type);
-			if (newNodeType == null) { //  || (newNodeType != null && !newNodeType.equals(nodeType))) {
-				
-				try {
+			if (cachedEntity == null) {
 
-					newNode.unlockReadOnlyPropertiesOnce();
-					newNode.setType(nodeType);
+				String newNodeType = newNode.getProperty(AbstractNode.type);
+				if (newNodeType == null) { //  || (newNodeType != null && !newNodeType.equals(nodeType))) {
 
-				} catch (Throwable t) {
+					try {
+
+						newNode.unlockReadOnlyPropertiesOnce();
+						newNode.setType(nodeType);
 
-					logger.log(Level.SEVERE, "Unable to set type property {0} on node {1}: {2}", new Object[] { nodeType, newNode, t.getMessage() } );
+					} catch (Throwable t) {
+
+						logger.log(Level.SEVERE, "Unable to set type property {0} on node {1}: {2}", new Object[] { nodeType, newNode, t.getMessage() } );
+					}
+				}
+
+				if (!isCreation) {
+
+					// store metadata for subsequent instantiations
+					EntityCache.putNode(node.getId(), createCachedEntity(newNode, nodeType), stamp);
 				}
 			}
 			
@@ -237,21 +260,17 @@ public class NodeFactory<T extends AbstractNode> extends Factory<Node, T> {
 
 					size += nodesAt.size();
 
-					for (AbstractNode nodeAt : nodesAt) {
+					for (AbstractNode nodeAt : securityContext.filterReadable(nodesAt, includeDeletedAndHidden, publicOnly)) {
 
-						if (nodeAt != null && securityContext.isReadable(nodeAt, includeDeletedAndHidden, publicOnly)) {
+						if (++position > offset) {
 
-							if (++position > offset) {
+							// stop if we got enough nodes
+							if (++count > pageSize) {
 
-								// stop if we got enough nodes
-								if (++count > pageSize) {
-
-									return new Result(nodes, size, true, false);
-								}
-
-								nodes.add((T)nodeAt);
+								return new Result(nodes, size, true, false);
 							}
 
+							nodes.add((T)nodeAt);
 						}
 
 					}
@@ -289,4 +308,16 @@ public class NodeFactory<T extends AbstractNode> extends Factory<Node, T> {
 		return nodes;
 
 	}
+
+	private CachedEntity createCachedEntity(final AbstractNode newNode, final String nodeType) {
+
+		return new CachedEntity(
+			newNode.getClass(),
+			nodeType,
+			newNode.isVisibleToPublicUsers(),
+			newNode.isVisibleToAuthenticatedUsers(),
+			newNode.isHidden(),
+			newNode.isDeleted()
+		);
+	}
 }
@@ -33,12 +33,15 @@ import org.neo4j.helpers.collection.MapUtil;
 import org.neo4j.index.impl.lucene.LuceneIndexImplementation;
 import org.neo4j.kernel.EmbeddedGraphDatabase;
 
+import org.structr.common.PermissionCache;
 import org.structr.core.Command;
 import org.structr.core.RunnableService;
 import org.structr.core.Services;
 import org.structr.core.SingletonService;
+import org.structr.core.auth.SessionRegistry;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Location;
+import org.structr.core.entity.ResourceAccess;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -261,8 +264,15 @@ public class NodeService implements SingletonService {
 
 			// Wait for all registered services to end
 			waitFor(registeredServices.isEmpty());
+			GroupCommitter.shutdown();
 			graphDb.shutdown();
 
+			// node and relationship ids are only valid for this database
+			EntityCache.clear();
+			PermissionCache.clear();
+			SessionRegistry.clear();
+			ResourceAccess.invalidateGrants();
+
 			graphDb       = null;
 			isInitialized = false;
 
@@ -38,6 +38,7 @@ import org.neo4j.graphdb.index.IndexHits;
 import static org.structr.common.RelType.SECURITY;
 import org.structr.core.Result;
 import org.structr.core.entity.SecurityRelationship;
+import org.structr.core.graph.EntityCache.CachedEntity;
 import org.structr.core.property.PropertyMap;
 
 //~--- classes ----------------------------------------------------------------
@@ -97,8 +98,30 @@ public class RelationshipFactory<T extends AbstractRelationship> extends Factory
 	public T instantiate(final Relationship relationship) throws FrameworkException {
 
 		SecurityContext securityContext = factoryProfile.getSecurityContext();
-		Class<T> relClass = null;
-		T newRel          = null;
+		CachedEntity cachedEntity       = EntityCache.getRelationship(relationship.getId());
+		Class<T> relClass               = null;
+		T newRel                        = null;
+
+		if (cachedEntity != null) {
+
+			try {
+				newRel = (T)cachedEntity.getEntityClass().newInstance();
+
+			} catch (Throwable t) {
+
+				logger.log(Level.FINE, "Could not instantiate cached relationship class", t);
+			}
+
+			if (newRel != null) {
+
+				newRel.init(securityContext, relationship);
+				newRel.onRelationshipInstantiation();
+
+				return newRel;
+			}
+		}
+
+		long stamp = EntityCache.getStamp();
 
 		try {
 
@@ -138,6 +161,9 @@ public class RelationshipFactory<T extends AbstractRelationship> extends Factory
 
 		newRel.init(securityContext, relationship);
 		newRel.onRelationshipInstantiation();
+
+		// store resolved class for subsequent instantiations
+		EntityCache.putRelationship(relationship.getId(), new CachedEntity(newRel.getClass(), relationship.getType().name()), stamp);
 			
 		return newRel;
 	}
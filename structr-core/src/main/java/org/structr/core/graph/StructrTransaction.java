@@ -23,11 +23,21 @@ import org.structr.common.error.FrameworkException;
 /**
  * Encapsulates the code that need to be wrapped into a transaction.
  * 
+ * A transaction can allow group commit (see {@link GroupCommitter}) if
+ * its execute() method is idempotent and does not depend on the thread
+ * it runs on: a group committed transaction is executed on the committer
+ * thread, where the thread-local state of the caller is not available,
+ * and it is executed a second time on the calling thread if its batch
+ * fails, so non-transactional side effects like sending mails or writing
+ * files would happen twice. All other transactions are executed on the
+ * calling thread only.
+ * 
  * @author Christian Morgner
  */
 public abstract class StructrTransaction<T> {
 	
 	protected boolean doValidation = true;
+	protected boolean groupCommit  = false;
 	
 	public StructrTransaction() {
 		this.doValidation = true;
@@ -37,5 +47,10 @@ public abstract class StructrTransaction<T> {
 		this.doValidation = doValidation;
 	}
 	
+	public StructrTransaction(boolean doValidation, boolean groupCommit) {
+		this.doValidation = doValidation;
+		this.groupCommit  = groupCommit;
+	}
+	
 	public abstract T execute() throws FrameworkException;
 }
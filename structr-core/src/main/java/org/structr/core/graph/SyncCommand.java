@@ -49,6 +49,7 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 import org.apache.commons.io.IOUtils;
@@ -58,15 +59,15 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.index.Index;
 import org.neo4j.tooling.GlobalGraphOperations;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Services;
-import org.structr.core.StaticValue;
-import org.structr.core.Value;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
+import org.structr.util.UuidMap;
 
 /**
  *
@@ -77,6 +78,11 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	private static final Logger logger                 = Logger.getLogger(SyncCommand.class.getName());
 	private static final String STRUCTR_ZIP_DB_NAME    = "db";
 	
+	public static final String FORMAT_BINARY           = "binary";
+	public static final int DEFAULT_BLOCK_SIZE         = 10000;
+	
+	private static final int DEFAULT_CHUNK_SIZE        = 1000;
+	
 	private static final Map<Class, String> typeMap    = new LinkedHashMap<Class, String>();
 	private static final Map<Class, Method> methodMap  = new LinkedHashMap<Class, Method>();
 	private static final Map<String, Class> classMap   = new LinkedHashMap<String, Class>();
@@ -116,6 +122,11 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		String mode                  = (String)attributes.get("mode");
 		String fileName              = (String)attributes.get("file");
 		String validate              = (String)attributes.get("validate");
+		long batchSize               = getLongValue(attributes, "batchSize");
+		long offset                  = getLongValue(attributes, "offset");
+		long blockSize               = getLongValue(attributes, "blockSize");
+		long threads                 = getLongValue(attributes, "threads");
+		String format                = (String)attributes.get("format");
 		boolean doValidation         = true;
 
 		// should we validate imported nodes?
@@ -138,11 +149,11 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		
 		if ("export".equals(mode)) {
 			
-			exportToFile(graphDb, fileName);
+			exportToFile(graphDb, fileName, format, (int)blockSize, (int)threads);
 			
 		} else if ("import".equals(mode)) {
 			
-			importFromFile(graphDb, securityContext, fileName, doValidation);
+			importFromFile(graphDb, securityContext, fileName, doValidation, batchSize, offset, (int)threads);
 			
 		} else {
 			
@@ -158,6 +169,21 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	 * @throws FrameworkException 
 	 */
 	public static void exportToFile(GraphDatabaseService graphDb, String fileName) throws FrameworkException {
+		exportToFile(graphDb, fileName, null, 0, 0);
+	}
+	
+	/**
+	 * Exports the whole structr database to a file with the given name,
+	 * using the given format.
+	 * 
+	 * @param graphDb
+	 * @param fileName
+	 * @param format the export format, null for the text format or "binary" for the block format
+	 * @param blockSize the number of objects per block of the binary format, or 0 for the default
+	 * @param threads the number of worker threads of the binary format, or 0 for the number of processors
+	 * @throws FrameworkException 
+	 */
+	public static void exportToFile(GraphDatabaseService graphDb, String fileName, String format, int blockSize, int threads) throws FrameworkException {
 		
 		try {
 			
@@ -165,7 +191,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 			Iterable<Relationship> rels = ggop.getAllRelationships();
 			Iterable<Node> nodes        = ggop.getAllNodes();
 			
-			exportToStream(new FileOutputStream(fileName), nodes, rels, null);
+			exportToStream(new FileOutputStream(fileName), nodes, rels, null, format, blockSize, threads);
 
 		} catch (Throwable t) {
 			
@@ -205,6 +231,23 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	 * @throws FrameworkException 
 	 */
 	public static void exportToStream(OutputStream outputStream, Iterable<Node> nodes, Iterable<Relationship> relationships, Iterable<String> filePaths) throws FrameworkException {
+		exportToStream(outputStream, nodes, relationships, filePaths, null, 0, 0);
+	}
+	
+	/**
+	 * Exports the given part of the structr database to the given output
+	 * stream, using the given format.
+	 * 
+	 * @param outputStream
+	 * @param nodes
+	 * @param relationships
+	 * @param filePaths
+	 * @param format the export format, null for the text format or "binary" for the block format
+	 * @param blockSize the number of objects per block of the binary format, or 0 for the default
+	 * @param threads the number of worker threads of the binary format, or 0 for the number of processors
+	 * @throws FrameworkException 
+	 */
+	public static void exportToStream(OutputStream outputStream, Iterable<Node> nodes, Iterable<Relationship> relationships, Iterable<String> filePaths, String format, int blockSize, int threads) throws FrameworkException {
 	
 		try {
 			
@@ -228,7 +271,14 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 			exportDirectory(zos, new File("files"), "", filesToInclude.isEmpty() ? null : filesToInclude);
 
 			// export database
-			exportDatabase(zos, writer, nodes, relationships);
+			if (FORMAT_BINARY.equals(format)) {
+				
+				BinarySyncFormat.exportDatabase(zos, nodes, relationships, blockSize > 0 ? blockSize : DEFAULT_BLOCK_SIZE, getThreadCount(threads));
+				
+			} else {
+				
+				exportDatabase(zos, writer, nodes, relationships);
+			}
 			
 			// finish ZIP file
 			zos.finish();
@@ -245,9 +295,61 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	}
 	
 	public static void importFromFile(final GraphDatabaseService graphDb, final SecurityContext securityContext, final String fileName, boolean doValidation) throws FrameworkException {
+		importFromFile(graphDb, securityContext, fileName, doValidation, 0, 0);
+	}
+	
+	/**
+	 * Imports the database and the files from the file with the given name.
+	 * 
+	 * @param graphDb
+	 * @param securityContext
+	 * @param fileName
+	 * @param doValidation
+	 * @param batchSize the number of objects to commit in a single transaction, or 0 to import everything in one transaction
+	 * @param offset the number of objects to skip, e.g. the number of objects committed in a previous, failed import
+	 * @throws FrameworkException 
+	 */
+	public static void importFromFile(final GraphDatabaseService graphDb, final SecurityContext securityContext, final String fileName, boolean doValidation, long batchSize, long offset) throws FrameworkException {
+		importFromFile(graphDb, securityContext, fileName, doValidation, batchSize, offset, 0);
+	}
+	
+	/**
+	 * Imports the database and the files from the file with the given name.
+	 * Files in the binary format are detected automatically and imported
+	 * in parallel, batch size and offset apply to the text format only.
+	 * 
+	 * @param graphDb
+	 * @param securityContext
+	 * @param fileName
+	 * @param doValidation
+	 * @param batchSize the number of objects to commit in a single transaction, or 0 to import everything in one transaction
+	 * @param offset the number of objects to skip, e.g. the number of objects committed in a previous, failed import
+	 * @param threads the number of worker threads for the binary format, or 0 for the number of processors
+	 * @throws FrameworkException 
+	 */
+	public static void importFromFile(final GraphDatabaseService graphDb, final SecurityContext securityContext, final String fileName, boolean doValidation, long batchSize, long offset, int threads) throws FrameworkException {
 		
 		try {
-			importFromStream(graphDb, securityContext, new FileInputStream(fileName), doValidation);
+			// import files and text database
+			importFromStream(graphDb, securityContext, new FileInputStream(fileName), doValidation, batchSize, offset);
+			
+			ZipFile zipFile = new ZipFile(fileName);
+			
+			try {
+				
+				if (zipFile.getEntry(BinarySyncFormat.MANIFEST_NAME) != null) {
+					
+					BinarySyncFormat.importDatabase(graphDb, securityContext, zipFile, doValidation, getThreadCount(threads));
+				}
+				
+			} finally {
+				
+				zipFile.close();
+			}
+			
+		} catch (FrameworkException fex) {
+			
+			throw fex;
 			
 		} catch (Throwable t) {
 			
@@ -256,6 +358,10 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	}
 	
 	public static void importFromStream(final GraphDatabaseService graphDb, final SecurityContext securityContext, final InputStream inputStream, boolean doValidation) throws FrameworkException {
+		importFromStream(graphDb, securityContext, inputStream, doValidation, 0, 0);
+	}
+	
+	public static void importFromStream(final GraphDatabaseService graphDb, final SecurityContext securityContext, final InputStream inputStream, boolean doValidation, long batchSize, long offset) throws FrameworkException {
 
 		try {
 			ZipInputStream zis = new ZipInputStream(inputStream);
@@ -265,8 +371,16 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 				if (STRUCTR_ZIP_DB_NAME.equals(entry.getName())) {
 
-					importDatabase(graphDb, securityContext, zis, doValidation);
+					importDatabase(graphDb, securityContext, zis, doValidation, batchSize, offset);
 
+				} else if (entry.getName().startsWith(BinarySyncFormat.BLOCK_PREFIX)) {
+					
+					// blocks of the binary format need random access, see importFromFile
+					if (BinarySyncFormat.MANIFEST_NAME.equals(entry.getName())) {
+						
+						logger.log(Level.INFO, "Skipping database in binary format, only supported when importing from a file.");
+					}
+					
 				} else {
 					
 					// store other files in "files" dir..
@@ -593,149 +707,368 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		}
 	}
 	
-	private static void importDatabase(final GraphDatabaseService graphDb, final SecurityContext securityContext, final ZipInputStream zis, boolean doValidation) throws FrameworkException {
+	/**
+	 * Imports the database entry of an export file. The objects are read
+	 * in chunks of the given size, and every chunk is created, indexed and
+	 * committed in its own transaction, so the memory needed for the import
+	 * does not depend on the size of the export. Without a batch size, the
+	 * objects are read in chunks of {@value #DEFAULT_CHUNK_SIZE} and all
+	 * chunks are imported in a single transaction. The node ids are stored
+	 * in a compact map in order to create the relationships, nodes that
+	 * were imported in a previous run are resolved using the uuid index.
+	 * 
+	 * If the import fails, the number of committed objects is logged and
+	 * can be passed as the offset to resume the import.
+	 */
+	private static void importDatabase(final GraphDatabaseService graphDb, final SecurityContext securityContext, final ZipInputStream zis, boolean doValidation, final long batchSize, final long offset) throws FrameworkException {
 	
-		final Value<Long> nodeCountValue = new StaticValue<Long>(0L);
-		final Value<Long> relCountValue  = new StaticValue<Long>(0L);
-		double t0                        = System.nanoTime();
-		
-		Services.command(securityContext, TransactionCommand.class).execute(new StructrTransaction(doValidation) {
-
-			@Override
-			public Object execute() throws FrameworkException {
-
-				Map<String, Node> uuidMap       = new LinkedHashMap<String, Node>();
-				List<Relationship> rels         = new LinkedList<Relationship>();
-				List<Node> nodes                = new LinkedList<Node>();
-				PropertyContainer currentObject = null;
-				BufferedReader reader           = null;
-				String currentKey               = null;
-				boolean finished                = false;
-				long nodeCount                  = 0;
-				long relCount                   = 0;
-					
+		final TransactionCommand transactionCommand = Services.command(securityContext, TransactionCommand.class);
+		final BufferedReader reader                 = new BufferedReader(new InputStreamReader(zis));
+		final UuidMap uuidMap                       = new UuidMap();
+		final long chunkSize                        = batchSize > 0 ? batchSize : DEFAULT_CHUNK_SIZE;
+		DecimalFormat decimalFormat                 = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+		long objectCount                            = 0;
+		long nodeCount                              = 0;
+		long relCount                               = 0;
+		double t0                                   = System.nanoTime();
+		
+		try {
+			
+			// skip objects that were committed in a previous run
+			while (objectCount < offset && readRecord(reader) != null) {
+				objectCount++;
+			}
+			
+			if (offset > 0) {
+				logger.log(Level.INFO, "Skipped {0} objects", objectCount);
+			}
+			
+			List<ImportRecord> chunk = readChunk(reader, chunkSize);
+			
+			while (!chunk.isEmpty()) {
+				
+				final List<ImportRecord> firstChunk = chunk;
+				
+				// nodes and rels created in the current transaction
+				final long[] created                = new long[2];
+
 				try {
-					reader = new BufferedReader(new InputStreamReader(zis));
 
-					do {
+					transactionCommand.execute(new StructrTransaction(doValidation) {
 
-						try {
+						@Override
+						public Object execute() throws FrameworkException {
 
-							// store current position
-							reader.mark(4);
+							List<ImportRecord> records = firstChunk;
+							
+							while (!records.isEmpty()) {
+								
+								importChunk(graphDb, securityContext, records, uuidMap);
+								
+								for (ImportRecord record : records) {
+									created[record.isNode() ? 0 : 1]++;
+								}
+								
+								// without a batch size, the remaining chunks are
+								// imported in the same transaction
+								if (batchSize > 0) {
+									break;
+								}
+								
+								try {
+									records = readChunk(reader, chunkSize);
+									
+								} catch (IOException ioex) {
+									
+									throw new FrameworkException(500, "Unable to read import file: " + ioex.getMessage());
+								}
+							}
 
-							// read one byte
-							String objectType = read(reader, 1);
+							return null;
+						}
+					});
+					
+				} catch (FrameworkException fex) {
+					
+					logger.log(Level.SEVERE, "Import failed after {0} committed objects, use offset {0} to resume", objectCount);
+					
+					throw fex;
+				}
+				
+				nodeCount   += created[0];
+				relCount    += created[1];
+				objectCount += created[0] + created[1];
+				
+				logger.log(Level.INFO, "Imported {0} nodes and {1} rels, {2} objects committed in {3} s", new Object[] {
+					nodeCount, relCount, objectCount, decimalFormat.format((System.nanoTime() - t0) / 1000000000.0)
+				} );
+				
+				chunk = readChunk(reader, chunkSize);
+			}
+			
+		} catch (IOException ioex) {
+			
+			logger.log(Level.WARNING, "Unable to read import file after {0} committed objects: {1}", new Object[] { objectCount, ioex.getMessage() });
+		}
 
-							// skip newlines
-							if ("\n".equals(objectType)) {
-								continue;
-							}
+		double t1   = System.nanoTime();
+		double time = ((t1 - t0) / 1000000000.0);
 
-							if ("N".equals(objectType)) {
+		logger.log(Level.INFO, "Import done in {0} s", decimalFormat.format(time));
+	}
+	
+	static void importChunk(final GraphDatabaseService graphDb, final SecurityContext securityContext, final List<ImportRecord> records, final UuidMap uuidMap) throws FrameworkException {
+		
+		List<Relationship> rels = new LinkedList<Relationship>();
+		List<Node> nodes        = new LinkedList<Node>();
+		
+		for (ImportRecord record : records) {
+			
+			PropertyContainer currentObject = null;
+			
+			if (record.isNode()) {
+				
+				Node node = graphDb.createNode();
+				
+				String uuid = (String)record.getProperties().get("uuid");
+				if (uuid != null) {
+					
+					// blocks of the binary format are imported concurrently
+					synchronized (uuidMap) {
+						uuidMap.put(uuid, node.getId());
+					}
+				}
+				
+				nodes.add(node);
+				currentObject = node;
+				
+			} else {
+				
+				Node startNode = resolveNode(graphDb, uuidMap, record.getStartId());
+				Node endNode   = resolveNode(graphDb, uuidMap, record.getEndId());
+				
+				if (startNode != null && endNode != null) {
 
-								currentObject = graphDb.createNode();
-								nodeCount++;
+					RelationshipType relType = DynamicRelationshipType.withName(record.getRelType());
+					Relationship rel         = startNode.createRelationshipTo(endNode, relType);
+					
+					rels.add(rel);
+					currentObject = rel;
+				}
+			}
+			
+			if (currentObject != null) {
+				
+				for (Entry<String, Object> property : record.getProperties().entrySet()) {
 
-								// store for later use
-								nodes.add((Node)currentObject);
+					currentObject.setProperty(property.getKey(), property.getValue());
+				}
+			}
+		}
 
-							} else if ("R".equals(objectType)) {
+		// make nodes visible in transaction context
+		RelationshipFactory relFactory     = new RelationshipFactory(securityContext);
+		NodeFactory nodeFactory            = new NodeFactory(securityContext);
 
-								String startId     = (String)deserialize(reader);
-								String endId       = (String)deserialize(reader);
-								String relTypeName = (String)deserialize(reader);
+		for (Node node : nodes) {
 
-								Node endNode   = uuidMap.get(endId);
-								Node startNode = uuidMap.get(startId);
+			AbstractNode entity = nodeFactory.instantiate(node);
+			TransactionCommand.nodeCreated(entity);
+			entity.addToIndex();
 
-								if (startNode != null && endNode != null) {
+		}
 
-									RelationshipType relType = DynamicRelationshipType.withName(relTypeName);
-									currentObject = startNode.createRelationshipTo(endNode, relType);
+		for (Relationship rel : rels) {
 
-									// store for later use
-									rels.add((Relationship)currentObject);
-								}
+			AbstractRelationship entity = relFactory.instantiate(rel);
+			TransactionCommand.relationshipCreated(entity);
+			entity.addToIndex();
+		}
+	}
+	
+	private static Node resolveNode(final GraphDatabaseService graphDb, final UuidMap uuidMap, final String uuid) {
+		
+		long id = uuidMap.get(uuid);
+		if (id >= 0) {
+			
+			return graphDb.getNodeById(id);
+		}
+		
+		// node might have been imported in a previous run
+		if (uuid != null) {
+			
+			Index<Node> uuidIndex = Services.getService(NodeService.class).getNodeIndex(NodeService.NodeIndex.uuid);
+			return uuidIndex.get(GraphObject.uuid.dbName(), uuid).getSingle();
+		}
+		
+		return null;
+	}
+	
+	private static List<ImportRecord> readChunk(final BufferedReader reader, final long chunkSize) throws IOException {
+		
+		List<ImportRecord> chunk = new LinkedList<ImportRecord>();
+		ImportRecord record      = null;
+		
+		while (chunk.size() < chunkSize && (record = readRecord(reader)) != null) {
+			chunk.add(record);
+		}
+		
+		return chunk;
+	}
+	
+	/**
+	 * Reads the next node or relationship from the given reader.
+	 * 
+	 * @param reader
+	 * @return the next record, or null at the end of the stream
+	 * @throws IOException 
+	 */
+	private static ImportRecord readRecord(final BufferedReader reader) throws IOException {
+		
+		ImportRecord record = null;
+		String currentKey   = null;
+		
+		try {
+			
+			while (true) {
 
-								relCount++;
+				// store current position
+				reader.mark(4);
 
-							} else {
+				// read one byte
+				String objectType = read(reader, 1);
 
-								// reset if not at the beginning of a line
-								reader.reset();
+				if ("\n".equals(objectType)) {
 
-								if (currentKey == null) {
+					// a newline terminates the current record
+					if (record != null) {
+						return record;
+					}
 
-									currentKey = (String)deserialize(reader);
+				} else if ("N".equals(objectType) || "R".equals(objectType)) {
 
-								} else {
+					if (record != null) {
 
-									if (currentObject != null) {
+						reader.reset();
+						return record;
+					}
 
-										Object obj = deserialize(reader);
+					record = new ImportRecord("N".equals(objectType));
 
-										if ("uuid".equals(currentKey) && currentObject instanceof Node) {
+					if (!record.isNode()) {
 
-											String uuid = (String)obj;
-											uuidMap.put(uuid, (Node)currentObject);
-										}
+						record.setStartId((String)deserialize(reader));
+						record.setEndId((String)deserialize(reader));
+						record.setRelType((String)deserialize(reader));
+					}
 
-										// store object in DB
-										currentObject.setProperty(currentKey, obj);
+				} else {
 
-										currentKey = null;
+					// reset if not at the beginning of a line
+					reader.reset();
 
-									} else {
+					if (currentKey == null) {
 
-										logger.log(Level.WARNING, "No current object to store property in.");
-									}
-								}
-							}
+						currentKey = (String)deserialize(reader);
 
-						} catch (EOFException eofex) {
+					} else {
 
-							finished = true;
-						}
+						Object obj = deserialize(reader);
 
-					} while (!finished);
-					
-				} catch (IOException ioex) {
-				}
-				
-				logger.log(Level.INFO, "Imported {0} nodes and {1} rels, committing transaction..", new Object[] { nodeCount, relCount } );
-				
-				nodeCountValue.set(securityContext, nodeCount);
-				relCountValue.set(securityContext, relCount);
+						if (record != null) {
 
-				// make nodes visible in transaction context
-				RelationshipFactory relFactory     = new RelationshipFactory(securityContext);
-				NodeFactory nodeFactory            = new NodeFactory(securityContext);
-				
-				for (Node node : nodes) {
-					
-					AbstractNode entity = nodeFactory.instantiate(node);
-					TransactionCommand.nodeCreated(entity);
-					entity.addToIndex();
-					
+							record.getProperties().put(currentKey, obj);
+
+						} else {
+
+							logger.log(Level.WARNING, "No current object to store property in.");
+						}
+
+						currentKey = null;
+					}
 				}
+			}
+			
+		} catch (EOFException eofex) {
+			
+			// end of stream
+		}
+		
+		return record;
+	}
+	
+	private static int getThreadCount(final int threads) {
+		
+		if (threads > 0) {
+			return threads;
+		}
+		
+		return Runtime.getRuntime().availableProcessors();
+	}
+	
+	private static long getLongValue(final Map<String, Object> attributes, final String key) {
+		
+		Object value = attributes.get(key);
+		if (value != null) {
+			
+			try {
+				return Long.parseLong(value.toString());
 				
-				for (Relationship rel : rels) {
-					
-					AbstractRelationship entity = relFactory.instantiate(rel);
-					TransactionCommand.relationshipCreated(entity);
-					entity.addToIndex();
-				}
+			} catch (NumberFormatException nfex) {
 				
-				return null;
+				logger.log(Level.WARNING, "Unable to parse value for {0}: {1}", new Object[] { key, value });
 			}
+		}
+		
+		return 0;
+	}
+	
+	// ----- nested classes -----
+	/**
+	 * A single node or relationship read from an export file.
+	 */
+	static class ImportRecord {
+		
+		private Map<String, Object> properties = new LinkedHashMap<String, Object>();
+		private boolean node                   = false;
+		private String startId                 = null;
+		private String endId                   = null;
+		private String relType                 = null;
+		
+		public ImportRecord(final boolean node) {
+			this.node = node;
+		}
+		
+		public boolean isNode() {
+			return node;
+		}
+		
+		public Map<String, Object> getProperties() {
+			return properties;
+		}
 
-		});
+		public String getStartId() {
+			return startId;
+		}
 
-		double t1   = System.nanoTime();
-		double time = ((t1 - t0) / 1000000000.0);
+		public void setStartId(String startId) {
+			this.startId = startId;
+		}
 
-		DecimalFormat decimalFormat  = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
-		logger.log(Level.INFO, "Import done in {0} s", decimalFormat.format(time));
+		public String getEndId() {
+			return endId;
+		}
+
+		public void setEndId(String endId) {
+			this.endId = endId;
+		}
+
+		public String getRelType() {
+			return relType;
+		}
+
+		public void setRelType(String relType) {
+			this.relType = relType;
+		}
 	}
 }
@@ -21,10 +21,14 @@
 package org.structr.core.graph;
 
 
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -63,6 +67,7 @@ public class TransactionCommand extends NodeServiceCommand {
 	private static final MultiSemaphore                  semaphore      = new MultiSemaphore();
 	
 	private ModificationQueue modificationQueue = null;
+	private IndexUpdateQueue indexUpdateQueue   = null;
 	private ErrorBuffer errorBuffer             = null;
 	
 	public <T> T execute(StructrTransaction<T> transaction) throws FrameworkException {
@@ -75,6 +80,22 @@ public class TransactionCommand extends NodeServiceCommand {
 			
 			T result = null;
 			
+			// try to share the commit with concurrent transactions, only
+			// transactions that allow it may be executed on another thread
+			if (transaction.groupCommit && GroupCommitter.isEnabled()) {
+				
+				GroupCommitter.Entry entry = GroupCommitter.getInstance().submit(this, transaction);
+				if (entry.isCommitted()) {
+					
+					modificationQueue.doOuterCallbacks(securityContext);
+					modificationQueue.clear();
+					
+					return (T)entry.getResult();
+				}
+				
+				// batch failed, execute transaction on its own
+			}
+			
 			while (retry && retryCount++ < 100) {
 
 				// assume success
@@ -114,6 +135,7 @@ public class TransactionCommand extends NodeServiceCommand {
 		
 			// start new transaction
 			this.modificationQueue = new ModificationQueue();
+			this.indexUpdateQueue  = new IndexUpdateQueue();
 			this.errorBuffer       = new ErrorBuffer();
 			tx                     = graphDb.beginTx();
 			
@@ -151,6 +173,9 @@ public class TransactionCommand extends NodeServiceCommand {
 					// create error
 					throw new FrameworkException(422, errorBuffer);
 				}
+
+				// 4. write collected index updates
+				indexUpdateQueue.flush();
 			}
 			
 		} catch (DeadlockDetectedException ddex) {
@@ -204,7 +229,16 @@ public class TransactionCommand extends NodeServiceCommand {
 					// release semaphores as the transaction is now finished
 					semaphore.release(synchronizationKeys);	// careful: this can be null
 
+					// remove modified entities from the global cache, even
+					// if the transaction failed, as the cache might contain
+					// state that was rolled back
+					modificationQueue.invalidateEntityCache();
+					modificationQueue.invalidatePermissionCache();
+					modificationQueue.invalidateSessionRegistry();
+					modificationQueue.invalidateGrants();
+
 					// cleanup
+					indexUpdateQueue.clear();
 					currentCommand.remove();
 					transactions.remove();
 				}
@@ -229,6 +263,129 @@ public class TransactionCommand extends NodeServiceCommand {
 		return result;
 	}
 	
+	/**
+	 * Executes the transactions of the given batch in a single database
+	 * transaction on the current thread. The inner callbacks and the
+	 * validation are done separately for every transaction, with its own
+	 * modification queue and security context. The outer callbacks are
+	 * left to the calling threads.
+	 * 
+	 * @param batch
+	 * @return true if all transactions were committed, false if the batch was rolled back
+	 */
+	static boolean executeGroup(List<GroupCommitter.Entry> batch) {
+		
+		GraphDatabaseService graphDb    = (GraphDatabaseService) batch.get(0).getCommand().arguments.get("graphDb");
+		Set<String> synchronizationKeys = new LinkedHashSet<String>();
+		Transaction tx                  = graphDb.beginTx();
+		boolean acquired                = false;
+		boolean error                   = false;
+		
+		transactions.set(tx);
+		
+		try {
+			
+			// 1. execute transactions and inner callbacks
+			for (GroupCommitter.Entry entry : batch) {
+				
+				TransactionCommand command     = entry.getCommand();
+				StructrTransaction transaction = entry.getTransaction();
+				
+				command.modificationQueue = new ModificationQueue();
+				command.indexUpdateQueue  = new IndexUpdateQueue();
+				command.errorBuffer       = new ErrorBuffer();
+				
+				currentCommand.set(command);
+				
+				entry.setResult(transaction.execute());
+				
+				if (!command.modificationQueue.doInnerCallbacks(command.securityContext, command.errorBuffer) && transaction.doValidation) {
+					
+					error = true;
+					break;
+				}
+				
+				Set<String> keys = command.modificationQueue.getSynchronizationKeys();
+				if (keys != null) {
+					
+					synchronizationKeys.addAll(keys);
+				}
+			}
+			
+			if (!error) {
+				
+				// 2. acquire semaphores for all modified types at once,
+				// acquiring them per transaction could block on our own permits
+				semaphore.acquire(synchronizationKeys);
+				acquired = true;
+				
+				// 3. validate and write index updates
+				for (GroupCommitter.Entry entry : batch) {
+					
+					TransactionCommand command = entry.getCommand();
+					
+					currentCommand.set(command);
+					
+					if (!command.modificationQueue.doValidation(command.securityContext, command.errorBuffer, entry.getTransaction().doValidation)) {
+						
+						error = true;
+						break;
+					}
+					
+					command.indexUpdateQueue.flush();
+				}
+			}
+			
+		} catch (Throwable t) {
+			
+			// the transaction will be executed again on its own, which reports the actual error
+			logger.log(Level.FINE, "Transaction in group commit failed", t);
+			
+			error = true;
+			
+		} finally {
+			
+			if (error) {
+				tx.failure();
+			}
+			
+			try {
+				tx.success();
+				tx.finish();
+				
+			} catch (Throwable t) {
+				
+				logger.log(Level.FINE, "Unable to commit group transaction", t);
+				
+				error = true;
+				
+			} finally {
+				
+				if (acquired) {
+					semaphore.release(synchronizationKeys);
+				}
+				
+				for (GroupCommitter.Entry entry : batch) {
+					
+					TransactionCommand command = entry.getCommand();
+					if (command.modificationQueue != null) {
+						
+						command.modificationQueue.invalidateEntityCache();
+						command.modificationQueue.invalidatePermissionCache();
+						command.modificationQueue.invalidateSessionRegistry();
+						command.modificationQueue.invalidateGrants();
+						command.indexUpdateQueue.clear();
+					}
+				}
+				
+				currentCommand.remove();
+				transactions.remove();
+			}
+		}
+		
+		return !error;
+	}
+	
 	public static void nodeCreated(AbstractNode node) {
 		
 		TransactionCommand command = currentCommand.get();
@@ -355,6 +512,73 @@ public class TransactionCommand extends NodeServiceCommand {
 		}
 	}
 	
+	/**
+	 * Replaces the value of the given key for the given entity in the
+	 * given index. Inside a transaction, the update is collected and
+	 * written to the index when the transaction is committed.
+	 * 
+	 * @param index
+	 * @param entity
+	 * @param key
+	 * @param value the new value, or null to remove the key
+	 */
+	public static void updateIndex(Index index, PropertyContainer entity, String key, Object value) {
+		
+		IndexUpdateQueue indexUpdateQueue = getIndexUpdateQueue();
+		if (indexUpdateQueue != null) {
+			
+			indexUpdateQueue.update(index, entity, key, value);
+			
+		} else {
+			
+			index.remove(entity, key);
+			
+			if (value != null) {
+				index.add(entity, key, value);
+			}
+		}
+	}
+	
+	public static void removeFromIndex(Index index, PropertyContainer entity, String key) {
+		
+		IndexUpdateQueue indexUpdateQueue = getIndexUpdateQueue();
+		if (indexUpdateQueue != null) {
+			
+			indexUpdateQueue.remove(index, entity, key);
+			
+		} else {
+			
+			index.remove(entity, key);
+		}
+	}
+	
+	public static void removeFromIndex(Index index, PropertyContainer entity) {
+		
+		IndexUpdateQueue indexUpdateQueue = getIndexUpdateQueue();
+		if (indexUpdateQueue != null) {
+			
+			indexUpdateQueue.remove(index, entity);
+			
+		} else {
+			
+			index.remove(entity);
+		}
+	}
+	
+	/**
+	 * Writes the index updates collected in the current transaction, so
+	 * that a subsequent index query sees them. Must be called before an
+	 * index is queried, does nothing outside of a transaction.
+	 */
+	public static void flushIndexUpdates() {
+		
+		IndexUpdateQueue indexUpdateQueue = getIndexUpdateQueue();
+		if (indexUpdateQueue != null) {
+			
+			indexUpdateQueue.flush();
+		}
+	}
+	
 	public static boolean inTransaction() {
 		return currentCommand.get() != null;
 	}
@@ -362,4 +586,15 @@ public class TransactionCommand extends NodeServiceCommand {
 	private ModificationQueue getModificationQueue() {
 		return modificationQueue;
 	}
+	
+	private static IndexUpdateQueue getIndexUpdateQueue() {
+		
+		TransactionCommand command = currentCommand.get();
+		if (command != null) {
+			
+			return command.indexUpdateQueue;
+		}
+		
+		return null;
+	}
 }
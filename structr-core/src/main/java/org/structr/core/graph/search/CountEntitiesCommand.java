@@ -32,6 +32,7 @@ import org.neo4j.graphdb.index.IndexHits;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.graph.NodeService;
 import org.structr.core.graph.NodeServiceCommand;
+import org.structr.core.graph.TransactionCommand;
 
 /**
  * A special command that uses a Lucene index lookup to count the number of
@@ -56,6 +57,9 @@ public class CountEntitiesCommand extends NodeServiceCommand {
 
 		if(type != null) {
 
+			// make index updates of the current transaction visible
+			TransactionCommand.flushIndexUpdates();
+
 			// create type query first
 			Query typeQuery = new TermQuery(new Term("type", type));
 			Query actualQuery = null;
@@ -0,0 +1,443 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph.search;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang.StringUtils;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermRangeQuery;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.Result;
+import org.structr.core.property.PropertyKey;
+
+/**
+ * Search attribute for keyset pagination. The cursor encodes the sort key
+ * value and the id of the last object of the previous page, and is turned
+ * into a range query that starts right after this object, so the cost of
+ * a page does not depend on its position in the result set.
+ *
+ * The results are sorted by the sort key and the node id, and objects
+ * without a value for the sort key are not contained in the result. An
+ * empty cursor returns the first page.
+ *
+ * The result count of a cursor page is the number of results after the
+ * cursor, not the total number of results, so it is always flagged as
+ * approximate (result_count_approximate in the JSON response).
+ *
+ * @author Christian Morgner
+ */
+public class PageCursorSearchAttribute extends SearchAttribute {
+
+	// the field in which neo4j stores the id of an indexed entity
+	private static final String ID_FIELD = "_id_";
+	private static final String VERSION  = "1";
+	private static final Charset UTF8    = Charset.forName("UTF-8");
+
+	private String value                 = null;
+	private String id                    = null;
+
+	/**
+	 * Creates a new search attribute from the given cursor, which is
+	 * either empty or was created by {@link #getNextCursor}.
+	 *
+	 * @param cursor
+	 * @throws FrameworkException if the cursor is invalid
+	 */
+	public PageCursorSearchAttribute(final String cursor) throws FrameworkException {
+
+		super(Occur.MUST);
+
+		if (StringUtils.isNotBlank(cursor)) {
+
+			String[] parts = new String(Base64.decodeBase64(cursor), UTF8).split(":", 3);
+
+			if (parts.length != 3 || !VERSION.equals(parts[0]) || parts[1].isEmpty() || !StringUtils.isNumeric(parts[1])) {
+
+				throw new FrameworkException(400, "Invalid page cursor " + cursor);
+			}
+
+			this.id    = parts[1];
+			this.value = parts[2].isEmpty() ? null : parts[2];
+		}
+	}
+
+	/**
+	 * Returns the cursor of the page that follows the given page, or null
+	 * if the given page is the last page.
+	 *
+	 * @param page
+	 * @param sortKey
+	 * @param pageSize
+	 * @return the cursor
+	 */
+	public static String getNextCursor(final List<? extends GraphObject> page, final PropertyKey sortKey, final int pageSize) {
+
+		if (page == null || page.isEmpty() || page.size() < pageSize) {
+			return null;
+		}
+
+		GraphObject last = page.get(page.size() - 1);
+		Object keyValue  = sortKey != null ? getKeyValue(last, sortKey) : null;
+		String cursor    = VERSION + ":" + last.getId() + ":" + (keyValue != null ? keyValue.toString() : "");
+
+		return Base64.encodeBase64URLSafeString(cursor.getBytes(UTF8));
+	}
+
+	/**
+	 * Indicates whether the given sort key can be used for keyset
+	 * pagination with a Lucene query. The sort key must be indexed and
+	 * either be a string or have a numeric sort type.
+	 *
+	 * @param sortKey
+	 * @return whether a range query can be used
+	 */
+	public static boolean isSupported(final PropertyKey sortKey) {
+
+		if (sortKey == null) {
+			return true;
+		}
+
+		if (!sortKey.isIndexed() && !sortKey.isPassivelyIndexed()) {
+			return false;
+		}
+
+		Integer sortType = sortKey.getSortType();
+		if (sortType == null) {
+			return true;
+		}
+
+		switch (sortType) {
+
+			case SortField.LONG:
+			case SortField.INT:
+			case SortField.DOUBLE:
+			case SortField.FLOAT:
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the query for the objects after the cursor.
+	 *
+	 * @param sortKey
+	 * @param sortDescending
+	 * @return the query
+	 * @throws FrameworkException if the cursor does not match the sort key
+	 */
+	public Query getQuery(final PropertyKey sortKey, final boolean sortDescending) throws FrameworkException {
+
+		BooleanQuery query = new BooleanQuery();
+
+		if (sortKey == null) {
+
+			if (id != null) {
+				query.add(getIdQuery(sortDescending), Occur.MUST);
+			}
+
+		} else if (value == null) {
+
+			// all objects with a value for the sort key
+			query.add(getRangeQuery(sortKey, null, null, false, false), Occur.MUST);
+
+		} else {
+
+			Comparable keyValue     = parse(sortKey, value);
+			BooleanQuery sameValue  = new BooleanQuery();
+			BooleanQuery afterValue = new BooleanQuery();
+
+			sameValue.add(getRangeQuery(sortKey, keyValue, keyValue, true, true), Occur.MUST);
+			sameValue.add(getIdQuery(sortDescending), Occur.MUST);
+
+			if (sortDescending) {
+
+				afterValue.add(getRangeQuery(sortKey, null, keyValue, false, false), Occur.SHOULD);
+
+			} else {
+
+				afterValue.add(getRangeQuery(sortKey, keyValue, null, false, false), Occur.SHOULD);
+			}
+
+			afterValue.add(sameValue, Occur.SHOULD);
+			query.add(afterValue, Occur.MUST);
+		}
+
+		return query;
+	}
+
+	/**
+	 * Returns the sort order of the pages, which uses the id of the
+	 * objects to order objects with equal values.
+	 *
+	 * @param sortKey
+	 * @param sortDescending
+	 * @return the sort order
+	 */
+	public Sort getSort(final PropertyKey sortKey, final boolean sortDescending) {
+
+		SortField idField = new SortField(ID_FIELD, SortField.STRING, sortDescending);
+
+		if (sortKey != null) {
+
+			Integer sortType = sortKey.getSortType();
+
+			return new Sort(new SortField(sortKey.dbName(), sortType != null ? sortType : SortField.STRING, sortDescending), idField);
+		}
+
+		return new Sort(idField);
+	}
+
+	/**
+	 * Returns the page after the cursor from the given unsorted list of
+	 * objects. This is used for queries which can not be paged by the
+	 * index.
+	 *
+	 * @param list
+	 * @param sortKey
+	 * @param sortDescending
+	 * @param pageSize
+	 * @return the page
+	 * @throws FrameworkException if the cursor does not match the sort key
+	 */
+	public Result getPage(final List<GraphObject> list, final PropertyKey sortKey, final boolean sortDescending, final int pageSize) throws FrameworkException {
+
+		KeysetComparator comparator  = new KeysetComparator(sortKey, sortDescending);
+		List<GraphObject> candidates = new ArrayList<GraphObject>();
+		Comparable keyValue          = sortKey != null && value != null ? parse(sortKey, value) : null;
+
+		for (GraphObject obj : list) {
+
+			if (sortKey != null && getKeyValue(obj, sortKey) == null) {
+				continue;
+			}
+
+			if (id != null && comparator.compare(obj, keyValue, id) <= 0) {
+				continue;
+			}
+
+			candidates.add(obj);
+		}
+
+		Collections.sort(candidates, comparator);
+
+		List<GraphObject> page = candidates.size() > pageSize ? candidates.subList(0, pageSize) : candidates;
+		Result result          = new Result(new ArrayList<GraphObject>(page), candidates.size(), true, false, false);
+
+		result.setNextPageCursor(getNextCursor(page, sortKey, pageSize));
+
+		return result;
+	}
+
+	@Override
+	public Query getQuery() {
+
+		// the query depends on the sort key, see getQuery(PropertyKey, boolean)
+		return null;
+	}
+
+	@Override
+	public boolean isExactMatch() {
+		return true;
+	}
+
+	@Override
+	public boolean includeInResult(GraphObject entity) {
+		return true;
+	}
+
+	@Override
+	public String getStringValue() {
+		return null;
+	}
+
+	@Override
+	public String getInexactValue() {
+		return null;
+	}
+
+	// ----- private methods -----
+	private Query getIdQuery(final boolean sortDescending) {
+
+		if (sortDescending) {
+
+			return new TermRangeQuery(ID_FIELD, null, id, true, false);
+		}
+
+		return new TermRangeQuery(ID_FIELD, id, null, false, true);
+	}
+
+	private static Query getRangeQuery(final PropertyKey sortKey, final Comparable from, final Comparable to, final boolean includeFrom, final boolean includeTo) {
+
+		String dbName    = sortKey.dbName();
+		Integer sortType = sortKey.getSortType();
+
+		if (sortType == null) {
+
+			// empty fields are indexed with a value that is lower than all other strings
+			return new TermRangeQuery(dbName, from != null ? (String)from : SearchCommand.EMPTY_FIELD_VALUE, (String)to, from != null ? includeFrom : false, to != null ? includeTo : true);
+		}
+
+		switch (sortType) {
+
+			case SortField.INT:
+				return NumericRangeQuery.newIntRange(dbName, (Integer)from, (Integer)to, includeFrom, includeTo);
+
+			case SortField.DOUBLE:
+				return NumericRangeQuery.newDoubleRange(dbName, (Double)from, (Double)to, includeFrom, includeTo);
+
+			case SortField.FLOAT:
+				return NumericRangeQuery.newFloatRange(dbName, (Float)from, (Float)to, includeFrom, includeTo);
+
+			default:
+				return NumericRangeQuery.newLongRange(dbName, (Long)from, (Long)to, includeFrom, includeTo);
+		}
+	}
+
+	/**
+	 * Returns the value of the sort key as it is stored in the index, or
+	 * null if the object has no value.
+	 */
+	private static Comparable getKeyValue(final GraphObject obj, final PropertyKey sortKey) {
+
+		Object raw = obj.getPropertyForIndexing(sortKey);
+		if (raw == null || StringUtils.isBlank(raw.toString())) {
+			return null;
+		}
+
+		Integer sortType = sortKey.getSortType();
+		if (sortType != null && raw instanceof Number) {
+
+			Number number = (Number)raw;
+
+			switch (sortType) {
+
+				case SortField.INT:
+					return number.intValue();
+
+				case SortField.DOUBLE:
+					return number.doubleValue();
+
+				case SortField.FLOAT:
+					return number.floatValue();
+
+				default:
+					return number.longValue();
+			}
+		}
+
+		if (sortType != null) {
+
+			// a numeric sort key with a non-numeric value
+			return null;
+		}
+
+		return raw.toString();
+	}
+
+	private static Comparable parse(final PropertyKey sortKey, final String value) throws FrameworkException {
+
+		Integer sortType = sortKey.getSortType();
+
+		try {
+
+			if (sortType != null) {
+
+				switch (sortType) {
+
+					case SortField.INT:
+						return Integer.valueOf(value);
+
+					case SortField.DOUBLE:
+						return Double.valueOf(value);
+
+					case SortField.FLOAT:
+						return Float.valueOf(value);
+
+					default:
+						return Long.valueOf(value);
+				}
+			}
+
+		} catch (NumberFormatException nfex) {
+
+			throw new FrameworkException(400, "Page cursor does not match sort key " + sortKey.jsonName());
+		}
+
+		return value;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Compares objects in the same order as the index query, i.e. by the
+	 * indexed value of the sort key and by the string value of the id.
+	 */
+	private static class KeysetComparator implements Comparator<GraphObject> {
+
+		private PropertyKey sortKey    = null;
+		private boolean sortDescending = false;
+
+		public KeysetComparator(final PropertyKey sortKey, final boolean sortDescending) {
+
+			this.sortKey        = sortKey;
+			this.sortDescending = sortDescending;
+		}
+
+		@Override
+		public int compare(final GraphObject o1, final GraphObject o2) {
+			return compare(o1, sortKey != null ? getKeyValue(o2, sortKey) : null, Long.toString(o2.getId()));
+		}
+
+		public int compare(final GraphObject obj, final Comparable keyValue, final String id) {
+
+			int result = 0;
+
+			if (sortKey != null) {
+
+				Comparable objValue = getKeyValue(obj, sortKey);
+
+				if (keyValue == null) {
+
+					result = objValue != null ? 1 : 0;
+
+				} else {
+
+					result = objValue.compareTo(keyValue);
+				}
+			}
+
+			if (result == 0) {
+				result = Long.toString(obj.getId()).compareTo(id);
+			}
+
+			return sortDescending ? -result : result;
+		}
+	}
+}
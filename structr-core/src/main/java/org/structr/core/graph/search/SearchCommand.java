@@ -20,19 +20,21 @@ package org.structr.core.graph.search;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.commons.lang.StringUtils;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
 import org.neo4j.gis.spatial.indexprovider.LayerNodeIndex;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.index.Index;
@@ -45,12 +47,15 @@ import org.structr.common.error.FrameworkException;
 import org.structr.common.geo.GeoCodingResult;
 import org.structr.common.geo.GeoHelper;
 import org.structr.core.GraphObject;
+import org.structr.core.Predicate;
 import org.structr.core.Result;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.graph.Factory;
 import org.structr.core.graph.NodeFactory;
 import org.structr.core.graph.NodeServiceCommand;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.property.PropertyKey;
+import org.structr.util.LongHashSet;
 
 /**
  *
@@ -149,6 +154,8 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	 * @param pageSize                      Return a portion of the overall result of this size
 	 * @param page                          Return the page of the result set with this page size
 	 * @param offsetId                      If given, start pagination at the object with this UUID
+	 *                                      (a {@link PageCursorSearchAttribute} in the search attributes
+	 *                                      replaces page and offsetId with keyset pagination)
 	 * @param sortType                      The entity type to sort the results (needed for lucene)
 	 * @return
 	 */
@@ -159,8 +166,10 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			return Result.EMPTY_RESULT;
 		}
 
+		// make index updates of the current transaction visible
+		TransactionCommand.flushIndexUpdates();
+
 		Factory<S, T> factory        = getFactory(securityContext, includeDeletedAndHidden, publicOnly, pageSize, page, offsetId);
-		boolean filterResults        = true;
 		final Index<S> index;
 		
 		if (securityContext.getUser(false) == null) {
@@ -173,6 +182,7 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		List<SourceSearchAttribute> sources    = new ArrayList<SourceSearchAttribute>();
 		boolean hasEmptySearchFields           = false;
 		DistanceSearchAttribute distanceSearch = null;
+		PageCursorSearchAttribute pageCursor   = null;
 		GeoCodingResult coords                 = null;
 		Double dist                            = null;
 
@@ -220,6 +230,15 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 				it.remove();
 			}
 
+			// keyset pagination, the query depends on the sort key
+			if (attr instanceof PageCursorSearchAttribute) {
+
+				pageCursor = (PageCursorSearchAttribute) attr;
+
+				// remove attribute from filter list
+				it.remove();
+			}
+
 			// store source attributes for later use
 			if (attr instanceof SourceSearchAttribute) {
 
@@ -234,7 +253,8 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			}
 		}
 
-		Result intermediateResult;
+		Result intermediateResult = null;
+		IndexHits hits            = null;
 
 		// only do "normal" query if no other sources are present
 		// use filters to filter sources otherwise
@@ -259,10 +279,30 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 				allExactMatch &= attr.isExactMatch();
 			}
 
+			// Deleted and hidden nodes are excluded in the index query, so the
+			// number of hits is the exact result count for anonymous users.
+			// (Superusers can read these nodes in any case.)
+			if (!includeDeletedAndHidden && !securityContext.isSuperUser()) {
+
+				query.add(new TermQuery(new Term(AbstractNode.deleted.dbName(), Boolean.TRUE.toString())), Occur.MUST_NOT);
+				query.add(new TermQuery(new Term(AbstractNode.hidden.dbName(), Boolean.TRUE.toString())), Occur.MUST_NOT);
+			}
+
+			// keyset pagination can only be done by the index if the results are not filtered
+			boolean keysetQuery = pageCursor != null && distanceSearch == null && allExactMatch && !hasEmptySearchFields && PageCursorSearchAttribute.isSupported(sortKey);
+			if (keysetQuery) {
+
+				query.add(pageCursor.getQuery(sortKey, sortDescending), Occur.MUST);
+			}
+
 			QueryContext queryContext = new QueryContext(query);
-			IndexHits hits            = null;
+			boolean sortedByIndex     = true;
+
+			if (keysetQuery) {
 
-			if (sortKey != null) {
+				queryContext.sort(pageCursor.getSort(sortKey, sortDescending));
+
+			} else if (sortKey != null) {
 
 				Integer sortType = sortKey.getSortType();
 				if (sortType != null) {
@@ -273,130 +313,176 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 					queryContext.sort(new Sort(new SortField(sortKey.dbName(), Locale.getDefault(), sortDescending)));
 				}
-
 			}
 
-			if (distanceSearch != null) {
+			try {
 
-				if (coords != null) {
+				if (distanceSearch != null) {
 
-					Map<String, Object> params = new HashMap<String, Object>();
+					if (coords != null) {
 
-					params.put(LayerNodeIndex.POINT_PARAMETER, coords.toArray());
-					params.put(LayerNodeIndex.DISTANCE_IN_KM_PARAMETER, dist);
+						Map<String, Object> params = new HashMap<String, Object>();
 
-					LayerNodeIndex spatialIndex = this.getSpatialIndex();
-					if (spatialIndex != null) {
+						params.put(LayerNodeIndex.POINT_PARAMETER, coords.toArray());
+						params.put(LayerNodeIndex.DISTANCE_IN_KM_PARAMETER, dist);
 
-						synchronized (spatialIndex) {
+						LayerNodeIndex spatialIndex = this.getSpatialIndex();
+						if (spatialIndex != null) {
 
-							hits = spatialIndex.query(LayerNodeIndex.WITHIN_DISTANCE_QUERY, params);
+							synchronized (spatialIndex) {
+
+								hits = spatialIndex.query(LayerNodeIndex.WITHIN_DISTANCE_QUERY, params);
+							}
 						}
 					}
-				}
-					
-				// instantiate spatial search results without paging,
-				// as the results must be filtered by type anyway
-				intermediateResult = new NodeFactory(securityContext).instantiate(hits);
 
-			} else if (allExactMatch) {
+					// instantiate spatial search results without paging,
+					// as the results must be filtered by type anyway
+					intermediateResult = new NodeFactory(securityContext).instantiate(hits);
+
+				} else {
 
-				index = getKeywordIndex();
+					if (allExactMatch) {
 
-				synchronized (index) {
+						index = getKeywordIndex();
 
-					try {
-						hits = index.query(queryContext);
+						try {
+							hits = index.query(queryContext);
 
-					} catch (NumberFormatException nfe) {
+						} catch (NumberFormatException nfe) {
 
-						logger.log(Level.SEVERE, "Could not sort results", nfe);
+							logger.log(Level.SEVERE, "Could not sort results", nfe);
 
-						// retry without sorting
-						queryContext.sort(null);
-						hits = index.query(queryContext);
+							// retry without sorting
+							queryContext.sort(null);
+							hits = index.query(queryContext);
 
+							sortedByIndex = sortKey == null;
+						}
+
+					} else {
+
+						// Default: Mixed or fulltext-only search: Use fulltext index
+						index = getFulltextIndex();
+						hits  = index.query(queryContext);
 					}
-				}
 
-				// all luecene query, do not filter results
-				filterResults = hasEmptySearchFields;
-				intermediateResult = factory.instantiate(hits);
+					// the hits start after the cursor, so only one page needs to be read
+					if (keysetQuery && sortedByIndex) {
 
-			} else {
+						Result result = factory.instantiateFirstPage(hits);
 
-				// Default: Mixed or fulltext-only search: Use fulltext index
-				index = getFulltextIndex();
+						result.setNextPageCursor(PageCursorSearchAttribute.getNextCursor(result.getResults(), sortKey, pageSize));
 
-				synchronized (index) {
+						return result;
+					}
 
-					hits = index.query(queryContext);
+					// all lucene query, do not filter results
+					if (!hasEmptySearchFields && pageCursor == null) {
+
+						return factory.instantiate(hits);
+					}
+
+					// Lucene hits can be streamed through the filter if they are already
+					// in the requested order and the page window can be determined without
+					// knowing the total size in advance.
+					if (sortedByIndex && page > 0 && StringUtils.isBlank(offsetId) && pageCursor == null) {
+
+						return factory.instantiate(hits, new SearchAttributeFilter<T>(searchAttrs));
+					}
+
+					// negative pages, offsetId paging, keyset paging of filtered
+					// results or an unsorted index result need the complete list
+					intermediateResult = new Result(factory.bulkInstantiate(hits), null, true, false);
 				}
 
-				// all luecene query, do not filter results
-				filterResults = hasEmptySearchFields;
-				intermediateResult = factory.instantiate(hits);
-			}
+			} finally {
 
-			if (hits != null) {
-				hits.close();
+				if (hits != null) {
+					hits.close();
+				}
 			}
 		}
 
-		if (filterResults) {
+		// sorted result set
+		List<GraphObject> finalResult            = new ArrayList<GraphObject>();
+		List<GraphObject> intermediateResultList = intermediateResult.getResults();
+		LongHashSet sourceIds                    = null;
+		int resultCount                          = 0;
 
-			// sorted result set
-			List<GraphObject> finalResult            = new LinkedList<GraphObject>();
-			List<GraphObject> intermediateResultList = intermediateResult.getResults();
-			int resultCount                          = 0;
+		if (intermediateResultList.isEmpty()) {
 
-			if (intermediateResultList.isEmpty()) {
-				
-				// merge sources according to their occur flag
-				intermediateResultList.addAll(mergeSources(sources));
-				
-			} else if (!sources.isEmpty()) {
-				
-				// merge sources according to their occur flag
-				intermediateResultList.retainAll(mergeSources(sources));
-			}
+			// merge sources according to their occur flag
+			intermediateResultList = mergeSources(sources);
+
+		} else if (!sources.isEmpty()) {
 
-			// Filter intermediate result
-			for (GraphObject obj : intermediateResultList) {
+			// merge sources according to their occur flag, intermediate
+			// results are matched against the ids of the merged sources
+			sourceIds = getIds(mergeSources(sources));
+		}
 
-				boolean addToResult = true;
+		// Filter intermediate result
+		for (GraphObject obj : intermediateResultList) {
 
-				// check all attributes before adding a node
-				for (SearchAttribute attr : searchAttrs) {
+			if (obj == null || (sourceIds != null && !sourceIds.contains(obj.getId()))) {
+				continue;
+			}
 
-					// check all search attributes
-					addToResult &= attr.includeInResult(obj);
-				}
+			boolean addToResult = true;
 
-				if (addToResult) {
+			// check all attributes before adding a node
+			for (SearchAttribute attr : searchAttrs) {
 
-					finalResult.add(obj);
-					resultCount++;
-				}
+				// check all search attributes
+				addToResult &= attr.includeInResult(obj);
 			}
 
-			// sort list
-			Collections.sort(finalResult, new GraphObjectComparator(sortKey, sortDescending));
-			
-			// return paged final result
-			return new Result(PagingHelper.subList(finalResult, pageSize, page, offsetId), resultCount, true, false);
+			if (addToResult) {
+
+				finalResult.add(obj);
+				resultCount++;
+			}
+		}
+
+		if (pageCursor != null) {
+
+			return pageCursor.getPage(finalResult, sortKey, sortDescending, pageSize);
+		}
+
+		GraphObjectComparator comparator = new GraphObjectComparator(sortKey, sortDescending);
+
+		// only the objects up to the end of the requested page need to be sorted
+		if (page > 0 && pageSize < Integer.MAX_VALUE && StringUtils.isBlank(offsetId)) {
+
+			long limit = (long)page * pageSize;
+			if (limit < finalResult.size()) {
+
+				finalResult = comparator.top(finalResult, (int)limit);
+			}
 
 		} else {
 
-			// no filtering
-			return intermediateResult;
+			comparator.sort(finalResult);
 		}
+
+		// return paged final result
+		return new Result(PagingHelper.subList(finalResult, pageSize, page, offsetId), resultCount, true, false);
 	}
 	
+	/**
+	 * Merges the results of the given source attributes according to
+	 * their occur flag. Set operations are done on the primitive ids of
+	 * the objects, so the effort is linear in the size of the sources.
+	 *
+	 * @param sources
+	 * @return 
+	 */
 	private List<GraphObject> mergeSources(List<SourceSearchAttribute> sources) {
 		
-		LinkedList<GraphObject> mergedResult = new LinkedList<GraphObject>();
-		boolean alreadyAdded                 = false;
+		List<GraphObject> mergedResult = new ArrayList<GraphObject>();
+		LongHashSet mergedIds          = new LongHashSet();
+		boolean alreadyAdded           = false;
 		
 		for (Iterator<SourceSearchAttribute> it = sources.iterator(); it.hasNext();) {
 			
@@ -404,7 +490,7 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			
 			if (!alreadyAdded) {
 				
-				mergedResult.addAll(attr.getResult());
+				addAll(mergedResult, mergedIds, attr.getResult());
 				alreadyAdded = true;
 				
 			} else {
@@ -413,16 +499,27 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 					
 					case MUST:
 						
-						mergedResult.retainAll(attr.getResult());
+						mergedIds.retainAll(getIds(attr.getResult()));
+						retainAll(mergedResult, mergedIds);
 						break;
 						
 					case SHOULD:
 						
-						mergedResult.addAll(attr.getResult());
+						addAll(mergedResult, mergedIds, attr.getResult());
 						break;
 						
 					case MUST_NOT:
-						mergedResult.removeAll(attr.getResult());
+						
+						LongHashSet excludedIds = getIds(attr.getResult());
+
+						for (Iterator<GraphObject> objIt = mergedResult.iterator(); objIt.hasNext();) {
+
+							if (excludedIds.contains(objIt.next().getId())) {
+								objIt.remove();
+							}
+						}
+
+						mergedIds = getIds(mergedResult);
 						break;
 				}
 			}
@@ -431,4 +528,68 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		
 		return mergedResult;
 	}
+
+	private void addAll(final List<GraphObject> target, final LongHashSet targetIds, final List<GraphObject> source) {
+
+		for (GraphObject obj : source) {
+
+			if (obj != null && targetIds.add(obj.getId())) {
+				target.add(obj);
+			}
+		}
+	}
+
+	private void retainAll(final List<GraphObject> target, final LongHashSet ids) {
+
+		for (Iterator<GraphObject> it = target.iterator(); it.hasNext();) {
+
+			if (!ids.contains(it.next().getId())) {
+				it.remove();
+			}
+		}
+	}
+
+	private LongHashSet getIds(final List<GraphObject> objects) {
+
+		LongHashSet ids = new LongHashSet(objects.size());
+
+		for (GraphObject obj : objects) {
+
+			if (obj != null) {
+				ids.add(obj.getId());
+			}
+		}
+
+		return ids;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Filter predicate that evaluates the in-memory part of the given
+	 * search attributes for a single object.
+	 */
+	private static class SearchAttributeFilter<T extends GraphObject> implements Predicate<T> {
+
+		private List<SearchAttribute> searchAttrs = null;
+
+		public SearchAttributeFilter(final List<SearchAttribute> searchAttrs) {
+			this.searchAttrs = searchAttrs;
+		}
+
+		@Override
+		public boolean evaluate(final SecurityContext securityContext, final T... objs) {
+
+			for (T obj : objs) {
+
+				for (SearchAttribute attr : searchAttrs) {
+
+					if (!attr.includeInResult(obj)) {
+						return false;
+					}
+				}
+			}
+
+			return true;
+		}
+	}
 }
@@ -32,6 +32,7 @@ import org.structr.core.graph.NodeServiceCommand;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.entity.Principal;
 import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.TransactionCommand;
 
 //~--- classes ----------------------------------------------------------------
 
@@ -46,6 +47,9 @@ public class SearchUserCommand extends NodeServiceCommand {
 
 		final NodeFactory nodeFactory = new NodeFactory(securityContext);
 
+		// make index updates of the current transaction visible
+		TransactionCommand.flushIndexUpdates();
+
 		switch (parameters.length) {
 
 			case 1 : {
@@ -79,12 +83,8 @@ public class SearchUserCommand extends NodeServiceCommand {
 				final Index<Node> index = getIndexFromArguments(idx, arguments);
 				IndexHits<Node> indexHits = null;
 
-				synchronized (index) {
-
-					// see: http://docs.neo4j.org/chunked/milestone/indexing-create-advanced.html
-					indexHits = index.query( key.dbName(), "\"" + userNickName + "\"" );
-					
-				}
+				// see: http://docs.neo4j.org/chunked/milestone/indexing-create-advanced.html
+				indexHits = index.query( key.dbName(), "\"" + userNickName + "\"" );
 				
 				try {
 					for (final Node n : indexHits) {
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.log;
+
+/**
+ * A single entry of the log database.
+ *
+ * @author Axel Morgner
+ */
+public class LogEntry {
+
+	private String id       = null;
+	private Object value    = null;
+
+	public LogEntry(final String id, final Object value) {
+
+		this.id    = id;
+		this.value = value;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the time the entry was logged, or 0 for entries without time-ordered id
+	 */
+	public long getTimestamp() {
+		return LogWriter.getTimestamp(id);
+	}
+
+	public Object getValue() {
+		return value;
+	}
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.fusesource.hawtdb.api.BTreeIndexFactory;
+import org.fusesource.hawtdb.api.IndexFactory;
+import org.fusesource.hawtdb.api.MultiIndexFactory;
+import org.fusesource.hawtdb.api.SortedIndex;
+import org.fusesource.hawtdb.api.Transaction;
+import org.fusesource.hawtdb.api.TxPageFile;
+
+/**
+ * A range scan over the entries of a log key. The entries are read from
+ * the B-tree index of the key while iterating, starting at the first
+ * entry of the time range, so the memory used does not depend on the
+ * number of entries of the key. Reverse scans return the last entries
+ * of the range and need to keep them in memory, so they are limited to
+ * {@value #MAX_REVERSE_LIMIT} entries.
+ *
+ * Every call to iterator() starts a new scan. The index is read in
+ * chunks, each in a read transaction that is released right away, so
+ * scans that are not iterated to the end do not need to be closed.
+ *
+ * @author Axel Morgner
+ */
+public class LogScan implements Iterable<LogEntry> {
+
+	private static final Logger logger        = Logger.getLogger(LogScan.class.getName());
+
+	public static final int MAX_REVERSE_LIMIT = 1000;
+
+	private static final int CHUNK_SIZE       = 256;
+
+	private TxPageFile logDb           = null;
+	private String key                 = null;
+	private String prefix              = null;
+	private boolean reverse            = false;
+	private long from                  = 0;
+	private long to                    = Long.MAX_VALUE;
+	private int limit                  = Integer.MAX_VALUE;
+
+	public LogScan(final TxPageFile logDb, final String key) {
+
+		this.logDb = logDb;
+		this.key   = key;
+	}
+
+	/**
+	 * Restricts the scan to entries logged between the given timestamps,
+	 * both inclusive.
+	 *
+	 * @param from
+	 * @param to
+	 * @return this scan
+	 */
+	public LogScan range(final long from, final long to) {
+
+		this.from = from;
+		this.to   = to;
+
+		return this;
+	}
+
+	/**
+	 * Restricts the scan to entries whose id starts with the given prefix.
+	 *
+	 * @param prefix
+	 * @return this scan
+	 */
+	public LogScan prefix(final String prefix) {
+
+		this.prefix = prefix;
+
+		return this;
+	}
+
+	/**
+	 * @param limit the maximum number of entries returned
+	 * @return this scan
+	 */
+	public LogScan limit(final int limit) {
+
+		this.limit = limit > 0 ? limit : Integer.MAX_VALUE;
+
+		return this;
+	}
+
+	/**
+	 * Returns the entries newest first. Reverse scans return at most
+	 * {@value #MAX_REVERSE_LIMIT} entries.
+	 *
+	 * @param reverse
+	 * @return this scan
+	 */
+	public LogScan reverse(final boolean reverse) {
+
+		this.reverse = reverse;
+
+		return this;
+	}
+
+	@Override
+	public Iterator<LogEntry> iterator() {
+
+		ForwardIterator it = new ForwardIterator();
+
+		if (reverse) {
+
+			// keep the last entries of the range
+			ArrayDeque<LogEntry> last = new ArrayDeque<LogEntry>();
+			int max                   = getLimit();
+
+			while (it.hasNext()) {
+
+				last.addFirst(it.next());
+
+				if (last.size() > max) {
+					last.removeLast();
+				}
+			}
+
+			return last.iterator();
+		}
+
+		return it;
+	}
+
+	/**
+	 * Returns the number of entries an iteration of this scan returns,
+	 * without keeping the entries in memory.
+	 *
+	 * @return the number of entries
+	 */
+	public int count() {
+
+		ForwardIterator it = new ForwardIterator();
+		int count          = 0;
+
+		while (it.hasNext()) {
+
+			it.next();
+			count++;
+		}
+
+		return Math.min(count, getLimit());
+	}
+
+	// ----- private methods -----
+	private int getLimit() {
+		return reverse ? Math.min(limit, MAX_REVERSE_LIMIT) : limit;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Iterates the entries of the index from the start position until the
+	 * end of the range, the prefix or the limit is reached. The entries
+	 * are read in chunks of {@value #CHUNK_SIZE}, each in its own read
+	 * transaction that is released before the chunk is returned, so an
+	 * iteration that is not finished does not keep a transaction open.
+	 */
+	private class ForwardIterator implements Iterator<LogEntry> {
+
+		private Iterator<LogEntry> chunk = Collections.<LogEntry>emptyList().iterator();
+		private boolean exhausted        = false;
+		private String position          = null;
+		private String end               = null;
+		private int count                = 0;
+
+		public ForwardIterator() {
+
+			this.position  = LogWriter.getIdPrefix(from);
+			this.end       = to < Long.MAX_VALUE ? LogWriter.getIdPrefix(to + 1) : null;
+			this.exhausted = logDb == null || key == null;
+
+			if (prefix != null && prefix.compareTo(position) > 0) {
+
+				position = prefix;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			// the limit is applied after the reverse buffer
+			if (!reverse && count >= limit) {
+				return false;
+			}
+
+			if (!chunk.hasNext() && !exhausted) {
+				chunk = readChunk();
+			}
+
+			return chunk.hasNext();
+		}
+
+		@Override
+		public LogEntry next() {
+
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			count++;
+
+			return chunk.next();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Not supported.");
+		}
+
+		private Iterator<LogEntry> readChunk() {
+
+			IndexFactory<String, Object> indexFactory = new BTreeIndexFactory<String, Object>();
+			List<LogEntry> entries                    = new ArrayList<LogEntry>();
+			int max                                   = reverse ? CHUNK_SIZE : Math.min(CHUNK_SIZE, limit - count);
+			Transaction tx                            = logDb.tx();
+
+			try {
+
+				SortedIndex<String, Object> index      = (SortedIndex<String, Object>) new MultiIndexFactory(tx).openOrCreate(key, indexFactory);
+				Iterator<Entry<String, Object>> source = index.iterator(position);
+
+				while (entries.size() < max && source.hasNext()) {
+
+					Entry<String, Object> entry = source.next();
+					String id                   = entry.getKey();
+
+					if ((end != null && id.compareTo(end) >= 0) || (prefix != null && !id.startsWith(prefix))) {
+
+						// ids are sorted, no more matches
+						break;
+					}
+
+					entries.add(new LogEntry(id, entry.getValue()));
+				}
+
+			} catch (org.fusesource.hawtdb.api.IndexException e) {
+
+				logger.log(Level.WARNING, "Could not read log db page for key {0}", key);
+
+				entries.clear();
+
+			} finally {
+
+				// read only, nothing to commit
+				tx.rollback();
+			}
+
+			if (entries.size() < max) {
+
+				exhausted = true;
+
+			} else {
+
+				// continue after the last id of this chunk
+				position = entries.get(entries.size() - 1).getId() + '\0';
+			}
+
+			return entries.iterator();
+		}
+	}
+}
@@ -50,6 +50,7 @@ public class LogService implements SingletonService {
 
 	private TxPageFileFactory logDbFactory	= null;
 	private TxPageFile logDb		= null;
+	private LogWriter logWriter		= null;
 
 	/** Dependent services */
 	private Set<RunnableService> registeredServices = new HashSet<RunnableService>();
@@ -64,6 +65,7 @@ public class LogService implements SingletonService {
 		if (command != null) {
 
 			command.setArgument("logDb", logDb);
+			command.setArgument("logWriter", logWriter);
 		}
 
 	}
@@ -95,6 +97,16 @@ public class LogService implements SingletonService {
 
 				logDb = logDbFactory.getTxPageFile();
 
+				// log entries are written in batches by a background thread
+				logWriter = new LogWriter(logDb,
+					Services.getConfigurationValue(Services.LOG_SERVICE_QUEUE_SIZE, 10000),
+					Services.getConfigurationValue(Services.LOG_SERVICE_THRESHOLD, 100),
+					Services.getConfigurationValue(Services.LOG_SERVICE_INTERVAL, 1000L),
+					Services.getConfigurationValue(Services.LOG_SERVICE_POLICY, LogWriter.POLICY_BLOCK)
+				);
+
+				logWriter.start();
+
 			} catch (Throwable t) {
 
 				logger.log(Level.INFO, "Log Database could not be started", logDbPath);
@@ -126,6 +138,13 @@ public class LogService implements SingletonService {
 			// Wait for all registered services to end
 			waitFor(registeredServices.isEmpty());
 
+			if (logWriter != null) {
+
+				// write pending entries before closing the database
+				logWriter.shutdown();
+				logWriter = null;
+			}
+
 			try {
 
 				logDbFactory.close();
@@ -171,6 +190,15 @@ public class LogService implements SingletonService {
 
 	//~--- get methods ----------------------------------------------------
 
+	/**
+	 * @return the writer of this service, which provides the queue metrics
+	 */
+	public LogWriter getLogWriter() {
+
+		return logWriter;
+
+	}
+
 	@Override
 	public String getName() {
 
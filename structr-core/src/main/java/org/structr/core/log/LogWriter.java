@@ -0,0 +1,378 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.fusesource.hawtdb.api.BTreeIndexFactory;
+import org.fusesource.hawtdb.api.IndexFactory;
+import org.fusesource.hawtdb.api.MultiIndexFactory;
+import org.fusesource.hawtdb.api.SortedIndex;
+import org.fusesource.hawtdb.api.Transaction;
+import org.fusesource.hawtdb.api.TxPageFile;
+
+/**
+ * Writes log entries to the log database in the background. Callers
+ * enqueue entries into a bounded queue, a single writer thread drains
+ * the queue and writes the entries in batches, using one transaction
+ * and one flush per batch. A batch is written when it reaches the
+ * configured size or when the configured interval has elapsed.
+ *
+ * If the queue is full, callers either wait for the writer or the entry
+ * is dropped, depending on the configured policy.
+ *
+ * Entry ids start with the time the entry was logged, so the entries of
+ * a key are ordered by time, see {@link LogScan}.
+ *
+ * @author Axel Morgner
+ */
+public class LogWriter {
+
+	private static final Logger logger               = Logger.getLogger(LogWriter.class.getName());
+
+	public static final String POLICY_BLOCK          = "block";
+	public static final String POLICY_DROP           = "drop";
+
+	private final AtomicLong enqueued                = new AtomicLong();
+	private final AtomicLong dropped                 = new AtomicLong();
+	private final AtomicLong sequence                = new AtomicLong(new Random().nextInt() & 0xffffffffL);
+	private final Object processedLock               = new Object();
+	private BlockingQueue<PendingEntry> queue            = null;
+	private TxPageFile logDb                         = null;
+	private Thread writerThread                      = null;
+	private boolean blocking                         = true;
+	private volatile boolean running                 = false;
+	private long processed                           = 0;
+	private long lag                                 = 0;
+	private long interval                            = 0;
+	private int batchSize                            = 0;
+
+	/**
+	 * @param logDb the log database
+	 * @param queueSize the maximum number of pending entries
+	 * @param batchSize the maximum number of entries written in one transaction
+	 * @param interval the maximum time in milliseconds an entry waits before it is written
+	 * @param policy the policy for a full queue, {@link #POLICY_BLOCK} or {@link #POLICY_DROP}
+	 */
+	public LogWriter(final TxPageFile logDb, final int queueSize, final int batchSize, final long interval, final String policy) {
+
+		this.queue     = new ArrayBlockingQueue<PendingEntry>(queueSize);
+		this.logDb     = logDb;
+		this.batchSize = batchSize;
+		this.interval  = interval;
+		this.blocking  = !POLICY_DROP.equals(policy);
+	}
+
+	public void start() {
+
+		running      = true;
+		writerThread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+
+				List<PendingEntry> batch = new ArrayList<PendingEntry>(batchSize);
+
+				while (running || !queue.isEmpty()) {
+
+					try {
+
+						PendingEntry first = queue.poll(interval, TimeUnit.MILLISECONDS);
+						if (first != null) {
+
+							batch.add(first);
+
+							// wait for more entries until the batch is full or the oldest entry is due
+							long due = first.timestamp + interval;
+							while (batch.size() < batchSize) {
+
+								long wait = due - System.currentTimeMillis();
+								if (queue.drainTo(batch, batchSize - batch.size()) == 0) {
+
+									PendingEntry next = wait > 0 && running ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
+									if (next == null) {
+										break;
+									}
+
+									batch.add(next);
+								}
+							}
+
+							write(batch);
+							processed(batch.size());
+
+							batch.clear();
+						}
+
+					} catch (InterruptedException iex) {
+
+						logger.log(Level.WARNING, "Log writer interrupted");
+					}
+				}
+			}
+
+		}, "LogWriter");
+
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Stops the writer thread after all pending entries have been written.
+	 * The writer is not interrupted, so a running write is not aborted.
+	 */
+	public void shutdown() {
+
+		running = false;
+
+		if (writerThread != null) {
+
+			try {
+				writerThread.join();
+
+			} catch (InterruptedException iex) {
+
+				logger.log(Level.WARNING, "Interrupted while waiting for log writer to finish");
+			}
+
+			writerThread = null;
+		}
+	}
+
+	/**
+	 * Enqueues the given log entry.
+	 *
+	 * @param key
+	 * @param values
+	 * @return false if the entry was dropped
+	 */
+	public boolean enqueue(final String key, final String[] values) {
+
+		PendingEntry entry = new PendingEntry(key, values);
+
+		if (running) {
+
+			if (blocking) {
+
+				try {
+					queue.put(entry);
+					enqueued.incrementAndGet();
+
+					return true;
+
+				} catch (InterruptedException iex) {
+
+					Thread.currentThread().interrupt();
+				}
+
+			} else if (queue.offer(entry)) {
+
+				enqueued.incrementAndGet();
+
+				return true;
+			}
+		}
+
+		dropped.incrementAndGet();
+		logger.log(Level.FINE, "Log entry for key {0} dropped", key);
+
+		return false;
+	}
+
+	/**
+	 * Waits until all entries that were enqueued before this call have
+	 * been written.
+	 */
+	public void flush() {
+
+		long target = enqueued.get();
+
+		synchronized (processedLock) {
+
+			while (processed < target && writerThread != null) {
+
+				try {
+					processedLock.wait(interval);
+
+				} catch (InterruptedException iex) {
+
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	// ----- metrics -----
+	/**
+	 * @return the number of entries waiting to be written
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	public long getWrittenCount() {
+
+		synchronized (processedLock) {
+			return processed;
+		}
+	}
+
+	/**
+	 * @return the time in milliseconds the oldest entry of the last batch waited before it was written
+	 */
+	public long getLag() {
+
+		synchronized (processedLock) {
+			return lag;
+		}
+	}
+
+	// ----- private methods -----
+	private void write(final List<PendingEntry> batch) {
+
+		synchronized (logDb) {
+
+			Transaction tx                                    = logDb.tx();
+			MultiIndexFactory multiIndexFactory               = new MultiIndexFactory(tx);
+			IndexFactory<String, Object> indexFactory         = new BTreeIndexFactory<String, Object>();
+			Map<String, SortedIndex<String, Object>> indexes  = new HashMap<String, SortedIndex<String, Object>>();
+
+			try {
+
+				for (PendingEntry entry : batch) {
+
+					SortedIndex<String, Object> index = indexes.get(entry.key);
+					if (index == null) {
+
+						try {
+
+							index = (SortedIndex<String, Object>) multiIndexFactory.openOrCreate(entry.key, indexFactory);
+
+						} catch (org.fusesource.hawtdb.api.IndexException e) {
+
+							logger.log(Level.WARNING, "Could not open or create log db page for key {0}", entry.key);
+
+							index = (SortedIndex<String, Object>) multiIndexFactory.create(entry.key, indexFactory);
+						}
+
+						indexes.put(entry.key, index);
+					}
+
+					index.put(createId(entry.timestamp), entry.values);
+				}
+
+				tx.commit();
+				logDb.flush();
+
+			} catch (Throwable t) {
+
+				logger.log(Level.SEVERE, "Unable to write {0} log entries: {1}", new Object[] { batch.size(), t.getMessage() });
+
+				tx.rollback();
+			}
+		}
+
+		synchronized (processedLock) {
+			lag = System.currentTimeMillis() - batch.get(0).timestamp;
+		}
+	}
+
+	private void processed(final int count) {
+
+		synchronized (processedLock) {
+
+			processed += count;
+			processedLock.notifyAll();
+		}
+	}
+
+	private String createId(final long timestamp) {
+
+		// time-ordered: 16 hex digits of the timestamp, followed by 16 hex digits of a sequence number
+		return toHex(timestamp) + toHex(sequence.incrementAndGet());
+	}
+
+	/**
+	 * Returns the first entry id of the given point in time, for use as a
+	 * range boundary.
+	 *
+	 * @param timestamp
+	 * @return the id prefix of the given timestamp
+	 */
+	public static String getIdPrefix(final long timestamp) {
+		return toHex(timestamp);
+	}
+
+	/**
+	 * @param id
+	 * @return the timestamp of the given entry id, or 0 if the id is not time-ordered
+	 */
+	public static long getTimestamp(final String id) {
+
+		if (id != null && id.length() == 32) {
+
+			try {
+				return Long.parseLong(id.substring(0, 16), 16);
+
+			} catch (NumberFormatException nfex) {}
+		}
+
+		return 0;
+	}
+
+	private static String toHex(final long value) {
+
+		String hex = Long.toHexString(value);
+
+		if (hex.length() < 16) {
+			return "0000000000000000".substring(hex.length()) + hex;
+		}
+
+		return hex;
+	}
+
+	// ----- nested classes -----
+	private static class PendingEntry {
+
+		private String key       = null;
+		private String[] values  = null;
+		private long timestamp   = 0;
+
+		public PendingEntry(final String key, final String[] values) {
+
+			this.key       = key;
+			this.values    = values;
+			this.timestamp = System.currentTimeMillis();
+		}
+	}
+}
@@ -20,23 +20,14 @@
 
 package org.structr.core.log;
 
-import java.util.HashMap;
-import org.fusesource.hawtdb.api.BTreeIndexFactory;
-import org.fusesource.hawtdb.api.IndexFactory;
-import org.fusesource.hawtdb.api.MultiIndexFactory;
-import org.fusesource.hawtdb.api.SortedIndex;
-import org.fusesource.hawtdb.api.Transaction;
 import org.fusesource.hawtdb.api.TxPageFile;
 
 import org.structr.common.error.FrameworkException;
 
 //~--- JDK imports ------------------------------------------------------------
 
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 //~--- classes ----------------------------------------------------------------
 
@@ -48,42 +39,52 @@ import java.util.logging.Logger;
  */
 public class ReadLogCommand extends LogServiceCommand {
 
-	private static final Logger logger = Logger.getLogger(ReadLogCommand.class.getName());
-
 	//~--- methods --------------------------------------------------------
 
+	/**
+	 * Returns all entries of the given key, ordered by id.
+	 *
+	 * @param key
+	 * @return the entries of the given key
+	 * @throws FrameworkException
+	 */
 	public Map<String, Object> execute(String key) throws FrameworkException {
 
-		TxPageFile logDb           = (TxPageFile) arguments.get("logDb");
-		Map<String, Object> result = new HashMap<String, Object>();
-
-		if (logDb != null) {
-
-			Transaction tx                            = logDb.tx();
-			MultiIndexFactory multiIndexFactory       = new MultiIndexFactory(tx);
-			IndexFactory<String, Object> indexFactory = new BTreeIndexFactory<String, Object>();
-
-			try {
-
-				SortedIndex<String, Object> index  = (SortedIndex<String, Object>) multiIndexFactory.openOrCreate(key, indexFactory);
-				Iterator<Entry<String, Object>> it = index.iterator();
-
-				while (it.hasNext()) {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
 
-					Entry<String, Object> entry = it.next();
+		for (LogEntry entry : execute(key, 0, Long.MAX_VALUE, null, 0, false)) {
 
-					result.put(entry.getKey(), entry.getValue());
-
-				}
-
-			} catch (org.fusesource.hawtdb.api.IndexException e) {
+			result.put(entry.getId(), entry.getValue());
+		}
 
-				logger.log(Level.WARNING, "Could not read log db page for key {0}", key);
+		return result;
+	}
 
-			}
+	/**
+	 * Returns a scan over the entries of the given key that were logged in
+	 * the given time range. The entries are read while iterating.
+	 *
+	 * @param key
+	 * @param from the start of the time range in milliseconds, inclusive
+	 * @param to the end of the time range in milliseconds, inclusive
+	 * @param prefix an optional id prefix
+	 * @param limit the maximum number of entries, or 0
+	 * @param reverse true to return the newest entries first
+	 * @return the scan
+	 * @throws FrameworkException
+	 */
+	public LogScan execute(String key, long from, long to, String prefix, int limit, boolean reverse) throws FrameworkException {
+
+		TxPageFile logDb    = (TxPageFile) arguments.get("logDb");
+		LogWriter logWriter = (LogWriter) arguments.get("logWriter");
+
+		if (logWriter != null) {
+
+			// make entries that are still queued visible
+			logWriter.flush();
 		}
 
-		return result;
+		return new LogScan(logDb, key).range(from, to).prefix(prefix).limit(limit).reverse(reverse);
 	}
 
 }
@@ -18,21 +18,8 @@
  */
 package org.structr.core.log;
 
-import org.fusesource.hawtdb.api.BTreeIndexFactory;
-import org.fusesource.hawtdb.api.IndexFactory;
-import org.fusesource.hawtdb.api.MultiIndexFactory;
-import org.fusesource.hawtdb.api.SortedIndex;
-import org.fusesource.hawtdb.api.Transaction;
-import org.fusesource.hawtdb.api.TxPageFile;
-
 import org.structr.common.error.FrameworkException;
 
-//~--- JDK imports ------------------------------------------------------------
-
-import java.util.UUID;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
 //~--- classes ----------------------------------------------------------------
 
 /**
@@ -45,50 +32,23 @@ import java.util.logging.Logger;
  */
 public class WriteLogCommand extends LogServiceCommand {
 
-	private static final Logger logger = Logger.getLogger(WriteLogCommand.class.getName());
-
 	//~--- methods --------------------------------------------------------
 
+	/**
+	 * Enqueues the given values for the given key. The values are written
+	 * asynchronously, see {@link LogWriter}.
+	 *
+	 * @param key
+	 * @param obj
+	 * @throws FrameworkException
+	 */
 	public void execute(String key, String... obj) throws FrameworkException {
 
-		TxPageFile logDb = (TxPageFile) arguments.get("logDb");
-
-		if (logDb != null) {
-
-			if (key != null) {
-
-				synchronized (logDb) {
-
-					Transaction tx                            = logDb.tx();
-					MultiIndexFactory multiIndexFactory       = new MultiIndexFactory(tx);
-					IndexFactory<String, Object> indexFactory = new BTreeIndexFactory<String, Object>();
-					SortedIndex<String, Object> index         = null;
-
-					try {
-
-						index = (SortedIndex<String, Object>) multiIndexFactory.openOrCreate(key, indexFactory);
-
-					} catch (org.fusesource.hawtdb.api.IndexException e) {
-
-						logger.log(Level.WARNING, "Could not open or create log db page for key {0}", key);
-
-						index = (SortedIndex<String, Object>) multiIndexFactory.create(key, indexFactory);
-
-					}
-
-					String uuid  = UUID.randomUUID().toString().replaceAll("[\\-]+", "");
-
-					index.put(uuid, obj);
-
-					// disabled to avoid parameter evaluation 
-					// logger.log(Level.FINE, "Logged for key {0}: {1}", new Object[] { key, StringUtils.join((String[]) obj, ",") });
-					
-					tx.commit();
-					logDb.flush();
+		LogWriter logWriter = (LogWriter) arguments.get("logWriter");
 
-				}
+		if (logWriter != null && key != null) {
 
-			}
+			logWriter.enqueue(key, obj);
 		}
 	}
 
@@ -0,0 +1,347 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.module;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Persistent index of the entity, relationship, service and agent classes
+ * of the resources scanned by the {@link ModuleService}. Each resource is
+ * stored with a checksum of its content, so the index of a resource is
+ * only used as long as the resource did not change.
+ *
+ * The index is a text file with a header line per resource, followed by
+ * one line per class with the kinds of the class:
+ *
+ * <pre>
+ * resource &lt;checksum&gt; &lt;path&gt;
+ * &lt;kinds&gt; &lt;class name&gt;
+ * </pre>
+ *
+ * @author Christian Morgner
+ */
+public class ClassIndex {
+
+	private static final Logger logger              = Logger.getLogger(ClassIndex.class.getName());
+
+	public static final char NODE                   = 'N';
+	public static final char RELATIONSHIP           = 'R';
+	public static final char SERVICE                = 'S';
+	public static final char AGENT                  = 'A';
+
+	private static final String VERSION             = "# structr class index 1";
+	private static final String RESOURCE            = "resource";
+
+	private final Map<String, Resource> resources   = new LinkedHashMap<String, Resource>();
+	private File file                               = null;
+	private boolean modified                        = false;
+
+	public ClassIndex(final File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Reads the index file. A missing or unreadable index file results in
+	 * an empty index.
+	 */
+	public void load() {
+
+		resources.clear();
+
+		if (!file.exists()) {
+			return;
+		}
+
+		BufferedReader reader = null;
+
+		try {
+
+			reader           = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			Resource current = null;
+			String line      = reader.readLine();
+
+			if (!VERSION.equals(line)) {
+
+				logger.log(Level.INFO, "Ignoring class index {0} with unknown version", file.getAbsolutePath());
+				return;
+			}
+
+			while ((line = reader.readLine()) != null) {
+
+				if (line.startsWith(RESOURCE)) {
+
+					String[] parts = line.split(" ", 3);
+					if (parts.length == 3) {
+
+						current = new Resource(parts[1]);
+						resources.put(parts[2], current);
+
+					} else {
+
+						current = null;
+					}
+
+				} else if (current != null) {
+
+					int pos = line.indexOf(' ');
+					if (pos > 0) {
+
+						current.classes.put(line.substring(pos + 1), line.substring(0, pos));
+					}
+				}
+			}
+
+		} catch (IOException ioex) {
+
+			logger.log(Level.WARNING, "Unable to read class index {0}: {1}", new Object[] { file.getAbsolutePath(), ioex.getMessage() });
+
+			resources.clear();
+
+		} finally {
+
+			IOUtils.closeQuietly(reader);
+		}
+	}
+
+	/**
+	 * Writes the index file if the index was modified since it was loaded.
+	 * The index is written to a temporary file first, so concurrent readers
+	 * never see a partially written index.
+	 */
+	public void store() {
+
+		if (!modified) {
+			return;
+		}
+
+		File tmpFile  = new File(file.getAbsolutePath() + "." + System.nanoTime());
+		Writer writer = null;
+
+		try {
+
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null && !parent.exists()) {
+
+				parent.mkdirs();
+			}
+
+			writer = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
+
+			writer.write(VERSION);
+			writer.write("\n");
+
+			for (Map.Entry<String, Resource> entry : resources.entrySet()) {
+
+				Resource resource = entry.getValue();
+
+				writer.write(RESOURCE);
+				writer.write(" ");
+				writer.write(resource.checksum);
+				writer.write(" ");
+				writer.write(entry.getKey());
+				writer.write("\n");
+
+				for (Map.Entry<String, String> classEntry : resource.classes.entrySet()) {
+
+					writer.write(classEntry.getValue());
+					writer.write(" ");
+					writer.write(classEntry.getKey());
+					writer.write("\n");
+				}
+			}
+
+			writer.close();
+			writer = null;
+
+			if (!tmpFile.renameTo(file)) {
+
+				// rename does not replace existing files on all platforms
+				file.delete();
+
+				if (!tmpFile.renameTo(file)) {
+
+					throw new IOException("Unable to rename " + tmpFile.getAbsolutePath());
+				}
+			}
+
+			modified = false;
+
+		} catch (IOException ioex) {
+
+			logger.log(Level.WARNING, "Unable to write class index {0}: {1}", new Object[] { file.getAbsolutePath(), ioex.getMessage() });
+
+		} finally {
+
+			IOUtils.closeQuietly(writer);
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Returns the indexed classes of the given resource.
+	 *
+	 * @param path the path of the resource
+	 * @param checksum the current checksum of the resource
+	 * @return a map of class name to kinds, or null if the resource is not indexed or has changed
+	 */
+	public Map<String, String> get(final String path, final String checksum) {
+
+		Resource resource = resources.get(path);
+
+		if (resource != null && resource.checksum.equals(checksum)) {
+			return resource.classes;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Stores the classes of the given resource.
+	 *
+	 * @param path the path of the resource
+	 * @param checksum the current checksum of the resource
+	 * @param classes a map of class name to kinds
+	 */
+	public void put(final String path, final String checksum, final Map<String, String> classes) {
+
+		Resource resource = new Resource(checksum);
+
+		resource.classes.putAll(classes);
+		resources.put(path, resource);
+
+		modified = true;
+	}
+
+	/**
+	 * Removes all resources that are not contained in the given paths.
+	 *
+	 * @param paths
+	 */
+	public void retain(final Collection<String> paths) {
+
+		Iterator<String> it = resources.keySet().iterator();
+		while (it.hasNext()) {
+
+			if (!paths.contains(it.next())) {
+
+				it.remove();
+				modified = true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the checksum of the given resource. The checksum of an
+	 * archive is the CRC32 of its content, the checksum of a class
+	 * directory is the CRC32 of the names, sizes and modification times
+	 * of its files.
+	 *
+	 * @param path
+	 * @return the checksum, or null if the resource could not be read
+	 */
+	public static String checksum(final String path) {
+
+		File resource = new File(path);
+		CRC32 crc     = new CRC32();
+
+		try {
+
+			if (resource.isDirectory()) {
+
+				updateChecksum(resource, crc);
+
+			} else {
+
+				InputStream in = new CheckedInputStream(new FileInputStream(resource), crc);
+				byte[] buffer  = new byte[65536];
+
+				try {
+					while (in.read(buffer) != -1);
+
+				} finally {
+
+					in.close();
+				}
+			}
+
+			return Long.toHexString(crc.getValue()) + "-" + Long.toHexString(resource.length());
+
+		} catch (IOException ioex) {
+
+			logger.log(Level.WARNING, "Unable to compute checksum of {0}: {1}", new Object[] { path, ioex.getMessage() });
+		}
+
+		return null;
+	}
+
+	// ----- private methods -----
+	private static void updateChecksum(final File dir, final CRC32 crc) {
+
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		// the order of listFiles() is not specified
+		Arrays.sort(files);
+
+		for (File file : files) {
+
+			if (file.isDirectory()) {
+
+				updateChecksum(file, crc);
+
+			} else {
+
+				crc.update(file.getAbsolutePath().getBytes());
+				crc.update(Long.toString(file.length()).getBytes());
+				crc.update(Long.toString(file.lastModified()).getBytes());
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Resource {
+
+		private final Map<String, String> classes = new LinkedHashMap<String, String>();
+		private String checksum                   = null;
+
+		public Resource(final String checksum) {
+			this.checksum = checksum;
+		}
+	}
+}
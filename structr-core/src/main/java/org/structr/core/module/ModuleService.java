@@ -32,9 +32,12 @@ import java.io.IOException;
 
 import java.lang.reflect.Modifier;
 
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
@@ -44,6 +47,7 @@ import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import org.apache.commons.lang.StringUtils;
+import org.structr.common.Path;
 import org.structr.core.*;
 
 //~--- classes ----------------------------------------------------------------
@@ -57,6 +61,8 @@ public class ModuleService implements SingletonService {
 
 	private static final Logger logger                                       = Logger.getLogger(ModuleService.class.getName());
 	private static final Map<String, Class<? extends Agent>> agentClassCache = new ConcurrentHashMap<String, Class<? extends Agent>>(10, 0.9f, 8);
+	private static final Map<String, String> agentClassNames                 = new ConcurrentHashMap<String, String>(10, 0.9f, 8);
+	private static final Set<String> unknownNodeEntityTypes                  = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 	private static final Set<String> nodeEntityPackages                      = new LinkedHashSet<String>();
 	private static final Set<String> relationshipPackages                    = new LinkedHashSet<String>();
 	private static final Map<String, Class> relationshipClassCache           = new ConcurrentHashMap<String, Class>(10, 0.9f, 8);
@@ -85,7 +91,9 @@ public class ModuleService implements SingletonService {
 
 			if (module != null) {
 
-				importResource(module);
+				importResource(module, null);
+				unknownNodeEntityTypes.clear();
+
 			} else {
 
 				logger.log(Level.WARNING, "Module was null!");
@@ -123,19 +131,126 @@ public class ModuleService implements SingletonService {
 		nodeEntityClassCache.clear();
 		relationshipClassCache.clear();
 		agentClassCache.clear();
+		agentClassNames.clear();
+		unknownNodeEntityTypes.clear();
 
 	}
 
+	/**
+	 * Scans the resources on the class path. The classes of a resource are
+	 * taken from the class index if the resource did not change since the
+	 * index was written, so only the classes that need to be registered
+	 * are loaded. Agent classes are loaded when they are first used.
+	 */
 	private void scanResources() {
 
+		long t0                   = System.currentTimeMillis();
 		Set<String> resourcePaths = getResourcesToScan();
+		ClassIndex index          = null;
+		int scanned               = 0;
+		long checksumTime         = 0;
+		long scanTime             = 0;
+		long indexedTime          = 0;
+
+		if (Boolean.parseBoolean(Services.getConfigurationValue(Services.MODULE_INDEX_ENABLED, "true"))) {
+
+			index = new ClassIndex(new File(Services.getConfigurationValue(Services.MODULE_INDEX_PATH, Services.getFilePath(Path.Temp, "structr-classindex.dat"))));
+			index.load();
+		}
+
+		long t1 = System.currentTimeMillis();
 
 		for (String resourcePath : resourcePaths) {
 
-			scanResource(resourcePath);
+			long t2                     = System.currentTimeMillis();
+			String checksum             = index != null ? ClassIndex.checksum(resourcePath) : null;
+			Map<String, String> classes = checksum != null ? index.get(resourcePath, checksum) : null;
+			long t3                     = System.currentTimeMillis();
+
+			checksumTime += t3 - t2;
+
+			if (classes != null) {
+
+				importIndexedClasses(classes);
+
+				indexedTime += System.currentTimeMillis() - t3;
+
+			} else {
+
+				try {
+
+					Module module = loadResource(resourcePath);
+
+					classes = new LinkedHashMap<String, String>();
+					importResource(module, classes);
+
+					if (checksum != null) {
+
+						index.put(resourcePath, checksum, classes);
+					}
+
+				} catch (IOException ioex) {
+
+					logger.log(Level.WARNING, "Error loading module {0}: {1}", new Object[] { resourcePath, ioex });
+				}
+
+				scanTime += System.currentTimeMillis() - t3;
+				scanned++;
+			}
 		}
 
-		logger.log(Level.INFO, "{0} JARs scanned", resourcePaths.size());
+		long t4 = System.currentTimeMillis();
+
+		if (index != null) {
+
+			index.retain(resourcePaths);
+			index.store();
+		}
+
+		long t5 = System.currentTimeMillis();
+
+		logger.log(Level.INFO, "{0} JARs scanned, {1} from class index", new Object[] { resourcePaths.size(), resourcePaths.size() - scanned });
+		logger.log(Level.INFO, "Module service started in {0} ms: class path and index {1} ms, checksums {2} ms, scanning {3} ms, indexed classes {4} ms, storing index {5} ms", new Object[] {
+			t5 - t0,
+			t1 - t0,
+			checksumTime,
+			scanTime,
+			indexedTime,
+			t5 - t4
+		} );
+
+	}
+
+	/**
+	 * Registers the classes of an unchanged resource from the class index.
+	 *
+	 * @param classes a map of class name to kinds
+	 */
+	private void importIndexedClasses(final Map<String, String> classes) {
+
+		for (Entry<String, String> entry : classes.entrySet()) {
+
+			String className = entry.getKey();
+			String kinds     = entry.getValue();
+
+			if (kinds.length() == 1 && kinds.charAt(0) == ClassIndex.AGENT) {
+
+				// agents are only needed when a task is processed
+				agentClassNames.put(className.substring(className.lastIndexOf(".") + 1), className);
+				agentPackages.add(className.substring(0, className.lastIndexOf(".")));
+
+				continue;
+			}
+
+			try {
+
+				registerClass(Class.forName(className), null);
+
+			} catch (Throwable t) {
+
+				logger.log(Level.WARNING, "Unable to load indexed class {0}: {1}", new Object[] { className, t.getMessage() });
+			}
+		}
 
 	}
 
@@ -143,10 +258,11 @@ public class ModuleService implements SingletonService {
 	 * Processes the information from the given module and makes them available for the service layer.
 	 *
 	 * @param module the module to process
+	 * @param indexedClasses the map to store the kinds of the registered classes in, or null
 	 *
 	 * @throws IOException
 	 */
-	private void importResource(Module module) throws IOException {
+	private void importResource(Module module, Map<String, String> indexedClasses) throws IOException {
 
 		Set<String> classes = module.getClasses();
 
@@ -163,86 +279,104 @@ public class ModuleService implements SingletonService {
 
 				logger.log(Level.FINE, "Class {0} instantiated: {1}", new Object[] { className, clazz });
 
-				if (!Modifier.isAbstract(clazz.getModifiers())) {
+				registerClass(clazz, indexedClasses);
+				
+			} catch (Throwable t) {}
 
-					// register node entity classes
-					if (AbstractNode.class.isAssignableFrom(clazz)) {
+		}
 
-						EntityContext.init(clazz);
-						
-						String simpleName = clazz.getSimpleName();
-						String fullName   = clazz.getName();
+	}
 
-						nodeEntityClassCache.put(simpleName, clazz);
-						nodeEntityPackages.add(fullName.substring(0, fullName.lastIndexOf(".")));
+	/**
+	 * Registers the given class with the service layer if it is a node
+	 * entity, relationship, service or agent class.
+	 *
+	 * @param clazz the class to register
+	 * @param indexedClasses the map to store the kinds of the class in, or null
+	 */
+	private void registerClass(Class clazz, Map<String, String> indexedClasses) {
 
-						for (Class interfaceClass : clazz.getInterfaces()) {
+		if (!Modifier.isAbstract(clazz.getModifiers())) {
 
-							String interfaceName           = interfaceClass.getSimpleName();
-							Set<Class> classesForInterface = interfaceCache.get(interfaceName);
+			StringBuilder kinds = new StringBuilder();
 
-							if (classesForInterface == null) {
+			// register node entity classes
+			if (AbstractNode.class.isAssignableFrom(clazz)) {
 
-								classesForInterface = new LinkedHashSet<Class>();
+				EntityContext.init(clazz);
+				
+				String simpleName = clazz.getSimpleName();
+				String fullName   = clazz.getName();
 
-								interfaceCache.put(interfaceName, classesForInterface);
+				nodeEntityClassCache.put(simpleName, clazz);
+				nodeEntityPackages.add(fullName.substring(0, fullName.lastIndexOf(".")));
 
-							}
+				registerInterfaces(clazz);
 
-							classesForInterface.add(clazz);
+				kinds.append(ClassIndex.NODE);
+			}
 
-						}
+			// register entity classes
+			if (AbstractRelationship.class.isAssignableFrom(clazz)) {
 
-					}
+				EntityContext.init(clazz);
 
-					// register entity classes
-					if (AbstractRelationship.class.isAssignableFrom(clazz)) {
+				String simpleName = clazz.getSimpleName();
+				String fullName   = clazz.getName();
 
-						EntityContext.init(clazz);
+				relationshipClassCache.put(simpleName, clazz);
+				relationshipPackages.add(fullName.substring(0, fullName.lastIndexOf(".")));
 
-						String simpleName = clazz.getSimpleName();
-						String fullName   = clazz.getName();
+				registerInterfaces(clazz);
 
-						relationshipClassCache.put(simpleName, clazz);
-						relationshipPackages.add(fullName.substring(0, fullName.lastIndexOf(".")));
+				kinds.append(ClassIndex.RELATIONSHIP);
+			}
 
-						for (Class interfaceClass : clazz.getInterfaces()) {
+			// register services
+			if (Service.class.isAssignableFrom(clazz)) {
 
-							String interfaceName           = interfaceClass.getSimpleName();
-							Set<Class> classesForInterface = interfaceCache.get(interfaceName);
+				Services.registerServiceClass(clazz);
 
-							if (classesForInterface == null) {
+				kinds.append(ClassIndex.SERVICE);
+			}
 
-								classesForInterface = new LinkedHashSet<Class>();
+			// register agents
+			if (Agent.class.isAssignableFrom(clazz)) {
 
-								interfaceCache.put(interfaceName, classesForInterface);
+				String simpleName = clazz.getSimpleName();
+				String fullName   = clazz.getName();
 
-							}
+				agentClassCache.put(simpleName, clazz);
+				agentClassNames.put(simpleName, fullName);
+				agentPackages.add(fullName.substring(0, fullName.lastIndexOf(".")));
 
-							classesForInterface.add(clazz);
+				kinds.append(ClassIndex.AGENT);
+			}
 
-						}
-					}
+			if (indexedClasses != null && kinds.length() > 0) {
 
-					// register services
-					if (Service.class.isAssignableFrom(clazz)) {
+				indexedClasses.put(clazz.getName(), kinds.toString());
+			}
+		}
 
-						Services.registerServiceClass(clazz);
-					}
+	}
 
-					// register agents
-					if (Agent.class.isAssignableFrom(clazz)) {
+	private void registerInterfaces(Class clazz) {
 
-						String simpleName = clazz.getSimpleName();
-						String fullName   = clazz.getName();
+		for (Class interfaceClass : clazz.getInterfaces()) {
 
-						agentClassCache.put(simpleName, clazz);
-						agentPackages.add(fullName.substring(0, fullName.lastIndexOf(".")));
+			String interfaceName           = interfaceClass.getSimpleName();
+			Set<Class> classesForInterface = interfaceCache.get(interfaceName);
 
-					}
-				}
-				
-			} catch (Throwable t) {}
+			if (classesForInterface == null) {
+
+				classesForInterface = new LinkedHashSet<Class>();
+
+				interfaceCache.put(interfaceName, classesForInterface);
+
+			}
+
+			classesForInterface.add(clazz);
 
 		}
 
@@ -365,7 +499,7 @@ public class ModuleService implements SingletonService {
 
 	public Set<String> getCachedAgentTypes() {
 
-		return agentClassCache.keySet();
+		return agentClassNames.keySet();
 
 	}
 
@@ -383,6 +517,12 @@ public class ModuleService implements SingletonService {
 
 	public Map<String, Class<? extends Agent>> getCachedAgents() {
 
+		// load the agent classes that were not used yet
+		for (String name : agentClassNames.keySet()) {
+
+			loadAgentClass(name);
+		}
+
 		return agentClassCache;
 
 	}
@@ -413,7 +553,9 @@ public class ModuleService implements SingletonService {
 
 			ret = nodeEntityClassCache.get(name);
 
-			if (ret == null) {
+			if (ret == null && !unknownNodeEntityTypes.contains(name)) {
+
+				boolean found = false;
 
 				for (String possiblePath : nodeEntityPackages) {
 
@@ -426,6 +568,7 @@ public class ModuleService implements SingletonService {
 							if (!Modifier.isAbstract(nodeClass.getModifiers())) {
 
 								nodeEntityClassCache.put(name, nodeClass);
+								found = true;
 
 								// first match wins
 								break;
@@ -441,6 +584,12 @@ public class ModuleService implements SingletonService {
 
 				}
 
+				if (!found) {
+
+					// avoid probing all packages again for the same name
+					unknownNodeEntityTypes.add(name);
+				}
+
 			}
 
 		}
@@ -501,6 +650,11 @@ public class ModuleService implements SingletonService {
 
 			ret = agentClassCache.get(name);
 
+			if (ret == null && agentClassNames.containsKey(name)) {
+
+				ret = loadAgentClass(name);
+			}
+
 			if (ret == null) {
 
 				for (String possiblePath : agentPackages) {
@@ -591,6 +745,34 @@ public class ModuleService implements SingletonService {
 
 	}
 
+	private Class<? extends Agent> loadAgentClass(final String name) {
+
+		Class<? extends Agent> agentClass = agentClassCache.get(name);
+
+		if (agentClass == null) {
+
+			String className = agentClassNames.get(name);
+
+			if (className != null) {
+
+				try {
+
+					agentClass = Class.forName(className).asSubclass(Agent.class);
+
+					agentClassCache.put(name, agentClass);
+
+				} catch (Throwable t) {
+
+					logger.log(Level.WARNING, "Unable to load agent class {0}: {1}", new Object[] { className, t.getMessage() });
+
+					agentClassNames.remove(name);
+				}
+			}
+		}
+
+		return agentClass;
+	}
+
 	@Override
 	public String getName() {
 
@@ -43,6 +43,7 @@ import org.structr.core.entity.AbstractRelationship;
 import org.structr.core.graph.NodeService;
 import org.structr.core.graph.NodeService.NodeIndex;
 import org.structr.core.graph.NodeService.RelationshipIndex;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.graph.search.RangeSearchAttribute;
 import org.structr.core.graph.search.Search;
 import org.structr.core.graph.search.SearchAttribute;
@@ -364,23 +365,7 @@ public abstract class Property<T> implements PropertyKey<T> {
 				Index<Node> index = nodeService.getNodeIndex(indexName);
 				if (index != null) {
 
-					synchronized (index) {
-
-						index.remove(dbNode, dbName);
-						
-						if (value != null && !StringUtils.isBlank(value.toString())) {
-							
-							index.add(dbNode, dbName, value);
-							
-						} else if (isIndexedWhenEmpty()) {
-							
-							value = getValueForEmptyFields();
-							if (value != null) {
-								
-								index.add(dbNode, dbName, value);
-							}
-						}
-					}
+					TransactionCommand.updateIndex(index, dbNode, dbName, getValueForIndex(value));
 				}
 			}
 			
@@ -395,29 +380,31 @@ public abstract class Property<T> implements PropertyKey<T> {
 				Index<Relationship> index = nodeService.getRelationshipIndex(indexName);
 				if (index != null) {
 
-					synchronized (index) {
-
-						index.remove(dbRel, dbName);
-							
-						if (value != null && !StringUtils.isBlank(value.toString())) {
-
-							index.add(dbRel, dbName, value);
-							
-						} else if (isIndexedWhenEmpty()) {
-							
-							value = getValueForEmptyFields();
-							if (value != null) {
-								
-								index.add(dbRel, dbName, value);
-							}
-						}
-					}
+					TransactionCommand.updateIndex(index, dbRel, dbName, getValueForIndex(value));
 				}
 			}
 		}
 		
 	}
 	
+	/**
+	 * Returns the value that is stored in the index for the given
+	 * value, or null if nothing should be stored.
+	 */
+	private Object getValueForIndex(Object value) {
+		
+		if (value != null && !StringUtils.isBlank(value.toString())) {
+			
+			return value;
+			
+		} else if (isIndexedWhenEmpty()) {
+			
+			return getValueForEmptyFields();
+		}
+		
+		return null;
+	}
+	
 	@Override
 	public SearchAttribute getSearchAttribute(SecurityContext securityContext, BooleanClause.Occur occur, T searchValue, boolean exactMatch) {
 		return new PropertySearchAttribute(this, searchValue, occur, exactMatch);
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.util;
+
+import java.util.Arrays;
+
+/**
+ * A compact, open-addressing hash set for primitive long values, used
+ * to hold node and relationship ids without boxing them into Long
+ * objects. Negative values are not allowed, the set is not thread-safe.
+ *
+ * @author Christian Morgner
+ */
+public class LongHashSet {
+
+	private static final long FREE      = -1L;
+	private static final float LOAD     = 0.5f;
+
+	private long[] values = null;
+	private int threshold = 0;
+	private int size      = 0;
+
+	public LongHashSet() {
+		this(16);
+	}
+
+	public LongHashSet(final int expectedSize) {
+
+		int capacity = 16;
+		while (capacity * LOAD < expectedSize) {
+			capacity <<= 1;
+		}
+
+		allocate(capacity);
+	}
+
+	/**
+	 * Adds the given value to this set.
+	 *
+	 * @param value
+	 * @return true if the value was not already present
+	 */
+	public boolean add(final long value) {
+
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative values are not supported: " + value);
+		}
+
+		int index = indexOf(value, values);
+		if (values[index] == value) {
+			return false;
+		}
+
+		values[index] = value;
+
+		if (++size > threshold) {
+			rehash(values.length << 1);
+		}
+
+		return true;
+	}
+
+	public boolean contains(final long value) {
+
+		if (value < 0) {
+			return false;
+		}
+
+		return values[indexOf(value, values)] == value;
+	}
+
+	/**
+	 * Retains only the values that are also contained in the given set.
+	 *
+	 * @param other
+	 */
+	public void retainAll(final LongHashSet other) {
+
+		long[] oldValues = values;
+
+		allocate(values.length);
+
+		for (long value : oldValues) {
+
+			if (value != FREE && other.contains(value)) {
+				add(value);
+			}
+		}
+	}
+
+	public void clear() {
+
+		Arrays.fill(values, FREE);
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	// ----- private methods -----
+	private void allocate(final int capacity) {
+
+		values    = new long[capacity];
+		threshold = (int)(capacity * LOAD);
+		size      = 0;
+
+		Arrays.fill(values, FREE);
+	}
+
+	private void rehash(final int capacity) {
+
+		long[] oldValues = values;
+
+		allocate(capacity);
+
+		for (long value : oldValues) {
+
+			if (value != FREE) {
+
+				values[indexOf(value, values)] = value;
+				size++;
+			}
+		}
+	}
+
+	private int indexOf(final long value, final long[] table) {
+
+		int mask  = table.length - 1;
+		int index = mix(value) & mask;
+
+		while (table[index] != FREE && table[index] != value) {
+			index = (index + 1) & mask;
+		}
+
+		return index;
+	}
+
+	private static int mix(final long value) {
+
+		long h = value * 0x9E3779B97F4A7C15L;
+
+		return (int)(h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact map from uuid strings to non-negative long values, used to
+ * resolve the database ids of a large number of nodes by their uuid.
+ * Uuids in the default format of 32 hex digits are stored as two
+ * primitive longs in open-addressing arrays, which needs about a tenth
+ * of the memory of a HashMap. Other keys are stored in a HashMap. The
+ * map is not thread-safe.
+ *
+ * @author Christian Morgner
+ */
+public class UuidMap {
+
+	private static final long FREE      = -1L;
+	private static final float LOAD     = 0.5f;
+
+	private Map<String, Long> otherKeys = new HashMap<String, Long>();
+	private long[] highBits             = null;
+	private long[] lowBits              = null;
+	private long[] values               = null;
+	private int threshold               = 0;
+	private int size                    = 0;
+
+	public UuidMap() {
+		this(16);
+	}
+
+	public UuidMap(final int expectedSize) {
+
+		int capacity = 16;
+		while (capacity * LOAD < expectedSize) {
+			capacity <<= 1;
+		}
+
+		allocate(capacity);
+	}
+
+	/**
+	 * Associates the given value with the given uuid.
+	 *
+	 * @param uuid
+	 * @param value the value, must not be negative
+	 */
+	public void put(final String uuid, final long value) {
+
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative values are not supported: " + value);
+		}
+
+		if (!isCompact(uuid)) {
+
+			otherKeys.put(uuid, value);
+			return;
+		}
+
+		long high = parseHex(uuid, 0);
+		long low  = parseHex(uuid, 16);
+		int index = indexOf(high, low, highBits, lowBits, values);
+
+		if (values[index] == FREE) {
+
+			highBits[index] = high;
+			lowBits[index]  = low;
+			values[index]   = value;
+
+			if (++size > threshold) {
+				rehash(values.length << 1);
+			}
+
+		} else {
+
+			values[index] = value;
+		}
+	}
+
+	/**
+	 * @param uuid
+	 * @return the value associated with the given uuid, or -1 if there is none
+	 */
+	public long get(final String uuid) {
+
+		if (uuid == null) {
+			return FREE;
+		}
+
+		if (!isCompact(uuid)) {
+
+			Long value = otherKeys.get(uuid);
+			if (value != null) {
+
+				return value;
+			}
+
+			return FREE;
+		}
+
+		long high = parseHex(uuid, 0);
+		long low  = parseHex(uuid, 16);
+
+		return values[indexOf(high, low, highBits, lowBits, values)];
+	}
+
+	public int size() {
+		return size + otherKeys.size();
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	// ----- private methods -----
+	private void allocate(final int capacity) {
+
+		highBits  = new long[capacity];
+		lowBits   = new long[capacity];
+		values    = new long[capacity];
+		threshold = (int)(capacity * LOAD);
+		size      = 0;
+
+		Arrays.fill(values, FREE);
+	}
+
+	private void rehash(final int capacity) {
+
+		long[] oldHighBits = highBits;
+		long[] oldLowBits  = lowBits;
+		long[] oldValues   = values;
+
+		allocate(capacity);
+
+		for (int i=0; i<oldValues.length; i++) {
+
+			if (oldValues[i] != FREE) {
+
+				int index = indexOf(oldHighBits[i], oldLowBits[i], highBits, lowBits, values);
+
+				highBits[index] = oldHighBits[i];
+				lowBits[index]  = oldLowBits[i];
+				values[index]   = oldValues[i];
+				size++;
+			}
+		}
+	}
+
+	private int indexOf(final long high, final long low, final long[] highTable, final long[] lowTable, final long[] valueTable) {
+
+		int mask  = valueTable.length - 1;
+		int index = mix(high ^ (low * 31)) & mask;
+
+		while (valueTable[index] != FREE && (highTable[index] != high || lowTable[index] != low)) {
+			index = (index + 1) & mask;
+		}
+
+		return index;
+	}
+
+	private static boolean isCompact(final String uuid) {
+
+		if (uuid == null || uuid.length() != 32) {
+			return false;
+		}
+
+		// only lower case digits, upper case digits would be mapped to the same key
+		for (int i=0; i<32; i++) {
+
+			char c = uuid.charAt(i);
+
+			if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static long parseHex(final String uuid, final int offset) {
+
+		long value = 0L;
+
+		for (int i=offset; i<offset+16; i++) {
+			value = (value << 4) | Character.digit(uuid.charAt(i), 16);
+		}
+
+		return value;
+	}
+
+	private static int mix(final long value) {
+
+		long h = value * 0x9E3779B97F4A7C15L;
+
+		return (int)(h ^ (h >>> 32));
+	}
+}
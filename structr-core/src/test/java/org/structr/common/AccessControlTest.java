@@ -42,6 +42,7 @@ package org.structr.common;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Result;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.AbstractRelationship;
 import org.structr.core.entity.TestOne;
 import org.structr.core.graph.search.Search;
 import org.structr.core.graph.search.SearchAttribute;
@@ -411,6 +412,108 @@ public class AccessControlTest extends StructrTest {
 
 	}
 
+	public void test08GroupReadPermission() {
+
+		try {
+
+			List<AbstractNode> users = createTestNodes(User.class, 3);
+			User user1 = (User) users.get(0);
+			User user2 = (User) users.get(1);
+			final User group = (User) users.get(2);
+			
+			// Let user 1 create a node and grant read permission to the group of user 2
+			Class type = TestOne.class;
+			final TestOne t1 = createTestNode(TestOne.class, user1);
+			final AbstractRelationship membership = createTestRelationship(group, user2, RelType.CONTAINS);
+
+			transactionCommand.execute(new StructrTransaction<Object>() {
+				@Override
+				public Object execute() throws FrameworkException {
+
+					group.grant(Permission.read, t1);
+					return null;
+				}
+			});
+			
+			SecurityContext user2Context = SecurityContext.getInstance(user2, AccessMode.Backend);
+			List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+			searchAttributes.add(Search.andExactTypeAndSubtypes(type));
+
+			Result result = Services.command(user2Context, SearchNodeCommand.class).execute(searchAttributes);
+			
+			assertEquals(1, result.size());
+			assertEquals(t1.getUuid(), result.get(0).getUuid());
+
+			// Remove user 2 from the group
+			deleteRelationshipCommand.execute(membership);
+			
+			result = Services.command(user2Context, SearchNodeCommand.class).execute(searchAttributes);
+			
+			assertTrue(result.isEmpty());
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
+	public void test09FilterReadable() {
+
+		try {
+
+			List<AbstractNode> users = createTestNodes(User.class, 2);
+			User user1 = (User) users.get(0);
+			final User user2 = (User) users.get(1);
+			
+			PropertyMap props = new PropertyMap();
+			props.put(AbstractNode.visibleToPublicUsers, true);
+			
+			final TestOne t1 = createTestNode(TestOne.class, user1);
+			final TestOne t2 = createTestNode(TestOne.class, user1);
+			final TestOne t3 = createTestNode(TestOne.class, props, user1);
+			final TestOne t4 = createTestNode(TestOne.class, user2);
+
+			transactionCommand.execute(new StructrTransaction<Object>() {
+				@Override
+				public Object execute() throws FrameworkException {
+
+					// Grant write permission first, read permission is added to the same relationship
+					user2.grant(Permission.write, t2);
+					user2.grant(Permission.read, t2);
+					return null;
+				}
+			});
+			
+			List<TestOne> nodes = new LinkedList<TestOne>();
+			nodes.add(t1);
+			nodes.add(t2);
+			nodes.add(t3);
+			nodes.add(t4);
+			
+			List<TestOne> readable = SecurityContext.getInstance(user2, AccessMode.Backend).filterReadable(nodes);
+			
+			assertEquals(3, readable.size());
+			assertEquals(t2, readable.get(0));
+			assertEquals(t3, readable.get(1));
+			assertEquals(t4, readable.get(2));
+
+			readable = SecurityContext.getInstance(null, AccessMode.Frontend).filterReadable(nodes);
+
+			assertEquals(1, readable.size());
+			assertEquals(t3, readable.get(0));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
 	protected <T extends AbstractNode> T createTestNode(final Class<T> type, final Principal user) throws FrameworkException {
 		return (T)createTestNode(type, new PropertyMap(), user);
 	}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.Map;
+import org.structr.core.Services;
+import org.structr.core.graph.FindNodeCommand;
+import org.structr.core.graph.NodeService;
+import org.structr.core.graph.NodeServiceCommand;
+
+/**
+ * Tests the creation of commands with {@link Services#command}. The time
+ * per call is measured by CommandCreationBenchmark in structr-benchmarks.
+ *
+ * @author Christian Morgner
+ */
+public class CommandCreationTest extends StructrTest {
+
+	public void test01InjectedArguments() {
+
+		FindNodeCommand command1 = Services.command(securityContext, FindNodeCommand.class);
+		FindNodeCommand command2 = Services.command(securityContext, FindNodeCommand.class);
+
+		assertNotNull(command1.getArgument("graphDb"));
+		assertSame(command1.getArgument("graphDb"), command2.getArgument("graphDb"));
+		assertNotNull(command1.getArgument("indices"));
+
+		// arguments set on one command are not visible to other commands
+		command1.setArgument("test", "value");
+
+		assertEquals("value", command1.getArgument("test"));
+		assertNull(command2.getArgument("test"));
+		assertNull(Services.command(securityContext, FindNodeCommand.class).getArgument("test"));
+		assertNotNull(command1.getArgument("graphDb"));
+	}
+
+	public void test02SharedInjection() {
+
+		TestCommand command1 = Services.command(securityContext, TestCommand.class);
+		TestCommand command2 = Services.command(securityContext, TestCommand.class);
+		TestCommand legacy   = new TestCommand();
+
+		// the service injects its arguments once for all commands of a type
+		Services.getService(NodeService.class).injectArguments(legacy);
+
+		assertSame(command1.getArguments(), command2.getArguments());
+		assertEquals(legacy.getArguments(), command1.getArguments());
+
+		// the first write copies the shared arguments
+		command1.setArgument("test", "value");
+
+		assertNotSame(command1.getArguments(), command2.getArguments());
+		assertSame(command2.getArguments(), Services.command(securityContext, TestCommand.class).getArguments());
+		assertEquals(legacy.getArguments().size() + 1, command1.getArguments().size());
+	}
+
+	// ----- nested classes -----
+	public static class TestCommand extends NodeServiceCommand {
+
+		public Map<String, Object> getArguments() {
+			return arguments;
+		}
+	}
+}
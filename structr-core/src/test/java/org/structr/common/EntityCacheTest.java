@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Result;
+import org.structr.core.Services;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.TestOne;
+import org.structr.core.graph.EntityCache;
+import org.structr.core.graph.StructrTransaction;
+import org.structr.core.graph.search.Search;
+import org.structr.core.graph.search.SearchAttribute;
+import org.structr.core.graph.search.SearchNodeCommand;
+import org.structr.core.property.PropertyMap;
+
+/**
+ * Test the shared entity metadata cache.
+ *
+ * @author Christian Morgner
+ */
+public class EntityCacheTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(EntityCacheTest.class.getName());
+
+	@Override
+	public void test00DbAvailable() {
+
+		super.test00DbAvailable();
+
+	}
+
+	public void test01CacheHitOnRepeatedSearch() {
+
+		try {
+
+			createTestNodes(TestOne.class, 10);
+
+			// first search populates the cache
+			assertEquals(10, searchTestOne(SecurityContext.getSuperUserInstance()).size());
+
+			long hits = EntityCache.getHitCount();
+
+			assertEquals(10, searchTestOne(SecurityContext.getSuperUserInstance()).size());
+			assertTrue(EntityCache.getHitCount() >= hits + 10);
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
+	public void test02InvalidationOnModification() {
+
+		try {
+
+			PropertyMap props = new PropertyMap();
+			props.put(AbstractNode.visibleToPublicUsers, true);
+
+			final TestOne node           = createTestNode(TestOne.class, props);
+			SecurityContext publicContext = SecurityContext.getInstance(null, AccessMode.Frontend);
+
+			// cache the node while it is public
+			assertEquals(1, searchTestOne(publicContext).size());
+			assertEquals(1, searchTestOne(publicContext).size());
+
+			transactionCommand.execute(new StructrTransaction() {
+
+				@Override
+				public Object execute() throws FrameworkException {
+
+					node.setProperty(AbstractNode.visibleToPublicUsers, false);
+					return null;
+				}
+
+			});
+
+			// cached visibility flags must not be used after the change
+			assertTrue(searchTestOne(SecurityContext.getInstance(null, AccessMode.Frontend)).isEmpty());
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
+	private Result searchTestOne(final SecurityContext context) throws FrameworkException {
+
+		List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+		searchAttributes.add(Search.andExactTypeAndSubtypes(TestOne.class));
+
+		return Services.command(context, SearchNodeCommand.class).execute(searchAttributes);
+	}
+}
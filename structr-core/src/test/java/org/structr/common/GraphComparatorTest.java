@@ -22,12 +22,16 @@ package org.structr.common;
 
 
 import org.structr.common.error.FrameworkException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.fail;
 import org.structr.core.GraphObject;
 import org.structr.core.Services;
+import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.TestOne;
 import org.structr.core.graph.StructrTransaction;
 import org.structr.core.graph.TransactionCommand;
@@ -197,6 +201,43 @@ public class GraphComparatorTest extends StructrTest {
 		}
 
 	}
+
+	public void test02SortAndTop() {
+
+		try {
+
+			List<AbstractNode> nodes = createTestNodes(TestOne.class, 40);
+
+			// some nodes without value, many equal values
+			for (int i=0; i<nodes.size(); i++) {
+
+				if (i % 7 != 0) {
+					setPropertyTx(nodes.get(i), TestOne.anInt, (i * 13) % 5);
+				}
+			}
+
+			for (String order : new String[] { GraphObjectComparator.ASCENDING, GraphObjectComparator.DESCENDING }) {
+
+				GraphObjectComparator comp  = new GraphObjectComparator(TestOne.anInt, order);
+				List<AbstractNode> sorted   = new ArrayList<AbstractNode>(nodes);
+				List<AbstractNode> expected = new ArrayList<AbstractNode>(nodes);
+
+				Collections.sort(expected, comp);
+				comp.sort(sorted);
+
+				assertEquals(expected, sorted);
+				assertEquals(expected.subList(0, 5), comp.top(nodes, 5));
+				assertEquals(expected, comp.top(nodes, 100));
+				assertTrue(comp.top(nodes, 0).isEmpty());
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
 		
 	private void setPropertyTx(final GraphObject obj, final PropertyKey key, final Object value) {
 		
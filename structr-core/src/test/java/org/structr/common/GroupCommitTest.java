@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Result;
+import org.structr.core.Services;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.TestOne;
+import org.structr.core.graph.CreateNodeCommand;
+import org.structr.core.graph.GroupCommitter;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.StructrTransaction;
+import org.structr.core.graph.TransactionCommand;
+import org.structr.core.graph.search.Search;
+import org.structr.core.graph.search.SearchAttribute;
+
+/**
+ * Test group commit of concurrent transactions.
+ *
+ * @author Christian Morgner
+ */
+public class GroupCommitTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(GroupCommitTest.class.getName());
+
+	@Override
+	public void test00DbAvailable() {
+
+		super.test00DbAvailable();
+
+	}
+
+	/**
+	 * Transactions that do not allow group commit must be executed on the
+	 * calling thread, with its thread-local state, even if group commit is
+	 * enabled.
+	 */
+	public void test01TransactionsRunOnCallerThread() {
+
+		context.put(Services.GROUP_COMMIT_ENABLED, "true");
+
+		try {
+
+			final ThreadLocal<Thread> caller = new ThreadLocal<Thread>();
+			final int threadCount            = 4;
+			final int number                 = 20;
+			final AtomicInteger executions   = new AtomicInteger();
+			final AtomicInteger failures     = new AtomicInteger();
+			Thread[] threads                 = new Thread[threadCount];
+
+			for (int i=0; i<threadCount; i++) {
+
+				threads[i] = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+
+						TransactionCommand transaction = Services.command(securityContext, TransactionCommand.class);
+						final CreateNodeCommand create = Services.command(securityContext, CreateNodeCommand.class);
+
+						caller.set(Thread.currentThread());
+
+						for (int j=0; j<number; j++) {
+
+							try {
+
+								transaction.execute(new StructrTransaction() {
+
+									@Override
+									public Object execute() throws FrameworkException {
+
+										executions.incrementAndGet();
+
+										if (caller.get() != Thread.currentThread()) {
+											failures.incrementAndGet();
+										}
+
+										return create.execute(new NodeAttribute(AbstractNode.type, TestOne.class.getSimpleName()));
+									}
+								});
+
+							} catch (Throwable t) {
+
+								logger.log(Level.WARNING, "Node creation failed", t);
+								failures.incrementAndGet();
+							}
+						}
+					}
+				});
+
+				threads[i].start();
+			}
+
+			for (Thread thread : threads) {
+
+				try { thread.join(); } catch (InterruptedException iex) {}
+			}
+
+			assertEquals(0, failures.get());
+
+			// every transaction was executed exactly once
+			assertEquals(threadCount * number, executions.get());
+			assertEquals(0, GroupCommitter.getInstance().getCommittedCount());
+
+		} finally {
+
+			GroupCommitter.shutdown();
+			context.remove(Services.GROUP_COMMIT_ENABLED);
+		}
+
+	}
+
+	/**
+	 * Creates nodes in many small group committed transactions from
+	 * several threads, one of which fails on purpose. The failing
+	 * transaction must report its error to its own caller only, all other
+	 * nodes must be committed.
+	 */
+	public void test02FailingTransactionInBatch() {
+
+		context.put(Services.GROUP_COMMIT_ENABLED, "true");
+
+		try {
+
+			final int threadCount         = 8;
+			final int number              = 100;
+			final AtomicInteger failures  = new AtomicInteger();
+			final AtomicInteger errors    = new AtomicInteger();
+			Thread[] threads              = new Thread[threadCount];
+
+			for (int i=0; i<threadCount; i++) {
+
+				final int threadIndex = i;
+
+				threads[i] = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+
+						TransactionCommand transaction = Services.command(securityContext, TransactionCommand.class);
+						final CreateNodeCommand create = Services.command(securityContext, CreateNodeCommand.class);
+
+						for (int j=0; j<number; j++) {
+
+							final boolean fail = (threadIndex == 0 && j == number / 2);
+
+							try {
+
+								transaction.execute(new StructrTransaction(true, true) {
+
+									@Override
+									public Object execute() throws FrameworkException {
+
+										create.execute(new NodeAttribute(AbstractNode.type, TestOne.class.getSimpleName()));
+
+										if (fail) {
+											throw new FrameworkException(422, "Failure on purpose");
+										}
+
+										return null;
+									}
+								});
+
+							} catch (FrameworkException fex) {
+
+								errors.incrementAndGet();
+
+							} catch (Throwable t) {
+
+								logger.log(Level.WARNING, "Node creation failed", t);
+								failures.incrementAndGet();
+							}
+						}
+					}
+				});
+
+				threads[i].start();
+			}
+
+			for (Thread thread : threads) {
+
+				try { thread.join(); } catch (InterruptedException iex) {}
+			}
+
+			assertEquals(0, failures.get());
+			assertEquals(1, errors.get());
+
+			List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+			searchAttributes.add(Search.andExactType(TestOne.class));
+
+			Result result = searchNodeCommand.execute(false, false, searchAttributes);
+			assertEquals(threadCount * number - 1, result.size());
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		} finally {
+
+			GroupCommitter.shutdown();
+			context.remove(Services.GROUP_COMMIT_ENABLED);
+		}
+
+	}
+
+}
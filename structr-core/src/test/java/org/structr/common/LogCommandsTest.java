@@ -24,6 +24,7 @@ import org.apache.commons.lang.StringUtils;
 
 import org.structr.common.error.FrameworkException;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.log.LogEntry;
 import org.structr.core.log.ReadLogCommand;
 import org.structr.core.log.WriteLogCommand;
 
@@ -32,6 +33,7 @@ import org.structr.core.log.WriteLogCommand;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -151,4 +153,141 @@ public class LogCommandsTest extends StructrTest {
 
 	}
 
+	public void test03TestBatchedWrite() {
+
+		try {
+
+			int number        = 10000;
+			String logPageKey = "test3";
+			long t0           = System.nanoTime();
+
+			for (int i = 0; i < number; i++) {
+
+				writeLogCommand.execute(logPageKey, new String[] { "foo" + i, "bar" });
+			}
+
+			long t1                     = System.nanoTime();
+			DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			Double time                 = (t1 - t0) / 1000000000.0;
+			Double rate                 = number / ((t1 - t0) / 1000000000.0);
+
+			logger.log(Level.INFO, "Enqueued {0} log entries in {1} seconds ({2} per s)", new Object[] { number, decimalFormat.format(time), decimalFormat.format(rate) });
+
+			// reading waits for all queued entries
+			Map<String, Object> result = (Map<String, Object>) readLogCommand.execute(logPageKey);
+
+			assertEquals(number, result.size());
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
+	public void test04TestRangeScan() {
+
+		try {
+
+			int number        = 100;
+			String logPageKey = "test4";
+			long t0           = System.currentTimeMillis();
+
+			for (int i = 0; i < number; i++) {
+
+				writeLogCommand.execute(logPageKey, new String[] { "foo" + i, "bar" });
+			}
+
+			long t1 = System.currentTimeMillis();
+
+			// entries are ordered by time
+			int count      = 0;
+			String lastId  = null;
+
+			for (LogEntry entry : readLogCommand.execute(logPageKey, t0, t1, null, 0, false)) {
+
+				assertTrue(entry.getTimestamp() >= t0 && entry.getTimestamp() <= t1);
+				assertTrue(lastId == null || lastId.compareTo(entry.getId()) < 0);
+				assertEquals("foo" + count, ((String[]) entry.getValue())[0]);
+
+				lastId = entry.getId();
+				count++;
+			}
+
+			assertEquals(number, count);
+
+			// newest entries first
+			count = 0;
+
+			for (LogEntry entry : readLogCommand.execute(logPageKey, 0, Long.MAX_VALUE, null, 10, true)) {
+
+				assertEquals("foo" + (number - 1 - count), ((String[]) entry.getValue())[0]);
+				count++;
+			}
+
+			assertEquals(10, count);
+
+			// counts respect the limit
+			assertEquals(number, readLogCommand.execute(logPageKey, t0, t1, null, 0, false).count());
+			assertEquals(10, readLogCommand.execute(logPageKey, t0, t1, null, 10, false).count());
+			assertEquals(10, readLogCommand.execute(logPageKey, t0, t1, null, 10, true).count());
+
+			// empty range
+			assertFalse(readLogCommand.execute(logPageKey, t1 + 1000, Long.MAX_VALUE, null, 0, false).iterator().hasNext());
+			assertEquals(0, readLogCommand.execute(logPageKey, t1 + 1000, Long.MAX_VALUE, null, 0, false).count());
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
+	public void test05TestScanAcrossChunks() {
+
+		try {
+
+			int number        = 600;
+			String logPageKey = "test5";
+
+			for (int i = 0; i < number; i++) {
+
+				writeLogCommand.execute(logPageKey, new String[] { "foo" + i, "bar" });
+			}
+
+			// stop early, the scan must not keep the log db busy
+			Iterator<LogEntry> it = readLogCommand.execute(logPageKey, 0, Long.MAX_VALUE, null, 0, false).iterator();
+
+			assertEquals("foo0", ((String[]) it.next().getValue())[0]);
+
+			writeLogCommand.execute(logPageKey, new String[] { "foo" + number, "bar" });
+
+			// every entry exactly once and in order
+			int count = 0;
+
+			for (LogEntry entry : readLogCommand.execute(logPageKey, 0, Long.MAX_VALUE, null, 0, false)) {
+
+				assertEquals("foo" + count, ((String[]) entry.getValue())[0]);
+				count++;
+			}
+
+			assertEquals(number + 1, count);
+
+			assertEquals(number + 1, readLogCommand.execute(logPageKey, 0, Long.MAX_VALUE, null, 0, false).count());
+			assertEquals(300, readLogCommand.execute(logPageKey, 0, Long.MAX_VALUE, null, 300, false).count());
+			assertEquals(number + 1, readLogCommand.execute(logPageKey, 0, Long.MAX_VALUE, null, 0, true).count());
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
 }
@@ -29,11 +29,19 @@ import org.structr.core.entity.AbstractRelationship;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.structr.core.Result;
+import org.structr.core.Services;
 import org.structr.core.entity.GenericNode;
+import org.structr.core.entity.TestOne;
+import org.structr.core.graph.search.Search;
+import org.structr.core.graph.search.SearchAttribute;
+import org.structr.core.graph.search.SearchNodeCommand;
 
 //~--- classes ----------------------------------------------------------------
 
@@ -131,4 +139,81 @@ public class PerformanceTest extends StructrTest {
 
 	}
 
+	/**
+	 * Tests concurrent searches
+	 * 
+	 * Runs searches with one thread per available processor, and checks
+	 * that every search returns a complete page. The throughput is
+	 * measured by ConcurrentSearchBenchmark in structr-benchmarks.
+	 */
+	public void test03ConcurrentSearch() {
+
+		try {
+
+			final int number         = 100;
+			final int searches       = 100;
+			final int threadCount    = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+			List<AbstractNode> nodes = createTestNodes(TestOne.class, number);
+
+			assertTrue(nodes.size() == number);
+
+			runSearches(threadCount, searches);
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
+	private void runSearches(final int threadCount, final int searches) {
+
+		final AtomicInteger failures  = new AtomicInteger();
+		final AtomicInteger remaining = new AtomicInteger(searches);
+		Thread[] threads              = new Thread[threadCount];
+
+		for (int i=0; i<threadCount; i++) {
+
+			threads[i] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+
+					SearchNodeCommand searchCommand        = Services.command(securityContext, SearchNodeCommand.class);
+					List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+
+					searchAttributes.add(Search.andExactType(TestOne.class));
+
+					while (remaining.decrementAndGet() >= 0) {
+
+						try {
+
+							Result result = searchCommand.execute(false, false, searchAttributes, AbstractNode.name, false, 10, 1);
+							if (result.size() != 10) {
+
+								failures.incrementAndGet();
+							}
+
+						} catch (Throwable t) {
+
+							logger.log(Level.WARNING, "Search failed", t);
+							failures.incrementAndGet();
+						}
+					}
+				}
+			});
+
+			threads[i].start();
+		}
+
+		for (Thread thread : threads) {
+
+			try { thread.join(); } catch (InterruptedException iex) {}
+		}
+
+		assertEquals(0, failures.get());
+	}
+
 }
@@ -49,6 +49,7 @@ import org.structr.core.entity.TestSeven;
 import org.structr.core.graph.StructrTransaction;
 import org.structr.core.graph.search.DistanceSearchAttribute;
 import org.structr.core.graph.search.Search;
+import org.structr.core.graph.search.SearchNodeCommand;
 import org.structr.core.graph.search.SearchAttribute;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
@@ -473,4 +474,43 @@ public class SearchResultsTest extends StructrTest {
 //
 //	}
 
+	public void test10ResultCountInPublicContext() {
+
+		try {
+
+			for (int i=0; i<6; i++) {
+
+				PropertyMap props = new PropertyMap();
+
+				props.put(AbstractNode.visibleToPublicUsers, true);
+				props.put(AbstractNode.hidden, i == 0);
+				props.put(AbstractNode.deleted, i == 1);
+
+				createTestNode(TestOne.class, props);
+			}
+
+			// private node
+			createTestNode(TestOne.class);
+
+			SecurityContext publicContext          = SecurityContext.getInstance(null, AccessMode.Frontend);
+			List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+
+			searchAttributes.add(Search.andExactTypeAndSubtypes(TestOne.class));
+
+			// the count is taken from the index without reading the other pages
+			Result result = Services.command(publicContext, SearchNodeCommand.class).execute(false, false, searchAttributes, AbstractNode.name, false, 2);
+
+			assertEquals(2, result.size());
+			assertEquals(4, result.getRawResultCount().intValue());
+			assertFalse(result.isApproximateResultCount());
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
 }
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.auth.AuthHelper;
+import org.structr.core.auth.SessionRegistry;
+import org.structr.core.entity.Principal;
+import org.structr.core.entity.User;
+import org.structr.core.graph.StructrTransaction;
+import org.structr.core.property.PropertyMap;
+
+/**
+ * Test the resolution of principals with the session registry.
+ *
+ * @author Axel Morgner
+ */
+public class SessionRegistryTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(SessionRegistryTest.class.getName());
+
+	@Override
+	public void test00DbAvailable() {
+
+		super.test00DbAvailable();
+
+	}
+
+	public void test01RegistryHitOnRepeatedLookup() {
+
+		try {
+
+			PropertyMap props = new PropertyMap();
+			props.put(Principal.sessionId, "session1");
+
+			User user = createTestNode(User.class, props);
+
+			// first lookup searches the index and registers the session id
+			assertEquals(user, AuthHelper.getPrincipalForSessionId("session1"));
+
+			long hits = SessionRegistry.getHitCount();
+
+			assertEquals(user, AuthHelper.getPrincipalForSessionId("session1"));
+			assertEquals(hits + 1, SessionRegistry.getHitCount());
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
+	public void test02InvalidationOnLogout() {
+
+		try {
+
+			PropertyMap props = new PropertyMap();
+			props.put(Principal.sessionId, "session2");
+
+			final User user = createTestNode(User.class, props);
+
+			assertEquals(user, AuthHelper.getPrincipalForSessionId("session2"));
+
+			// log in with a new session
+			transactionCommand.execute(new StructrTransaction() {
+
+				@Override
+				public Object execute() throws FrameworkException {
+
+					user.setProperty(Principal.sessionId, "session3");
+					return null;
+				}
+
+			});
+
+			assertNull(SessionRegistry.get("session2"));
+			assertNull(AuthHelper.getPrincipalForSessionId("session2"));
+			assertEquals(user, AuthHelper.getPrincipalForSessionId("session3"));
+
+			// log out
+			transactionCommand.execute(new StructrTransaction() {
+
+				@Override
+				public Object execute() throws FrameworkException {
+
+					user.setProperty(Principal.sessionId, null);
+					return null;
+				}
+
+			});
+
+			assertNull(AuthHelper.getPrincipalForSessionId("session3"));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+}
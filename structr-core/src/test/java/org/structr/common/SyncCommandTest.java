@@ -0,0 +1,300 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Result;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.AbstractRelationship;
+import org.structr.core.entity.TestOne;
+import org.structr.core.graph.StructrTransaction;
+import org.structr.core.graph.SyncCommand;
+import org.structr.core.graph.search.Search;
+import org.structr.core.graph.search.SearchAttribute;
+
+/**
+ * Test export and import of the database
+ *
+ * All tests are executed in superuser context
+ *
+ * @author Christian Morgner
+ */
+public class SyncCommandTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(SyncCommandTest.class.getName());
+
+	@Override
+	public void test00DbAvailable() {
+		super.test00DbAvailable();
+	}
+
+	/**
+	 * Imports nodes and relationships in chunks that are smaller than the
+	 * export, so relationships need to resolve nodes of earlier chunks.
+	 */
+	public void test01ChunkedImport() {
+
+		try {
+
+			final List<AbstractNode> nodes = createTestNodes(TestOne.class, 10);
+			List<AbstractRelationship> rels = createChain(nodes);
+			byte[] export                   = export(nodes, rels);
+
+			// delete nodes and relationships
+			transactionCommand.execute(new StructrTransaction() {
+
+				@Override
+				public Object execute() throws FrameworkException {
+
+					for (AbstractNode node : nodes) {
+						deleteNodeCommand.execute(node);
+					}
+
+					return null;
+				}
+			});
+
+			assertEquals(0, getTestNodes().size());
+
+			SyncCommand.importFromStream((GraphDatabaseService)graphDbCommand.execute(), securityContext, new ByteArrayInputStream(export), false, 3, 0);
+
+			List<AbstractNode> importedNodes = getTestNodes();
+
+			assertEquals(10, importedNodes.size());
+			assertEquals(9, countOutgoingRelationships(importedNodes));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	/**
+	 * Resumes an import after the nodes were committed, the relationships
+	 * must resolve the existing nodes using the uuid index.
+	 */
+	public void test02ResumeImport() {
+
+		try {
+
+			final List<AbstractNode> nodes        = createTestNodes(TestOne.class, 10);
+			final List<AbstractRelationship> rels = createChain(nodes);
+			byte[] export                         = export(nodes, rels);
+
+			// delete relationships only
+			transactionCommand.execute(new StructrTransaction() {
+
+				@Override
+				public Object execute() throws FrameworkException {
+
+					for (AbstractRelationship rel : rels) {
+						deleteRelationshipCommand.execute(rel);
+					}
+
+					return null;
+				}
+			});
+
+			assertEquals(0, countOutgoingRelationships(getTestNodes()));
+
+			// skip the nodes
+			SyncCommand.importFromStream((GraphDatabaseService)graphDbCommand.execute(), securityContext, new ByteArrayInputStream(export), false, 4, 10);
+
+			List<AbstractNode> importedNodes = getTestNodes();
+
+			assertEquals(10, importedNodes.size());
+			assertEquals(9, countOutgoingRelationships(importedNodes));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	/**
+	 * Exports nodes and relationships in the binary format with blocks
+	 * that are smaller than the export, and imports them again.
+	 */
+	public void test03BinaryExportImport() {
+
+		try {
+
+			final List<AbstractNode> nodes  = createTestNodes(TestOne.class, 10);
+			List<AbstractRelationship> rels = createChain(nodes);
+			File exportFile                 = File.createTempFile("structr-sync", ".zip");
+
+			exportFile.deleteOnExit();
+
+			FileOutputStream outputStream = new FileOutputStream(exportFile);
+			outputStream.write(export(nodes, rels, SyncCommand.FORMAT_BINARY));
+			outputStream.close();
+
+			// delete nodes and relationships
+			transactionCommand.execute(new StructrTransaction() {
+
+				@Override
+				public Object execute() throws FrameworkException {
+
+					for (AbstractNode node : nodes) {
+						deleteNodeCommand.execute(node);
+					}
+
+					return null;
+				}
+			});
+
+			assertEquals(0, getTestNodes().size());
+
+			SyncCommand.importFromFile((GraphDatabaseService)graphDbCommand.execute(), securityContext, exportFile.getAbsolutePath(), false, 0, 0, 2);
+
+			List<AbstractNode> importedNodes = getTestNodes();
+
+			assertEquals(10, importedNodes.size());
+			assertEquals(9, countOutgoingRelationships(importedNodes));
+
+		} catch (IOException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	/**
+	 * Imports more objects than fit in a single chunk without a batch size,
+	 * so the chunks are imported in one transaction.
+	 */
+	public void test04ImportWithoutBatchSize() {
+
+		try {
+
+			final List<AbstractNode> nodes  = createTestNodes(TestOne.class, 600);
+			List<AbstractRelationship> rels = createChain(nodes);
+			byte[] export                   = export(nodes, rels);
+
+			// delete nodes and relationships
+			transactionCommand.execute(new StructrTransaction() {
+
+				@Override
+				public Object execute() throws FrameworkException {
+
+					for (AbstractNode node : nodes) {
+						deleteNodeCommand.execute(node);
+					}
+
+					return null;
+				}
+			});
+
+			assertEquals(0, getTestNodes().size());
+
+			SyncCommand.importFromStream((GraphDatabaseService)graphDbCommand.execute(), securityContext, new ByteArrayInputStream(export), false, 0, 0);
+
+			List<AbstractNode> importedNodes = getTestNodes();
+
+			assertEquals(600, importedNodes.size());
+			assertEquals(599, countOutgoingRelationships(importedNodes));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	private List<AbstractRelationship> createChain(final List<AbstractNode> nodes) throws FrameworkException {
+
+		List<AbstractRelationship> rels = new LinkedList<AbstractRelationship>();
+
+		for (int i=1; i<nodes.size(); i++) {
+			rels.add(createTestRelationship(nodes.get(i-1), nodes.get(i), RelType.IS_AT));
+		}
+
+		return rels;
+	}
+
+	private byte[] export(final List<AbstractNode> nodes, final List<AbstractRelationship> rels) throws FrameworkException {
+		return export(nodes, rels, null);
+	}
+
+	private byte[] export(final List<AbstractNode> nodes, final List<AbstractRelationship> rels, final String format) throws FrameworkException {
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		List<Relationship> dbRels          = new LinkedList<Relationship>();
+		List<Node> dbNodes                 = new LinkedList<Node>();
+
+		for (AbstractNode node : nodes) {
+			dbNodes.add(node.getNode());
+		}
+
+		for (AbstractRelationship rel : rels) {
+			dbRels.add(rel.getRelationship());
+		}
+
+		SyncCommand.exportToStream(outputStream, dbNodes, dbRels, null, format, 4, 2);
+
+		return outputStream.toByteArray();
+	}
+
+	private List<AbstractNode> getTestNodes() throws FrameworkException {
+
+		List<SearchAttribute> searchAttributes = new LinkedList<SearchAttribute>();
+		searchAttributes.add(Search.andExactType(TestOne.class));
+
+		Result<AbstractNode> result = searchNodeCommand.execute(false, false, searchAttributes);
+
+		return result.getResults();
+	}
+
+	private int countOutgoingRelationships(final List<AbstractNode> nodes) {
+
+		int count = 0;
+
+		for (AbstractNode node : nodes) {
+
+			for (AbstractRelationship rel : node.getOutgoingRelationships(RelType.IS_AT)) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.module;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ * Test the persistent class index of the module service.
+ *
+ * @author Christian Morgner
+ */
+public class ClassIndexTest extends TestCase {
+
+	private File dir = null;
+
+	@Override
+	protected void setUp() throws Exception {
+
+		dir = new File(System.getProperty("java.io.tmpdir"), "structr-classindex-test-" + System.nanoTime());
+		dir.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+
+		dir.delete();
+	}
+
+	public void testStoreAndLoad() throws IOException {
+
+		File jar  = new File(dir, "structr-test.jar");
+		File file = new File(dir, "classindex.dat");
+
+		write(jar, "content");
+
+		String checksum             = ClassIndex.checksum(jar.getAbsolutePath());
+		Map<String, String> classes = new LinkedHashMap<String, String>();
+
+		classes.put("org.structr.test.TestNode", "N");
+		classes.put("org.structr.test.TestAgentService", "SA");
+
+		ClassIndex index = new ClassIndex(file);
+
+		index.load();
+		assertNull(index.get(jar.getAbsolutePath(), checksum));
+
+		index.put(jar.getAbsolutePath(), checksum, classes);
+		index.store();
+
+		index = new ClassIndex(file);
+		index.load();
+
+		assertEquals(classes, index.get(jar.getAbsolutePath(), checksum));
+
+		// a changed resource is not taken from the index
+		write(jar, "changed content");
+
+		String newChecksum = ClassIndex.checksum(jar.getAbsolutePath());
+
+		assertFalse(checksum.equals(newChecksum));
+		assertNull(index.get(jar.getAbsolutePath(), newChecksum));
+
+		// resources that are no longer on the class path are removed
+		index.retain(Arrays.asList("other.jar"));
+		index.store();
+
+		index = new ClassIndex(file);
+		index.load();
+
+		assertNull(index.get(jar.getAbsolutePath(), checksum));
+	}
+
+	// ----- private methods -----
+	private void write(final File file, final String content) throws IOException {
+
+		FileOutputStream out = new FileOutputStream(file);
+
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+	}
+}
@@ -20,13 +20,14 @@ package org.structr.rest;
 
 import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.io.Writer;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -38,33 +39,52 @@ import org.structr.core.Result;
 import org.structr.core.Services;
 import org.structr.core.Value;
 import org.structr.core.converter.PropertyConverter;
+import org.structr.core.EntityContext;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.AbstractRelationship;
 import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.core.property.StringProperty;
 
 /**
+ * Streams a {@link Result} as JSON.
+ *
+ * Graph objects whose property keys are the registered property view of
+ * their type are written with a serialization plan that is created
+ * once per type and view, and holds the property keys, their JSON names
+ * and a value writer per key. All other objects are serialized by looking
+ * up a serializer for the runtime type of each value.
+ *
+ * Instances of this class are not thread-safe.
  *
  * @author Christian Morgner
  */
 public class StreamingJsonWriter {
 
-	private static final Logger logger                   = Logger.getLogger(StreamingJsonWriter.class.getName());
-	private static final long MAX_SERIALIZATION_TIME     = TimeUnit.SECONDS.toMillis(30);
-
-	private final Map<Class, Serializer> serializerCache = new LinkedHashMap<Class, Serializer>();
-	private final Map<Class, Serializer> serializers     = new LinkedHashMap<Class, Serializer>();
-	private final Serializer<GraphObject> root           = new RootSerializer();
-	private final Set<Class> nonSerializerClasses        = new LinkedHashSet<Class>();
-	private final Property<String> id                    = new StringProperty("id");
-	private final int outputNestingDepth                 = Services.getOutputNestingDepth();
-	private DecimalFormat decimalFormat                  = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
-	private PropertyKey idProperty                       = GraphObject.uuid;
-	private SecurityContext securityContext              = null;
-	private Value<String> propertyView                   = null;
-	private boolean indent                               = true;
-	//private JsonWriter writer                            = null;
+	private static final Logger logger                                 = Logger.getLogger(StreamingJsonWriter.class.getName());
+	private static final long MAX_SERIALIZATION_TIME                   = TimeUnit.SECONDS.toMillis(30);
+	private static final int TIMEOUT_CHECK_INTERVAL                    = 64;
+
+	private final Map<Class, Map<String, SerializationPlan>> planCache = new HashMap<Class, Map<String, SerializationPlan>>();
+	private final Set<Class> dynamicKeyTypes                           = new LinkedHashSet<Class>();
+	private final Map<Class, Serializer> serializerCache               = new LinkedHashMap<Class, Serializer>();
+	private final Map<Class, Serializer> serializers                   = new LinkedHashMap<Class, Serializer>();
+	private final Serializer<GraphObject> root                         = new RootSerializer();
+	private final Set<Class> nonSerializerClasses                      = new LinkedHashSet<Class>();
+	private final Property<String> id                                  = new StringProperty("id");
+	private final int outputNestingDepth                               = Services.getOutputNestingDepth();
+	private final Utf8Writer utf8Writer                                = new Utf8Writer();
+	private final ValueWriter propertyWriter                           = new PropertyValueWriter();
+	private final ValueWriter stringWriter                             = new StringValueWriter();
+	private final ValueWriter numberWriter                             = new NumberValueWriter();
+	private final ValueWriter booleanWriter                            = new BooleanValueWriter();
+	private PropertyKey idProperty                                     = GraphObject.uuid;
+	private SerializationPlan lastPlan                                 = null;
+	private SecurityContext securityContext                            = null;
+	private Value<String> propertyView                                 = null;
+	private boolean indent                                             = true;
+	//private JsonWriter writer                                        = null;
 	
 	public StreamingJsonWriter(Value<String> propertyView, boolean indent) {
 
@@ -92,6 +112,27 @@ public class StreamingJsonWriter {
 		//this.writer.setIndent("   ");
 	}
 	
+	/**
+	 * Streams the given result to the given output stream, encoded as
+	 * UTF-8 without an intermediate character writer.
+	 *
+	 * @param out
+	 * @param src
+	 * @throws IOException
+	 */
+	public void stream(OutputStream out, Result src) throws IOException {
+
+		utf8Writer.setOutputStream(out);
+
+		try {
+			stream(utf8Writer, src);
+
+		} finally {
+
+			utf8Writer.setOutputStream(null);
+		}
+	}
+
 	public void stream(Writer w, Result src) throws IOException {
 		
 		long t0 = System.nanoTime();
@@ -104,11 +145,13 @@ public class StreamingJsonWriter {
 		
 		// result fields in alphabetical order
 		List<? extends GraphObject> results = src.getResults();
+		String nextPageCursor = src.getNextPageCursor();
 		Integer page = src.getPage();
 		Integer pageCount = src.getPageCount();
 		Integer pageSize = src.getPageSize();
 		String queryTime = src.getQueryTime();
 		Integer resultCount = src.getRawResultCount();
+		boolean approximateResultCount = src.isApproximateResultCount();
 		String searchString = src.getSearchString();
 		String sortKey = src.getSortKey();
 		String sortOrder = src.getSortOrder();
@@ -119,6 +162,10 @@ public class StreamingJsonWriter {
 		// open result set
 		writer.beginObject();
 		
+		if(nextPageCursor != null) {
+			writer.name("next_page_cursor").value(nextPageCursor);
+		}
+
 		if(page != null) {
 			writer.name("page").value(page);
 		}
@@ -139,6 +186,10 @@ public class StreamingJsonWriter {
 			writer.name("result_count").value(resultCount);
 		}
 
+		if(approximateResultCount) {
+			writer.name("result_count_approximate").value(true);
+		}
+
 		if(results != null) {
 
 			if(results.isEmpty()) {
@@ -187,7 +238,7 @@ public class StreamingJsonWriter {
 						}
 						
 						// check for timeout
-						if (System.currentTimeMillis() > startTime + MAX_SERIALIZATION_TIME) {
+						if ((flushCounter % TIMEOUT_CHECK_INTERVAL) == 0 && System.currentTimeMillis() > startTime + MAX_SERIALIZATION_TIME) {
 
 							logger.log(Level.SEVERE, "JSON serialization took more than {0} ms, aborted. Please review output view size or adjust timeout.", MAX_SERIALIZATION_TIME);
 							writer.flush();
@@ -219,7 +270,7 @@ public class StreamingJsonWriter {
 			writer.name("sort_order").value(sortOrder);
 		}
 		
-		writer.name("serialization_time").value(decimalFormat.format((System.nanoTime() - t0) / 1000000000.0));
+		writer.name("serialization_time").value(BigDecimal.valueOf(System.nanoTime() - t0, 9).toPlainString());
 
 		// finished
 		writer.endObject();
@@ -265,6 +316,99 @@ public class StreamingJsonWriter {
 		return serializer;
 	}
 	
+	/**
+	 * Returns the serialization plan for the type of the given object and
+	 * the given view, or null if the property keys of the type can not be
+	 * determined without the object.
+	 */
+	private SerializationPlan getSerializationPlan(GraphObject source, String localPropertyView) {
+
+		Class type = source.getClass();
+
+		if (localPropertyView == null) {
+			return null;
+		}
+
+		// consecutive objects are mostly of the same type
+		if (lastPlan != null && lastPlan.type == type && lastPlan.propertyView.equals(localPropertyView) && lastPlan.isValid()) {
+			return lastPlan;
+		}
+
+		if (dynamicKeyTypes.contains(type)) {
+			return null;
+		}
+
+		Map<String, SerializationPlan> plans = planCache.get(type);
+		if (plans == null) {
+
+			if (!hasRegisteredPropertyKeys(type)) {
+
+				dynamicKeyTypes.add(type);
+				return null;
+			}
+
+			plans = new HashMap<String, SerializationPlan>();
+			planCache.put(type, plans);
+		}
+
+		SerializationPlan plan = plans.get(localPropertyView);
+		if (plan == null || !plan.isValid()) {
+
+			Set<PropertyKey> keys = EntityContext.getPropertySet(type, localPropertyView);
+
+			// an empty view is not backed by the registered property set
+			if (keys.isEmpty()) {
+				return null;
+			}
+
+			plan = new SerializationPlan(type, localPropertyView, keys);
+			plans.put(localPropertyView, plan);
+		}
+
+		lastPlan = plan;
+
+		return plan;
+	}
+
+	/**
+	 * Indicates whether the property keys of the given type are the
+	 * registered property set of the type, i.e. getPropertyKeys is not
+	 * overridden to return keys that depend on the object.
+	 */
+	private boolean hasRegisteredPropertyKeys(Class type) {
+
+		try {
+			Class declaringClass = type.getMethod("getPropertyKeys", String.class).getDeclaringClass();
+
+			return AbstractNode.class.equals(declaringClass) || AbstractRelationship.class.equals(declaringClass);
+
+		} catch (NoSuchMethodException nsmex) {}
+
+		return false;
+	}
+
+	private ValueWriter getValueWriter(PropertyKey key) {
+
+		if (key.inputConverter(securityContext) == null) {
+
+			String typeName = key.typeName();
+
+			if ("String".equals(typeName)) {
+				return stringWriter;
+			}
+
+			if ("Integer".equals(typeName) || "Long".equals(typeName) || "Double".equals(typeName) || "Float".equals(typeName)) {
+				return numberWriter;
+			}
+
+			if ("Boolean".equals(typeName)) {
+				return booleanWriter;
+			}
+		}
+
+		return propertyWriter;
+	}
+
 	private void collectAllInterfaces(Class type, Set<Class> interfaces) {
 
 		if (interfaces.contains(type)) {
@@ -385,6 +529,15 @@ public class StreamingJsonWriter {
 				}
 				*/
 				
+				SerializationPlan plan = getSerializationPlan(source, localPropertyView);
+				if (plan != null) {
+
+					plan.serialize(writer, source, localPropertyView, depth);
+
+					writer.endObject();
+					return;
+				}
+
 				// property keys
 				Iterable<PropertyKey> keys = source.getPropertyKeys(localPropertyView);
 				if(keys != null) {
@@ -492,4 +645,134 @@ public class StreamingJsonWriter {
 			writer.endObject();
 		}
 	}
+
+	// ----- nested classes -----
+	/**
+	 * The property keys of a type in a view, in output order, with their
+	 * JSON names and a value writer per key. A plan is valid as long as
+	 * no keys were added to the property set it was created from.
+	 */
+	private class SerializationPlan {
+
+		private Set<PropertyKey> propertySet = null;
+		private PropertyKey[] keys           = null;
+		private String[] names               = null;
+		private ValueWriter[] writers        = null;
+		private String propertyView          = null;
+		private Class type                   = null;
+
+		public SerializationPlan(Class type, String propertyView, Set<PropertyKey> propertySet) {
+
+			int size = propertySet.size();
+			int i    = 0;
+
+			this.type         = type;
+			this.propertyView = propertyView;
+			this.propertySet  = propertySet;
+			this.keys         = new PropertyKey[size];
+			this.names        = new String[size];
+			this.writers      = new ValueWriter[size];
+
+			Iterator<PropertyKey> it = propertySet.iterator();
+			while (it.hasNext() && i < size) {
+
+				PropertyKey key = it.next();
+
+				keys[i]    = key;
+				names[i]   = key.equals(idProperty) ? id.jsonName() : key.jsonName();
+				writers[i] = getValueWriter(key);
+
+				i++;
+			}
+		}
+
+		public boolean isValid() {
+			return propertySet.size() == keys.length;
+		}
+
+		public void serialize(JsonWriter writer, GraphObject source, String localPropertyView, int depth) throws IOException {
+
+			for (int i=0; i<keys.length; i++) {
+
+				PropertyKey key = keys[i];
+				Object value    = source.getProperty(key);
+
+				writer.name(names[i]);
+
+				if (value != null) {
+
+					writers[i].write(writer, key, value, localPropertyView, depth+1);
+
+				} else {
+
+					writer.nullValue();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a non-null property value. The writers for primitive types
+	 * fall back to the generic serialization if the value has a different
+	 * type than the property key declares.
+	 */
+	private abstract class ValueWriter {
+		public abstract void write(JsonWriter writer, PropertyKey key, Object value, String localPropertyView, int depth) throws IOException;
+	}
+
+	private class PropertyValueWriter extends ValueWriter {
+
+		@Override
+		public void write(JsonWriter writer, PropertyKey key, Object value, String localPropertyView, int depth) throws IOException {
+			root.serializeProperty(writer, key, value, localPropertyView, depth);
+		}
+	}
+
+	private class StringValueWriter extends ValueWriter {
+
+		@Override
+		public void write(JsonWriter writer, PropertyKey key, Object value, String localPropertyView, int depth) throws IOException {
+
+			if (value instanceof String) {
+
+				writer.value((String)value);
+
+			} else {
+
+				root.serializeProperty(writer, key, value, localPropertyView, depth);
+			}
+		}
+	}
+
+	private class NumberValueWriter extends ValueWriter {
+
+		@Override
+		public void write(JsonWriter writer, PropertyKey key, Object value, String localPropertyView, int depth) throws IOException {
+
+			if (value instanceof Number) {
+
+				writer.value((Number)value);
+
+			} else {
+
+				root.serializeProperty(writer, key, value, localPropertyView, depth);
+			}
+		}
+	}
+
+	private class BooleanValueWriter extends ValueWriter {
+
+		@Override
+		public void write(JsonWriter writer, PropertyKey key, Object value, String localPropertyView, int depth) throws IOException {
+
+			if (value instanceof Boolean) {
+
+				writer.value((Boolean)value);
+
+			} else {
+
+				root.serializeProperty(writer, key, value, localPropertyView, depth);
+			}
+		}
+	}
 }
@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * An unsynchronized writer that encodes characters as UTF-8 directly into
+ * a byte buffer, which is written to the underlying output stream when it
+ * is full or when the writer is flushed. Unpaired surrogates are written
+ * as '?', like the UTF-8 encoder of the JDK does.
+ *
+ * The writer can be reused for several output streams, see
+ * {@link #setOutputStream}.
+ *
+ * @author Christian Morgner
+ */
+public class Utf8Writer extends Writer {
+
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private byte[] buffer                        = null;
+	private OutputStream out                     = null;
+	private char highSurrogate                   = 0;
+	private int position                         = 0;
+
+	public Utf8Writer() {
+		this(null, DEFAULT_BUFFER_SIZE);
+	}
+
+	public Utf8Writer(final OutputStream out) {
+		this(out, DEFAULT_BUFFER_SIZE);
+	}
+
+	public Utf8Writer(final OutputStream out, final int bufferSize) {
+
+		// the buffer must be able to hold one encoded code point
+		this.buffer = new byte[Math.max(bufferSize, 4)];
+		this.out    = out;
+	}
+
+	/**
+	 * Sets the output stream of this writer and discards any unwritten
+	 * content.
+	 *
+	 * @param out
+	 */
+	public void setOutputStream(final OutputStream out) {
+
+		this.out           = out;
+		this.position      = 0;
+		this.highSurrogate = 0;
+	}
+
+	@Override
+	public void write(final int c) throws IOException {
+		encode((char)c);
+	}
+
+	@Override
+	public void write(final char[] chars, final int offset, final int length) throws IOException {
+
+		int end = offset + length;
+
+		for (int i=offset; i<end; i++) {
+
+			char c = chars[i];
+
+			// fast path for ASCII characters
+			if (c < 0x80 && highSurrogate == 0 && position < buffer.length) {
+
+				buffer[position++] = (byte)c;
+
+			} else {
+
+				encode(c);
+			}
+		}
+	}
+
+	@Override
+	public void write(final String str, final int offset, final int length) throws IOException {
+
+		int end = offset + length;
+
+		for (int i=offset; i<end; i++) {
+
+			char c = str.charAt(i);
+
+			// fast path for ASCII characters
+			if (c < 0x80 && highSurrogate == 0 && position < buffer.length) {
+
+				buffer[position++] = (byte)c;
+
+			} else {
+
+				encode(c);
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+
+		flushBuffer();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		if (highSurrogate != 0) {
+
+			if (position == buffer.length) {
+				flushBuffer();
+			}
+
+			highSurrogate      = 0;
+			buffer[position++] = '?';
+		}
+
+		flushBuffer();
+		out.close();
+	}
+
+	// ----- private methods -----
+	private void encode(final char c) throws IOException {
+
+		// make sure there is room for a pending replacement character and three more bytes
+		if (position + 4 > buffer.length) {
+			flushBuffer();
+		}
+
+		if (highSurrogate != 0) {
+
+			char high     = highSurrogate;
+			highSurrogate = 0;
+
+			if (Character.isLowSurrogate(c)) {
+
+				int codePoint = Character.toCodePoint(high, c);
+
+				buffer[position++] = (byte)(0xf0 | (codePoint >> 18));
+				buffer[position++] = (byte)(0x80 | ((codePoint >> 12) & 0x3f));
+				buffer[position++] = (byte)(0x80 | ((codePoint >> 6) & 0x3f));
+				buffer[position++] = (byte)(0x80 | (codePoint & 0x3f));
+
+				return;
+			}
+
+			// unpaired high surrogate
+			buffer[position++] = '?';
+		}
+
+		if (c < 0x80) {
+
+			buffer[position++] = (byte)c;
+
+		} else if (c < 0x800) {
+
+			buffer[position++] = (byte)(0xc0 | (c >> 6));
+			buffer[position++] = (byte)(0x80 | (c & 0x3f));
+
+		} else if (Character.isHighSurrogate(c)) {
+
+			// wait for the low surrogate, which may arrive with the next write
+			highSurrogate = c;
+
+		} else if (Character.isLowSurrogate(c)) {
+
+			// unpaired low surrogate
+			buffer[position++] = '?';
+
+		} else {
+
+			buffer[position++] = (byte)(0xe0 | (c >> 12));
+			buffer[position++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+			buffer[position++] = (byte)(0x80 | (c & 0x3f));
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+
+		if (position > 0) {
+
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+}
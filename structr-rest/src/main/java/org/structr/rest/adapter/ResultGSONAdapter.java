@@ -62,15 +62,21 @@ public class ResultGSONAdapter implements JsonSerializer<Result>, JsonDeserializ
 
 		// result fields in alphabetical order
 		List<? extends GraphObject> results = src.getResults();
+		String nextPageCursor = src.getNextPageCursor();
 		Integer page = src.getPage();
 		Integer pageCount = src.getPageCount();
 		Integer pageSize = src.getPageSize();
 		String queryTime = src.getQueryTime();
 		Integer resultCount = src.getRawResultCount();
+		boolean approximateResultCount = src.isApproximateResultCount();
 		String searchString = src.getSearchString();
 		String sortKey = src.getSortKey();
 		String sortOrder = src.getSortOrder();
 
+		if(nextPageCursor != null) {
+			result.add("next_page_cursor", new JsonPrimitive(nextPageCursor));
+		}
+
 		if(page != null) {
 			result.add("page", new JsonPrimitive(page));
 		}
@@ -91,6 +97,10 @@ public class ResultGSONAdapter implements JsonSerializer<Result>, JsonDeserializ
 			result.add("result_count", new JsonPrimitive(resultCount));
 		}
 
+		if(approximateResultCount) {
+			result.add("result_count_approximate", new JsonPrimitive(true));
+		}
+
 		if(results != null) {
 
 			if(results.isEmpty()) {
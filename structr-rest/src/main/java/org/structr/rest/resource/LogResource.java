@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.resource;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import org.apache.commons.lang.StringUtils;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObjectMap;
+import org.structr.core.Result;
+import org.structr.core.Services;
+import org.structr.core.log.LogEntry;
+import org.structr.core.log.LogScan;
+import org.structr.core.log.ReadLogCommand;
+import org.structr.core.property.GenericProperty;
+import org.structr.core.property.LongProperty;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.StringProperty;
+import org.structr.rest.RestMethodResult;
+import org.structr.rest.exception.IllegalMethodException;
+import org.structr.rest.exception.IllegalPathException;
+import org.structr.rest.exception.NotAllowedException;
+
+/**
+ * Read-only access to the entries of a log key, for superusers.
+ *
+ * Request parameters: key (required), from and to (timestamps in
+ * milliseconds), prefix (entry id prefix) and reverse (newest first).
+ * The page size is used as the limit, reverse scans return at most
+ * {@value org.structr.core.log.LogScan#MAX_REVERSE_LIMIT} entries.
+ * Other pages than the first are not supported. The entries of forward
+ * scans are counted in a first pass and read from the log database
+ * while the response is written, so large keys can be inspected with
+ * constant memory. Reverse scans are read once into their buffer.
+ *
+ * @author Axel Morgner
+ */
+public class LogResource extends Resource {
+
+	private static final StringProperty idProperty         = new StringProperty("id");
+	private static final LongProperty timestampProperty    = new LongProperty("timestamp");
+	private static final GenericProperty valuesProperty    = new GenericProperty("values");
+
+	private HttpServletRequest request = null;
+
+	public enum UriPart {
+		_log
+	}
+
+	@Override
+	public boolean checkAndConfigure(String part, SecurityContext securityContext, HttpServletRequest request) throws FrameworkException {
+
+		this.securityContext = securityContext;
+		this.request         = request;
+
+		return UriPart._log.name().equals(part);
+	}
+
+	@Override
+	public Result doGet(PropertyKey sortKey, boolean sortDescending, int pageSize, int page, String offsetId) throws FrameworkException {
+
+		if (securityContext == null || !securityContext.isSuperUser()) {
+			throw new NotAllowedException();
+		}
+
+		String key = request.getParameter("key");
+		if (StringUtils.isBlank(key)) {
+			throw new IllegalPathException();
+		}
+
+		// the entries can only be selected by range and prefix
+		if (page != 1) {
+			throw new FrameworkException(400, "Paging is not supported for log entries, please use from and to instead.");
+		}
+
+		long from       = parseLong(request.getParameter("from"), 0);
+		long to         = parseLong(request.getParameter("to"), Long.MAX_VALUE);
+		String prefix   = request.getParameter("prefix");
+		boolean reverse = Boolean.parseBoolean(request.getParameter("reverse"));
+		int limit       = pageSize < Integer.MAX_VALUE ? pageSize : 0;
+
+		LogScan scan    = Services.command(securityContext, ReadLogCommand.class).execute(key, from, to, prefix, limit, reverse);
+
+		if (reverse) {
+
+			// a reverse scan reads the whole range into a bounded buffer
+			// anyway, so the entries are read once and counted afterwards
+			List<LogEntry> entries = new ArrayList<LogEntry>();
+
+			for (LogEntry entry : scan) {
+				entries.add(entry);
+			}
+
+			return new Result(new LogEntryList(entries, entries.size()), entries.size(), true, false);
+		}
+
+		int count       = scan.count();
+
+		return new Result(new LogEntryList(scan, count), count, true, false);
+	}
+
+	@Override
+	public RestMethodResult doPost(Map<String, Object> propertySet) throws FrameworkException {
+		throw new IllegalMethodException();
+	}
+
+	@Override
+	public RestMethodResult doPut(Map<String, Object> propertySet) throws FrameworkException {
+		throw new IllegalMethodException();
+	}
+
+	@Override
+	public RestMethodResult doDelete() throws FrameworkException {
+		throw new IllegalMethodException();
+	}
+
+	@Override
+	public RestMethodResult doHead() throws FrameworkException {
+		throw new IllegalMethodException();
+	}
+
+	@Override
+	public Resource tryCombineWith(Resource next) throws FrameworkException {
+		throw new IllegalPathException();
+	}
+
+	@Override
+	public String getUriPart() {
+		return UriPart._log.name();
+	}
+
+	@Override
+	public Class getEntityClass() {
+		return null;
+	}
+
+	@Override
+	public String getResourceSignature() {
+		return UriPart._log.name();
+	}
+
+	@Override
+	public boolean isCollectionResource() throws FrameworkException {
+		return true;
+	}
+
+	// ----- private methods -----
+	private long parseLong(final String value, final long defaultValue) {
+
+		if (StringUtils.isNotBlank(value)) {
+
+			try {
+				return Long.parseLong(value);
+
+			} catch (NumberFormatException nfex) {}
+		}
+
+		return defaultValue;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * A list view of log entries that converts the entries when iterated,
+	 * so a log scan can be streamed without loading it into memory first.
+	 * The size is the count of the scan, so it does not start a scan.
+	 */
+	private static class LogEntryList extends AbstractList<GraphObjectMap> {
+
+		private Iterable<LogEntry> entries = null;
+		private int size                   = 0;
+
+		public LogEntryList(final Iterable<LogEntry> entries, final int size) {
+
+			this.entries = entries;
+			this.size    = size;
+		}
+
+		@Override
+		public Iterator<GraphObjectMap> iterator() {
+
+			final Iterator<LogEntry> it = entries.iterator();
+
+			return new Iterator<GraphObjectMap>() {
+
+				@Override
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+
+				@Override
+				public GraphObjectMap next() {
+
+					LogEntry entry     = it.next();
+					GraphObjectMap map = new GraphObjectMap();
+					Object value       = entry.getValue();
+
+					map.put(idProperty, entry.getId());
+					map.put(timestampProperty, entry.getTimestamp());
+					map.put(valuesProperty, value instanceof Object[] ? Arrays.asList((Object[])value) : value);
+
+					return map;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException("Not supported.");
+				}
+			};
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		@Override
+		public GraphObjectMap get(int index) {
+
+			Iterator<GraphObjectMap> it = iterator();
+
+			for (int i=0; i<index && it.hasNext(); i++) {
+				it.next();
+			}
+
+			if (it.hasNext()) {
+				return it.next();
+			}
+
+			throw new IndexOutOfBoundsException();
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -18,7 +18,6 @@
  */
 package org.structr.rest.resource;
 
-import java.util.Collections;
 import java.util.Iterator;
 import org.structr.common.PagingHelper;
 import java.util.LinkedList;
@@ -125,7 +124,7 @@ public class NamedRelationResource extends WrappingResource {
 
 			// sort results
 			if (sortKey != null) {
-				Collections.sort(relationResults, new GraphObjectComparator(sortKey, sortDescending));
+				new GraphObjectComparator(sortKey, sortDescending).sort(relationResults);
 			}
 
 		} else {
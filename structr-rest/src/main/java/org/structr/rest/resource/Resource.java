@@ -22,7 +22,6 @@ package org.structr.rest.resource;
 import org.structr.core.graph.search.SearchAttribute;
 import org.structr.core.graph.search.Search;
 import org.structr.core.graph.search.DistanceSearchAttribute;
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -265,7 +264,7 @@ public abstract class Resource {
 			}
 
 			if (finalSortKey != null) {
-				Collections.sort(list, new GraphObjectComparator(finalSortKey, finalSortOrder));
+				new GraphObjectComparator(finalSortKey, finalSortOrder).sort(list);
 			}
 		}
 	}
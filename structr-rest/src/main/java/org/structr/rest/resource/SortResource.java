@@ -19,7 +19,6 @@
 package org.structr.rest.resource;
 
 import org.structr.core.Result;
-import java.util.Collections;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
 import org.structr.common.GraphObjectComparator;
@@ -64,7 +63,7 @@ public class SortResource extends WrappingResource {
 			Result result = wrappedResource.doGet(sortKey, sortDescending, pageSize, page, offsetId);
 
 			try {
-				Collections.sort(result.getResults(), new GraphObjectComparator(sortKey, sortOrder));
+				new GraphObjectComparator(sortKey, sortOrder).sort(result.getResults());
 				
 			} catch(Throwable t) {
 				
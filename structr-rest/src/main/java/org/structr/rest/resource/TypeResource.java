@@ -27,6 +27,7 @@ import org.structr.core.entity.AbstractNode;
 import org.structr.core.graph.CreateNodeCommand;
 import org.structr.core.graph.StructrTransaction;
 import org.structr.core.graph.search.DistanceSearchAttribute;
+import org.structr.core.graph.search.PageCursorSearchAttribute;
 import org.structr.core.graph.search.Search;
 import org.structr.core.graph.search.SearchAttribute;
 import org.structr.core.graph.search.SearchNodeCommand;
@@ -120,6 +121,15 @@ public class TypeResource extends SortableResource {
 			
 			// searchable attributes from EntityContext
 			searchAttributes.addAll(validAttributes);
+
+			// keyset pagination, an empty cursor requests the first page. The
+			// result count of a cursor page counts the results after the cursor
+			// only and is flagged as approximate.
+			String pageCursor = request.getParameter(JsonRestServlet.REQUEST_PARAMETER_PAGE_CURSOR);
+			if (pageCursor != null) {
+
+				searchAttributes.add(new PageCursorSearchAttribute(pageCursor));
+			}
 			
 			// default sort key & order
 			if (sortKey == null) {
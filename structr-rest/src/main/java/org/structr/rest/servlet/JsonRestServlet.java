@@ -40,6 +40,7 @@ import org.structr.core.Result;
 //~--- JDK imports ------------------------------------------------------------
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 
 import java.text.DecimalFormat;
@@ -85,6 +86,7 @@ public class JsonRestServlet extends HttpServlet {
 	public static final String REQUEST_PARAMETER_PAGE_NUMBER            = "page";
 	public static final String REQUEST_PARAMETER_PAGE_SIZE              = "pageSize";
 	public static final String REQUEST_PARAMETER_OFFSET_ID              = "pageStartId";
+	public static final String REQUEST_PARAMETER_PAGE_CURSOR            = "pageCursor";
 	public static final String REQUEST_PARAMETER_SORT_KEY               = "sort";
 	public static final String REQUEST_PARAMETER_SORT_ORDER             = "order";
 	private static final Logger logger                                  = Logger.getLogger(JsonRestServlet.class.getName());
@@ -239,6 +241,7 @@ public class JsonRestServlet extends HttpServlet {
 	protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
 
 		SecurityContext securityContext = null;
+		OutputStream out                = null;
 
 		try {
 
@@ -298,9 +301,7 @@ public class JsonRestServlet extends HttpServlet {
 			DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
 			result.setQueryTime(decimalFormat.format((queryTimeEnd - queryTimeStart) / 1000000000.0));
 
-			Writer writer = response.getWriter();
-			jsonWriter.get().stream(writer, result);
-
+			// set status before the first bytes are sent
 			if (result.hasPartialContent()) {
 
 				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
@@ -310,7 +311,11 @@ public class JsonRestServlet extends HttpServlet {
 				response.setStatus(HttpServletResponse.SC_OK);
 			}
 
-			writer.append("\n");    // useful newline
+			// write UTF-8 directly to the output stream, the writer of the response can not be used after this
+			out = response.getOutputStream();
+			jsonWriter.get().stream(out, result);
+
+			out.write('\n');    // useful newline
 
 		} catch (FrameworkException frameworkException) {
 
@@ -341,16 +346,28 @@ public class JsonRestServlet extends HttpServlet {
 
 			logger.log(Level.WARNING, "Exception in GET", t);
 
-			int code = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+			// the result was partially streamed already, an error can not be reported anymore
+			if (out == null) {
 
-			response.setStatus(code);
-			response.getWriter().append(jsonError(code, "Exception in GET: " + t.getMessage()));
+				int code = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+
+				response.setStatus(code);
+				response.getWriter().append(jsonError(code, "Exception in GET: " + t.getMessage()));
+			}
 			
 		} finally {
 
 			try {
-				response.getWriter().flush();
-				response.getWriter().close();
+				if (out != null) {
+
+					out.flush();
+					out.close();
+
+				} else {
+
+					response.getWriter().flush();
+					response.getWriter().close();
+				}
 				
 			} catch (Throwable t) {
 				
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Test the UTF-8 encoding of {@link Utf8Writer}.
+ *
+ * @author Christian Morgner
+ */
+public class Utf8WriterTest extends TestCase {
+
+	public void testEncoding() throws IOException {
+
+		// ASCII, two-byte, three-byte and four-byte characters
+		String text = "structr äöüß € 漢字 😀 end";
+
+		for (int bufferSize=4; bufferSize<20; bufferSize++) {
+
+			assertEncoded(text, bufferSize, 1);
+			assertEncoded(text, bufferSize, 3);
+			assertEncoded(text, bufferSize, text.length());
+		}
+	}
+
+	public void testUnpairedSurrogates() throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Utf8Writer writer         = new Utf8Writer(out);
+
+		writer.write("a\ud83db\ude00c\ud83d");
+		writer.close();
+
+		assertEquals("a?b?c?", new String(out.toByteArray(), "UTF-8"));
+	}
+
+	// ----- private methods -----
+	private void assertEncoded(final String text, final int bufferSize, final int chunkSize) throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Utf8Writer writer         = new Utf8Writer(out, bufferSize);
+
+		// surrogate pairs may be split between two writes
+		for (int i=0; i<text.length(); i+=chunkSize) {
+
+			writer.write(text, i, Math.min(chunkSize, text.length() - i));
+		}
+
+		writer.flush();
+
+		assertTrue(Arrays.equals(text.getBytes("UTF-8"), out.toByteArray()));
+	}
+}
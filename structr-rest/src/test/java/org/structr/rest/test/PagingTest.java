@@ -21,6 +21,10 @@ package org.structr.rest.test;
 import static org.hamcrest.Matchers.*;
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import com.jayway.restassured.response.Response;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import org.structr.rest.common.StructrRestTest;
 import org.structr.rest.entity.TestOne;
 
@@ -224,5 +228,95 @@ public class PagingTest extends StructrRestTest {
 				.get(resource + "?sort=name&pageSize=2&page=-1&pageStartId=" + offsetId);
 	
 	}
-		
+
+	/**
+	 * Test keyset pagination with page cursors
+	 */
+	public void test02KeysetPaging() {
+
+		String resource = "/test_one";
+
+		// objects with equal sort values are ordered by their id
+		for (int i=0; i<7; i++) {
+
+			RestAssured.given().contentType("application/json; charset=UTF-8")
+				.body(" { 'name' : 'TestOne-" + i + "', 'anInt' : " + (i / 2) + " } ")
+				.expect().statusCode(201).when().post(resource);
+		}
+
+		String cursor = RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(3))
+				.body("result[0].name ",	equalTo("TestOne-0"))
+				.body("result[1].name ",	equalTo("TestOne-1"))
+				.body("result[2].name ",	equalTo("TestOne-2"))
+			.when()
+				.get(resource + "?sort=name&pageSize=3&pageCursor=")
+				.body().path("next_page_cursor");
+
+		cursor = RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(3))
+				.body("result[0].name ",	equalTo("TestOne-3"))
+				.body("result[1].name ",	equalTo("TestOne-4"))
+				.body("result[2].name ",	equalTo("TestOne-5"))
+				.body("result_count",		equalTo(4))
+				.body("result_count_approximate", equalTo(true))
+			.when()
+				.get(resource + "?sort=name&pageSize=3&pageCursor=" + cursor)
+				.body().path("next_page_cursor");
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",			hasSize(1))
+				.body("result[0].name ",	equalTo("TestOne-6"))
+				.body("next_page_cursor",	nullValue())
+			.when()
+				.get(resource + "?sort=name&pageSize=3&pageCursor=" + cursor);
+
+		// numeric sort key with duplicate values, descending
+		List<String> names = new LinkedList<String>();
+		cursor             = "";
+
+		for (int i=0; i<4 && cursor != null; i++) {
+
+			Response response = RestAssured
+				.given()
+					.contentType("application/json; charset=UTF-8")
+				.expect()
+					.statusCode(200)
+				.when()
+					.get(resource + "?sort=anInt&order=desc&pageSize=2&pageCursor=" + cursor);
+
+			names.addAll(response.getBody().jsonPath().<String>getList("result.name"));
+			cursor = response.getBody().path("next_page_cursor");
+		}
+
+		assertNull(cursor);
+		assertEquals(7, names.size());
+		assertEquals(7, new HashSet<String>(names).size());
+		assertEquals("TestOne-6", names.get(0));
+
+		// invalid cursor
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(400)
+			.when()
+				.get(resource + "?sort=name&pageSize=3&pageCursor=invalid");
+	}
 }
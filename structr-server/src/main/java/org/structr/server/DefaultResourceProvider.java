@@ -53,6 +53,7 @@ public class DefaultResourceProvider implements ResourceProvider {
 		resourceMap.put(Pattern.compile("[a-zA-Z]+"),		MaintenanceParameterResource.class);	// maintenance parameter
 
 		resourceMap.put(Pattern.compile("_schema"),		SchemaResource.class);			// special resource for schema information
+		resourceMap.put(Pattern.compile("_log"),		LogResource.class);			// read access to the log database
 		resourceMap.put(Pattern.compile("[a-z_A-Z]+"),		TypeResource.class);			// any type match
 		
 		return resourceMap;
@@ -0,0 +1,263 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Adapter;
+import org.structr.core.Services;
+
+/**
+ * Cache for the output of markup converters (Markdown, Textile etc.).
+ * There is one entry per content node and content type, which stores
+ * the hash of the converted input, so a changed input replaces the
+ * entry. The total size of the cached output is limited, the least
+ * recently used entries are evicted first. The keys of the entries are
+ * indexed by node, so invalidating a node only touches its own entries.
+ *
+ * @author Axel Morgner
+ */
+public class ConversionCache {
+
+	public static final String CACHE_ENABLED       = "conversion.cache.enabled";
+	public static final String CACHE_SIZE          = "conversion.cache.size";
+
+	private static ConversionCache instance        = null;
+
+	private final Map<String, Entry> entries       = new LinkedHashMap<String, Entry>(256, 0.75f, true);
+	private final Map<String, Set<String>> keys    = new HashMap<String, Set<String>>();
+	private final AtomicLong hits                  = new AtomicLong();
+	private final AtomicLong misses                = new AtomicLong();
+	private final AtomicLong savedTime             = new AtomicLong();
+	private boolean enabled                        = true;
+	private long maxSize                           = 0;
+	private long size                              = 0;
+
+	private ConversionCache() {
+
+		this.enabled = Boolean.parseBoolean(Services.getConfigurationValue(CACHE_ENABLED, "true"));
+		this.maxSize = Services.getConfigurationValue(CACHE_SIZE, 4L * 1024 * 1024);
+	}
+
+	public static synchronized ConversionCache getInstance() {
+
+		if (instance == null) {
+			instance = new ConversionCache();
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Returns the converted output for the given input, using the cached
+	 * output if the input did not change since the last conversion.
+	 *
+	 * @param nodeId
+	 * @param contentType
+	 * @param input
+	 * @param converter
+	 * @return the converted output
+	 * @throws FrameworkException
+	 */
+	public String convert(final String nodeId, final String contentType, final String input, final Adapter<String, String> converter) throws FrameworkException {
+
+		if (!enabled || nodeId == null || input == null) {
+			return converter.adapt(input);
+		}
+
+		String key   = nodeId + ":" + contentType;
+		String hash  = DigestUtils.md5Hex(input);
+		Entry entry  = null;
+
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+
+		if (entry != null && entry.hash.equals(hash)) {
+
+			hits.incrementAndGet();
+			savedTime.addAndGet(entry.conversionTime);
+
+			return entry.output;
+		}
+
+		misses.incrementAndGet();
+
+		long t0       = System.nanoTime();
+		String output = converter.adapt(input);
+
+		if (output != null) {
+			put(new Entry(key, nodeId, hash, output, System.nanoTime() - t0));
+		}
+
+		return output;
+	}
+
+	/**
+	 * Removes all entries of the given node.
+	 *
+	 * @param nodeId
+	 */
+	public void invalidate(final String nodeId) {
+
+		synchronized (entries) {
+
+			Set<String> nodeKeys = keys.remove(nodeId);
+			if (nodeKeys != null) {
+
+				for (String key : nodeKeys) {
+
+					Entry entry = entries.remove(key);
+					if (entry != null) {
+
+						size -= entry.size;
+					}
+				}
+			}
+		}
+	}
+
+	public void clear() {
+
+		synchronized (entries) {
+
+			entries.clear();
+			keys.clear();
+			size = 0;
+		}
+	}
+
+	// ----- metrics -----
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the sum of the conversion times of all cache hits in milliseconds
+	 */
+	public long getSavedTime() {
+		return savedTime.get() / 1000000;
+	}
+
+	/**
+	 * @return the approximate size of the cached output in bytes
+	 */
+	public long getSize() {
+
+		synchronized (entries) {
+			return size;
+		}
+	}
+
+	public int getEntryCount() {
+
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	// ----- private methods -----
+	private void put(final Entry entry) {
+
+		if (entry.size > maxSize / 4) {
+			return;
+		}
+
+		synchronized (entries) {
+
+			Entry old = entries.put(entry.key, entry);
+			if (old != null) {
+
+				size -= old.size;
+
+			} else {
+
+				Set<String> nodeKeys = keys.get(entry.nodeId);
+				if (nodeKeys == null) {
+
+					nodeKeys = new HashSet<String>();
+					keys.put(entry.nodeId, nodeKeys);
+				}
+
+				nodeKeys.add(entry.key);
+			}
+
+			size += entry.size;
+
+			// evict least recently used entries
+			Iterator<Entry> it = entries.values().iterator();
+			while (size > maxSize && it.hasNext()) {
+
+				Entry oldest = it.next();
+
+				size -= oldest.size;
+				it.remove();
+
+				removeKey(oldest);
+			}
+		}
+	}
+
+	private void removeKey(final Entry entry) {
+
+		Set<String> nodeKeys = keys.get(entry.nodeId);
+		if (nodeKeys != null) {
+
+			nodeKeys.remove(entry.key);
+
+			if (nodeKeys.isEmpty()) {
+				keys.remove(entry.nodeId);
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Entry {
+
+		private String key           = null;
+		private String nodeId        = null;
+		private String hash          = null;
+		private String output        = null;
+		private long conversionTime  = 0;
+		private long size            = 0;
+
+		public Entry(final String key, final String nodeId, final String hash, final String output, final long conversionTime) {
+
+			this.key            = key;
+			this.nodeId         = nodeId;
+			this.hash           = hash;
+			this.output         = output;
+			this.conversionTime = conversionTime;
+
+			// characters are stored as two bytes
+			this.size           = output.length() * 2L;
+		}
+	}
+}
@@ -124,9 +124,14 @@ public abstract class ImageHelper extends FileHelper {
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
 		Thumbnail tn        = new Thumbnail();
+		boolean decoding    = false;
 		
 		try {
 
+			// limit the number of images decoded at the same time
+			ThumbnailService.getInstance().acquireDecodePermit();
+			decoding = true;
+
 			// read image
 			long start           = System.nanoTime();
 			InputStream in       = originalImage.getInputStream();
@@ -237,6 +242,11 @@ public abstract class ImageHelper extends FileHelper {
 
 		} finally {
 
+			if (decoding) {
+
+				ThumbnailService.getInstance().releaseDecodePermit();
+			}
+
 			try {
 
 				if (baos != null) {
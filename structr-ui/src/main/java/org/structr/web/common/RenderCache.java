@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.structr.core.Services;
+
+/**
+ * Output cache for rendered pages and page fragments. Entries are keyed
+ * by the uuid and version of the page they belong to, so every change of
+ * the page (which increases its version) makes the old entries invisible,
+ * and the entries of a page are removed when its version is increased.
+ * The total size of the cached content is limited, the least recently
+ * used entries are evicted first.
+ *
+ * @author Christian Morgner
+ */
+public class RenderCache {
+
+	public static final String CACHE_ENABLED       = "render.cache.enabled";
+	public static final String CACHE_SIZE          = "render.cache.size";
+
+	private static RenderCache instance            = null;
+
+	private final Map<String, Entry> entries       = new LinkedHashMap<String, Entry>(256, 0.75f, true);
+	private final AtomicLong hits                  = new AtomicLong();
+	private final AtomicLong misses                = new AtomicLong();
+	private final AtomicLong evictions             = new AtomicLong();
+	private boolean enabled                        = true;
+	private long maxSize                           = 0;
+	private long size                              = 0;
+
+	private RenderCache() {
+
+		this.enabled = Boolean.parseBoolean(Services.getConfigurationValue(CACHE_ENABLED, "true"));
+		this.maxSize = Services.getConfigurationValue(CACHE_SIZE, 16L * 1024 * 1024);
+	}
+
+	public static synchronized RenderCache getInstance() {
+
+		if (instance == null) {
+			instance = new RenderCache();
+		}
+
+		return instance;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Creates the cache key for the given page version and discriminator.
+	 *
+	 * @param pageId
+	 * @param version
+	 * @param discriminator everything else the rendered output depends on
+	 * @return the cache key
+	 */
+	public static String createKey(final String pageId, final Integer version, final String discriminator) {
+		return pageId + ":" + (version != null ? version : 0) + ":" + discriminator;
+	}
+
+	/**
+	 * @param key
+	 * @return the cached content for the given key, or null
+	 */
+	public String get(final String key) {
+
+		Entry entry = null;
+
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+
+		if (entry != null) {
+
+			hits.incrementAndGet();
+			return entry.content;
+		}
+
+		misses.incrementAndGet();
+
+		return null;
+	}
+
+	/**
+	 * Stores the given content under the given key. Content that is larger
+	 * than a quarter of the cache is not stored.
+	 *
+	 * @param pageId
+	 * @param key
+	 * @param content
+	 */
+	public void put(final String pageId, final String key, final String content) {
+
+		// characters are stored as two bytes
+		long contentSize = content.length() * 2L;
+
+		if (contentSize > maxSize / 4) {
+			return;
+		}
+
+		synchronized (entries) {
+
+			Entry old = entries.put(key, new Entry(pageId, content, contentSize));
+			if (old != null) {
+
+				size -= old.size;
+			}
+
+			size += contentSize;
+
+			// evict least recently used entries
+			Iterator<Entry> it = entries.values().iterator();
+			while (size > maxSize && it.hasNext()) {
+
+				Entry entry = it.next();
+
+				size -= entry.size;
+				it.remove();
+
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries of the given page.
+	 *
+	 * @param pageId
+	 */
+	public void invalidate(final String pageId) {
+
+		synchronized (entries) {
+
+			Iterator<Entry> it = entries.values().iterator();
+			while (it.hasNext()) {
+
+				Entry entry = it.next();
+
+				if (entry.pageId.equals(pageId)) {
+
+					size -= entry.size;
+					it.remove();
+				}
+			}
+		}
+	}
+
+	public void clear() {
+
+		synchronized (entries) {
+
+			entries.clear();
+			size = 0;
+		}
+	}
+
+	// ----- metrics -----
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the ratio of cache hits to all lookups, between 0 and 1
+	 */
+	public double getHitRate() {
+
+		long lookups = hits.get() + misses.get();
+		if (lookups > 0) {
+
+			return hits.get() / (double)lookups;
+		}
+
+		return 0.0;
+	}
+
+	/**
+	 * @return the approximate size of the cached content in bytes
+	 */
+	public long getSize() {
+
+		synchronized (entries) {
+			return size;
+		}
+	}
+
+	public int getEntryCount() {
+
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	// ----- private methods -----
+	// ----- nested classes -----
+	private static class Entry {
+
+		private String pageId  = null;
+		private String content = null;
+		private long size      = 0;
+
+		public Entry(final String pageId, final String content, final long size) {
+
+			this.pageId  = pageId;
+			this.content = content;
+			this.size    = size;
+		}
+	}
+}
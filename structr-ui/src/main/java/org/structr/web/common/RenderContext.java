@@ -19,6 +19,8 @@
 
 package org.structr.web.common;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -27,6 +29,7 @@ import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang.StringUtils;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.entity.Principal;
 import org.structr.core.graph.NodeAttribute;
@@ -47,6 +50,9 @@ public class RenderContext {
 	
 	private static final Logger logger                   = Logger.getLogger(RenderContext.class.getName());
 	
+	public static final String STREAMING_ENABLED         = "render.streaming.enabled";
+	public static final String STREAMING_FLUSH_SIZE      = "render.streaming.flushsize";
+	
 	private Map<String, GraphObject> dataObjects = new LinkedHashMap<String, GraphObject>();
 	private final StringBuilder buffer           = new StringBuilder(8192);
 	private Locale locale                        = Locale.getDefault();
@@ -54,6 +60,7 @@ public class RenderContext {
 	private int depth                            = 0;
 	private boolean inBody                       = false;
 	private boolean appLibRendered               = false;
+	private boolean cacheable                    = true;
 	private GraphObject detailsDataObject        = null;
 	private GraphObject currentDataObject        = null;
 	private GraphObject sourceDataObject         = null;
@@ -66,6 +73,10 @@ public class RenderContext {
 	private HttpServletRequest request           = null;
 	private HttpServletResponse response         = null;
 	private ResourceProvider resourceProvider    = null;
+	private Writer writer                        = null;
+	private int flushSize                        = 0;
+	private int captureDepth                     = 0;
+	private boolean committed                    = false;
 	
 	public enum EditMode {
 	
@@ -224,6 +235,73 @@ public class RenderContext {
 		return buffer;
 	}
 	
+	/**
+	 * Enables streaming: the buffer is written to the given writer as soon
+	 * as it grows larger than the given flush size, so that rendering does
+	 * not need to keep the whole page in memory.
+	 * 
+	 * @param writer
+	 * @param flushSize 
+	 */
+	public void setWriter(final Writer writer, final int flushSize) {
+		
+		this.writer    = writer;
+		this.flushSize = flushSize;
+	}
+	
+	public boolean isStreaming() {
+		return writer != null;
+	}
+	
+	/**
+	 * @return true if parts of the output were already written to the response
+	 */
+	public boolean isCommitted() {
+		return committed;
+	}
+	
+	/**
+	 * Prevents the buffer from being flushed until {@link #endCapture} is
+	 * called, for callers that need the output rendered in between.
+	 */
+	public void beginCapture() {
+		captureDepth++;
+	}
+	
+	public void endCapture() {
+		captureDepth--;
+	}
+	
+	/**
+	 * Writes the buffer to the writer if streaming is enabled and the buffer
+	 * is larger than the flush size or force is set.
+	 * 
+	 * @param force write and flush the buffer regardless of its size
+	 * @throws FrameworkException 
+	 */
+	public void flush(final boolean force) throws FrameworkException {
+		
+		if (writer == null || captureDepth > 0 || buffer.length() == 0 || (!force && buffer.length() < flushSize)) {
+			return;
+		}
+		
+		try {
+			
+			writer.append(buffer);
+			buffer.setLength(0);
+			
+			if (force) {
+				writer.flush();
+			}
+			
+			committed = true;
+			
+		} catch (IOException ioex) {
+			
+			throw new FrameworkException(500, "Unable to write rendered content: " + ioex.getMessage());
+		}
+	}
+	
 	public void setInBody(final boolean inBody) {
 		this.inBody = inBody;
 	}
@@ -240,6 +318,21 @@ public class RenderContext {
 		return appLibRendered;
 	}
 
+	/**
+	 * Marks the output rendered so far as cacheable or not. Elements that
+	 * render data that can change without a change of the page (data
+	 * sources, data objects, current time etc.) set this to false.
+	 * 
+	 * @param cacheable 
+	 */
+	public void setCacheable(final boolean cacheable) {
+		this.cacheable = cacheable;
+	}
+	
+	public boolean isCacheable() {
+		return cacheable;
+	}
+
 	public List<NodeAttribute> getAttrs() {
 		return attrs;
 	}
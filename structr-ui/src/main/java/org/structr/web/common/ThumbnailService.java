@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.PropertyView;
+import org.structr.common.SecurityContext;
+import org.structr.common.ThumbnailParameters;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.EntityContext;
+import org.structr.core.Services;
+import org.structr.core.graph.NodeFactory;
+import org.structr.core.property.PropertyKey;
+import org.structr.web.entity.Image;
+import org.structr.web.property.ThumbnailProperty;
+
+/**
+ * Creates thumbnails in the background. Requests for thumbnails that do
+ * not exist yet are queued and processed by a small pool of worker
+ * threads, so reading an image never has to decode the original image
+ * or to open a write transaction. Concurrent requests for the same image
+ * and size are merged into a single job, and the number of images that
+ * are decoded at the same time is limited to protect the heap.
+ *
+ * @author Axel Morgner
+ */
+public class ThumbnailService {
+
+	private static final Logger logger                   = Logger.getLogger(ThumbnailService.class.getName());
+
+	public static final String WORKER_THREADS            = "thumbnail.worker.threads";
+	public static final String QUEUE_SIZE                = "thumbnail.queue.size";
+	public static final String DECODE_LIMIT              = "thumbnail.decode.limit";
+
+	private static ThumbnailService instance             = null;
+
+	private final ConcurrentMap<String, Job> pendingJobs = new ConcurrentHashMap<String, Job>();
+	private final AtomicLong droppedJobs                 = new AtomicLong();
+	private final AtomicLong createdThumbnails           = new AtomicLong();
+	private ThreadPoolExecutor workers                   = null;
+	private Semaphore decodePermits                      = null;
+
+	private ThumbnailService() {
+
+		int threads = Services.getConfigurationValue(WORKER_THREADS, 2);
+
+		this.decodePermits = new Semaphore(Services.getConfigurationValue(DECODE_LIMIT, threads), true);
+		this.workers       = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(Services.getConfigurationValue(QUEUE_SIZE, 1000)), new DaemonThreadFactory());
+	}
+
+	public static synchronized ThumbnailService getInstance() {
+
+		if (instance == null) {
+			instance = new ThumbnailService();
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Returns the thumbnail of the given image with the given parameters
+	 * if it exists and is up to date. Otherwise, the thumbnail is queued
+	 * for creation and null is returned, the caller should treat the
+	 * thumbnail as pending.
+	 *
+	 * @param image
+	 * @param parameters
+	 * @return the thumbnail, or null if it is not available yet
+	 */
+	public Image getThumbnail(final Image image, final ThumbnailParameters parameters) {
+
+		Image thumbnail = image.getExistingScaledImage(parameters.getMaxWidth(), parameters.getMaxHeight());
+		if (thumbnail == null) {
+
+			enqueue(image, parameters);
+		}
+
+		return thumbnail;
+	}
+
+	/**
+	 * Queues the creation of the thumbnails of all thumbnail properties
+	 * of the given image.
+	 *
+	 * @param image
+	 */
+	public void enqueueAll(final Image image) {
+
+		for (PropertyKey key : EntityContext.getPropertySet(image.getClass(), PropertyView.All)) {
+
+			if (key instanceof ThumbnailProperty) {
+
+				enqueue(image, ((ThumbnailProperty)key).getParameters());
+			}
+		}
+	}
+
+	/**
+	 * Queues the creation of a thumbnail with the given parameters for
+	 * the given image, unless the same thumbnail is already pending. If
+	 * the queue is full, the request is dropped and will be repeated with
+	 * the next read access.
+	 *
+	 * @param image
+	 * @param parameters
+	 */
+	public void enqueue(final Image image, final ThumbnailParameters parameters) {
+
+		String key = image.getUuid() + "_" + parameters.getMaxWidth() + "x" + parameters.getMaxHeight() + (parameters.getCropToFit() ? "c" : "");
+		Job job    = new Job(key, image, parameters);
+
+		if (pendingJobs.putIfAbsent(key, job) == null) {
+
+			try {
+				workers.execute(job);
+
+			} catch (RejectedExecutionException rex) {
+
+				pendingJobs.remove(key);
+				droppedJobs.incrementAndGet();
+
+				logger.log(Level.FINE, "Thumbnail queue full, dropping request for {0}", key);
+			}
+		}
+	}
+
+	/**
+	 * Acquires a decode permit. All code that decodes original images
+	 * should call this method and release the permit afterwards, so the
+	 * number of decoded images in memory is bounded.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void acquireDecodePermit() throws InterruptedException {
+		decodePermits.acquire();
+	}
+
+	public void releaseDecodePermit() {
+		decodePermits.release();
+	}
+
+	/**
+	 * Stops the worker threads. Pending thumbnails are discarded, they are
+	 * requested again with the next read access.
+	 */
+	public static synchronized void shutdown() {
+
+		if (instance != null) {
+
+			instance.workers.shutdownNow();
+			instance.pendingJobs.clear();
+			instance = null;
+		}
+	}
+
+	// ----- metrics -----
+	/**
+	 * @return the number of thumbnails waiting to be created
+	 */
+	public int getPendingCount() {
+		return pendingJobs.size();
+	}
+
+	public long getDroppedCount() {
+		return droppedJobs.get();
+	}
+
+	public long getCreatedCount() {
+		return createdThumbnails.get();
+	}
+
+	// ----- private methods -----
+	// ----- nested classes -----
+	private class Job implements Runnable {
+
+		private ThumbnailParameters parameters = null;
+		private Image image                    = null;
+		private String key                     = null;
+
+		public Job(final String key, final Image image, final ThumbnailParameters parameters) {
+
+			this.parameters = parameters;
+			this.image      = image;
+			this.key        = key;
+		}
+
+		@Override
+		public void run() {
+
+			try {
+
+				// the image was loaded in the context of the request, thumbnails are always created by the system
+				Image original = (Image)new NodeFactory(SecurityContext.getSuperUserInstance()).instantiate(image.getNode());
+				if (original != null && original.getScaledImage(parameters.getMaxWidth(), parameters.getMaxHeight(), parameters.getCropToFit()) != null) {
+
+					createdThumbnails.incrementAndGet();
+				}
+
+			} catch (FrameworkException fex) {
+
+				logger.log(Level.WARNING, "Unable to create thumbnail {0}: {1}", new Object[] { key, fex.getMessage() });
+
+			} catch (Throwable t) {
+
+				logger.log(Level.WARNING, "Unable to create thumbnail " + key, t);
+
+			} finally {
+
+				pendingJobs.remove(key);
+			}
+		}
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+
+			Thread thread = new Thread(runnable, "ThumbnailWorker" + count.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+}
@@ -74,6 +74,7 @@ public class UiResourceProvider implements ResourceProvider {
 		resourceMap.put(Pattern.compile("[0-9]+"), UuidResource.class);                       // this matches the ID resource
 		
 		resourceMap.put(Pattern.compile("_schema"), SchemaResource.class);	               // special resource for schema information
+		resourceMap.put(Pattern.compile("_log"), LogResource.class);	                       // read access to the log database
 		
 		resourceMap.put(Pattern.compile("[a-z_A-Z]+"), DynamicTypeResource.class);		      // match dynamic types
 		resourceMap.put(Pattern.compile("[a-z_A-Z]+"), TypeResource.class);	              // any type match
@@ -21,6 +21,7 @@
 package org.structr.web.converter;
 
 import org.structr.common.ThumbnailParameters;
+import org.structr.web.common.ThumbnailService;
 import org.structr.web.entity.Image;
 
 //~--- JDK imports ------------------------------------------------------------
@@ -70,10 +71,11 @@ public class ThumbnailConverter extends PropertyConverter {
 			return null;
 		}
 		
-		final Image thumbnail = ((Image) currentObject).getScaledImage(parameters.getMaxWidth(), parameters.getMaxHeight(), parameters.getCropToFit());
+		// thumbnails are created in the background, see ThumbnailService
+		final Image thumbnail = ThumbnailService.getInstance().getThumbnail((Image) currentObject, parameters);
 
 		if (thumbnail == null) {
-			logger.log(Level.WARNING, "Could not create thumbnail for {0}", source);
+			logger.log(Level.FINE, "Thumbnail for {0} is pending", currentObject);
 			return null;
 		}
 //		try {
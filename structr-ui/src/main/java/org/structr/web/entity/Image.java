@@ -25,6 +25,8 @@ import org.neo4j.graphdb.Direction;
 
 import org.structr.web.common.ImageHelper;
 import org.structr.web.common.ImageHelper.Thumbnail;
+import org.structr.web.common.ThumbnailService;
+import org.structr.common.SecurityContext;
 import org.structr.common.PropertyView;
 import org.structr.web.common.RelType;
 import org.structr.common.error.FrameworkException;
@@ -190,56 +192,14 @@ public class Image extends File {
 	 */
 	public Image getScaledImage(final int maxWidth, final int maxHeight, final boolean cropToFit) {
 
-		Iterable<AbstractRelationship> thumbnailRelationships = getThumbnailRelationships();
 		final List<Image> oldThumbnails                   = new LinkedList();
-		Image thumbnail                                   = null;
 		final Image originalImage                         = this;
-		Integer origWidth                                 = originalImage.getWidth();
-		Integer origHeight                                = originalImage.getHeight();
-		Long currentChecksum                              = originalImage.getProperty(Image.checksum);
-		final Long newChecksum;
-
-		if (currentChecksum == null || currentChecksum == 0) {
-
-			newChecksum = FileHelper.getChecksum(originalImage);
-		} else {
-
-			newChecksum = currentChecksum;
-		}
-
-		if ((origWidth != null) && (origHeight != null) && thumbnailRelationships != null) {
-
-			for (final AbstractRelationship r : thumbnailRelationships) {
-
-				Integer w = (Integer) r.getProperty(Image.width);
-				Integer h = (Integer) r.getProperty(Image.height);
-
-				if ((w != null) && (h != null)) {
-
-					if (((w == maxWidth) && (h <= maxHeight)) || ((w <= maxWidth) && (h == maxHeight))
-					|| ((origWidth <= w) && (origHeight <= h)))    // orginal image is equal or smaller than requested size
-					{
-
-						thumbnail = (Image) r.getEndNode();
-
-						// Use thumbnail only if checksum of original image matches with stored checksum
-						Long storedChecksum = r.getProperty(Image.checksum);
-
-						if (storedChecksum != null && storedChecksum.equals(newChecksum)) {
-
-							return thumbnail;
-
-						} else {
-
-							oldThumbnails.add(thumbnail);
-						}
-					}
-
-				}
-
-			}
+		final Long newChecksum                            = getCurrentChecksum();
+		Image thumbnail                                   = findScaledImage(maxWidth, maxHeight, newChecksum, oldThumbnails);
 
+		if (thumbnail != null) {
 
+			return thumbnail;
 		}
 
 		// No thumbnail exists, or thumbnail was too old, so let's create a new one
@@ -344,6 +304,103 @@ public class Image extends File {
 
 	}
 
+	/**
+	 * Get the (down-)scaled image of this image if it exists and is up to date.
+	 *
+	 * In contrast to getScaledImage, this method never creates a thumbnail and
+	 * never modifies the database.
+	 *
+	 * @maxWidth
+	 * @maxHeight
+	 *
+	 * @return the scaled image, or null
+	 */
+	public Image getExistingScaledImage(final int maxWidth, final int maxHeight) {
+
+		return findScaledImage(maxWidth, maxHeight, getCurrentChecksum(), new LinkedList<Image>());
+
+	}
+
+	private Image findScaledImage(final int maxWidth, final int maxHeight, final Long newChecksum, final List<Image> oldThumbnails) {
+
+		Iterable<AbstractRelationship> thumbnailRelationships = getThumbnailRelationships();
+		Integer origWidth                                 = getWidth();
+		Integer origHeight                                = getHeight();
+		Image thumbnail                                   = null;
+
+		if ((origWidth != null) && (origHeight != null) && thumbnailRelationships != null) {
+
+			for (final AbstractRelationship r : thumbnailRelationships) {
+
+				Integer w = (Integer) r.getProperty(Image.width);
+				Integer h = (Integer) r.getProperty(Image.height);
+
+				if ((w != null) && (h != null)) {
+
+					if (((w == maxWidth) && (h <= maxHeight)) || ((w <= maxWidth) && (h == maxHeight))
+					|| ((origWidth <= w) && (origHeight <= h)))    // orginal image is equal or smaller than requested size
+					{
+
+						thumbnail = (Image) r.getEndNode();
+
+						// Use thumbnail only if checksum of original image matches with stored checksum
+						Long storedChecksum = r.getProperty(Image.checksum);
+
+						if (storedChecksum != null && storedChecksum.equals(newChecksum)) {
+
+							return thumbnail;
+
+						} else {
+
+							oldThumbnails.add(thumbnail);
+						}
+					}
+
+				}
+
+			}
+
+
+		}
+
+		return null;
+
+	}
+
+	private Long getCurrentChecksum() {
+
+		Long currentChecksum = getProperty(Image.checksum);
+
+		if (currentChecksum == null || currentChecksum == 0) {
+
+			return FileHelper.getChecksum(this);
+		}
+
+		return currentChecksum;
+
+	}
+
+	@Override
+	public void afterCreation(SecurityContext securityContext) {
+
+		if (!getProperty(Image.isThumbnail)) {
+
+			ThumbnailService.getInstance().enqueueAll(this);
+		}
+
+	}
+
+	@Override
+	public void afterModification(SecurityContext securityContext) {
+
+		// up-to-date thumbnails are kept, see getScaledImage
+		if (!getProperty(Image.isThumbnail)) {
+
+			ThumbnailService.getInstance().enqueueAll(this);
+		}
+
+	}
+
 	public boolean isNotThumbnail() {
 
 		return !isThumbnail();
@@ -34,11 +34,13 @@ import org.apache.commons.lang.StringEscapeUtils;
 import org.pegdown.PegDownProcessor;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
+import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Adapter;
 import org.structr.core.graph.search.Search;
 import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
+import org.structr.web.common.ConversionCache;
 import org.structr.web.common.RenderContext;
 import org.structr.core.Services;
 import org.structr.core.graph.StructrTransaction;
@@ -152,6 +154,14 @@ public class Content extends DOMNode implements Text {
 
 	//~--- methods --------------------------------------------------------
 
+	@Override
+	public boolean onModification(SecurityContext securityContext, ErrorBuffer errorBuffer) throws FrameworkException {
+
+		ConversionCache.getInstance().invalidate(getUuid());
+
+		return super.onModification(securityContext, errorBuffer);
+	}
+
 
 	//~--- get methods ----------------------------------------------------
 
@@ -240,8 +250,8 @@ public class Content extends DOMNode implements Text {
 
 					try {
 
-						// apply adapter
-						_content = converter.adapt(_content);
+						// apply adapter, unchanged content is not converted again
+						_content = ConversionCache.getInstance().convert(id, _contentType, _content, converter);
 					} catch (FrameworkException fex) {
 
 						logger.log(Level.WARNING, "Unable to convert content: {0}", fex.getMessage());
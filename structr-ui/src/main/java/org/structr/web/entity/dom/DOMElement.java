@@ -39,6 +39,7 @@ import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.StringProperty;
 import org.structr.web.common.HtmlProperty;
+import org.structr.web.common.RenderCache;
 import org.structr.web.common.RenderContext;
 
 import org.w3c.dom.Attr;
@@ -124,6 +125,7 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 	public static final Property<String> xpathQuery               = new StringProperty("xpathQuery");
 	public static final Property<String> restQuery                = new StringProperty("restQuery");
 	public static final Property<Boolean> renderDetails           = new BooleanProperty("renderDetails");
+	public static final Property<Boolean> cacheFragment           = new BooleanProperty("cacheFragment");
 //	public static final Property<Boolean> hideOnEdit              = new BooleanProperty("hideOnEdit");
 //	public static final Property<Boolean> hideOnNonEdit           = new BooleanProperty("hideOnNonEdit");
 
@@ -218,7 +220,7 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 	);
 	
 	public static final org.structr.common.View uiView            = new org.structr.common.View(DOMElement.class, PropertyView.Ui, name, tag, pageId, path, parent, childrenIds, owner,
-										restQuery, cypherQuery, xpathQuery, partialUpdateKey, dataKey, syncedNodes, renderDetails, hideOnIndex, hideOnDetail,
+										restQuery, cypherQuery, xpathQuery, partialUpdateKey, dataKey, syncedNodes, renderDetails, cacheFragment, hideOnIndex, hideOnDetail,
 										_accesskey, _class, _contenteditable, _contextmenu, _dir, _draggable, _dropzone, _hidden, _id, _lang, _spellcheck, _style,
 										_tabindex, _title, _onabort, _onblur, _oncanplay, _oncanplaythrough, _onchange, _onclick, _oncontextmenu, _ondblclick,
 										_ondrag, _ondragend, _ondragenter, _ondragleave, _ondragover, _ondragstart, _ondrop, _ondurationchange, _onemptied,
@@ -264,6 +266,72 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 
 	@Override
 	public void render(SecurityContext securityContext, RenderContext renderContext, int depth) throws FrameworkException {
+
+		Page page = renderContext.getPage();
+
+		// fragment caching is opt-in and only used for anonymous users
+		if (getProperty(cacheFragment) && page != null && securityContext.getUser(false) == null && RenderCache.getInstance().isEnabled()) {
+
+			renderCachedFragment(securityContext, renderContext, depth, page);
+
+		} else {
+
+			renderElement(securityContext, renderContext, depth);
+		}
+	}
+
+	/**
+	 * Renders this element using the fragment cache. The output is only
+	 * stored if the subtree did not render any data that can change
+	 * without a change of the page, see {@link RenderContext#setCacheable}.
+	 */
+	private void renderCachedFragment(SecurityContext securityContext, RenderContext renderContext, int depth, Page page) throws FrameworkException {
+
+		RenderCache cache            = RenderCache.getInstance();
+		StringBuilder buffer         = renderContext.getBuffer();
+		HttpServletRequest request   = renderContext.getRequest();
+		GraphObject details          = renderContext.getDetailsDataObject();
+		String pageId                = page.getUuid();
+		String key                   = RenderCache.createKey(pageId, page.getProperty(Page.version), "fragment:" + getUuid() + ":" + renderContext.getLocale() + ":" + depth + ":"
+						+ renderContext.inBody() + ":" + renderContext.appLibRendered() + ":" + (details != null ? details.getUuid() : "")
+						+ ":" + (request != null ? request.getQueryString() : ""));
+
+		String content = cache.get(key);
+		if (content != null) {
+
+			buffer.append(content);
+			return;
+		}
+
+		boolean wasCacheable         = renderContext.isCacheable();
+		boolean inBody               = renderContext.inBody();
+		boolean appLibRendered       = renderContext.appLibRendered();
+		int offset                   = buffer.length();
+
+		renderContext.setCacheable(true);
+
+		// the output of this element must stay in the buffer until it is stored
+		renderContext.beginCapture();
+
+		try {
+
+			renderElement(securityContext, renderContext, depth);
+
+		} finally {
+
+			renderContext.endCapture();
+		}
+
+		// fragments that change the render state can not be replayed from the cache
+		if (renderContext.isCacheable() && inBody == renderContext.inBody() && appLibRendered == renderContext.appLibRendered()) {
+
+			cache.put(pageId, key, buffer.substring(offset));
+		}
+
+		renderContext.setCacheable(wasCacheable && renderContext.isCacheable());
+	}
+
+	private void renderElement(SecurityContext securityContext, RenderContext renderContext, int depth) throws FrameworkException {
 		
 		StringBuilder buffer	= renderContext.getBuffer();
 		double start = System.nanoTime();
@@ -419,6 +487,9 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 						String subKey = subNode.getProperty(dataKey);
 						if (StringUtils.isNotBlank(subKey)) {
 
+							// data can change without a change of the page
+							renderContext.setCacheable(false);
+
 							setDataRoot(renderContext, subNode, subKey);
 
 							GraphObject currentDataNode = renderContext.getDataObject();
@@ -531,6 +602,9 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 			}
 
 		}
+
+		// when streaming, write the head as soon as it is complete so the browser can start loading resources
+		renderContext.flush("head".equals(_tag));
 		
 		double end = System.nanoTime();
 
@@ -25,6 +25,7 @@ import java.text.DecimalFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
@@ -76,6 +77,7 @@ import org.structr.core.property.EntityIdProperty;
 import org.structr.core.property.ISO8601DateProperty;
 import org.structr.core.property.Property;
 import org.structr.core.property.PropertyMap;
+import org.structr.web.common.RenderCache;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
 import org.structr.web.common.ThreadLocalMatcher;
@@ -98,8 +100,8 @@ import org.w3c.dom.UserDataHandler;
 public abstract class DOMNode extends LinkedTreeNode implements Node, Renderable, DOMAdoptable, DOMImportable, PageData {
 
 	private static final Logger logger                                      = Logger.getLogger(DOMNode.class.getName());
-	private static final ThreadLocalMatcher threadLocalTemplateMatcher      = new ThreadLocalMatcher("\\$\\{[^}]*\\}");
 	private static final ThreadLocalMatcher threadLocalFunctionMatcher      = new ThreadLocalMatcher("([a-zA-Z0-9_]+)\\((.+)\\)");
+	private static final Set<String> CACHEABLE_REFERENCES                  = new HashSet<String>(Arrays.asList("request", "page", "parent", "me"));
 	
 	// ----- error messages for DOMExceptions -----
 	protected static final String NO_MODIFICATION_ALLOWED_MESSAGE           = "Permission denied.";
@@ -646,6 +648,9 @@ public abstract class DOMNode extends LinkedTreeNode implements Node, Renderable
 		
 			page.unlockReadOnlyPropertiesOnce();
 			page.increaseVersion();
+
+			// cached output of the old version can not be used anymore
+			RenderCache.getInstance().invalidate(page.getUuid());
 			
 		}
 
@@ -793,6 +798,11 @@ public abstract class DOMNode extends LinkedTreeNode implements Node, Renderable
 		Page _page                       = renderContext.getPage();
 		GraphObject _data                = null;
 
+		// only the page, its elements and the request parameters are covered by the render cache key
+		if (!CACHEABLE_REFERENCES.contains(parts[0].toLowerCase())) {
+			renderContext.setCacheable(false);
+		}
+
 		// walk through template parts
 		for (int i = 0; (i < parts.length); i++) {
 
@@ -1065,34 +1075,12 @@ public abstract class DOMNode extends LinkedTreeNode implements Node, Renderable
 			value = (String) rawValue;
 
 			if (!(EditMode.RAW.equals(renderContext.getEditMode(securityContext.getUser(false))))) {
-			
-				// re-use matcher from previous calls
-				Matcher matcher = threadLocalTemplateMatcher.get();
-
-				matcher.reset(value);
-
-				while (matcher.find()) {
-
-					String group  = matcher.group();
-					String source = group.substring(2, group.length() - 1);
 
-					// fetch referenced property
-					String partValue = extractFunctions(securityContext, renderContext, source);
-
-					if (partValue != null) {
-
-						value = value.replace(group, partValue);
-					} else {
-
-						// If the whole expression should be replaced, and partValue is null
-						// replace it by null to make it possible for HTML attributes to not be rendered
-						// and avoid something like ... selected="" ... which is interpreted as selected==true by
-						// all browsers
-						value = value.equals(group) ? null : value.replace(group, "");
-					}
+				// templates are parsed only once, values without expressions are returned unchanged
+				if (value.contains("${")) {
 
+					value = Template.compile(value, functions).evaluate(this, securityContext, renderContext);
 				}
-			
 			}
 
 		} else if (rawValue instanceof Boolean) {
@@ -1256,7 +1244,7 @@ public abstract class DOMNode extends LinkedTreeNode implements Node, Renderable
 		
 	}
 
-	protected String[] split(String source) {
+	protected static String[] split(String source) {
 
 		ArrayList<String> tokens   = new ArrayList<String>(20);
 		boolean inDoubleQuotes     = false;
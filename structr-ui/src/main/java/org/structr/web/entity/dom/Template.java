@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.entity.dom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.collections.map.LRUMap;
+import org.apache.commons.lang.StringUtils;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.web.common.Function;
+import org.structr.web.common.RenderContext;
+
+/**
+ * A template string with <code>${...}</code> expressions, parsed into an
+ * immutable list of literal segments and expression trees. Templates are
+ * cached by their source string, so every template is parsed only once,
+ * and evaluation appends all segments to a single buffer.
+ *
+ * The expression syntax is the same as in {@link DOMNode#extractFunctions}:
+ * function calls, numeric and quoted literals, and property references.
+ *
+ * @author Christian Morgner
+ */
+public class Template {
+
+	static final int CACHE_SIZE                      = 10000;
+
+	private static final Map<String, Template> cache = Collections.synchronizedMap(new LRUMap(CACHE_SIZE));
+
+	private List<Object> segments    = null;
+	private boolean singleExpression = false;
+
+	private Template(final List<Object> segments, final boolean singleExpression) {
+
+		this.segments         = segments;
+		this.singleExpression = singleExpression;
+	}
+
+	/**
+	 * Returns the compiled template for the given source, using the given
+	 * function map to resolve function calls.
+	 *
+	 * @param source
+	 * @param functions
+	 * @return the template
+	 */
+	public static Template compile(final String source, final Map<String, Function<String, String>> functions) {
+
+		Template template = cache.get(source);
+		if (template == null) {
+
+			template = parse(source, functions);
+			cache.put(source, template);
+		}
+
+		return template;
+	}
+
+	/**
+	 * Evaluates this template in the context of the given node.
+	 *
+	 * @param node
+	 * @param securityContext
+	 * @param renderContext
+	 * @return the result, or null if the template consists of a single expression whose value is null
+	 * @throws FrameworkException
+	 */
+	public String evaluate(final DOMNode node, final SecurityContext securityContext, final RenderContext renderContext) throws FrameworkException {
+
+		if (singleExpression) {
+
+			// no copy needed, null values are returned as null so that HTML attributes are not rendered
+			return ((Expression)segments.get(0)).evaluate(node, securityContext, renderContext);
+		}
+
+		StringBuilder buffer = new StringBuilder();
+
+		for (Object segment : segments) {
+
+			if (segment instanceof Expression) {
+
+				String value = ((Expression)segment).evaluate(node, securityContext, renderContext);
+				if (value != null) {
+
+					buffer.append(value);
+				}
+
+			} else {
+
+				buffer.append((String)segment);
+			}
+		}
+
+		return buffer.toString();
+	}
+
+	// ----- private methods -----
+	private static Template parse(final String source, final Map<String, Function<String, String>> functions) {
+
+		List<Object> segments = new ArrayList<Object>();
+		int length            = source.length();
+		int position          = 0;
+
+		while (position < length) {
+
+			int start = source.indexOf("${", position);
+			int end   = start >= 0 ? source.indexOf('}', start + 2) : -1;
+
+			if (start < 0 || end < 0) {
+
+				segments.add(source.substring(position));
+				break;
+			}
+
+			if (start > position) {
+				segments.add(source.substring(position, start));
+			}
+
+			segments.add(parseExpression(source.substring(start + 2, end), functions));
+
+			position = end + 1;
+		}
+
+		return new Template(segments, segments.size() == 1 && segments.get(0) instanceof Expression);
+	}
+
+	private static Expression parseExpression(final String source, final Map<String, Function<String, String>> functions) {
+
+		int open = source.indexOf('(');
+
+		// function call: name(parameters)
+		if (open > 0 && source.endsWith(")") && source.length() > open + 2 && isFunctionName(source, open)) {
+
+			Function<String, String> function = functions.get(source.substring(0, open));
+			if (function != null) {
+
+				String parameter = source.substring(open + 1, source.length() - 1);
+				List<Expression> parameters = new ArrayList<Expression>();
+
+				if (parameter.contains(",")) {
+
+					for (String part : DOMNode.split(parameter)) {
+						parameters.add(parseExpression(StringUtils.strip(part), functions));
+					}
+
+				} else {
+
+					parameters.add(parseExpression(StringUtils.strip(parameter), functions));
+				}
+
+				return new FunctionCall(function, parameters);
+			}
+		}
+
+		// literal values
+		if (StringUtils.isNotBlank(source) && StringUtils.isNumeric(source)) {
+
+			return new Literal(source);
+
+		} else if (source.startsWith("\"") && source.endsWith("\"")) {
+
+			return new Literal(source.substring(1, source.length() - 1));
+
+		} else if (source.startsWith("'") && source.endsWith("'")) {
+
+			return new Literal(source.substring(1, source.length() - 1));
+		}
+
+		return new Reference(source);
+	}
+
+	private static boolean isFunctionName(final String source, final int end) {
+
+		for (int i=0; i<end; i++) {
+
+			char c = source.charAt(i);
+
+			if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_')) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	// ----- nested classes -----
+	private static abstract class Expression {
+
+		public abstract String evaluate(final DOMNode node, final SecurityContext securityContext, final RenderContext renderContext) throws FrameworkException;
+	}
+
+	private static class Literal extends Expression {
+
+		private String value = null;
+
+		public Literal(final String value) {
+			this.value = value;
+		}
+
+		@Override
+		public String evaluate(final DOMNode node, final SecurityContext securityContext, final RenderContext renderContext) {
+			return value;
+		}
+	}
+
+	private static class Reference extends Expression {
+
+		private String key = null;
+
+		public Reference(final String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String evaluate(final DOMNode node, final SecurityContext securityContext, final RenderContext renderContext) throws FrameworkException {
+			return node.convertValueForHtml(node.getReferencedProperty(securityContext, renderContext, key));
+		}
+	}
+
+	private static class FunctionCall extends Expression {
+
+		private Function<String, String> function = null;
+		private Expression[] parameters           = null;
+
+		public FunctionCall(final Function<String, String> function, final List<Expression> parameters) {
+
+			this.function   = function;
+			this.parameters = parameters.toArray(new Expression[parameters.size()]);
+		}
+
+		@Override
+		public String evaluate(final DOMNode node, final SecurityContext securityContext, final RenderContext renderContext) throws FrameworkException {
+
+			String[] results = new String[parameters.length];
+
+			for (int i=0; i<parameters.length; i++) {
+				results[i] = parameters[i].evaluate(node, securityContext, renderContext);
+			}
+
+			return function.apply(results);
+		}
+	}
+}
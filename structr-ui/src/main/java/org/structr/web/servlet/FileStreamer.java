@@ -0,0 +1,461 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.servlet;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jetty.io.nio.DirectNIOBuffer;
+import org.eclipse.jetty.server.AbstractHttpConnection;
+import org.structr.core.Services;
+import org.structr.web.entity.File;
+
+/**
+ * Delivers the content of a {@link File} from the local file system.
+ * For a response with a single part on Jetty, the requested region is
+ * memory mapped and handed to the connection as a direct buffer, so the
+ * content is not copied through the heap. Multipart responses and other
+ * containers use FileChannel.transferTo into a channel wrapping the
+ * servlet output stream, which copies the content through a small heap
+ * buffer. The stored checksum of the file is
+ * used as the ETag, and single and multiple byte ranges are supported,
+ * so large downloads can be resumed. Overlapping and adjacent ranges are
+ * merged, and a header with more than {@value #MAX_RANGES} ranges, or
+ * with ranges whose multipart response would not be smaller than the
+ * file itself, is ignored and the complete file is sent instead.
+ *
+ * @author Axel Morgner
+ */
+public class FileStreamer {
+
+	private static final Logger logger = Logger.getLogger(FileStreamer.class.getName());
+
+	public static final int MAX_RANGES = 16;
+
+	// estimated size of the boundary and headers of a part of a multipart response
+	private static final int PART_OVERHEAD = 128;
+
+	/**
+	 * Streams the given file to the given response, honoring the
+	 * If-None-Match, Range and If-Range headers of the request.
+	 *
+	 * @param file
+	 * @param request
+	 * @param response
+	 * @param contentType
+	 * @return false if the file is not available on the local file system
+	 * @throws IOException
+	 */
+	public static boolean stream(final File file, final HttpServletRequest request, final HttpServletResponse response, final String contentType) throws IOException {
+
+		java.io.File fileOnDisk = getFileOnDisk(file);
+		if (fileOnDisk == null) {
+			return false;
+		}
+
+		String etag = getETag(file);
+		long length = fileOnDisk.length();
+
+		if (etag != null) {
+
+			response.setHeader("ETag", etag);
+
+			if (matches(request.getHeader("If-None-Match"), etag)) {
+
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return true;
+			}
+		}
+
+		response.setHeader("Accept-Ranges", "bytes");
+
+		List<ByteRange> ranges = null;
+		String rangeHeader     = request.getHeader("Range");
+
+		// only use ranges if the client has the current version of the file
+		if (rangeHeader != null && isCurrent(request.getHeader("If-Range"), etag)) {
+
+			ranges = parseRanges(rangeHeader, length);
+
+			if (ranges != null && ranges.isEmpty()) {
+
+				response.setHeader("Content-Range", "bytes */" + length);
+				response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+
+				return true;
+			}
+		}
+
+		FileInputStream fis = new FileInputStream(fileOnDisk);
+		FileChannel channel = fis.getChannel();
+
+		try {
+
+			if (ranges == null) {
+
+				response.setStatus(HttpServletResponse.SC_OK);
+				response.setContentType(contentType);
+				setContentLength(response, length);
+
+				transfer(channel, 0, length, response.getOutputStream(), true);
+
+			} else if (ranges.size() == 1) {
+
+				ByteRange range = ranges.get(0);
+
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				response.setContentType(contentType);
+				response.setHeader("Content-Range", range.getContentRange(length));
+				setContentLength(response, range.getLength());
+
+				transfer(channel, range.getStart(), range.getLength(), response.getOutputStream(), true);
+
+			} else {
+
+				String boundary     = UUID.randomUUID().toString().replace("-", "");
+				List<byte[]> headers = new LinkedList<byte[]>();
+				byte[] end           = ("\r\n--" + boundary + "--\r\n").getBytes("ISO-8859-1");
+				long contentLength   = end.length;
+
+				for (ByteRange range : ranges) {
+
+					byte[] header = ("\r\n--" + boundary + "\r\nContent-Type: " + contentType + "\r\nContent-Range: " + range.getContentRange(length) + "\r\n\r\n").getBytes("ISO-8859-1");
+
+					headers.add(header);
+					contentLength += header.length + range.getLength();
+				}
+
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				response.setContentType("multipart/byteranges; boundary=" + boundary);
+				setContentLength(response, contentLength);
+
+				OutputStream out = response.getOutputStream();
+
+				for (int i=0; i<ranges.size(); i++) {
+
+					ByteRange range = ranges.get(i);
+
+					out.write(headers.get(i));
+					transfer(channel, range.getStart(), range.getLength(), out, false);
+				}
+
+				out.write(end);
+				out.flush();
+			}
+
+		} finally {
+
+			channel.close();
+			fis.close();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Transfers the given region of the given channel to the given output
+	 * stream.
+	 *
+	 * @param channel
+	 * @param start
+	 * @param length
+	 * @param out
+	 * @param complete true if the region is the complete response body, which allows the use of Jetty's direct buffers
+	 * @throws IOException
+	 */
+	public static void transfer(final FileChannel channel, final long start, final long length, final OutputStream out, final boolean complete) throws IOException {
+
+		if (length == 0) {
+			return;
+		}
+
+		if (complete && length <= Integer.MAX_VALUE && out instanceof AbstractHttpConnection.Output) {
+
+			// let Jetty write the mapped file region directly to the socket
+			((AbstractHttpConnection.Output)out).sendContent(new DirectNIOBuffer(channel.map(FileChannel.MapMode.READ_ONLY, start, length), true));
+			return;
+		}
+
+		WritableByteChannel target = Channels.newChannel(out);
+		long position              = start;
+		long remaining             = length;
+
+		while (remaining > 0) {
+
+			long count = channel.transferTo(position, remaining, target);
+			if (count <= 0) {
+
+				// file was truncated while sending
+				throw new IOException("Unable to transfer file content, " + remaining + " bytes remaining");
+			}
+
+			position  += count;
+			remaining -= count;
+		}
+
+		out.flush();
+	}
+
+	/**
+	 * Parses the given Range header value.
+	 *
+	 * @param rangeHeader
+	 * @param length the length of the file
+	 * @return the merged satisfiable ranges, an empty list if no range is satisfiable, or null if the header is not a valid byte range header or should be ignored
+	 */
+	public static List<ByteRange> parseRanges(final String rangeHeader, final long length) {
+
+		if (!rangeHeader.startsWith("bytes=")) {
+			return null;
+		}
+
+		String[] parts = rangeHeader.substring(6).split(",");
+		if (parts.length > MAX_RANGES) {
+
+			logger.log(Level.FINE, "Ignoring Range header with {0} ranges", parts.length);
+			return null;
+		}
+
+		List<ByteRange> ranges = new LinkedList<ByteRange>();
+
+		for (String part : parts) {
+
+			String spec = part.trim();
+			int dash    = spec.indexOf('-');
+
+			if (dash < 0) {
+				return null;
+			}
+
+			try {
+
+				String first = spec.substring(0, dash).trim();
+				String last  = spec.substring(dash + 1).trim();
+				long start   = 0;
+				long end     = length - 1;
+
+				if (first.isEmpty()) {
+
+					// suffix range: the last n bytes
+					long suffix = Long.parseLong(last);
+					if (suffix <= 0) {
+						continue;
+					}
+
+					start = Math.max(0, length - suffix);
+
+				} else {
+
+					start = Long.parseLong(first);
+
+					if (!last.isEmpty()) {
+						end = Math.min(Long.parseLong(last), length - 1);
+					}
+				}
+
+				if (start <= end && start < length) {
+
+					ranges.add(new ByteRange(start, end));
+
+				} else if (!last.isEmpty() && !first.isEmpty() && Long.parseLong(last) < start) {
+
+					// syntactically invalid, ignore the header
+					return null;
+				}
+
+			} catch (NumberFormatException nfex) {
+
+				return null;
+			}
+		}
+
+		return merge(ranges, length);
+	}
+
+	/**
+	 * @param file
+	 * @return the ETag derived from the checksum of the given file, or null
+	 */
+	public static String getETag(final File file) {
+
+		Long checksum = file.getChecksum();
+		if (checksum != null && checksum != 0) {
+
+			return "\"" + Long.toHexString(checksum) + "\"";
+		}
+
+		return null;
+	}
+
+	// ----- private methods -----
+	private static java.io.File getFileOnDisk(final File file) {
+
+		String relativeFilePath = file.getRelativeFilePath();
+		if (relativeFilePath != null) {
+
+			java.io.File fileOnDisk = new java.io.File(Services.getFilesPath(), relativeFilePath);
+			if (fileOnDisk.isFile()) {
+
+				return fileOnDisk;
+			}
+
+			logger.log(Level.FINE, "File {0} not found on disk", fileOnDisk);
+		}
+
+		return null;
+	}
+
+	private static boolean matches(final String ifNoneMatch, final String etag) {
+
+		if (StringUtils.isBlank(ifNoneMatch)) {
+			return false;
+		}
+
+		for (String candidate : ifNoneMatch.split(",")) {
+
+			String value = candidate.trim();
+
+			// ignore weak validator prefix
+			if (value.startsWith("W/")) {
+				value = value.substring(2);
+			}
+
+			if ("*".equals(value) || etag.equals(value)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean isCurrent(final String ifRange, final String etag) {
+
+		if (StringUtils.isBlank(ifRange)) {
+			return true;
+		}
+
+		// only strong entity tags are compared, dates are treated as outdated
+		return etag != null && etag.equals(ifRange.trim());
+	}
+
+	/**
+	 * Sorts the given ranges and merges overlapping and adjacent ones, so
+	 * no byte of the file is sent twice.
+	 *
+	 * @param ranges
+	 * @param length the length of the file
+	 * @return the merged ranges, or null if the multipart response for the ranges would not be smaller than the file
+	 */
+	private static List<ByteRange> merge(final List<ByteRange> ranges, final long length) {
+
+		if (ranges.size() <= 1) {
+			return ranges;
+		}
+
+		Collections.sort(ranges, new Comparator<ByteRange>() {
+
+			@Override
+			public int compare(final ByteRange r1, final ByteRange r2) {
+				return r1.getStart() < r2.getStart() ? -1 : (r1.getStart() > r2.getStart() ? 1 : 0);
+			}
+		});
+
+		List<ByteRange> merged = new LinkedList<ByteRange>();
+		ByteRange current      = null;
+		long total             = 0;
+
+		for (ByteRange range : ranges) {
+
+			if (current != null && range.getStart() <= current.getEnd() + 1) {
+
+				current = new ByteRange(current.getStart(), Math.max(current.getEnd(), range.getEnd()));
+
+			} else {
+
+				if (current != null) {
+
+					merged.add(current);
+					total += current.getLength();
+				}
+
+				current = range;
+			}
+		}
+
+		merged.add(current);
+		total += current.getLength();
+
+		// many small ranges, or ranges covering almost the complete file, are cheaper to send as a whole
+		if (merged.size() > 1 && total + merged.size() * PART_OVERHEAD >= length) {
+
+			logger.log(Level.FINE, "Ignoring Range header with {0} ranges covering {1} of {2} bytes", new Object[] { merged.size(), total, length });
+			return null;
+		}
+
+		return merged;
+	}
+
+	private static void setContentLength(final HttpServletResponse response, final long length) {
+
+		// setContentLength is limited to int
+		response.setHeader("Content-Length", Long.toString(length));
+	}
+
+	// ----- nested classes -----
+	public static class ByteRange {
+
+		private long start = 0;
+		private long end   = 0;
+
+		public ByteRange(final long start, final long end) {
+
+			this.start = start;
+			this.end   = end;
+		}
+
+		public long getStart() {
+			return start;
+		}
+
+		public long getEnd() {
+			return end;
+		}
+
+		public long getLength() {
+			return end - start + 1;
+		}
+
+		public String getContentRange(final long totalLength) {
+			return "bytes " + start + "-" + end + "/" + totalLength;
+		}
+	}
+}
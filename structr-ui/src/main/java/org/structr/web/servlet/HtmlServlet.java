@@ -67,9 +67,11 @@ import org.structr.core.graph.GetNodeByIdCommand;
 import org.structr.core.graph.StructrTransaction;
 import org.structr.core.graph.TransactionCommand;
 import org.structr.rest.ResourceProvider;
+import org.structr.web.common.RenderCache;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
 import org.structr.web.common.ThreadLocalMatcher;
+import org.structr.web.common.ThumbnailService;
 import org.structr.web.entity.User;
 import org.structr.web.entity.dom.DOMNode;
 
@@ -84,7 +86,6 @@ import org.structr.web.entity.dom.DOMNode;
 public class HtmlServlet extends HttpServlet {
 
 	private static final Logger logger                                          = Logger.getLogger(HtmlServlet.class.getName());
-	private static Date lastModified;
 	public static final String REST_RESPONSE = "restResponse";
 	public static final String REDIRECT = "redirect";
 	public static final String POSSIBLE_ENTRY_POINTS = "possibleEntryPoints";
@@ -104,6 +105,8 @@ public class HtmlServlet extends HttpServlet {
 
 
 	private DecimalFormat decimalFormat                                         = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+	private boolean streamingEnabled                                            = true;
+	private int flushSize                                                       = 8192;
 	private EditMode edit;
 //	private Gson gson;
 
@@ -121,15 +124,22 @@ public class HtmlServlet extends HttpServlet {
 	public void init() {
 		
 		 searchNodesAsSuperuser = Services.command(SecurityContext.getSuperUserInstance(), SearchNodeCommand.class);
+		 streamingEnabled       = Services.getConfigurationValue(RenderContext.STREAMING_ENABLED, true);
+		 flushSize              = Services.getConfigurationValue(RenderContext.STREAMING_FLUSH_SIZE, 8192);
 	}
 
 	@Override
-	public void destroy() {}
+	public void destroy() {
+
+		// stop thumbnail workers
+		ThumbnailService.shutdown();
+	}
 
 	@Override
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) {
 
 		double start                    = System.nanoTime();
+		RenderContext renderContext     = null;
 
 		try {
 
@@ -163,7 +173,7 @@ public class HtmlServlet extends HttpServlet {
 				
 			}
 			
-			RenderContext renderContext = RenderContext.getInstance(request, response, Locale.getDefault());
+			renderContext = RenderContext.getInstance(request, response, Locale.getDefault());
 			
 			renderContext.setResourceProvider(resourceProvider);
 			
@@ -296,10 +306,6 @@ public class HtmlServlet extends HttpServlet {
 
 				setNoCacheHeaders(response);
 				
-			} else {
-				
-				lastModified = rootElement.getLastModifiedDate();
-
 			}
 
 			if (securityContext.isVisible(rootElement)) {
@@ -316,12 +322,18 @@ public class HtmlServlet extends HttpServlet {
 
 				} else {
 					
-					rootElement.render(securityContext, renderContext, 0);
-
-					String content = renderContext.getBuffer().toString();
-					double end     = System.nanoTime();
-					logger.log(Level.FINE, "Content for path {0} in {1} seconds", new Object[] { path, decimalFormat.format((end - setup) / 1000000000.0)});
-
+					// only anonymous requests for pages without details object are cached
+					RenderCache renderCache = RenderCache.getInstance();
+					boolean useCache        = !EditMode.DATA.equals(edit) && !dontCache && dataNode == null && rootElement instanceof Page && renderCache.isEnabled();
+					String cacheKey         = null;
+					String content          = null;
+					
+					if (useCache) {
+						
+						cacheKey = RenderCache.createKey(rootElement.getUuid(), rootElement.getProperty(Page.version), "page:" + edit + ":" + renderContext.getLocale() + ":" + path + "?" + request.getQueryString());
+						content  = renderCache.get(cacheKey);
+					}
+					
 					String contentType = rootElement.getProperty(Page.contentType);
 
 					if (contentType != null && contentType.equals("text/html")) {
@@ -335,6 +347,38 @@ public class HtmlServlet extends HttpServlet {
 						response.setContentType("text/html;charset=UTF-8");
 					}
 
+					if (content == null && !useCache && streamingEnabled) {
+
+						// stream output that is not cached, nothing is sent before the head is complete or the buffer is full
+						response.setStatus(HttpServletResponse.SC_OK);
+						response.setCharacterEncoding("UTF-8");
+
+						renderContext.setWriter(out, flushSize);
+						rootElement.render(securityContext, renderContext, 0);
+						renderContext.flush(true);
+
+						out.close();
+
+						logger.log(Level.FINE, "Content for path {0} streamed in {1} seconds", new Object[] { path, decimalFormat.format((System.nanoTime() - setup) / 1000000000.0)});
+
+						return;
+					}
+
+					if (content == null) {
+						
+						rootElement.render(securityContext, renderContext, 0);
+
+						content = renderContext.getBuffer().toString();
+						
+						if (useCache && renderContext.isCacheable()) {
+							
+							renderCache.put(rootElement.getUuid(), cacheKey, content);
+						}
+					}
+					
+					double end     = System.nanoTime();
+					logger.log(Level.FINE, "Content for path {0} in {1} seconds", new Object[] { path, decimalFormat.format((end - setup) / 1000000000.0)});
+
 					// 3: output content
 					HttpAuthenticator.writeContent(content, response);
 
@@ -350,6 +394,12 @@ public class HtmlServlet extends HttpServlet {
 
 			t.printStackTrace();
 			logger.log(Level.SEVERE, "Exception while processing request", t);
+
+			// parts of the page were already sent, an error page would be appended to them
+			if (renderContext != null && renderContext.isCommitted()) {
+				return;
+			}
+
 			HttpAuthenticator.writeInternalServerError(response);
 		}
 	}
@@ -457,7 +507,7 @@ public class HtmlServlet extends HttpServlet {
 
 		if (!results.isEmpty()) {
 
-			Collections.sort(results.getResults(), new GraphObjectComparator(Page.position, GraphObjectComparator.ASCENDING));
+			new GraphObjectComparator(Page.position, GraphObjectComparator.ASCENDING).sort(results.getResults());
 
 			// Find first visible page
 			
@@ -687,6 +737,7 @@ public class HtmlServlet extends HttpServlet {
 		DateFormat httpDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
 		Calendar cal              = new GregorianCalendar();
 		Integer seconds           = node.getProperty(Page.cacheForSeconds);
+		Date lastModified         = node.getLastModifiedDate();
 
 		if (seconds != null) {
 
@@ -750,29 +801,34 @@ public class HtmlServlet extends HttpServlet {
 			
 		}
 
-		OutputStream out = response.getOutputStream();
-
 		if (!EditMode.DATA.equals(edit) && notModifiedSince(request, response, file)) {
 
+			OutputStream out = response.getOutputStream();
+
 			out.flush();
 			out.close();
 
 		} else {
 
-			// 2b: stream file to response
-			InputStream in     = file.getInputStream();
 			String contentType = file.getContentType();
 
-			if (contentType != null) {
-
-				response.setContentType(contentType);
-
-			} else {
+			if (contentType == null) {
 
 				// Default
-				response.setContentType("application/octet-stream");
+				contentType = "application/octet-stream";
 			}
 
+			// 2a: deliver local file with range and ETag support
+			if (FileStreamer.stream(file, request, response, contentType)) {
+				return;
+			}
+
+			// 2b: stream file to response
+			InputStream in   = file.getInputStream();
+			OutputStream out = response.getOutputStream();
+
+			response.setContentType(contentType);
+
 			try {
 
 				IOUtils.copy(in, out);
@@ -0,0 +1,380 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.websocket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jetty.websocket.WebSocket.Connection;
+import org.structr.core.Services;
+import org.structr.websocket.message.WebSocketMessage;
+
+/**
+ * Outbound pipeline for the websocket broadcast. The change sets of
+ * committed transactions are queued here and serialized by a single
+ * dispatcher thread, so the commit path never waits for clients. Each
+ * client has its own bounded send queue that is drained by a pool of
+ * sender threads. If a queue is full, new entries are dropped and
+ * counted.
+ *
+ * Sending a message blocks the sender thread until the socket accepts
+ * the data, so a stalled client occupies one sender thread until the
+ * write fails or the connection times out. If all sender threads are
+ * occupied by stalled clients, the messages of all other clients are
+ * delayed as well. The pool grows on demand up to the configured number
+ * of sender threads, which should be larger than the number of clients
+ * that are expected to stall at the same time.
+ *
+ * Messages are serialized after the transaction was committed, so the
+ * entities may already have been modified or deleted by another
+ * transaction when they are serialized.
+ *
+ * @author Christian Morgner
+ */
+public class BroadcastDispatcher {
+
+	private static final Logger logger                  = Logger.getLogger(BroadcastDispatcher.class.getName());
+
+	public static final String QUEUE_SIZE               = "websocket.broadcast.queue.size";
+	public static final String CLIENT_QUEUE_SIZE        = "websocket.broadcast.client.queue.size";
+	public static final String SENDER_THREADS           = "websocket.broadcast.sender.threads";
+
+	private final Map<StructrWebSocket, ClientQueue> clientQueues = new ConcurrentHashMap<>();
+	private final AtomicLong droppedChangeSets                    = new AtomicLong();
+	private final AtomicLong droppedMessages                      = new AtomicLong();
+	private final AtomicLong sentMessages                         = new AtomicLong();
+	private final AtomicLong serializations                       = new AtomicLong();
+	private final AtomicLong totalSendTime                        = new AtomicLong();
+	private final AtomicLong maxSendTime                          = new AtomicLong();
+	private BlockingQueue<List<WebSocketMessage>> changeSets      = null;
+	private SynchronizationController controller                  = null;
+	private ExecutorService senders                               = null;
+	private Thread dispatcherThread                               = null;
+	private volatile boolean running                              = true;
+	private int clientQueueSize                                   = 0;
+
+	public BroadcastDispatcher(final SynchronizationController controller) {
+
+		this.controller      = controller;
+		this.changeSets      = new ArrayBlockingQueue<>(Services.getConfigurationValue(QUEUE_SIZE, 1000));
+		this.clientQueueSize = Services.getConfigurationValue(CLIENT_QUEUE_SIZE, 1000);
+
+		int senderThreads           = Math.max(1, Services.getConfigurationValue(SENDER_THREADS, 16));
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("WebSocketSender"));
+
+		// idle sender threads are released, so the pool size is only reached under load
+		executor.allowCoreThreadTimeOut(true);
+
+		this.senders = executor;
+
+		dispatcherThread = new DaemonThreadFactory("WebSocketDispatcher").newThread(new Runnable() {
+
+			@Override
+			public void run() {
+				dispatch();
+			}
+		});
+
+		dispatcherThread.start();
+	}
+
+	/**
+	 * Queues the messages of a committed transaction for broadcasting.
+	 * This method never blocks, the change set is dropped if the queue
+	 * is full.
+	 *
+	 * @param messages
+	 */
+	public void enqueue(final List<WebSocketMessage> messages) {
+
+		if (messages == null || messages.isEmpty()) {
+			return;
+		}
+
+		if (!changeSets.offer(messages)) {
+
+			droppedChangeSets.incrementAndGet();
+			logger.log(Level.WARNING, "Broadcast queue full, dropping {0} messages", messages.size());
+		}
+	}
+
+	public void registerClient(final StructrWebSocket client) {
+		clientQueues.put(client, new ClientQueue(client));
+	}
+
+	public void unregisterClient(final StructrWebSocket client) {
+
+		ClientQueue queue = clientQueues.remove(client);
+		if (queue != null) {
+
+			queue.messages.clear();
+		}
+	}
+
+	public void shutdown() {
+
+		running = false;
+
+		dispatcherThread.interrupt();
+		senders.shutdown();
+	}
+
+	// ----- metrics -----
+	/**
+	 * @return the number of change sets waiting to be dispatched
+	 */
+	public int getQueueDepth() {
+		return changeSets.size();
+	}
+
+	/**
+	 * @return the number of messages waiting in the queue of the given client
+	 */
+	public int getClientQueueDepth(final StructrWebSocket client) {
+
+		ClientQueue queue = clientQueues.get(client);
+		if (queue != null) {
+
+			return queue.messages.size();
+		}
+
+		return 0;
+	}
+
+	public long getDroppedChangeSetCount() {
+		return droppedChangeSets.get();
+	}
+
+	public long getDroppedMessageCount() {
+		return droppedMessages.get();
+	}
+
+	public long getSentMessageCount() {
+		return sentMessages.get();
+	}
+
+	public long getSerializationCount() {
+		return serializations.get();
+	}
+
+	/**
+	 * @return the average time in milliseconds needed to send a message to a client
+	 */
+	public double getAverageSendLatency() {
+
+		long count = sentMessages.get();
+		if (count > 0) {
+
+			return (totalSendTime.get() / (double)count) / 1000000.0;
+		}
+
+		return 0.0;
+	}
+
+	/**
+	 * @return the maximum time in milliseconds needed to send a message to a client
+	 */
+	public double getMaxSendLatency() {
+		return maxSendTime.get() / 1000000.0;
+	}
+
+	// ----- private methods -----
+	private void dispatch() {
+
+		while (running) {
+
+			try {
+
+				List<WebSocketMessage> messages = changeSets.take();
+				List<StructrWebSocket> clients  = new ArrayList<>(clientQueues.keySet());
+
+				for (WebSocketMessage message : messages) {
+
+					try {
+						dispatch(message, clients);
+
+					} catch (Throwable t) {
+
+						logger.log(Level.WARNING, "Unable to broadcast message", t);
+					}
+				}
+
+			} catch (InterruptedException iex) {
+
+				// shutdown
+			}
+		}
+	}
+
+	private void dispatch(final WebSocketMessage message, final List<StructrWebSocket> clients) {
+
+		// serialize every distinct variant of the message only once
+		Map<String, String> serializedMessages = new HashMap<>();
+
+		for (StructrWebSocket client : clients) {
+
+			ClientQueue queue = clientQueues.get(client);
+			if (queue == null) {
+
+				continue;
+			}
+
+			WebSocketMessage clientMessage = controller.createClientMessage(message, client);
+			if (clientMessage == null) {
+
+				continue;
+			}
+
+			String key  = controller.getMessageKey(clientMessage);
+			String json = serializedMessages.get(key);
+
+			if (json == null) {
+
+				json = controller.serialize(clientMessage);
+				serializedMessages.put(key, json);
+				serializations.incrementAndGet();
+			}
+
+			queue.add(json);
+		}
+	}
+
+	// ----- nested classes -----
+	private class ClientQueue implements Runnable {
+
+		private final AtomicBoolean scheduled      = new AtomicBoolean(false);
+		private BlockingQueue<String> messages     = null;
+		private StructrWebSocket client            = null;
+
+		public ClientQueue(final StructrWebSocket client) {
+
+			this.messages = new ArrayBlockingQueue<>(clientQueueSize);
+			this.client   = client;
+		}
+
+		public void add(final String message) {
+
+			if (!messages.offer(message)) {
+
+				droppedMessages.incrementAndGet();
+				logger.log(Level.FINE, "Send queue of client full, dropping message");
+
+				return;
+			}
+
+			schedule();
+		}
+
+		@Override
+		public void run() {
+
+			String message = null;
+
+			while ((message = messages.poll()) != null) {
+
+				send(message);
+			}
+
+			scheduled.set(false);
+
+			// a message might have been added after the last poll
+			if (!messages.isEmpty()) {
+
+				schedule();
+			}
+		}
+
+		private void schedule() {
+
+			if (running && scheduled.compareAndSet(false, true)) {
+
+				senders.execute(this);
+			}
+		}
+
+		private void send(final String message) {
+
+			Connection connection = client.getConnection();
+			if (connection == null) {
+
+				return;
+			}
+
+			logger.log(Level.FINE, "############################################################ SENDING \n{0}", message);
+
+			long t0 = System.nanoTime();
+
+			try {
+
+				connection.sendMessage(message);
+
+			} catch (org.eclipse.jetty.io.EofException eof) {
+
+				logger.log(Level.FINE, "EofException irgnored, may occour on SSL connections.", eof);
+
+			} catch (Throwable t) {
+
+				logger.log(Level.WARNING, "Error sending message to client.", t);
+			}
+
+			long time = System.nanoTime() - t0;
+			long max  = maxSendTime.get();
+
+			while (time > max && !maxSendTime.compareAndSet(max, time)) {
+				max = maxSendTime.get();
+			}
+
+			totalSendTime.addAndGet(time);
+			sentMessages.incrementAndGet();
+		}
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+		private String name               = null;
+
+		public DaemonThreadFactory(final String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+
+			Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+}
@@ -37,7 +37,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.eclipse.jetty.util.URIUtil;
 
-import org.eclipse.jetty.websocket.WebSocket.Connection;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.event.PropertyEntry;
 import org.neo4j.graphdb.event.TransactionData;
@@ -68,32 +67,27 @@ public class SynchronizationController implements StructrTransactionListener, Tr
 	private final Map<Long, List<WebSocketMessage>> messageStackMap = new ConcurrentHashMap<>();
 	private final Map<Long, Set<DOMNode>> markupElementsMap         = new ConcurrentHashMap<>();
 	private final Map<Long, Set<Class>> typesMap                    = new ConcurrentHashMap<>();
-	private final Set<StructrWebSocket> clients                     = new LinkedHashSet<>();
 	private final AtomicLong transactionCounter                     = new AtomicLong(0);
+	private BroadcastDispatcher dispatcher                          = null;
 	private ResourceProvider resourceProvider                       = null;
 	private Gson gson                                               = null;
 
 	public SynchronizationController(Gson gson) {
 
-		this.gson = gson;
+		this.gson       = gson;
+		this.dispatcher = new BroadcastDispatcher(this);
 
 	}
 
 	public void registerClient(StructrWebSocket client) {
 
-		synchronized (clients) {
-
-			clients.add(client);
-		}
+		dispatcher.registerClient(client);
 
 	}
 
 	public void unregisterClient(StructrWebSocket client) {
 
-		synchronized (clients) {
-
-			clients.remove(client);
-		}
+		dispatcher.unregisterClient(client);
 
 	}
 	
@@ -101,86 +95,97 @@ public class SynchronizationController implements StructrTransactionListener, Tr
 		this.resourceProvider = resourceProvider;
 	}
 
-	// ----- private methods -----
-	private void broadcast(final WebSocketMessage webSocketData) {
-
-		logger.log(Level.FINE, "Broadcasting message to {0} clients..", clients.size());
+	public BroadcastDispatcher getDispatcher() {
+		return dispatcher;
+	}
 
-		// session must be valid to be received by the client
-		webSocketData.setSessionValid(true);
+	public void shutdown() {
+		dispatcher.shutdown();
+	}
 
-		String message;
-		String pagePath = (String) webSocketData.getNodeData().get("pagePath");
+	/**
+	 * Creates the message that is sent to the given client for the given
+	 * broadcast message, or null if the client must not receive it.
+	 *
+	 * @param webSocketData
+	 * @param socket
+	 * @return the client-specific message or null
+	 */
+	public WebSocketMessage createClientMessage(final WebSocketMessage webSocketData, final StructrWebSocket socket) {
 
-		synchronized (clients) {
+		String pagePath       = (String) webSocketData.getNodeData().get("pagePath");
+		String clientPagePath = socket.getPagePath();
 
-			// create message
-			for (StructrWebSocket socket : clients) {
-				
-				String clientPagePath = socket.getPagePath();
-				if (clientPagePath != null && !clientPagePath.equals(URIUtil.encodePath(pagePath))) {
-					continue;
-				}
-				
-				Connection socketConnection = socket.getConnection();
-
-				webSocketData.setCallback(socket.getCallback());
+		if (clientPagePath != null && !clientPagePath.equals(URIUtil.encodePath(pagePath))) {
+			return null;
+		}
 
-				if ((socketConnection != null)) { //&& socket.isAuthenticated()) {
+		if (socket.getConnection() == null) {
+			return null;
+		}
 
-					List<? extends GraphObject> result = webSocketData.getResult();
+		WebSocketMessage clientData        = webSocketData.copy();
+		List<? extends GraphObject> result = webSocketData.getResult();
 
-					if ((result != null) && (result.size() > 0)
-						&& (webSocketData.getCommand().equals("UPDATE") || webSocketData.getCommand().equals("ADD") || webSocketData.getCommand().equals("CREATE"))) {
+		// session must be valid to be received by the client
+		clientData.setSessionValid(true);
+		clientData.setCallback(socket.getCallback());
 
-						WebSocketMessage clientData     = webSocketData.copy();
-						SecurityContext securityContext = socket.getSecurityContext();
-						
-						// For non-authenticated clients, construct a security context without user
-						if (securityContext == null) {
-							
-							try {
-								
-								securityContext = SecurityContext.getInstance(null, AccessMode.Frontend);
-								
-							} catch (FrameworkException ex) {
-								
-								continue;
-							}
-						}
+		if ((result != null) && (result.size() > 0)
+			&& (webSocketData.getCommand().equals("UPDATE") || webSocketData.getCommand().equals("ADD") || webSocketData.getCommand().equals("CREATE"))) {
 
-						clientData.setResult(filter(securityContext, result));
+			SecurityContext securityContext = socket.getSecurityContext();
 
-						message = gson.toJson(clientData, WebSocketMessage.class);
+			// For non-authenticated clients, construct a security context without user
+			if (securityContext == null) {
 
-					} else {
+				try {
 
-						message = gson.toJson(webSocketData, WebSocketMessage.class);
-					}
+					securityContext = SecurityContext.getInstance(null, AccessMode.Frontend);
 
-					logger.log(Level.FINE, "############################################################ SENDING \n{0}", message);
+				} catch (FrameworkException ex) {
 
-					try {
+					return null;
+				}
+			}
 
-						socketConnection.sendMessage(message);
+			clientData.setResult(filter(securityContext, result));
+		}
 
-					} catch (org.eclipse.jetty.io.EofException eof) {
+		return clientData;
+	}
 
-						logger.log(Level.FINE, "EofException irgnored, may occour on SSL connections.", eof);
+	/**
+	 * Returns a key that is equal for all client messages created from the
+	 * same broadcast message that serialize to the same JSON, i.e. with the
+	 * same callback and the same visible result objects.
+	 *
+	 * @param clientData
+	 * @return the key
+	 */
+	public String getMessageKey(final WebSocketMessage clientData) {
 
-					} catch (Throwable t) {
+		StringBuilder key                  = new StringBuilder();
+		List<? extends GraphObject> result = clientData.getResult();
 
-						logger.log(Level.WARNING, "Error sending message to client.", t);
+		key.append(clientData.getCallback());
 
-					}
+		if (result != null) {
 
-				}
+			for (GraphObject obj : result) {
 
+				key.append(",").append(obj.getId());
 			}
 		}
 
+		return key.toString();
 	}
 
+	public String serialize(final WebSocketMessage clientData) {
+		return gson.toJson(clientData, WebSocketMessage.class);
+	}
+
+	// ----- private methods -----
 	private <T extends GraphObject> List<T> filter(final SecurityContext securityContext, final List<T> all) {
 
 		List<T> filteredResult = new LinkedList<T>();
@@ -376,19 +381,8 @@ public class SynchronizationController implements StructrTransactionListener, Tr
 	@Override
 	public void commitFinishes(SecurityContext securityContext, long transactionKey) {
 
-		List<WebSocketMessage> messageStack = messageStackMap.get(transactionKey);
-
-		if (messageStack != null) {
-
-			for (WebSocketMessage message : messageStack) {
-
-				broadcast(message);
-			}
-
-		} else {
-
-			logger.log(Level.WARNING, "No message found for transaction key {0}", transactionKey);
-		}
+		// messages are broadcasted in afterCommit, so that
+		// clients never see changes that were rolled back
 	}
 
 	@Override
@@ -403,11 +397,22 @@ public class SynchronizationController implements StructrTransactionListener, Tr
 	@Override
 	public void afterCommit(SecurityContext securityContext, long transactionKey) {
 		
-		Set<DOMNode> markupElements = markupElementsMap.get(transactionKey);
-		Set<Class> types            = typesMap.get(transactionKey);
+		Set<DOMNode> markupElements         = markupElementsMap.get(transactionKey);
+		Set<Class> types                    = typesMap.get(transactionKey);
+		List<WebSocketMessage> messageStack = messageStackMap.get(transactionKey);
 
 		//broadcastPartials(types, markupElements);
 
+		if (messageStack != null) {
+
+			// hand over to the dispatcher, don't block the committing thread
+			dispatcher.enqueue(messageStack);
+
+		} else {
+
+			logger.log(Level.FINE, "No message found for transaction key {0}", transactionKey);
+		}
+
 		// roll back transaction
 		messageStackMap.remove(transactionKey);
 		markupElementsMap.remove(transactionKey);
@@ -129,6 +129,9 @@ public class WebSocketServlet extends HttpServlet {
 		
 		GraphDatabaseService graphDb = Services.getService(NodeService.class).getGraphDb();
 		graphDb.unregisterTransactionEventHandler(syncController);
+		
+		// stop broadcast threads
+		syncController.shutdown();
 	}
 
 	@Override
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import junit.framework.TestCase;
+import org.apache.commons.lang.StringUtils;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Adapter;
+
+/**
+ * Test the conversion cache
+ *
+ * @author Axel Morgner
+ */
+public class ConversionCacheTest extends TestCase {
+
+	private int conversions = 0;
+
+	private final Adapter<String, String> converter = new Adapter<String, String>() {
+
+		@Override
+		public String adapt(String s) throws FrameworkException {
+
+			conversions++;
+
+			return "<p>" + s + "</p>";
+		}
+	};
+
+	@Override
+	protected void setUp() throws Exception {
+
+		ConversionCache.getInstance().clear();
+		conversions = 0;
+	}
+
+	public void testConvert() throws FrameworkException {
+
+		ConversionCache cache = ConversionCache.getInstance();
+		long hits             = cache.getHitCount();
+
+		assertEquals("<p>text</p>", cache.convert("node1", "text/markdown", "text", converter));
+		assertEquals("<p>text</p>", cache.convert("node1", "text/markdown", "text", converter));
+		assertEquals(1, conversions);
+		assertEquals(hits + 1, cache.getHitCount());
+
+		// changed input replaces the entry
+		assertEquals("<p>other</p>", cache.convert("node1", "text/markdown", "other", converter));
+		assertEquals(2, conversions);
+		assertEquals(1, cache.getEntryCount());
+
+		// different content type
+		cache.convert("node1", "text/textile", "other", converter);
+		assertEquals(3, conversions);
+		assertEquals(2, cache.getEntryCount());
+
+		cache.invalidate("node1");
+
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, cache.getSize());
+
+		cache.convert("node1", "text/markdown", "other", converter);
+		assertEquals(4, conversions);
+	}
+
+	public void testInvalidateAfterEviction() throws FrameworkException {
+
+		ConversionCache cache = ConversionCache.getInstance();
+		String input          = StringUtils.repeat("x", 400000);
+		long entrySize        = (input.length() + 7) * 2L;
+
+		// six entries of 800 kB exceed the default size of 4 MB
+		for (int i=1; i<=6; i++) {
+			cache.convert("node" + i, "text/markdown", input, converter);
+		}
+
+		assertEquals(5, cache.getEntryCount());
+		assertEquals(5 * entrySize, cache.getSize());
+
+		// evicted node
+		cache.invalidate("node1");
+		assertEquals(5, cache.getEntryCount());
+
+		cache.invalidate("node2");
+		assertEquals(4, cache.getEntryCount());
+		assertEquals(4 * entrySize, cache.getSize());
+
+		// evicted and invalidated nodes are converted again
+		conversions = 0;
+
+		cache.convert("node1", "text/markdown", input, converter);
+		cache.convert("node2", "text/markdown", input, converter);
+		cache.convert("node6", "text/markdown", input, converter);
+
+		assertEquals(2, conversions);
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import junit.framework.TestCase;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Test the render cache
+ *
+ * @author Christian Morgner
+ */
+public class RenderCacheTest extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		RenderCache.getInstance().clear();
+	}
+
+	public void testVersionedKeys() {
+
+		RenderCache cache = RenderCache.getInstance();
+		String key1       = RenderCache.createKey("page1", 1, "page:NONE:en:/index?null");
+		String key2       = RenderCache.createKey("page1", 2, "page:NONE:en:/index?null");
+
+		long hits         = cache.getHitCount();
+		long misses       = cache.getMissCount();
+
+		cache.put("page1", key1, "<html>1</html>");
+
+		assertEquals("<html>1</html>", cache.get(key1));
+		assertNull(cache.get(key2));
+
+		assertEquals(hits + 1, cache.getHitCount());
+		assertEquals(misses + 1, cache.getMissCount());
+
+		cache.invalidate("page1");
+
+		assertNull(cache.get(key1));
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, cache.getSize());
+	}
+
+	public void testSizeLimit() {
+
+		RenderCache cache = RenderCache.getInstance();
+
+		// larger than a quarter of the default size of 16 MB
+		cache.put("page1", "large", StringUtils.repeat("x", 3 * 1024 * 1024));
+		assertNull(cache.get("large"));
+
+		// six entries of 3 MB each exceed the limit
+		String content = StringUtils.repeat("x", 1536 * 1024);
+
+		for (int i=0; i<6; i++) {
+			cache.put("page" + i, "key" + i, content);
+		}
+
+		assertNull(cache.get("key0"));
+		assertNotNull(cache.get("key5"));
+		assertTrue(cache.getSize() <= 16 * 1024 * 1024);
+	}
+}
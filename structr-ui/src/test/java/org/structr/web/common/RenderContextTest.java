@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.StringWriter;
+import junit.framework.TestCase;
+import org.structr.common.error.FrameworkException;
+
+/**
+ * Test streaming of the render buffer
+ *
+ * @author Axel Morgner
+ */
+public class RenderContextTest extends TestCase {
+
+	public void testStreaming() throws FrameworkException {
+
+		RenderContext renderContext = new RenderContext();
+		StringWriter writer         = new StringWriter();
+
+		// buffering mode
+		renderContext.getBuffer().append("<html>");
+		renderContext.flush(true);
+
+		assertFalse(renderContext.isStreaming());
+		assertEquals("<html>", renderContext.getBuffer().toString());
+
+		renderContext.setWriter(writer, 16);
+
+		// below flush size
+		renderContext.flush(false);
+		assertEquals("", writer.toString());
+		assertFalse(renderContext.isCommitted());
+
+		renderContext.getBuffer().append("<head></head><body>");
+		renderContext.flush(false);
+
+		assertEquals("<html><head></head><body>", writer.toString());
+		assertEquals(0, renderContext.getBuffer().length());
+		assertTrue(renderContext.isCommitted());
+
+		// captured output stays in the buffer
+		renderContext.beginCapture();
+		renderContext.getBuffer().append("<div>captured fragment</div>");
+		renderContext.flush(true);
+
+		assertEquals("<html><head></head><body>", writer.toString());
+
+		renderContext.endCapture();
+		renderContext.getBuffer().append("</body></html>");
+		renderContext.flush(true);
+
+		assertEquals("<html><head></head><body><div>captured fragment</div></body></html>", writer.toString());
+	}
+}
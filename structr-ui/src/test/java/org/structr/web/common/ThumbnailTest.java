@@ -87,8 +87,16 @@ public class ThumbnailTest extends StructrTest {
 			assertNotNull(img);
 			assertTrue(img instanceof TestImage);
 
+			// thumbnails are created in the background
 			Image tn = img.getProperty(TestImage.thumbnail);
 
+			for (int i=0; i<100 && tn == null; i++) {
+
+				try { Thread.sleep(100); } catch (InterruptedException iex) {}
+
+				tn = img.getProperty(TestImage.thumbnail);
+			}
+
 			assertNotNull(tn);
 			assertEquals(new Integer(200), tn.getWidth());
 			assertEquals(new Integer(48), tn.getHeight());  // cropToFit = false
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.entity.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.structr.common.error.FrameworkException;
+import org.structr.web.common.DOMTest;
+import org.structr.web.common.RenderContext;
+
+/**
+ * Tests the compiled templates against the regex based evaluation they
+ * replace. The evaluation time is measured by TemplateBenchmark in
+ * structr-benchmarks.
+ *
+ * @author Christian Morgner
+ */
+public class TemplateTest extends DOMTest {
+
+	private static final Logger logger = Logger.getLogger(TemplateTest.class.getName());
+
+	private static final String[] templates = new String[] {
+		"Plain text without expressions",
+		"${upper('hello')}",
+		"Hello ${capitalize('world')}, ${if(empty(\"\"), \"a\", \"b\")}!",
+		"${add(1, mult(2, 3))} items, ${lower(\"ITEMS\")}",
+		"${if(equal(1, 1), upper('yes'), 'no')} ${abbr('abcdefghijklmnopqrstuvwxyz', 10)}",
+		"Unterminated ${expression"
+	};
+
+	public void testEquivalence() {
+
+		try {
+
+			Content content             = getContentNode();
+			RenderContext renderContext = new RenderContext();
+
+			for (String template : templates) {
+
+				assertEquals(legacyReplaceVariables(content, renderContext, template), content.replaceVariables(securityContext, renderContext, template));
+			}
+
+			assertEquals("HELLO", content.replaceVariables(securityContext, renderContext, "${upper('hello')}"));
+			assertEquals("Hello World, a!", content.replaceVariables(securityContext, renderContext, templates[2]));
+
+		} catch (FrameworkException fex) {
+
+			logger.log(Level.SEVERE, fex.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	public void testCachedTemplates() {
+
+		try {
+
+			Content content             = getContentNode();
+			RenderContext renderContext = new RenderContext();
+			List<Template> compiled     = new ArrayList<Template>();
+
+			for (String source : templates) {
+
+				// a source that no other test has compiled yet
+				String template = "cached " + source;
+				String expected = legacyReplaceVariables(content, renderContext, template);
+				Template parsed = Template.compile(template, DOMNode.functions);
+
+				assertEquals(expected, parsed.evaluate(content, securityContext, renderContext));
+
+				Template cached = Template.compile(template, DOMNode.functions);
+
+				assertSame(parsed, cached);
+				assertEquals(expected, cached.evaluate(content, securityContext, renderContext));
+
+				compiled.add(parsed);
+			}
+
+			// evict the templates from the cache
+			for (int i=0; i<Template.CACHE_SIZE; i++) {
+				Template.compile("${upper('evict" + i + "')}", DOMNode.functions);
+			}
+
+			for (int i=0; i<templates.length; i++) {
+
+				String template   = "cached " + templates[i];
+				Template reparsed = Template.compile(template, DOMNode.functions);
+
+				assertNotSame(compiled.get(i), reparsed);
+				assertEquals(legacyReplaceVariables(content, renderContext, template), reparsed.evaluate(content, securityContext, renderContext));
+				assertSame(reparsed, Template.compile(template, DOMNode.functions));
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.log(Level.SEVERE, fex.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	/**
+	 * The regex based implementation of replaceVariables that was used
+	 * before templates were compiled.
+	 */
+	private String legacyReplaceVariables(final DOMNode node, final RenderContext renderContext, final String rawValue) throws FrameworkException {
+
+		Matcher matcher = Pattern.compile("\\$\\{[^}]*\\}").matcher(rawValue);
+		String value    = rawValue;
+
+		while (matcher.find()) {
+
+			String group     = matcher.group();
+			String source    = group.substring(2, group.length() - 1);
+			String partValue = node.extractFunctions(securityContext, renderContext, source);
+
+			if (partValue != null) {
+
+				value = value.replace(group, partValue);
+
+			} else {
+
+				value = value.equals(group) ? null : value.replace(group, "");
+			}
+		}
+
+		return value;
+	}
+}
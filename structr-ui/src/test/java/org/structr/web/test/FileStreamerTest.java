@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2010-2013 Axel Morgner, structr <structr@structr.org>
+ *
+ * This file is part of structr <http://structr.org>.
+ *
+ * structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.test;
+
+import java.util.List;
+import junit.framework.TestCase;
+import org.structr.web.servlet.FileStreamer;
+import org.structr.web.servlet.FileStreamer.ByteRange;
+
+/**
+ * Tests range parsing of the file streamer.
+ *
+ * @author Axel Morgner
+ */
+public class FileStreamerTest extends TestCase {
+
+	public void testParseRanges() {
+
+		List<ByteRange> ranges = FileStreamer.parseRanges("bytes=0-99", 1000);
+		assertEquals(1, ranges.size());
+		assertEquals(0, ranges.get(0).getStart());
+		assertEquals(99, ranges.get(0).getEnd());
+		assertEquals("bytes 0-99/1000", ranges.get(0).getContentRange(1000));
+
+		// open range and suffix range
+		ranges = FileStreamer.parseRanges("bytes=900-, -50", 1000);
+		assertEquals(1, ranges.size());
+		assertEquals(900, ranges.get(0).getStart());
+		assertEquals(999, ranges.get(0).getEnd());
+
+		// disjoint ranges are sorted
+		ranges = FileStreamer.parseRanges("bytes=5000-5099, 0-99", 10000);
+		assertEquals(2, ranges.size());
+		assertEquals(0, ranges.get(0).getStart());
+		assertEquals(5000, ranges.get(1).getStart());
+
+		// end beyond file length is truncated
+		ranges = FileStreamer.parseRanges("bytes=500-5000", 1000);
+		assertEquals(999, ranges.get(0).getEnd());
+
+		// unsatisfiable
+		assertTrue(FileStreamer.parseRanges("bytes=1000-1100", 1000).isEmpty());
+
+		// invalid
+		assertNull(FileStreamer.parseRanges("bytes=100-50", 1000));
+		assertNull(FileStreamer.parseRanges("bytes=abc", 1000));
+		assertNull(FileStreamer.parseRanges("items=0-1", 1000));
+	}
+
+	public void testMergeRanges() {
+
+		// overlapping and adjacent ranges are merged
+		List<ByteRange> ranges = FileStreamer.parseRanges("bytes=0-,0-,0-,0-", 1000);
+		assertEquals(1, ranges.size());
+		assertEquals(1000, ranges.get(0).getLength());
+
+		ranges = FileStreamer.parseRanges("bytes=100-199, 200-299, 150-250, 5000-5099", 10000);
+		assertEquals(2, ranges.size());
+		assertEquals(100, ranges.get(0).getStart());
+		assertEquals(299, ranges.get(0).getEnd());
+		assertEquals(5000, ranges.get(1).getStart());
+
+		// too many ranges
+		StringBuilder header = new StringBuilder("bytes=0-0");
+		for (int i=1; i<=FileStreamer.MAX_RANGES; i++) {
+			header.append(",").append(i * 1000).append("-").append(i * 1000);
+		}
+
+		assertNull(FileStreamer.parseRanges(header.toString(), 100000));
+
+		// multipart response would be larger than the file
+		assertNull(FileStreamer.parseRanges("bytes=0-10, 20-30, 40-50", 300));
+	}
+}
@@ -33,6 +33,7 @@ import org.structr.core.entity.AbstractNode;
 import org.structr.web.entity.Folder;
 import org.structr.core.entity.ResourceAccess;
 import org.structr.core.graph.CreateNodeCommand;
+import org.structr.core.graph.DeleteNodeCommand;
 import org.structr.core.graph.StructrTransaction;
 import org.structr.core.graph.TransactionCommand;
 import org.structr.core.property.PropertyMap;
@@ -252,6 +253,39 @@ public class ResourceAccessTest extends StructrUiTest {
 
 	}
 
+	public void test05ResourceAccessDeletion() {
+
+		try {
+
+			final ResourceAccess folderGrant = createResourceAccess("Folder", UiAuthenticator.NON_AUTH_USER_GET);
+
+			RestAssured.given().contentType("application/json; charset=UTF-8").expect().statusCode(200).when().get("/folders");
+			
+			Services.command(securityContext, TransactionCommand.class).execute(new StructrTransaction() {
+
+				@Override
+				public Object execute() throws FrameworkException {
+
+					Services.command(securityContext, DeleteNodeCommand.class).execute(folderGrant);
+					
+					return null;
+				}
+			});
+			
+			// grant was deleted => forbidden
+			RestAssured.given().contentType("application/json; charset=UTF-8").expect().statusCode(401).when().get("/folders");
+			
+		} catch (FrameworkException ex) {
+
+			ex.printStackTrace();
+			
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
 	/**
 	 * Creates a new ResourceAccess entity with the given signature and flags in the database.
 	 * 